@@ -46,6 +46,10 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
   public static final int PREVIEW_PADDING_X = 20;
   public static final double MOUSE_FRAMES_PER_SECOND = 10.0;
   public static final double SCREENSHOT_FRAMES_PER_SECOND = 3.0;
+  /**
+   * The slowest rate screenshots are fetched at while frames keep producing identical screenshots.
+   */
+  public static final double MIN_SCREENSHOT_FRAMES_PER_SECOND = 0.5;
   public static final int PREVIEW_MAX_WIDTH = 280;
   public static final int PREVIEW_MAX_HEIGHT = 520;
   private static final Stroke SOLID_STROKE = new BasicStroke(1);
@@ -59,6 +63,7 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
   protected boolean controlDown;
   protected ArrayList<DiagnosticsNode> currentHits;
   protected InspectorObjectGroupManager hover;
+  protected InspectorObjectGroupManager layoutGeometryGroups;
   protected InspectorService.ObjectGroup screenshotGroup;
   protected boolean screenshotDirty = false;
   protected int extraHeight = 0;
@@ -74,6 +79,13 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
   Rectangle lastScreenshotBoundsWindow;
   int maxHeight;
   boolean _mouseInScreenshot = false;
+  /**
+   * Layout geometry of the hit test candidates in the current screenshot, used to hit test hovers
+   * without a round trip to the device. The geometry is null if it could not be fetched for the key.
+   */
+  LayoutGeometryIndex<DiagnosticsNode> layoutGeometry;
+  LayoutGeometryKey layoutGeometryKey;
+  LayoutGeometryKey pendingLayoutGeometryKey;
 
   public PreviewViewControllerBase(WidgetViewModelData data, boolean drawBackground, Disposable parent) {
     super(data, parent);
@@ -90,6 +102,10 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
       hover.clear(false);
       hover = null;
     }
+    if (layoutGeometryGroups != null) {
+      layoutGeometryGroups.clear(false);
+      layoutGeometryGroups = null;
+    }
     screenshot = null;
     super.dispose();
   }
@@ -119,6 +135,15 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
     return hover;
   }
 
+  InspectorObjectGroupManager getLayoutGeometryGroups() {
+    if (layoutGeometryGroups != null && layoutGeometryGroups.getInspectorService() == getInspectorService()) {
+      return layoutGeometryGroups;
+    }
+    if (getInspectorService() == null) return null;
+    layoutGeometryGroups = new InspectorObjectGroupManager(getInspectorService(), "layoutGeometry");
+    return layoutGeometryGroups;
+  }
+
   public @Nullable
   InspectorService.ObjectGroup getScreenshotGroup() {
     if (screenshotGroup != null && screenshotGroup.getInspectorService() == getInspectorService()) {
@@ -199,7 +224,6 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
       return CompletableFuture.completedFuture(null);
     }
     hoverGroups.cancelNext();
-    final InspectorService.ObjectGroup nextGroup = hoverGroups.getNext();
     final Matrix4 matrix = buildTransformToScreenshot(latestScreenshot);
     matrix.invert();
     final Vector3 point = matrix.perspectiveTransform(new Vector3(lastPoint.getX(), lastPoint.getY(), 0));
@@ -222,6 +246,26 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
       endLine = getDocument().getLineNumber(activeRange.getEndOffset());
     }
 
+    if (!navigateTo) {
+      // Hovers are hit tested against geometry fetched once per screenshot; only clicks, and hovers
+      // before the geometry arrives, ask the device.
+      final LayoutGeometryKey key = new LayoutGeometryKey(latestScreenshot, getSelectedElement(), file, startLine, endLine);
+      if (key.equals(layoutGeometryKey)) {
+        if (layoutGeometry != null) {
+          final ArrayList<DiagnosticsNode> hits = layoutGeometry.hitTest(point.getX(), point.getY());
+          if (!hits.equals(currentHits)) {
+            currentHits = hits;
+            forceRender();
+          }
+          return CompletableFuture.completedFuture(null);
+        }
+      }
+      else {
+        fetchLayoutGeometry(key);
+      }
+    }
+
+    final InspectorService.ObjectGroup nextGroup = hoverGroups.getNext();
     final CompletableFuture<ArrayList<DiagnosticsNode>> hitResults =
       nextGroup.hitTest(getSelectedElement(), point.getX(), point.getY(), file, startLine, endLine);
     nextGroup.safeWhenComplete(hitResults, (hits, error) -> {
@@ -256,6 +300,46 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
     return hitResults;
   }
 
+  private void fetchLayoutGeometry(LayoutGeometryKey key) {
+    if (key.equals(pendingLayoutGeometryKey)) {
+      return;
+    }
+    final InspectorObjectGroupManager groups = getLayoutGeometryGroups();
+    if (groups == null) {
+      return;
+    }
+    pendingLayoutGeometryKey = key;
+    groups.cancelNext();
+    final InspectorService.ObjectGroup nextGroup = groups.getNext();
+    nextGroup.safeWhenComplete(nextGroup.getLayoutGeometry(key.root, key.file, key.startLine, key.endLine), (nodes, error) -> {
+      if (nextGroup.isDisposed() || !key.equals(pendingLayoutGeometryKey)) return;
+      pendingLayoutGeometryKey = null;
+      layoutGeometryKey = key;
+      if (error != null || nodes == null) {
+        // Fall back to asking the device until the next screenshot.
+        layoutGeometry = null;
+        return;
+      }
+      groups.promoteNext();
+      layoutGeometry = buildLayoutGeometryIndex(nodes);
+    });
+  }
+
+  static LayoutGeometryIndex<DiagnosticsNode> buildLayoutGeometryIndex(ArrayList<DiagnosticsNode> nodes) {
+    final ArrayList<DiagnosticsNode> values = new ArrayList<>(nodes.size());
+    final ArrayList<Rectangle2D> rects = new ArrayList<>(nodes.size());
+    final ArrayList<Matrix4> transforms = new ArrayList<>(nodes.size());
+    for (DiagnosticsNode node : nodes) {
+      final TransformedRect transform = node.getTransformToRoot();
+      if (transform != null) {
+        values.add(node);
+        rects.add(transform.getRectangle());
+        transforms.add(transform.getTransform());
+      }
+    }
+    return new LayoutGeometryIndex<>(values, rects, transforms);
+  }
+
   protected abstract VirtualFile getVirtualFile();
 
   abstract protected Document getDocument();
@@ -417,7 +501,14 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
     if (hover != null) {
       hover.clear(true);
     }
+    if (layoutGeometryGroups != null) {
+      layoutGeometryGroups.clear(true);
+    }
+    layoutGeometry = null;
+    layoutGeometryKey = null;
+    pendingLayoutGeometryKey = null;
     screenshot = null;
+    resetScreenshotRate();
   }
 
   @Override
@@ -522,6 +613,7 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
   void fetchScreenshot(boolean mightBeIncompatible) {
     if (mightBeIncompatible) {
       screenshotLoading = true;
+      resetScreenshotRate();
     }
     screenshotDirty = true;
     if (!visible) return;
@@ -531,7 +623,8 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
 
   protected CompletableFuture<InspectorService.InteractiveScreenshot> updateScreenshot() {
     final InspectorService.ObjectGroup group = getScreenshotGroup();
-    if (group == null) {
+    if (group == null || !visible) {
+      // Leave the screenshot dirty so it is fetched once the preview is visible again.
       return CompletableFuture.completedFuture(null);
     }
 
@@ -551,6 +644,7 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
         }
         else {
           setElements(pair.elements);
+          updateScreenshotRate(screenshot, pair.screenshot);
           screenshot = pair.screenshot;
           boxes = pair.boxes;
         }
@@ -564,6 +658,31 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
     return screenshotFuture;
   }
 
+  /**
+   * Backs off fetching screenshots while frames keep producing the same image, such as for an
+   * animation outside the previewed widget, and returns to the full rate once the image changes.
+   * <p>
+   * The screenshot cache hands back the same image when the encoded screenshot is unchanged.
+   */
+  private void updateScreenshotRate(Screenshot previous, Screenshot next) {
+    final AsyncRateLimiter rateLimiter = getScreenshotRateLimiter();
+    final double framesPerSecond = rateLimiter.getFramesPerSecond();
+    if (previous != null && next != null && previous.image == next.image) {
+      if (framesPerSecond > MIN_SCREENSHOT_FRAMES_PER_SECOND) {
+        rateLimiter.setFramesPerSecond(Math.max(MIN_SCREENSHOT_FRAMES_PER_SECOND, framesPerSecond / 2));
+      }
+    }
+    else if (framesPerSecond < SCREENSHOT_FRAMES_PER_SECOND) {
+      rateLimiter.setFramesPerSecond(SCREENSHOT_FRAMES_PER_SECOND);
+    }
+  }
+
+  private void resetScreenshotRate() {
+    if (screenshotRateLimiter != null) {
+      screenshotRateLimiter.setFramesPerSecond(SCREENSHOT_FRAMES_PER_SECOND);
+    }
+  }
+
   protected abstract Dimension getPreviewSize();
 
   public void paint(@NotNull Graphics g, int lineHeight) {
@@ -677,4 +796,40 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
       y += lineHeight;
     }
   }
+
+  /**
+   * What layout geometry was fetched for: the geometry is only valid for the screenshot it was
+   * fetched with and the hit test filters in effect.
+   */
+  static class LayoutGeometryKey {
+    final Screenshot screenshot;
+    final DiagnosticsNode root;
+    final String file;
+    final int startLine;
+    final int endLine;
+
+    LayoutGeometryKey(Screenshot screenshot, DiagnosticsNode root, String file, int startLine, int endLine) {
+      this.screenshot = screenshot;
+      this.root = root;
+      this.file = file;
+      this.startLine = startLine;
+      this.endLine = endLine;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof LayoutGeometryKey)) return false;
+      final LayoutGeometryKey key = (LayoutGeometryKey)other;
+      return screenshot == key.screenshot &&
+             Objects.equals(root.getValueRef(), key.root.getValueRef()) &&
+             Objects.equals(file, key.file) &&
+             startLine == key.startLine &&
+             endLine == key.endLine;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(screenshot), root.getValueRef(), file, startLine, endLine);
+    }
+  }
 }
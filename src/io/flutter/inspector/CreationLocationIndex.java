@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Finds the loaded inspector nodes that were created at a source location, without asking the device.
+ * <p>
+ * Values are looked up by the creation location's file, line and column, in the form the device
+ * reports them. Lookups return values in the order they were first added; adding a value again has
+ * no effect.
+ */
+public class CreationLocationIndex<T> {
+  private final Map<String, Set<T>> byLocation = new HashMap<>();
+
+  /**
+   * Adds a value created at the given location.
+   *
+   * @param file the creation location's file, or null if it has none
+   */
+  public void add(@Nullable String file, int line, int column, @NotNull T value) {
+    if (file != null && line >= 0 && column >= 0) {
+      byLocation.computeIfAbsent(key(file, line, column), (k) -> new LinkedHashSet<>()).add(value);
+    }
+  }
+
+  /**
+   * Returns the values created at the given location.
+   */
+  @NotNull
+  public List<T> get(@NotNull String file, int line, int column) {
+    final Set<T> values = byLocation.get(key(file, line, column));
+    return values == null ? new ArrayList<>() : new ArrayList<>(values);
+  }
+
+  public boolean isEmpty() {
+    return byLocation.isEmpty();
+  }
+
+  public void clear() {
+    byLocation.clear();
+  }
+
+  private static String key(String file, int line, int column) {
+    return line + ":" + column + ":" + file;
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import io.flutter.inspector.InspectorService.ObjectGroup;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Speculatively fetches the details subtrees of the nodes the user is likely
+ * to select next, so that moving the selection through the summary tree does
+ * not wait for a round trip per step.
+ * <p>
+ * Each prefetch loads into a low priority object group of its own. A prefetch
+ * for a node that is no longer predicted is cancelled by disposing its group.
+ * A prefetch for the node that is selected is handed over with its group,
+ * which the caller then owns.
+ * <p>
+ * Methods from this class must only be invoked from the main UI thread.
+ */
+public class DetailsSubtreePrefetcher {
+  private final InspectorService inspectorService;
+  private final LinkedHashMap<InspectorInstanceRef, Prefetch> prefetches = new LinkedHashMap<>();
+  /**
+   * Whether prefetches were issued for the current selection's candidates,
+   * and no node has been shown since, so that showing a node that was not
+   * prefetched counts as a miss.
+   */
+  private boolean predicting;
+  private long hitCount;
+  private long missCount;
+
+  public DetailsSubtreePrefetcher(@NotNull InspectorService inspectorService) {
+    this.inspectorService = inspectorService;
+  }
+
+  /**
+   * Prefetches the details subtrees of the first {@code budget} candidates,
+   * most likely first, and cancels the prefetches of nodes that are no longer
+   * candidates.
+   */
+  public void prefetch(@NotNull List<DiagnosticsNode> candidates, int budget) {
+    final LinkedHashMap<InspectorInstanceRef, DiagnosticsNode> wanted = new LinkedHashMap<>();
+    for (DiagnosticsNode candidate : candidates) {
+      if (wanted.size() >= budget) {
+        break;
+      }
+      if (candidate == null || candidate.isProperty() || candidate.getValueRef() == null || candidate.getValueRef().getId() == null) {
+        continue;
+      }
+      wanted.putIfAbsent(candidate.getValueRef(), candidate);
+    }
+
+    for (Iterator<Map.Entry<InspectorInstanceRef, Prefetch>> it = prefetches.entrySet().iterator(); it.hasNext(); ) {
+      final Map.Entry<InspectorInstanceRef, Prefetch> entry = it.next();
+      if (!wanted.containsKey(entry.getKey())) {
+        entry.getValue().group.dispose();
+        it.remove();
+      }
+    }
+
+    predicting = !wanted.isEmpty();
+    for (DiagnosticsNode node : wanted.values()) {
+      if (!prefetches.containsKey(node.getValueRef())) {
+        final ObjectGroup group = inspectorService.createObjectGroup("prefetch");
+        group.setLowPriority(true);
+        prefetches.put(node.getValueRef(), new Prefetch(group, group.getDetailsSubtree(node)));
+      }
+    }
+  }
+
+  /**
+   * Returns the prefetch of the node's details subtree, if there is a usable
+   * one, and counts whether the prediction was a hit.
+   * <p>
+   * Only the first node shown after prefetching counts, and only if anything
+   * was prefetched, so that nodes shown while prefetching is disabled or
+   * the panel is hidden don't count as misses.
+   * <p>
+   * The returned prefetch is no longer tracked: the caller owns its group,
+   * which is raised to normal priority.
+   */
+  @Nullable
+  public Prefetch take(@Nullable DiagnosticsNode node) {
+    final Prefetch prefetch = node != null ? prefetches.remove(node.getValueRef()) : null;
+    final boolean counted = predicting;
+    predicting = false;
+    if (prefetch == null || prefetch.subtree.isCompletedExceptionally()) {
+      if (prefetch != null) {
+        prefetch.group.dispose();
+      }
+      if (counted) {
+        missCount++;
+      }
+      return null;
+    }
+    hitCount++;
+    prefetch.group.setLowPriority(false);
+    return prefetch;
+  }
+
+  /**
+   * Cancels all prefetches.
+   *
+   * @param isolateStopped whether the isolate is gone, in which case there is
+   *                       nothing to dispose on the device
+   */
+  public void clear(boolean isolateStopped) {
+    if (!isolateStopped) {
+      for (Prefetch prefetch : prefetches.values()) {
+        prefetch.group.dispose();
+      }
+    }
+    prefetches.clear();
+    predicting = false;
+  }
+
+  /**
+   * Cancels all prefetches because the app has changed since they were
+   * issued. Unlike {@link #clear(boolean)}, the next node shown still counts
+   * as a miss if prefetches had been issued for it.
+   */
+  public void invalidate() {
+    for (Prefetch prefetch : prefetches.values()) {
+      prefetch.group.dispose();
+    }
+    prefetches.clear();
+  }
+
+  public int getPendingCount() {
+    return prefetches.size();
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Returns the fraction of details subtrees that had been prefetched when
+   * they were needed.
+   */
+  public double getHitRate() {
+    final long total = hitCount + missCount;
+    return total == 0 ? 0 : (double)hitCount / total;
+  }
+
+  public static class Prefetch {
+    @NotNull public final ObjectGroup group;
+    @NotNull public final CompletableFuture<DiagnosticsNode> subtree;
+
+    Prefetch(@NotNull ObjectGroup group, @NotNull CompletableFuture<DiagnosticsNode> subtree) {
+      this.group = group;
+      this.subtree = subtree;
+    }
+  }
+}
@@ -5,6 +5,8 @@
  */
 package io.flutter.inspector;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonNull;
@@ -53,8 +55,69 @@ public class DiagnosticsNode {
   private static final Logger LOG = Logger.getInstance(DiagnosticsNode.class);
 
   private static final CustomIconMaker iconMaker = new CustomIconMaker();
+
+  /**
+   * Strings such as widget type names, property names and style names repeat
+   * across almost every node of a tree so they are shared between nodes.
+   */
+  private static final Interner<String> strings = Interners.newWeakInterner();
+
+  private static final int SHOW_NAME = 1;
+  private static final int SHOW_SEPARATOR = 1 << 1;
+  private static final int HAS_CHILDREN = 1 << 2;
+  private static final int ALLOW_WRAP = 1 << 3;
+  private static final int QUOTED = 1 << 4;
+  private static final int CREATED_BY_LOCAL_PROJECT = 1 << 5;
+  private static final int SUMMARY_TREE = 1 << 6;
+  private static final int STATEFUL = 1 << 7;
+  private static final int MISSING_IF_NULL = 1 << 8;
+  private static final int IS_DIAGNOSTICABLE_VALUE = 1 << 9;
+  private static final int HAS_QUOTED = 1 << 10;
+  private static final int INLINE_CHILDREN = 1 << 11;
+
+  /**
+   * Members of the JSON that are decoded into fields, or kept apart as the
+   * JSON for children and inline properties, rather than kept in
+   * otherMembers.
+   */
+  private static final Set<String> decodedMembers = new HashSet<>(Arrays.asList(
+    "name", "description", "type", "propertyType", "widgetRuntimeType", "level", "defaultLevel", "style", "showName",
+    "showSeparator", "hasChildren", "allowWrap", "quoted", "createdByLocalProject", "summaryTree", "stateful", "missingIfNull",
+    "isDiagnosticableValue", "locationId", "valueId", "objectId", "children", "properties"));
+
   private final FlutterApp app;
 
+  // Members read while painting are decoded once up front rather than looked
+  // up in the JSON on every call.
+  private final String name;
+  private final String description;
+  private final String type;
+  private final String propertyType;
+  private final String widgetRuntimeType;
+  private final DiagnosticLevel level;
+  private final DiagnosticLevel defaultLevel;
+  private final DiagnosticsTreeStyle style;
+  private final int flags;
+  private final int locationId;
+  private final InspectorInstanceRef valueRef;
+  private final InspectorInstanceRef dartDiagnosticRef;
+
+  /**
+   * The members of the JSON describing the node that are not decoded into
+   * fields, or null if there are none.
+   * <p>
+   * The rest of the JSON is not kept, so strings decoded into fields are not
+   * also kept alive by the JSON tree.
+   */
+  @Nullable private final JsonObject otherMembers;
+
+  /**
+   * JSON for the children and inline properties sent with the node, released
+   * once they have been decoded into nodes.
+   */
+  @Nullable private JsonArray childrenJson;
+  @Nullable private JsonArray propertiesJson;
+
   private InspectorSourceLocation location;
   private DiagnosticsNode parent;
 
@@ -66,10 +129,7 @@ public class DiagnosticsNode {
                          InspectorService.ObjectGroup inspectorService,
                          boolean isProperty,
                          DiagnosticsNode parent) {
-    this.json = json;
-    this.inspectorService = CompletableFuture.completedFuture(inspectorService);
-    this.isProperty = isProperty;
-    this.app = inspectorService.getApp();
+    this(json, CompletableFuture.completedFuture(inspectorService), inspectorService.getApp(), isProperty, parent);
   }
 
   public DiagnosticsNode(JsonObject json,
@@ -77,10 +137,46 @@ public class DiagnosticsNode {
                          FlutterApp app,
                          boolean isProperty,
                          DiagnosticsNode parent) {
-    this.json = json;
     this.inspectorService = inspectorService;
     this.isProperty = isProperty;
     this.app = app;
+
+    name = getInternedStringMember(json, "name");
+    description = getInternedStringMember(json, "description");
+    type = getInternedStringMember(json, "type");
+    propertyType = getInternedStringMember(json, "propertyType");
+    widgetRuntimeType = getInternedStringMember(json, "widgetRuntimeType");
+    level = getLevelMember(json, "level", DiagnosticLevel.info);
+    defaultLevel = getLevelMember(json, "defaultLevel", DiagnosticLevel.info);
+    style = getStyleMember(json, "style", DiagnosticsTreeStyle.sparse);
+    childrenJson = getArrayMember(json, "children");
+    propertiesJson = getArrayMember(json, "properties");
+    flags = (getBooleanMember(json, "showName", true) ? SHOW_NAME : 0) |
+            (getBooleanMember(json, "showSeparator", true) ? SHOW_SEPARATOR : 0) |
+            (getBooleanMember(json, "hasChildren", false) ? HAS_CHILDREN : 0) |
+            (getBooleanMember(json, "allowWrap", true) ? ALLOW_WRAP : 0) |
+            (getBooleanMember(json, "quoted", false) ? QUOTED : 0) |
+            (getBooleanMember(json, "createdByLocalProject", false) ? CREATED_BY_LOCAL_PROJECT : 0) |
+            (getBooleanMember(json, "summaryTree", false) ? SUMMARY_TREE : 0) |
+            (getBooleanMember(json, "stateful", false) ? STATEFUL : 0) |
+            (getBooleanMember(json, "missingIfNull", false) ? MISSING_IF_NULL : 0) |
+            (getBooleanMember(json, "isDiagnosticableValue", false) ? IS_DIAGNOSTICABLE_VALUE : 0) |
+            (json.has("quoted") ? HAS_QUOTED : 0) |
+            (childrenJson != null ? INLINE_CHILDREN : 0);
+    locationId = JsonUtils.getIntMember(json, "locationId");
+    valueRef = getRefMember(json, "valueId");
+    dartDiagnosticRef = getRefMember(json, "objectId");
+
+    JsonObject others = null;
+    for (Map.Entry<String, JsonElement> entry : json.entrySet()) {
+      if (!decodedMembers.contains(entry.getKey())) {
+        if (others == null) {
+          others = new JsonObject();
+        }
+        others.add(entry.getKey(), entry.getValue());
+      }
+    }
+    otherMembers = others;
   }
 
   @Override
@@ -143,7 +239,7 @@ public class DiagnosticsNode {
    * The name should be omitted if the [showName] property is false.
    */
   public String getName() {
-    return getStringMember("name");
+    return name;
   }
 
   /**
@@ -153,7 +249,7 @@ public class DiagnosticsNode {
    * `:` is typically used as a separator when displaying as text.
    */
   public boolean getShowSeparator() {
-    return getBooleanMember("showSeparator", true);
+    return (flags & SHOW_SEPARATOR) != 0;
   }
 
   /**
@@ -165,7 +261,7 @@ public class DiagnosticsNode {
    * description of a property should also be a single line if possible.
    */
   public String getDescription() {
-    return getStringMember("description");
+    return description;
   }
 
   /**
@@ -173,10 +269,10 @@ public class DiagnosticsNode {
    * <p>
    */
   public TransformedRect getTransformToRoot() {
-    if (!json.has("transformToRoot")) {
+    if (!hasMember("transformToRoot")) {
       return null;
     }
-    return new TransformedRect(json.getAsJsonObject("transformToRoot"));
+    return new TransformedRect(otherMembers.getAsJsonObject("transformToRoot"));
   }
 
   /**
@@ -191,7 +287,7 @@ public class DiagnosticsNode {
    * [DiagnosticLevel.error] is returned.
    */
   public DiagnosticLevel getLevel() {
-    return getLevelMember("level", DiagnosticLevel.info);
+    return level;
   }
 
   /**
@@ -202,7 +298,7 @@ public class DiagnosticsNode {
    * will make the name self-evident.
    */
   public boolean getShowName() {
-    return getBooleanMember("showName", true);
+    return (flags & SHOW_NAME) != 0;
   }
 
   /**
@@ -216,14 +312,14 @@ public class DiagnosticsNode {
    * Hint for how the node should be displayed.
    */
   public DiagnosticsTreeStyle getStyle() {
-    return getStyleMember("style", DiagnosticsTreeStyle.sparse);
+    return style;
   }
 
   /**
    * Whether to wrap text on onto multiple lines or not.
    */
   public boolean getAllowWrap() {
-    return getBooleanMember("allowWrap", true);
+    return (flags & ALLOW_WRAP) != 0;
   }
 
   /**
@@ -234,7 +330,7 @@ public class DiagnosticsNode {
    * of a specific Dart diagnostic class.
    */
   public String getType() {
-    return getStringMember("type");
+    return type;
   }
 
   /**
@@ -243,11 +339,11 @@ public class DiagnosticsNode {
    * Only relevant for String properties.
    */
   public boolean getIsQuoted() {
-    return getBooleanMember("quoted", false);
+    return (flags & QUOTED) != 0;
   }
 
   public boolean hasIsQuoted() {
-    return json.has("quoted");
+    return (flags & HAS_QUOTED) != 0;
   }
 
   /**
@@ -264,7 +360,7 @@ public class DiagnosticsNode {
   }
 
   public boolean hasUnit() {
-    return json.has("unit");
+    return hasMember("unit");
   }
 
   /**
@@ -277,7 +373,7 @@ public class DiagnosticsNode {
   }
 
   public boolean hasNumberToString() {
-    return json.has("numberToString");
+    return hasMember("numberToString");
   }
 
   /**
@@ -293,7 +389,7 @@ public class DiagnosticsNode {
   }
 
   public boolean hasIfTrue() {
-    return json.has("ifTrue");
+    return hasMember("ifTrue");
   }
 
   /**
@@ -309,7 +405,7 @@ public class DiagnosticsNode {
   }
 
   public boolean hasIfFalse() {
-    return json.has("ifFalse");
+    return hasMember("ifFalse");
   }
 
   /**
@@ -320,10 +416,10 @@ public class DiagnosticsNode {
    * Only applies to IterableProperty.
    */
   public ArrayList<String> getValues() {
-    if (!json.has("values")) {
+    if (!hasMember("values")) {
       return null;
     }
-    final JsonArray rawValues = json.getAsJsonArray("values");
+    final JsonArray rawValues = otherMembers.getAsJsonArray("values");
     final ArrayList<String> values = new ArrayList<>(rawValues.size());
     for (int i = 0; i < rawValues.size(); ++i) {
       values.add(rawValues.get(i).getAsString());
@@ -332,7 +428,7 @@ public class DiagnosticsNode {
   }
 
   public boolean hasValues() {
-    return json.has("values");
+    return hasMember("values");
   }
 
   /**
@@ -349,7 +445,7 @@ public class DiagnosticsNode {
   }
 
   public boolean hasIfPresent() {
-    return json.has("ifPresent");
+    return hasMember("ifPresent");
   }
 
   /**
@@ -374,7 +470,7 @@ public class DiagnosticsNode {
    * Whether a property has a default value.
    */
   public boolean hasDefaultValue() {
-    return json.has("defaultValue");
+    return hasMember("defaultValue");
   }
 
   /**
@@ -407,7 +503,7 @@ public class DiagnosticsNode {
   }
 
   public boolean hasTooltip() {
-    return json.has("tooltip");
+    return hasMember("tooltip");
   }
 
   /**
@@ -415,7 +511,7 @@ public class DiagnosticsNode {
    * [DiagnosticLevel.warning] warning that the property is missing a [value].
    */
   public boolean getMissingIfNull() {
-    return getBooleanMember("missingIfNull", false);
+    return (flags & MISSING_IF_NULL) != 0;
   }
 
   /**
@@ -430,15 +526,15 @@ public class DiagnosticsNode {
    * Whether accessing the property throws an exception.
    */
   boolean hasException() {
-    return json.has("exception");
+    return hasMember("exception");
   }
 
   public boolean hasCreationLocation() {
-    return location != null || json.has("creationLocation");
+    return location != null || hasMember("creationLocation");
   }
 
   public int getLocationId() {
-    return JsonUtils.getIntMember(json, "locationId");
+    return locationId;
   }
 
   public InspectorSourceLocation getCreationLocation() {
@@ -448,7 +544,7 @@ public class DiagnosticsNode {
     if (!hasCreationLocation()) {
       return null;
     }
-    location = new InspectorSourceLocation(json.getAsJsonObject("creationLocation"), null, app.getProject());
+    location = new InspectorSourceLocation(otherMembers.getAsJsonObject("creationLocation"), null, app.getProject());
     return location;
   }
 
@@ -466,7 +562,7 @@ public class DiagnosticsNode {
    * the word "null".
    */
   public String getPropertyType() {
-    return getStringMember("propertyType");
+    return propertyType;
   }
 
   /**
@@ -477,7 +573,7 @@ public class DiagnosticsNode {
    * [defaultValue] has type [T] or is [kNoDefaultValue].
    */
   public DiagnosticLevel getDefaultLevel() {
-    return getLevelMember("defaultLevel", DiagnosticLevel.info);
+    return defaultLevel;
   }
 
   /**
@@ -492,7 +588,7 @@ public class DiagnosticsNode {
    * could.
    */
   public boolean getIsDiagnosticableValue() {
-    return getBooleanMember("isDiagnosticableValue", false);
+    return (flags & IS_DIAGNOSTICABLE_VALUE) != 0;
   }
 
   /**
@@ -501,11 +597,6 @@ public class DiagnosticsNode {
    */
   private final CompletableFuture<InspectorService.ObjectGroup> inspectorService;
 
-  /**
-   * JSON describing the diagnostic node.
-   */
-  private final JsonObject json;
-
   private CompletableFuture<ArrayList<DiagnosticsNode>> children;
 
   private CompletableFuture<Map<String, InstanceRef>> valueProperties;
@@ -517,10 +608,43 @@ public class DiagnosticsNode {
   }
 
   public String getStringMember(@NotNull String memberName) {
-    return JsonUtils.getStringMember(json, memberName);
+    switch (memberName) {
+      case "name":
+        return name;
+      case "description":
+        return description;
+      case "type":
+        return type;
+      case "propertyType":
+        return propertyType;
+      case "widgetRuntimeType":
+        return widgetRuntimeType;
+      default:
+        return otherMembers != null ? JsonUtils.getStringMember(otherMembers, memberName) : null;
+    }
+  }
+
+  private boolean hasMember(@NotNull String memberName) {
+    return otherMembers != null && otherMembers.has(memberName);
+  }
+
+  private static String getInternedStringMember(JsonObject json, @NotNull String memberName) {
+    final String value = JsonUtils.getStringMember(json, memberName);
+    return value != null ? strings.intern(value) : null;
   }
 
-  private boolean getBooleanMember(String memberName, boolean defaultValue) {
+  private static InspectorInstanceRef getRefMember(JsonObject json, String memberName) {
+    final JsonElement id = json.get(memberName);
+    return new InspectorInstanceRef(id == null || id.isJsonNull() ? null : id.getAsString());
+  }
+
+  @Nullable
+  private static JsonArray getArrayMember(JsonObject json, String memberName) {
+    final JsonElement value = json.get(memberName);
+    return value instanceof JsonArray ? (JsonArray)value : null;
+  }
+
+  private static boolean getBooleanMember(JsonObject json, String memberName, boolean defaultValue) {
     if (!json.has(memberName)) {
       return defaultValue;
     }
@@ -531,7 +655,7 @@ public class DiagnosticsNode {
     return value.getAsBoolean();
   }
 
-  private DiagnosticLevel getLevelMember(String memberName, DiagnosticLevel defaultValue) {
+  private static DiagnosticLevel getLevelMember(JsonObject json, String memberName, DiagnosticLevel defaultValue) {
     if (!json.has(memberName)) {
       return defaultValue;
     }
@@ -547,7 +671,7 @@ public class DiagnosticsNode {
     }
   }
 
-  private DiagnosticsTreeStyle getStyleMember(String memberName, DiagnosticsTreeStyle defaultValue) {
+  private static DiagnosticsTreeStyle getStyleMember(JsonObject json, String memberName, DiagnosticsTreeStyle defaultValue) {
     if (!json.has(memberName)) {
       return defaultValue;
     }
@@ -555,15 +679,19 @@ public class DiagnosticsNode {
     if (value instanceof JsonNull) {
       return defaultValue;
     }
-    return DiagnosticsTreeStyle.valueOf(value.getAsString());
+    try {
+      return DiagnosticsTreeStyle.valueOf(value.getAsString());
+    }
+    catch (IllegalArgumentException ignore) {
+      return defaultValue;
+    }
   }
 
   /**
    * Returns a reference to the value the DiagnosticsNode object is describing.
    */
   public InspectorInstanceRef getValueRef() {
-    final JsonElement valueId = json.get("valueId");
-    return new InspectorInstanceRef(valueId.isJsonNull() ? null : valueId.getAsString());
+    return valueRef;
   }
 
   public boolean isEnumProperty() {
@@ -624,53 +752,53 @@ public class DiagnosticsNode {
   }
 
   public JsonObject getValuePropertiesJson() {
-    return json.getAsJsonObject("valueProperties");
+    return hasMember("valueProperties") ? otherMembers.getAsJsonObject("valueProperties") : null;
   }
 
   public boolean hasChildren() {
-    return getBooleanMember("hasChildren", false);
+    return (flags & HAS_CHILDREN) != 0;
   }
 
   public boolean isCreatedByLocalProject() {
-    return getBooleanMember("createdByLocalProject", false);
+    return (flags & CREATED_BY_LOCAL_PROJECT) != 0;
   }
 
   /**
    * Whether this node is being displayed as a full tree or a filtered tree.
    */
   public boolean isSummaryTree() {
-    return getBooleanMember("summaryTree", false);
+    return (flags & SUMMARY_TREE) != 0;
   }
 
   /**
    * Whether this node is being displayed as a full tree or a filtered tree.
    */
   public boolean isStateful() {
-    return getBooleanMember("stateful", false);
+    return (flags & STATEFUL) != 0;
   }
 
   public String getWidgetRuntimeType() {
-    return getStringMember("widgetRuntimeType");
+    return widgetRuntimeType;
   }
 
   /**
    * Check whether children are already available.
    */
   public boolean childrenReady() {
-    return json.has("children") || (children != null && children.isDone());
+    return (flags & INLINE_CHILDREN) != 0 || (children != null && children.isDone());
   }
 
   public CompletableFuture<ArrayList<DiagnosticsNode>> getChildren() {
     if (children == null) {
-      if (json.has("children")) {
-        final JsonArray jsonArray = json.get("children").getAsJsonArray();
-        final ArrayList<DiagnosticsNode> nodes = new ArrayList<>();
-        for (JsonElement element : jsonArray) {
+      if (childrenJson != null) {
+        final ArrayList<DiagnosticsNode> nodes = new ArrayList<>(childrenJson.size());
+        for (JsonElement element : childrenJson) {
           final DiagnosticsNode child = new DiagnosticsNode(element.getAsJsonObject(), inspectorService, app, false, parent);
           child.setParent(this);
           nodes.add(child);
         }
         children = CompletableFuture.completedFuture(nodes);
+        childrenJson = null;
       }
       else if (hasChildren()) {
         children = inspectorService.thenComposeAsync((service) -> {
@@ -692,16 +820,14 @@ public class DiagnosticsNode {
    * Reference the actual Dart DiagnosticsNode object this object is referencing.
    */
   public InspectorInstanceRef getDartDiagnosticRef() {
-    final JsonElement objectId = json.get("objectId");
-    return new InspectorInstanceRef(objectId.isJsonNull() ? null : objectId.getAsString());
+    return dartDiagnosticRef;
   }
 
   public boolean hasInlineProperties() {
-    if (!json.has("properties")) {
-      return false;
+    if (cachedProperties != null) {
+      return !cachedProperties.isEmpty();
     }
-    final JsonArray jsonArray = json.get("properties").getAsJsonArray();
-    return jsonArray.size() > 0;
+    return propertiesJson != null && propertiesJson.size() > 0;
   }
 
   /**
@@ -710,11 +836,11 @@ public class DiagnosticsNode {
   public ArrayList<DiagnosticsNode> getInlineProperties() {
     if (cachedProperties == null) {
       cachedProperties = new ArrayList<>();
-      if (json.has("properties")) {
-        final JsonArray jsonArray = json.get("properties").getAsJsonArray();
-        for (JsonElement element : jsonArray) {
+      if (propertiesJson != null) {
+        for (JsonElement element : propertiesJson) {
           cachedProperties.add(new DiagnosticsNode(element.getAsJsonObject(), inspectorService, app, true, parent));
         }
+        propertiesJson = null;
         trackPropertiesMatchingParameters(cachedProperties);
       }
     }
@@ -838,19 +964,57 @@ public class DiagnosticsNode {
    * value is created dynamically each time 'getProperties' is called.
    */
   public boolean identicalDisplay(DiagnosticsNode node) {
+    return identicalDisplayHelper(node, false);
+  }
+
+  /**
+   * Variant of {@link #identicalDisplay} that ignores the children and
+   * inline properties of the nodes.
+   * <p>
+   * Unlike identicalDisplay, this does not compare entire subtrees so it is
+   * cheap enough to call on every node of a large tree.
+   */
+  public boolean identicalDisplayIgnoringChildren(DiagnosticsNode node) {
+    return identicalDisplayHelper(node, true);
+  }
+
+  private boolean identicalDisplayHelper(DiagnosticsNode node, boolean ignoreChildren) {
     if (node == null) {
       return false;
     }
-    final Set<Map.Entry<String, JsonElement>> entries = json.entrySet();
-    if (entries.size() != node.json.entrySet().size()) {
+    // Strings are interned, but they are compared by value in case the
+    // interner has dropped and re-added one.
+    if (flags != node.flags ||
+        locationId != node.locationId ||
+        level != node.level ||
+        defaultLevel != node.defaultLevel ||
+        style != node.style ||
+        !Objects.equals(name, node.name) ||
+        !Objects.equals(description, node.description) ||
+        !Objects.equals(type, node.type) ||
+        !Objects.equals(propertyType, node.propertyType) ||
+        !Objects.equals(widgetRuntimeType, node.widgetRuntimeType) ||
+        !Objects.equals(otherMembers, node.otherMembers)) {
       return false;
     }
-    for (Map.Entry<String, JsonElement> entry : entries) {
-      final String key = entry.getKey();
-      if (key.equals("objectId") || key.equals("valueId")) {
-        continue;
-      }
-      if (!entry.getValue().equals(node.json.get(key))) {
+    if (ignoreChildren) {
+      return true;
+    }
+    if ((flags & INLINE_CHILDREN) != 0 && !identicalDisplay(getChildren().getNow(null), node.getChildren().getNow(null))) {
+      return false;
+    }
+    return identicalDisplay(getInlineProperties(), node.getInlineProperties());
+  }
+
+  private static boolean identicalDisplay(List<DiagnosticsNode> a, List<DiagnosticsNode> b) {
+    if (a == null || b == null) {
+      return a == b;
+    }
+    if (a.size() != b.size()) {
+      return false;
+    }
+    for (int i = 0; i < a.size(); ++i) {
+      if (!a.get(i).identicalDisplay(b.get(i))) {
         return false;
       }
     }
@@ -24,6 +24,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -45,11 +46,26 @@ public class EvalOnDartLibrary implements Disposable {
   private final Alarm myRequestsScheduler;
 
   static final int DEFAULT_REQUEST_TIMEOUT_SECONDS = 10;
+
+  /**
+   * Lane used for requests that are not associated with an ObjectGroup.
+   */
+  private static final Object NO_GROUP = new Object();
+
+  private final GroupedRequestScheduler scheduler;
+
+  /**
+   * The tag of the request that each ObjectGroup is waiting on, if any.
+   */
+  private final Map<InspectorService.ObjectGroup, Object> inFlightRequests = new ConcurrentHashMap<>();
+
   /**
-   * For robustness we ensure at most one pending request is issued at a time.
+   * The tag of the request whose supplier is running on the current thread.
+   * <p>
+   * VM service calls made while it is set are sent with it, so they can be
+   * cancelled along with the request that made them.
    */
-  private CompletableFuture<?> allPendingRequestsDone;
-  private final Object pendingRequestLock = new Object();
+  private final ThreadLocal<Object> currentRequestTag = new ThreadLocal<>();
 
   /**
    * Public so that other related classes such as InspectorService can ensure their
@@ -59,10 +75,11 @@ public class EvalOnDartLibrary implements Disposable {
    * from an object in a group but the request to dispose the object group
    * occurred first.
    * <p>
-   * The design is we have at most 1 pending request at a time. This sacrifices
-   * some throughput with the advantage of predictable semantics and the benefit
-   * that we are able to skip large numbers of requests if they happen to be
-   * from groups of objects that should no longer be kept alive.
+   * Requests for the same ObjectGroup are issued one at a time in the order
+   * they were added, and requests without an ObjectGroup are ordered with
+   * respect to each other. Requests for different groups are independent so
+   * they are pipelined, with at most {@link #getMaxConcurrentRequests()}
+   * requests in flight at a time.
    * <p>
    * The optional ObjectGroup specified by isAlive, indicates whether the
    * request is still relevant or should be cancelled. This is an optimization
@@ -73,6 +90,20 @@ public class EvalOnDartLibrary implements Disposable {
   public <T> CompletableFuture<T> addRequest(InspectorService.ObjectGroup isAlive,
                                              String requestName,
                                              Supplier<CompletableFuture<T>> request) {
+    return addRequest(isAlive, isAlive, requestName, request);
+  }
+
+  /**
+   * Variant of {@link #addRequest(InspectorService.ObjectGroup, String, Supplier)}
+   * where the request is ordered with the requests of {@code group} but is only
+   * skipped if {@code isAlive} has been disposed.
+   * <p>
+   * This is used to dispose an ObjectGroup after all of its pending requests.
+   */
+  public <T> CompletableFuture<T> addRequest(InspectorService.ObjectGroup group,
+                                             InspectorService.ObjectGroup isAlive,
+                                             String requestName,
+                                             Supplier<CompletableFuture<T>> request) {
     if (isAlive != null && isAlive.isDisposed()) {
       return CompletableFuture.completedFuture(null);
     }
@@ -81,46 +112,152 @@ public class EvalOnDartLibrary implements Disposable {
       return CompletableFuture.completedFuture(null);
     }
 
-    // Future that completes when the request has finished.
-    final CompletableFuture<T> response = new CompletableFuture<>();
-    // This is an optimization to avoid sending stale requests across the wire.
-    final Runnable wrappedRequest = () -> {
-      if (isAlive != null && isAlive.isDisposed()) {
-        response.complete(null);
-        return;
-      }
-      // No need to timeout until the request has actually started.
-      timeoutAfter(response, DEFAULT_REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS, requestName);
-      final CompletableFuture<T> future = request.get();
-      future.whenCompleteAsync((v, t) -> {
-        if (t != null) {
-          response.completeExceptionally(t);
+    return scheduler.schedule(
+      group != null ? group : NO_GROUP,
+      group != null ? group::isLowPriority : null,
+      // This is an optimization to avoid sending stale requests across the wire.
+      () -> myRequestsScheduler.isDisposed() || (isAlive != null && isAlive.isDisposed()),
+      () -> {
+        final Object tag = new Object();
+        if (isAlive != null) {
+          // Track the request so that disposing the group can cancel it, in which case it returns null like a skipped request.
+          inFlightRequests.put(isAlive, tag);
         }
-        else {
-          response.complete(v);
+        final CompletableFuture<T> future = withRequestTag(tag, request);
+        // No need to timeout until the request has actually started.
+        timeoutAfter(future, DEFAULT_REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS, requestName, tag);
+        if (isAlive == null) {
+          return future;
         }
-      });
-    };
-    synchronized (pendingRequestLock) {
-      if (allPendingRequestsDone == null || allPendingRequestsDone.isDone()) {
-        allPendingRequestsDone = response;
-        myRequestsScheduler.addRequest(wrappedRequest, 0);
-      }
-      else {
-        final CompletableFuture<?> previousDone = allPendingRequestsDone;
-        allPendingRequestsDone = response;
-        // Actually schedule this request only after the previous request completes.
-        previousDone.whenCompleteAsync((v, error) -> {
-          if (myRequestsScheduler.isDisposed()) {
-            response.complete(null);
+
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, t) -> {
+          inFlightRequests.remove(isAlive, tag);
+          if (t != null && !isAlive.isDisposed()) {
+            result.completeExceptionally(t);
           }
           else {
-            myRequestsScheduler.addRequest(wrappedRequest, 0);
+            result.complete(t == null ? value : null);
           }
         });
-      }
+        return result;
+      });
+  }
+
+  /**
+   * Cancels the request for the given group that is waiting for a response from the VM, if any.
+   * <p>
+   * Requests for a group are sent one at a time, so there is at most one.
+   */
+  void cancelRequests(InspectorService.ObjectGroup group) {
+    final Object tag = inFlightRequests.remove(group);
+    if (tag != null) {
+      vmService.cancelRequests(tag);
     }
-    return response;
+  }
+
+  /**
+   * Runs the request's supplier with the given tag, so that the VM service
+   * calls it makes are cancelled with the request.
+   * <p>
+   * Calls made later, such as from a callback of a future returned by the
+   * supplier, should capture {@link #getRequestTag()} and run with it again.
+   */
+  <T> CompletableFuture<T> withRequestTag(Object tag, Supplier<CompletableFuture<T>> request) {
+    final Object previous = currentRequestTag.get();
+    currentRequestTag.set(tag);
+    try {
+      return request.get();
+    }
+    finally {
+      currentRequestTag.set(previous);
+    }
+  }
+
+  /**
+   * Returns the tag of the request whose supplier is running on this thread,
+   * or null if there is none.
+   */
+  Object getRequestTag() {
+    return currentRequestTag.get();
+  }
+
+  /**
+   * Sends the VM service requests made by {@code send}, tagged with the
+   * request being run, or else with the future they complete, so that they
+   * can be cancelled, and failed if the VM never responds.
+   * <p>
+   * The tag is taken when this is called, so {@code send} may run later on
+   * another thread.
+   */
+  void sendTagged(CompletableFuture<?> future, Runnable send) {
+    sendTagged(tagFor(future), send);
+  }
+
+  private void sendTagged(Object tag, Runnable send) {
+    vmService.sendTagged(tag, TimeUnit.SECONDS.toMillis(DEFAULT_REQUEST_TIMEOUT_SECONDS), send);
+  }
+
+  private Object tagFor(CompletableFuture<?> future) {
+    final Object tag = currentRequestTag.get();
+    return tag != null ? tag : future;
+  }
+
+  /**
+   * Returns the number of VM service requests on this connection that are waiting for a response.
+   */
+  public int getVmInFlightRequestCount() {
+    return vmService.getInFlightRequestCount();
+  }
+
+  /**
+   * Returns the number of VM service requests on this connection that never got a response.
+   */
+  public long getVmTimedOutRequestCount() {
+    return vmService.getTimedOutRequestCount();
+  }
+
+  public int getMaxConcurrentRequests() {
+    return scheduler.getMaxInFlight();
+  }
+
+  public void setMaxConcurrentRequests(int value) {
+    scheduler.setMaxInFlight(value);
+  }
+
+  /**
+   * Starts waiting requests of groups that are no longer low priority.
+   */
+  void onPriorityChanged() {
+    scheduler.onPriorityChanged();
+  }
+
+  /**
+   * Returns the number of requests that are waiting to be sent.
+   */
+  public int getQueueDepth() {
+    return scheduler.getQueueDepth();
+  }
+
+  /**
+   * Returns the number of requests that have been sent but have not completed.
+   */
+  public int getInFlightRequestCount() {
+    return scheduler.getInFlightCount();
+  }
+
+  /**
+   * Returns the average round trip time of completed requests in milliseconds.
+   */
+  public double getAverageRequestLatencyMillis() {
+    return scheduler.getAverageLatencyMillis();
+  }
+
+  /**
+   * Returns the longest round trip time of a completed request in milliseconds.
+   */
+  public double getMaxRequestLatencyMillis() {
+    return scheduler.getMaxLatencyMillis();
   }
 
   public EvalOnDartLibrary(Set<String> libraryNames, VmService vmService, VMServiceManager vmServiceManager) {
@@ -128,6 +265,15 @@ public class EvalOnDartLibrary implements Disposable {
     this.vmService = vmService;
     this.vmServiceManager = vmServiceManager;
     this.myRequestsScheduler = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, this);
+    this.scheduler = new GroupedRequestScheduler((runnable) -> {
+      if (myRequestsScheduler.isDisposed()) {
+        // The request will see that the scheduler is disposed and complete immediately.
+        runnable.run();
+      }
+      else {
+        myRequestsScheduler.addRequest(runnable, 0);
+      }
+    }, GroupedRequestScheduler.DEFAULT_MAX_IN_FLIGHT);
     libraryRef = new CompletableFuture<>();
 
     subscription = vmServiceManager.getCurrentFlutterIsolate((isolate) -> {
@@ -157,8 +303,9 @@ public class EvalOnDartLibrary implements Disposable {
 
   public CompletableFuture<JsonObject> invokeServiceMethod(String method, JsonObject params) {
     final CompletableFuture<JsonObject> ret = new CompletableFuture<>();
-    timeoutAfter(ret, DEFAULT_REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS, "service method " + method);
-    vmService.callServiceExtension(isolateId, method, params, new ServiceExtensionConsumer() {
+    final Object tag = tagFor(ret);
+    timeoutAfter(ret, DEFAULT_REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS, "service method " + method, tag);
+    sendTagged(tag, () -> vmService.callServiceExtension(isolateId, method, params, new ServiceExtensionConsumer() {
       @Override
       public void onError(RPCError error) {
         ret.completeExceptionally(new RuntimeException(error.getMessage()));
@@ -168,77 +315,93 @@ public class EvalOnDartLibrary implements Disposable {
       public void received(JsonObject object) {
         ret.complete(object);
       }
-    });
+    }));
 
     return ret;
   }
 
   // TODO(jacobr): remove this method after we switch to Java9+ which supports this method directly on CompletableFuture.
-  private void timeoutAfter(CompletableFuture<?> future, long timeout, TimeUnit unit, String operationName) {
+  private void timeoutAfter(CompletableFuture<?> future, long timeout, TimeUnit unit, String operationName, Object tag) {
     // Create the timeout exception now, so we can capture the stack trace of the caller.
     final TimeoutException timeoutException = new TimeoutException(operationName);
-    delayer.schedule(() -> future.completeExceptionally(timeoutException), timeout, unit);
+    delayer.schedule(() -> {
+      if (future.completeExceptionally(timeoutException)) {
+        // Drop the consumers rather than waiting for responses that may never come.
+        vmService.cancelRequests(tag);
+      }
+    }, timeout, unit);
   }
 
   public CompletableFuture<InstanceRef> eval(String expression, Map<String, String> scope, InspectorService.ObjectGroup isAlive) {
-    return addRequest(isAlive, "evaluate", () -> {
-      final CompletableFuture<InstanceRef> future = new CompletableFuture<>();
-      libraryRef.thenAcceptAsync((LibraryRef ref) -> vmService.evaluate(
-        getIsolateId(), ref.getId(), expression,
-        scope, true,
-        new EvaluateConsumer() {
-          @Override
-          public void onError(RPCError error) {
-            future.completeExceptionally(
-              new EvalException(expression, Integer.toString(error.getCode()), error.getMessage()));
-          }
+    return addRequest(isAlive, "evaluate", () -> evaluate(expression, scope));
+  }
 
-          @Override
-          public void received(ErrorRef response) {
-            future.completeExceptionally(
-              new EvalException(expression, response.getKind().name(), response.getMessage()));
-          }
+  /**
+   * Evaluates the expression immediately rather than scheduling it with {@link #addRequest}.
+   */
+  CompletableFuture<InstanceRef> evaluate(String expression, Map<String, String> scope) {
+    final CompletableFuture<InstanceRef> future = new CompletableFuture<>();
+    final Object tag = tagFor(future);
+    libraryRef.thenAcceptAsync((LibraryRef ref) -> sendTagged(tag, () -> vmService.evaluate(
+      getIsolateId(), ref.getId(), expression,
+      scope, true,
+      new EvaluateConsumer() {
+        @Override
+        public void onError(RPCError error) {
+          future.completeExceptionally(
+            new EvalException(expression, Integer.toString(error.getCode()), error.getMessage()));
+        }
 
-          @Override
-          public void received(InstanceRef response) {
-            future.complete(response);
-          }
+        @Override
+        public void received(ErrorRef response) {
+          future.completeExceptionally(
+            new EvalException(expression, response.getKind().name(), response.getMessage()));
+        }
 
-          @Override
-          public void received(Sentinel response) {
-            future.completeExceptionally(
-              new EvalException(expression, "Sentinel", response.getValueAsString()));
-          }
+        @Override
+        public void received(InstanceRef response) {
+          future.complete(response);
         }
-      ));
-      return future;
-    });
+
+        @Override
+        public void received(Sentinel response) {
+          future.completeExceptionally(
+            new EvalException(expression, "Sentinel", response.getValueAsString()));
+        }
+      }
+    )));
+    return future;
   }
 
-  @SuppressWarnings("unchecked")
   public <T extends Obj> CompletableFuture<T> getObjectHelper(ObjRef instance, InspectorService.ObjectGroup isAlive) {
-    return addRequest(isAlive, "getObject", () -> {
-      final CompletableFuture<T> future = new CompletableFuture<>();
-      vmService.getObject(
-        getIsolateId(), instance.getId(), new GetObjectConsumer() {
-          @Override
-          public void onError(RPCError error) {
-            future.completeExceptionally(new RuntimeException("RPCError calling getObject: " + error.toString()));
-          }
+    return addRequest(isAlive, "getObject", () -> getObject(instance));
+  }
 
-          @Override
-          public void received(Obj response) {
-            future.complete((T)response);
-          }
+  /**
+   * Gets the object immediately rather than scheduling it with {@link #addRequest}.
+   */
+  @SuppressWarnings("unchecked")
+  <T extends Obj> CompletableFuture<T> getObject(ObjRef instance) {
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    sendTagged(future, () -> vmService.getObject(
+      getIsolateId(), instance.getId(), new GetObjectConsumer() {
+        @Override
+        public void onError(RPCError error) {
+          future.completeExceptionally(new RuntimeException("RPCError calling getObject: " + error.toString()));
+        }
 
-          @Override
-          public void received(Sentinel response) {
-            future.completeExceptionally(new RuntimeException("Sentinel calling getObject: " + response.toString()));
-          }
+        @Override
+        public void received(Obj response) {
+          future.complete((T)response);
         }
-      );
-      return future;
-    });
+
+        @Override
+        public void received(Sentinel response) {
+          future.completeExceptionally(new RuntimeException("Sentinel calling getObject: " + response.toString()));
+        }
+      }
+    ));
+    return future;
   }
 
   @NotNull
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Schedules asynchronous requests so that requests sharing a lane run in the
+ * order they were added while requests in different lanes run concurrently.
+ * <p>
+ * A lane is typically an {@link InspectorService.ObjectGroup}. At most
+ * {@link #getMaxInFlight()} requests are in flight at a time; additional
+ * requests wait in the order they became ready.
+ * <p>
+ * Low priority requests, such as speculative prefetches, only start once no
+ * other request is waiting, and always leave one slot free for other
+ * requests.
+ */
+class GroupedRequestScheduler {
+  static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+  private final Executor executor;
+  private final Object lock = new Object();
+
+  /**
+   * The most recently added request for each lane. A request only starts after the previous
+   * request in its lane has completed.
+   */
+  private final Map<Object, CompletableFuture<?>> laneTails = new HashMap<>();
+
+  /**
+   * Requests whose lane predecessor has completed but which are waiting for a free slot.
+   */
+  private final ArrayDeque<Task> ready = new ArrayDeque<>();
+
+  /**
+   * Low priority requests that are waiting for a free slot.
+   */
+  private final ArrayDeque<Task> readyLowPriority = new ArrayDeque<>();
+
+  private int maxInFlight;
+  private int inFlight;
+  private int queued;
+
+  private long completedRequests;
+  private long totalLatencyNanos;
+  private long maxLatencyNanos;
+
+  GroupedRequestScheduler(Executor executor, int maxInFlight) {
+    this.executor = executor;
+    this.maxInFlight = Math.max(1, maxInFlight);
+  }
+
+  /**
+   * Schedule a request in the given lane.
+   * <p>
+   * If {@code isStale} returns true by the time the request would start, the request is skipped
+   * and the returned future completes with null.
+   */
+  <T> CompletableFuture<T> schedule(Object lane, BooleanSupplier isStale, Supplier<CompletableFuture<T>> request) {
+    return schedule(lane, null, isStale, request);
+  }
+
+  /**
+   * Schedule a request in the given lane, with a priority.
+   * <p>
+   * {@code isLowPriority} is checked whenever the request could start, so
+   * raising the priority of a waiting request takes effect once
+   * {@link #onPriorityChanged()} is called.
+   */
+  <T> CompletableFuture<T> schedule(Object lane,
+                                    BooleanSupplier isLowPriority,
+                                    BooleanSupplier isStale,
+                                    Supplier<CompletableFuture<T>> request) {
+    final CompletableFuture<T> response = new CompletableFuture<>();
+    final Runnable run = () -> {
+      final long start = System.nanoTime();
+      response.whenComplete((v, t) -> onRequestDone(lane, response, start));
+      if (isStale != null && isStale.getAsBoolean()) {
+        response.complete(null);
+        return;
+      }
+      final CompletableFuture<T> future;
+      try {
+        future = request.get();
+      }
+      catch (RuntimeException e) {
+        response.completeExceptionally(e);
+        return;
+      }
+      future.whenComplete((v, t) -> {
+        if (t != null) {
+          response.completeExceptionally(t);
+        }
+        else {
+          response.complete(v);
+        }
+      });
+    };
+    final Task task = new Task(run, isLowPriority);
+
+    final CompletableFuture<?> previous;
+    synchronized (lock) {
+      queued++;
+      previous = laneTails.put(lane, response);
+    }
+    if (previous == null || previous.isDone()) {
+      admit(task);
+    }
+    else {
+      previous.whenComplete((v, t) -> admit(task));
+    }
+    return response;
+  }
+
+  private void admit(Task task) {
+    synchronized (lock) {
+      if (task.isLowPriority()) {
+        if (!ready.isEmpty() || inFlight >= getLowPriorityLimit()) {
+          readyLowPriority.add(task);
+          return;
+        }
+      }
+      else if (inFlight >= maxInFlight) {
+        ready.add(task);
+        return;
+      }
+      inFlight++;
+      queued--;
+    }
+    executor.execute(task.run);
+  }
+
+  /**
+   * Starts waiting requests whose priority was raised, if there are free slots.
+   */
+  void onPriorityChanged() {
+    startReady();
+  }
+
+  private void startReady() {
+    final ArrayDeque<Runnable> toStart = new ArrayDeque<>();
+    synchronized (lock) {
+      Task next;
+      while (inFlight < maxInFlight && (next = pollReady()) != null) {
+        inFlight++;
+        queued--;
+        toStart.add(next.run);
+      }
+    }
+    for (Runnable task : toStart) {
+      executor.execute(task);
+    }
+  }
+
+  /**
+   * Removes and returns the request that should start next in a free slot, if any.
+   */
+  private Task pollReady() {
+    assert Thread.holdsLock(lock);
+    final Task next = ready.poll();
+    if (next != null) {
+      return next;
+    }
+    for (Iterator<Task> it = readyLowPriority.iterator(); it.hasNext(); ) {
+      final Task task = it.next();
+      if (!task.isLowPriority()) {
+        it.remove();
+        return task;
+      }
+    }
+    return inFlight < getLowPriorityLimit() ? readyLowPriority.poll() : null;
+  }
+
+  private int getLowPriorityLimit() {
+    return Math.max(1, maxInFlight - 1);
+  }
+
+  private void onRequestDone(Object lane, CompletableFuture<?> response, long start) {
+    final long latency = System.nanoTime() - start;
+    synchronized (lock) {
+      inFlight--;
+      completedRequests++;
+      totalLatencyNanos += latency;
+      maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+      if (laneTails.get(lane) == response) {
+        laneTails.remove(lane);
+      }
+    }
+    startReady();
+  }
+
+  int getMaxInFlight() {
+    synchronized (lock) {
+      return maxInFlight;
+    }
+  }
+
+  void setMaxInFlight(int value) {
+    synchronized (lock) {
+      maxInFlight = Math.max(1, value);
+    }
+    startReady();
+  }
+
+  /**
+   * The number of requests that have been added but not yet started.
+   */
+  int getQueueDepth() {
+    synchronized (lock) {
+      return queued;
+    }
+  }
+
+  int getInFlightCount() {
+    synchronized (lock) {
+      return inFlight;
+    }
+  }
+
+  long getCompletedRequestCount() {
+    synchronized (lock) {
+      return completedRequests;
+    }
+  }
+
+  /**
+   * Average time from a request starting to its response arriving, in milliseconds.
+   */
+  double getAverageLatencyMillis() {
+    synchronized (lock) {
+      return completedRequests == 0 ? 0 : totalLatencyNanos / 1e6 / completedRequests;
+    }
+  }
+
+  double getMaxLatencyMillis() {
+    synchronized (lock) {
+      return maxLatencyNanos / 1e6;
+    }
+  }
+
+  private static class Task {
+    final Runnable run;
+    final BooleanSupplier isLowPriority;
+
+    Task(Runnable run, BooleanSupplier isLowPriority) {
+      this.run = run;
+      this.isLowPriority = isLowPriority;
+    }
+
+    boolean isLowPriority() {
+      return isLowPriority != null && isLowPriority.getAsBoolean();
+    }
+  }
+}
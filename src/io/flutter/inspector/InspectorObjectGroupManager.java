@@ -69,6 +69,20 @@ public class InspectorObjectGroupManager {
     return next;
   }
 
+  /**
+   * Uses a group that was loaded elsewhere, such as by a prefetch, as the
+   * next group, cancelling the existing next group.
+   */
+  public void setNext(ObjectGroup group) {
+    if (next == group) {
+      return;
+    }
+    if (next != null) {
+      next.dispose();
+    }
+    next = group;
+  }
+
   public void clear(boolean isolateStopped) {
     if (isolateStopped) {
       // The Dart VM will handle GCing the underlying memory.
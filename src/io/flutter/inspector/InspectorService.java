@@ -23,6 +23,7 @@ import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.xdebugger.XSourcePosition;
 import com.intellij.xdebugger.evaluation.XDebuggerEditorsProvider;
 import com.intellij.xdebugger.impl.XSourcePositionImpl;
@@ -37,7 +38,6 @@ import io.flutter.run.daemon.FlutterApp;
 import io.flutter.utils.StreamSubscription;
 import io.flutter.utils.VmServiceListenerAdapter;
 import io.flutter.vmService.ServiceExtensions;
-import io.flutter.vmService.VmServiceConsumers;
 import io.flutter.vmService.frame.DartVmServiceValue;
 import org.dartlang.analysis.server.protocol.FlutterOutline;
 import org.dartlang.vm.service.VmService;
@@ -47,14 +47,12 @@ import org.dartlang.vm.service.element.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
 import java.util.List;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiConsumer;
 import java.util.function.Supplier;
@@ -174,6 +172,11 @@ public class InspectorService implements Disposable {
 
   private static int nextGroupId = 0;
 
+  /**
+   * Caps the nodes returned by getLayoutGeometry so a huge subtree can't stall the UI thread.
+   */
+  private static final int MAX_LAYOUT_GEOMETRY_NODES = 2000;
+
   public static class InteractiveScreenshot {
     InteractiveScreenshot(Screenshot screenshot, ArrayList<DiagnosticsNode> boxes, ArrayList<DiagnosticsNode> elements) {
       this.screenshot = screenshot;
@@ -194,6 +197,25 @@ public class InspectorService implements Disposable {
   @NotNull private final Set<String> supportedServiceMethods;
 
   private final StreamSubscription<Boolean> setPubRootDirectoriesSubscription;
+  private final Disposable extensionStreamLease;
+
+  /**
+   * Decoded screenshots, shared by all object groups so that an unchanged screenshot is only decoded once.
+   */
+  private final ScreenshotCache screenshotCache = new ScreenshotCache();
+
+  /**
+   * Incremented whenever property values read from the device may have
+   * changed, such as when a frame is drawn, so that object groups stop using
+   * the values they memoized before.
+   */
+  private final AtomicInteger propertyGeneration = new AtomicInteger();
+
+  /**
+   * Decodes screenshots one at a time, off the UI thread and the shared pool.
+   */
+  private final ExecutorService screenshotDecoder =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("Flutter screenshot decoder", 1);
 
   /**
    * Convenience ObjectGroup constructor for users who need to use DiagnosticsNode objects before the InspectorService is available.
@@ -260,9 +282,9 @@ public class InspectorService implements Disposable {
       }
     });
 
-    vmService.streamListen(VmService.EXTENSION_STREAM_ID, VmServiceConsumers.EMPTY_SUCCESS_CONSUMER);
-
     assert (app.getVMServiceManager() != null);
+    extensionStreamLease = app.getVMServiceManager().getStreamSubscriptions().listen(VmService.EXTENSION_STREAM_ID);
+
     setPubRootDirectoriesSubscription =
       app.getVMServiceManager().hasServiceExtension(ServiceExtensions.setPubRootDirectories, (Boolean available) -> {
         if (!available) {
@@ -357,6 +379,9 @@ public class InspectorService implements Disposable {
   public void dispose() {
     Disposer.dispose(inspectorLibrary);
     Disposer.dispose(setPubRootDirectoriesSubscription);
+    Disposer.dispose(extensionStreamLease);
+    screenshotDecoder.shutdown();
+    screenshotCache.clear();
   }
 
   public CompletableFuture<?> forceRefresh() {
@@ -383,6 +408,22 @@ public class InspectorService implements Disposable {
     });
   }
 
+  /**
+   * Lets the first client that has already loaded a widget created at the
+   * location select it, saving a round trip to the device.
+   */
+  private boolean selectLocationLocally(Location location, boolean textEditorUpdated) {
+    if (!ApplicationManager.getApplication().isDispatchThread()) {
+      return false;
+    }
+    for (InspectorServiceClient client : clients) {
+      if (client.selectLocation(location, textEditorUpdated)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public void addClient(InspectorServiceClient client) {
     clients.add(client);
   }
@@ -408,6 +449,7 @@ public class InspectorService implements Disposable {
       }
       case VmService.EXTENSION_STREAM_ID: {
         if ("Flutter.Frame".equals(event.getExtensionKind())) {
+          invalidateProperties();
           ApplicationManager.getApplication().invokeLater(() -> {
             for (InspectorServiceClient client : clients) {
               client.onFlutterFrame();
@@ -485,7 +527,7 @@ public class InspectorService implements Disposable {
       params.remove(key);
     }
     final CompletableFuture<JsonElement> ret = new CompletableFuture<>();
-    vmService.callServiceExtension(
+    getInspectorLibrary().sendTagged(ret, () -> vmService.callServiceExtension(
       getInspectorLibrary().getIsolateId(), ServiceExtensions.inspectorPrefix + methodName, params,
       new ServiceExtensionConsumer() {
         @Override
@@ -503,10 +545,17 @@ public class InspectorService implements Disposable {
           ret.completeExceptionally(new RuntimeException("RPCError calling " + methodName + ": " + error.getMessage()));
         }
       }
-    );
+    ));
     return ret;
   }
 
+  /**
+   * Drops the property values memoized by all object groups.
+   */
+  private void invalidateProperties() {
+    propertyGeneration.incrementAndGet();
+  }
+
   /**
    * Class managing a group of inspector objects that can be freed by
    * a single call to dispose().
@@ -531,16 +580,64 @@ public class InspectorService implements Disposable {
     volatile boolean disposed;
     final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
+    private volatile boolean lowPriority;
+
+    /**
+     * Batches and memoizes the property values requested from this group.
+     */
+    private final PropertyBatcher propertyBatcher;
+
     private ObjectGroup(InspectorService service, String debugName) {
       this.service = service;
       this.groupName = debugName + "_" + nextGroupId;
       nextGroupId++;
+      propertyBatcher = new PropertyBatcher(groupName, propertyGeneration, new PropertyBatcher.Library() {
+        @Override
+        public <T> CompletableFuture<T> addRequest(String requestName, Supplier<CompletableFuture<T>> request) {
+          return getInspectorLibrary().addRequest(ObjectGroup.this, requestName, request);
+        }
+
+        @Override
+        public Object getRequestTag() {
+          return getInspectorLibrary().getRequestTag();
+        }
+
+        @Override
+        public CompletableFuture<Instance> evaluateList(String expression, Object tag) {
+          final EvalOnDartLibrary library = getInspectorLibrary();
+          return library.withRequestTag(tag, () -> library.evaluate(expression, null))
+            .thenCompose((InstanceRef listRef) -> library.withRequestTag(tag, () -> library.<Instance>getObject(listRef)));
+        }
+
+        @Override
+        public boolean isDisposed() {
+          return ObjectGroup.this.isDisposed();
+        }
+      });
     }
 
     public InspectorService getInspectorService() {
       return service;
     }
 
+    /**
+     * Whether this group's requests wait for the requests of other groups and
+     * leave capacity free for them, as for speculative requests.
+     */
+    public boolean isLowPriority() {
+      return lowPriority;
+    }
+
+    public void setLowPriority(boolean lowPriority) {
+      if (this.lowPriority == lowPriority) {
+        return;
+      }
+      this.lowPriority = lowPriority;
+      if (!lowPriority) {
+        getInspectorLibrary().onPriorityChanged();
+      }
+    }
+
     /**
      * Once an ObjectGroup has been disposed, all methods returning
      * DiagnosticsNode objects will return a placeholder dummy node and all methods
@@ -556,9 +653,25 @@ public class InspectorService implements Disposable {
         return;
       }
       lock.writeLock().lock();
-      invokeVoidServiceMethod("disposeGroup", groupName);
       disposed = true;
       lock.writeLock().unlock();
+
+      // Don't wait for a response to a request whose result is no longer wanted.
+      getInspectorLibrary().cancelRequests(this);
+
+      // The dispose request is ordered after all pending requests for this
+      // group, which are skipped now that the group is disposed. It must not
+      // be skipped itself so it does not use this group to check liveness.
+      if (useServiceExtensionApi()) {
+        final JsonObject params = new JsonObject();
+        params.addProperty("objectGroup", groupName);
+        getInspectorLibrary().addRequest(this, null, "disposeGroup", () -> invokeServiceExtensionHelper("disposeGroup", params));
+      }
+      else {
+        getInspectorLibrary().addRequest(
+          this, null, "disposeGroup",
+          () -> getInspectorLibrary().evaluate("WidgetInspectorService.instance.disposeGroup(\"" + groupName + "\")", null));
+      }
     }
 
     private <T> CompletableFuture<T> nullIfDisposed(Supplier<CompletableFuture<T>> supplier) {
@@ -757,6 +870,67 @@ public class InspectorService implements Disposable {
         }), null);
     }
 
+    /**
+     * Returns the layout geometry of the widgets below root that {@link #hitTest} could return for
+     * the same file and lines, so that hover hit tests can run locally.
+     * <p>
+     * Each node has a transformToRoot in the coordinates hitTest uses. Nodes are listed in the order
+     * hitTest reports hits: descendants before their ancestors and later siblings, which paint on
+     * top, before earlier ones.
+     */
+    public CompletableFuture<ArrayList<DiagnosticsNode>> getLayoutGeometry(DiagnosticsNode root,
+                                                                           String file,
+                                                                           int startLine,
+                                                                           int endLine) {
+      if (root == null || root.getValueRef() == null) {
+        return CompletableFuture.completedFuture(new ArrayList<>());
+      }
+      final String fileFilter = file == null
+                                ? "if (!_isLocalCreationLocation(element)) return;\n"
+                                : "if (location.file != " + toDartString(file) + ") return;\n";
+      final String lineFilter = startLine >= 0 && endLine >= 0
+                                ? "if (location.line - 1 < " + startLine + " || location.line - 1 > " + endLine + ") return;\n"
+                                : "";
+      final String command =
+        "final Object root = WidgetInspectorService.instance.toObject(" + toDartString(root.getValueRef().getId()) + ");\n" +
+        "if (root is! Element) return '[]';\n" +
+        "final RenderObject rootRender = (root as Element).renderObject;\n" +
+        "if (rootRender == null || !rootRender.attached) return '[]';\n" +
+        "final List<Map<String, Object>> nodes = <Map<String, Object>>[];\n" +
+        "void visit(Element element) {\n" +
+        "  if (nodes.length >= " + MAX_LAYOUT_GEOMETRY_NODES + ") return;\n" +
+        "  final List<Element> children = <Element>[];\n" +
+        "  element.visitChildElements(children.add);\n" +
+        "  for (final Element child in children.reversed) {\n" +
+        "    visit(child);\n" +
+        "  }\n" +
+        "  final RenderObject render = element.renderObject;\n" +
+        "  if (render is! RenderBox || !render.attached || !(render as RenderBox).hasSize) return;\n" +
+        "  final _Location location = _getCreationLocation(element);\n" +
+        "  if (location == null) return;\n" +
+        fileFilter +
+        lineFilter +
+        "  final RenderBox box = render;\n" +
+        "  nodes.add(<String, Object>{\n" +
+        "    'description': element.widget.toStringShort(),\n" +
+        "    'valueId': WidgetInspectorService.instance.toId(element, " + toDartString(groupName) + "),\n" +
+        "    'transformToRoot': <String, Object>{\n" +
+        "      'left': 0.0, 'top': 0.0, 'width': box.size.width, 'height': box.size.height,\n" +
+        "      'transform': box.getTransformTo(rootRender).storage.toList(),\n" +
+        "    },\n" +
+        "  });\n" +
+        "}\n" +
+        "visit(root);\n" +
+        "return json.encode(nodes);\n";
+
+      return nullIfDisposed(() -> evaluateCustomApiHelper(command, new HashMap<>()).thenComposeAsync((instanceRef) -> {
+        if (instanceRef == null) {
+          return CompletableFuture.completedFuture(null);
+        }
+        return instanceRefToJson(instanceRef).thenApplyAsync((json) -> parseDiagnosticsNodesHelper(json, null));
+      }));
+    }
+
     public CompletableFuture<Boolean> setColorProperty(DiagnosticsNode target, Color color) {
       // We implement this method directly here rather than landing it in
       // package:flutter as the right long term solution is to optimize hot reloads of single property changes.
@@ -828,7 +1002,11 @@ public class InspectorService implements Disposable {
         "return false;\n";
 
       return evaluateCustomApiHelper(command, new HashMap<>()).thenApplyAsync((instanceRef) -> {
-        return instanceRef != null && "true".equals(instanceRef.getValueAsString());
+        final boolean changed = instanceRef != null && "true".equals(instanceRef.getValueAsString());
+        if (changed) {
+          invalidateProperties();
+        }
+        return changed;
       });
     }
 
@@ -885,6 +1063,7 @@ public class InspectorService implements Disposable {
       params.addProperty("width", width);
       params.addProperty("height", height);
       params.addProperty("maxPixelRatio", maxPixelRatio);
+      final String cacheKey = "screenshotAtLocation " + params;
       params.addProperty("groupName", groupName);
       return nullIfDisposed(() -> {
         return inspectorLibrary.invokeServiceMethod("ext.flutter.inspector.screenshotAtLocation", params).thenApplyAsync(
@@ -897,14 +1076,14 @@ public class InspectorService implements Disposable {
             Screenshot screenshot = null;
             final JsonElement screenshotJson = result.get("screenshot");
             if (screenshotJson != null && !screenshotJson.isJsonNull()) {
-              screenshot = getScreenshotFromJson(screenshotJson.getAsJsonObject());
+              screenshot = screenshotCache.decode(cacheKey, screenshotJson.getAsJsonObject());
             }
             return new InteractiveScreenshot(
               screenshot,
               parseDiagnosticsNodesHelper(result.get("boxes"), null),
               parseDiagnosticsNodesHelper(result.get("elements"), null)
             );
-          });
+          }, screenshotDecoder);
       });
     }
 
@@ -914,6 +1093,7 @@ public class InspectorService implements Disposable {
       params.addProperty("height", height);
       params.addProperty("maxPixelRatio", maxPixelRatio);
       params.addProperty("id", ref.getId());
+      final String cacheKey = "screenshot " + params;
 
       return nullIfDisposed(
         () -> inspectorLibrary.invokeServiceMethod("ext.flutter.inspector.screenshot", params).thenApplyAsync((JsonObject response) -> {
@@ -923,28 +1103,8 @@ public class InspectorService implements Disposable {
           }
           final JsonObject result = response.getAsJsonObject("result");
 
-          return getScreenshotFromJson(result);
-        }));
-    }
-
-    @NotNull
-    private Screenshot getScreenshotFromJson(JsonObject result) {
-      final String imageString = result.getAsJsonPrimitive("image").getAsString();
-      // create a buffered image
-      final Base64.Decoder decoder = Base64.getDecoder();
-      final byte[] imageBytes = decoder.decode(imageString);
-      final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(imageBytes);
-      BufferedImage image = null;
-      try {
-        image = ImageIO.read(byteArrayInputStream);
-        byteArrayInputStream.close();
-      }
-      catch (IOException e) {
-        throw new RuntimeException("Error decoding image: " + e.getMessage());
-      }
-
-      final TransformedRect transformedRect = new TransformedRect(result.getAsJsonObject("transformedRect"));
-      return new Screenshot(image, transformedRect);
+          return screenshotCache.decode(cacheKey, result);
+        }, screenshotDecoder));
     }
 
     CompletableFuture<InstanceRef> invokeEval(String methodName, InspectorInstanceRef arg) {
@@ -987,46 +1147,24 @@ public class InspectorService implements Disposable {
      * InstanceRef objects. This method is shorthand for individually evaluating
      * each of the getters specified by property names.
      * <p>
-     * It would be nice if the VM Service protocol provided a built in method
-     * to get InstanceRef objects for a list of properties but this is
-     * sufficient although slightly less efficient. The VM Service protocol
-     * does provide fast access to all fields as part of an Instance object
-     * but that is inadequate as for many Flutter data objects that we want
-     * to display visually we care about properties that are not necessarily
-     * fields.
+     * The VM Service protocol does provide fast access to all fields as part
+     * of an Instance object but that is inadequate as for many Flutter data
+     * objects that we want to display visually we care about properties that
+     * are not necessarily fields. Instead the getters are evaluated as a single
+     * list expression, together with the getters of all other calls made while
+     * this group's earlier requests are pending, so the property values of a
+     * whole panel take two round trips. Results are remembered until the next
+     * frame or property edit. See {@link PropertyBatcher}.
      * <p>
      * The future will immediately complete to null if the inspectorInstanceRef is null.
      */
     public CompletableFuture<Map<String, InstanceRef>> getDartObjectProperties(
       InspectorInstanceRef inspectorInstanceRef, final String[] propertyNames) {
-      return nullIfDisposed(
-        () -> toVmServiceInstanceRef(inspectorInstanceRef).thenComposeAsync((InstanceRef instanceRef) -> nullIfDisposed(() -> {
-          final StringBuilder sb = new StringBuilder();
-          final List<String> propertyAccessors = new ArrayList<>();
-          final String objectName = "that";
-          for (String propertyName : propertyNames) {
-            propertyAccessors.add(objectName + "." + propertyName);
-          }
-          sb.append("[");
-          sb.append(Joiner.on(',').join(propertyAccessors));
-          sb.append("]");
-          final Map<String, String> scope = new HashMap<>();
-          scope.put(objectName, instanceRef.getId());
-          return getInstance(inspectorLibrary.eval(sb.toString(), scope, this)).thenApplyAsync(
-            (Instance instance) -> nullValueIfDisposed(() -> {
-              // We now have an instance object that is a Dart array of all the
-              // property values. Convert it back to a map from property name to
-              // property values.
-
-              final Map<String, InstanceRef> properties = new HashMap<>();
-              final ElementList<InstanceRef> values = instance.getElements();
-              assert (values.size() == propertyNames.length);
-              for (int i = 0; i < propertyNames.length; ++i) {
-                properties.put(propertyNames[i], values.get(i));
-              }
-              return properties;
-            }));
-        })));
+      if (inspectorInstanceRef == null || inspectorInstanceRef.getId() == null) {
+        return CompletableFuture.completedFuture(null);
+      }
+      final String id = inspectorInstanceRef.getId();
+      return nullIfDisposed(() -> propertyBatcher.getProperties(id, propertyNames));
     }
 
     public CompletableFuture<InstanceRef> toVmServiceInstanceRef(InspectorInstanceRef inspectorInstanceRef) {
@@ -1321,6 +1459,9 @@ public class InspectorService implements Disposable {
       if (location == null) {
         return;
       }
+      if (selectLocationLocally(location, textEditorUpdated)) {
+        return;
+      }
       if (useServiceExtensionApi()) {
         JsonObject params = new JsonObject();
         addLocationToParams(location, params);
@@ -1371,6 +1512,12 @@ public class InspectorService implements Disposable {
         if (ref == null || ref.getId() == null) {
           return CompletableFuture.completedFuture(null);
         }
+        return propertyBatcher.memoize("enumValues " + ref.getId(), () -> getEnumPropertyValuesHelper(ref));
+      });
+    }
+
+    private CompletableFuture<Map<String, InstanceRef>> getEnumPropertyValuesHelper(InspectorInstanceRef ref) {
+      return nullIfDisposed(() -> {
         return getInstance(toVmServiceInstanceRef(ref))
           .thenComposeAsync(
             (Instance instance) -> nullIfDisposed(() -> getInspectorLibrary().getClass(instance.getClassRef(), this).thenApplyAsync(
@@ -1441,6 +1588,13 @@ public class InspectorService implements Disposable {
     return SystemInfo.isWindows ? "file:///" : "file://";
   }
 
+  /**
+   * Quotes a string as a Dart string literal, for use in evaluated expressions.
+   */
+  static String toDartString(String value) {
+    return "'" + value.replace("\\", "\\\\").replace("'", "\\'").replace("$", "\\$").replace("\n", "\\n") + "'";
+  }
+
   // TODO(jacobr): remove this method as soon as the
   // track-widget-creation kernel transformer is fixed to return paths instead
   // of URIs.
@@ -1476,5 +1630,13 @@ public class InspectorService implements Disposable {
     void onFlutterFrame();
 
     CompletableFuture<?> onForceRefresh();
+
+    /**
+     * Selects an already loaded widget created at the location without asking
+     * the device for it, returning whether there was one.
+     */
+    default boolean selectLocation(@NotNull Location location, boolean textEditorUpdated) {
+      return false;
+    }
   }
 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import io.flutter.utils.math.Matrix4;
+import io.flutter.utils.math.Vector3;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Answers which of a fixed set of transformed rectangles contain a point, without asking the device.
+ * <p>
+ * Each rectangle is mapped into root coordinates once, as the quad its corners land on. The quads
+ * are bucketed into a uniform grid over their combined bounds, so a lookup only tests the quads
+ * overlapping the point's cell.
+ */
+public class LayoutGeometryIndex<T> {
+  private static final int MAX_CELLS_PER_SIDE = 64;
+
+  private final List<T> values;
+  /**
+   * The corners of each quad in root coordinates, as x0, y0, ..., x3, y3.
+   */
+  private final double[][] quads;
+  private final double minX;
+  private final double minY;
+  private final double cellWidth;
+  private final double cellHeight;
+  private final int columns;
+  private final int rows;
+  /**
+   * The indices of the quads overlapping each cell, in ascending order.
+   */
+  private final int[][] cells;
+
+  /**
+   * Builds an index over the given rectangles, each mapped to root coordinates by its transform.
+   * <p>
+   * Lookups return values in the order given here, so callers should list the topmost, deepest
+   * values first.
+   */
+  public LayoutGeometryIndex(@NotNull List<T> values, @NotNull List<Rectangle2D> rects, @NotNull List<Matrix4> transforms) {
+    assert values.size() == rects.size() && values.size() == transforms.size();
+    this.values = new ArrayList<>(values);
+    final int count = values.size();
+    quads = new double[count][];
+
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < count; i++) {
+      final double[] quad = toQuad(rects.get(i), transforms.get(i));
+      quads[i] = quad;
+      for (int j = 0; j < 8; j += 2) {
+        minX = Math.min(minX, quad[j]);
+        maxX = Math.max(maxX, quad[j]);
+        minY = Math.min(minY, quad[j + 1]);
+        maxY = Math.max(maxY, quad[j + 1]);
+      }
+    }
+    if (count == 0) {
+      minX = minY = maxX = maxY = 0;
+    }
+
+    final int side = Math.max(1, Math.min(MAX_CELLS_PER_SIDE, (int)Math.ceil(Math.sqrt(count))));
+    this.minX = minX;
+    this.minY = minY;
+    columns = side;
+    rows = side;
+    cellWidth = Math.max(maxX - minX, Double.MIN_NORMAL) / columns;
+    cellHeight = Math.max(maxY - minY, Double.MIN_NORMAL) / rows;
+
+    final int[] cellSizes = new int[columns * rows];
+    final int[][] bounds = new int[count][];
+    for (int i = 0; i < count; i++) {
+      final double[] quad = quads[i];
+      bounds[i] = new int[]{
+        column(Math.min(Math.min(quad[0], quad[2]), Math.min(quad[4], quad[6]))),
+        row(Math.min(Math.min(quad[1], quad[3]), Math.min(quad[5], quad[7]))),
+        column(Math.max(Math.max(quad[0], quad[2]), Math.max(quad[4], quad[6]))),
+        row(Math.max(Math.max(quad[1], quad[3]), Math.max(quad[5], quad[7])))
+      };
+      for (int row = bounds[i][1]; row <= bounds[i][3]; row++) {
+        for (int column = bounds[i][0]; column <= bounds[i][2]; column++) {
+          cellSizes[row * columns + column]++;
+        }
+      }
+    }
+    cells = new int[columns * rows][];
+    for (int cell = 0; cell < cells.length; cell++) {
+      cells[cell] = new int[cellSizes[cell]];
+    }
+    Arrays.fill(cellSizes, 0);
+    for (int i = 0; i < count; i++) {
+      for (int row = bounds[i][1]; row <= bounds[i][3]; row++) {
+        for (int column = bounds[i][0]; column <= bounds[i][2]; column++) {
+          final int cell = row * columns + column;
+          cells[cell][cellSizes[cell]++] = i;
+        }
+      }
+    }
+  }
+
+  public int size() {
+    return values.size();
+  }
+
+  /**
+   * Returns the values whose quads contain the given point in root coordinates, in the order the
+   * values were given.
+   */
+  @NotNull
+  public ArrayList<T> hitTest(double x, double y) {
+    final ArrayList<T> hits = new ArrayList<>();
+    if (values.isEmpty() || x < minX || y < minY || x > minX + cellWidth * columns || y > minY + cellHeight * rows) {
+      return hits;
+    }
+    for (int i : cells[row(y) * columns + column(x)]) {
+      if (contains(quads[i], x, y)) {
+        hits.add(values.get(i));
+      }
+    }
+    return hits;
+  }
+
+  private int column(double x) {
+    return Math.max(0, Math.min(columns - 1, (int)((x - minX) / cellWidth)));
+  }
+
+  private int row(double y) {
+    return Math.max(0, Math.min(rows - 1, (int)((y - minY) / cellHeight)));
+  }
+
+  private static double[] toQuad(Rectangle2D rect, Matrix4 transform) {
+    final double[] quad = new double[8];
+    final double[][] corners = {
+      {rect.getMinX(), rect.getMinY()},
+      {rect.getMaxX(), rect.getMinY()},
+      {rect.getMaxX(), rect.getMaxY()},
+      {rect.getMinX(), rect.getMaxY()}
+    };
+    for (int i = 0; i < 4; i++) {
+      final Vector3 point = transform.perspectiveTransform(new Vector3(corners[i][0], corners[i][1], 0));
+      quad[i * 2] = point.getX();
+      quad[i * 2 + 1] = point.getY();
+    }
+    return quad;
+  }
+
+  /**
+   * Whether the convex quad contains the point, including its edges, whichever way it is wound.
+   */
+  private static boolean contains(double[] quad, double x, double y) {
+    // Without this, every point on the line through a collapsed quad would count as inside it.
+    if (x < Math.min(Math.min(quad[0], quad[2]), Math.min(quad[4], quad[6])) ||
+        x > Math.max(Math.max(quad[0], quad[2]), Math.max(quad[4], quad[6])) ||
+        y < Math.min(Math.min(quad[1], quad[3]), Math.min(quad[5], quad[7])) ||
+        y > Math.max(Math.max(quad[1], quad[3]), Math.max(quad[5], quad[7]))) {
+      return false;
+    }
+    boolean hasNegative = false;
+    boolean hasPositive = false;
+    for (int i = 0; i < 8; i += 2) {
+      final double x0 = quad[i];
+      final double y0 = quad[i + 1];
+      final double x1 = quad[(i + 2) % 8];
+      final double y1 = quad[(i + 3) % 8];
+      final double cross = (x1 - x0) * (y - y0) - (y1 - y0) * (x - x0);
+      if (cross < 0) {
+        hasNegative = true;
+      }
+      else if (cross > 0) {
+        hasPositive = true;
+      }
+      if (hasNegative && hasPositive) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import com.google.common.base.Joiner;
+import org.dartlang.vm.service.element.ElementList;
+import org.dartlang.vm.service.element.Instance;
+import org.dartlang.vm.service.element.InstanceRef;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Reads the properties of Dart objects for an
+ * {@link InspectorService.ObjectGroup}.
+ * <p>
+ * The getters requested while the group's earlier requests are pending are
+ * evaluated together as a single list expression, so the property values of a
+ * whole panel take two round trips. Values are memoized until the property
+ * generation changes.
+ */
+class PropertyBatcher {
+  /**
+   * How the batcher reaches the inspector library on behalf of its group.
+   */
+  interface Library {
+    /**
+     * Schedules the request after the group's pending requests, as
+     * {@link EvalOnDartLibrary#addRequest} does. The future completes to null
+     * if the request is skipped because the group was disposed.
+     */
+    <T> CompletableFuture<T> addRequest(String requestName, Supplier<CompletableFuture<T>> request);
+
+    /**
+     * Returns the tag of the scheduled request whose supplier is running on
+     * the current thread.
+     */
+    Object getRequestTag();
+
+    /**
+     * Evaluates an expression returning a list and gets the list, sending
+     * both calls with the tag so they are cancelled along with the request
+     * they are part of.
+     */
+    CompletableFuture<Instance> evaluateList(String expression, Object tag);
+
+    boolean isDisposed();
+  }
+
+  /**
+   * A request for some properties of an object, waiting to be evaluated with other requests.
+   */
+  private static class PropertyRequest {
+    final String id;
+    final String[] propertyNames;
+    final CompletableFuture<Map<String, InstanceRef>> future = new CompletableFuture<>();
+
+    PropertyRequest(String id, String[] propertyNames) {
+      this.id = id;
+      this.propertyNames = propertyNames;
+    }
+  }
+
+  private final String groupName;
+  private final AtomicInteger propertyGeneration;
+  private final Library library;
+
+  /**
+   * Property values requested from the group, keyed by object and property names.
+   * <p>
+   * Values are only reused until the property generation changes.
+   * <p>
+   * Also guards {@link #pendingPropertyRequests}.
+   */
+  private final Map<String, CompletableFuture<Map<String, InstanceRef>>> propertyCache = new HashMap<>();
+
+  /**
+   * The property generation of the values in propertyCache.
+   */
+  private int propertyCacheGeneration;
+
+  /**
+   * Property requests waiting for the group's earlier requests, to be
+   * evaluated together, or null if there are none.
+   */
+  private List<PropertyRequest> pendingPropertyRequests;
+
+  /**
+   * @param propertyGeneration incremented whenever property values read from
+   *                           the device may have changed
+   */
+  PropertyBatcher(String groupName, AtomicInteger propertyGeneration, Library library) {
+    this.groupName = groupName;
+    this.propertyGeneration = propertyGeneration;
+    this.library = library;
+  }
+
+  /**
+   * Returns a map of property names to the values of the getters of the
+   * object with the given inspector id.
+   */
+  CompletableFuture<Map<String, InstanceRef>> getProperties(String id, String[] propertyNames) {
+    return memoize("properties " + id + " " + Joiner.on(',').join(propertyNames),
+                   () -> addPropertyRequest(new PropertyRequest(id, propertyNames)));
+  }
+
+  /**
+   * Returns the values remembered for the key in the current property
+   * generation, or makes the request and remembers its values.
+   * <p>
+   * Failures are not remembered.
+   */
+  CompletableFuture<Map<String, InstanceRef>> memoize(String key, Supplier<CompletableFuture<Map<String, InstanceRef>>> request) {
+    final CompletableFuture<Map<String, InstanceRef>> future;
+    synchronized (propertyCache) {
+      final int generation = propertyGeneration.get();
+      if (propertyCacheGeneration != generation) {
+        // The values may have changed on the device since they were read.
+        propertyCache.clear();
+        propertyCacheGeneration = generation;
+      }
+      final CompletableFuture<Map<String, InstanceRef>> cached = propertyCache.get(key);
+      if (cached != null) {
+        return cached;
+      }
+      future = request.get();
+      propertyCache.put(key, future);
+    }
+    future.whenComplete((properties, t) -> {
+      if (t != null) {
+        // Ask again next time rather than remembering the failure.
+        synchronized (propertyCache) {
+          propertyCache.remove(key, future);
+        }
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Adds the request to the batch waiting to be evaluated, starting a new
+   * batch if there is none.
+   */
+  private CompletableFuture<Map<String, InstanceRef>> addPropertyRequest(PropertyRequest request) {
+    final List<PropertyRequest> batch;
+    synchronized (propertyCache) {
+      if (pendingPropertyRequests != null) {
+        pendingPropertyRequests.add(request);
+        return request.future;
+      }
+      batch = new ArrayList<>();
+      batch.add(request);
+      pendingPropertyRequests = batch;
+    }
+    final CompletableFuture<Void> batchComplete = library.addRequest("getDartObjectProperties", () -> {
+      // Requests added from here on start a new batch.
+      synchronized (propertyCache) {
+        if (pendingPropertyRequests == batch) {
+          pendingPropertyRequests = null;
+        }
+      }
+      return evaluateProperties(batch, library.getRequestTag());
+    });
+    batchComplete.whenComplete((ignored, t) -> {
+      synchronized (propertyCache) {
+        if (pendingPropertyRequests == batch) {
+          pendingPropertyRequests = null;
+        }
+      }
+      // Complete anything the batch did not, because it was skipped or timed out.
+      for (PropertyRequest pending : batch) {
+        if (t != null) {
+          pending.future.completeExceptionally(t);
+        }
+        else {
+          pending.future.complete(null);
+        }
+      }
+    });
+    return request.future;
+  }
+
+  /**
+   * Evaluates the properties of all the requests as one list, then splits
+   * the list between the requests.
+   *
+   * @param tag the tag of the scheduled request this is part of, so that
+   *            disposing the group or timing out cancels the calls made
+   *            from callbacks too
+   */
+  private CompletableFuture<Void> evaluateProperties(List<PropertyRequest> requests, Object tag) {
+    final List<String> propertyAccessors = new ArrayList<>();
+    for (PropertyRequest request : requests) {
+      final String object = "(WidgetInspectorService.instance.toObject(" +
+                            InspectorService.toDartString(request.id) + ", " + InspectorService.toDartString(groupName) +
+                            ") as dynamic)";
+      for (String propertyName : request.propertyNames) {
+        propertyAccessors.add(object + "." + propertyName);
+      }
+    }
+    final String expression = "<Object>[" + Joiner.on(',').join(propertyAccessors) + "]";
+    return library.evaluateList(expression, tag)
+      .handle((Instance instance, Throwable t) -> {
+        if (t == null) {
+          final ElementList<InstanceRef> values = instance.getElements();
+          assert (values.size() == propertyAccessors.size());
+          int index = 0;
+          for (PropertyRequest request : requests) {
+            final Map<String, InstanceRef> properties = new HashMap<>();
+            for (String propertyName : request.propertyNames) {
+              properties.put(propertyName, values.get(index++));
+            }
+            request.future.complete(properties);
+          }
+          return CompletableFuture.<Void>completedFuture(null);
+        }
+        if (requests.size() == 1 || library.isDisposed()) {
+          for (PropertyRequest request : requests) {
+            request.future.completeExceptionally(t);
+          }
+          return CompletableFuture.<Void>completedFuture(null);
+        }
+        // A getter that throws fails the whole list, so evaluate each request
+        // on its own to fail only the request it belongs to.
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (PropertyRequest request : requests) {
+          futures.add(evaluateProperties(Collections.singletonList(request), tag));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+      })
+      .thenCompose((future) -> future);
+  }
+}
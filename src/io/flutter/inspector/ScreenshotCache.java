@@ -0,0 +1,180 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Decodes the screenshots sent by the inspector, and keeps the most recently used image for each
+ * request so a screenshot whose pixels didn't change isn't decoded again.
+ * <p>
+ * Entries are keyed by what was asked for: the element or location, the size, and the pixel ratio.
+ * The least recently used entries are dropped once there are more than a fixed number of them or
+ * their images take more than a fixed number of bytes.
+ */
+class ScreenshotCache {
+  static final int DEFAULT_MAX_ENTRIES = 32;
+  static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+  private final int maxEntries;
+  private final long maxBytes;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long bytes;
+  private long decodeCount;
+  private long reuseCount;
+
+  ScreenshotCache() {
+    this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+  }
+
+  ScreenshotCache(int maxEntries, long maxBytes) {
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Returns the screenshot described by the given inspector JSON, reusing the cached image for the
+   * key if the encoded image is unchanged.
+   * <p>
+   * Decoding is slow for large screenshots, so this should not be called on the UI thread.
+   */
+  @NotNull
+  Screenshot decode(@NotNull String key, @NotNull JsonObject json) {
+    final String encoded = json.getAsJsonPrimitive("image").getAsString();
+    final TransformedRect transformedRect = new TransformedRect(json.getAsJsonObject("transformedRect"));
+    final long hash = hash(encoded);
+    synchronized (entries) {
+      final Entry entry = entries.get(key);
+      if (entry != null && entry.hash == hash && entry.length == encoded.length()) {
+        reuseCount++;
+        return new Screenshot(entry.image, transformedRect);
+      }
+    }
+
+    final BufferedImage image = toCompatibleImage(decodeImage(encoded));
+    synchronized (entries) {
+      decodeCount++;
+      final Entry previous = entries.put(key, new Entry(hash, encoded.length(), image));
+      if (previous != null) {
+        bytes -= previous.bytes;
+      }
+      bytes += sizeOf(image);
+      evict();
+    }
+    return new Screenshot(image, transformedRect);
+  }
+
+  void clear() {
+    synchronized (entries) {
+      entries.clear();
+      bytes = 0;
+    }
+  }
+
+  int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * Returns the number of screenshots that had to be decoded.
+   */
+  long getDecodeCount() {
+    synchronized (entries) {
+      return decodeCount;
+    }
+  }
+
+  /**
+   * Returns the number of screenshots that reused a cached image.
+   */
+  long getReuseCount() {
+    synchronized (entries) {
+      return reuseCount;
+    }
+  }
+
+  private void evict() {
+    assert Thread.holdsLock(entries);
+    final Iterator<Entry> iterator = entries.values().iterator();
+    // Always keep the entry just added.
+    while ((entries.size() > maxEntries || bytes > maxBytes) && entries.size() > 1) {
+      bytes -= iterator.next().bytes;
+      iterator.remove();
+    }
+  }
+
+  private static BufferedImage decodeImage(String encoded) {
+    final byte[] imageBytes = Base64.getDecoder().decode(encoded);
+    try (ByteArrayInputStream in = new ByteArrayInputStream(imageBytes)) {
+      return ImageIO.read(in);
+    }
+    catch (IOException e) {
+      throw new RuntimeException("Error decoding image: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Copies the image into the screen's native format, if it isn't already, so painting it
+   * doesn't convert every pixel each time.
+   */
+  static BufferedImage toCompatibleImage(BufferedImage image) {
+    if (image == null || GraphicsEnvironment.isHeadless()) {
+      return image;
+    }
+    final GraphicsConfiguration config =
+      GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+    if (image.getColorModel().equals(config.getColorModel(image.getTransparency()))) {
+      return image;
+    }
+    final BufferedImage compatible = config.createCompatibleImage(image.getWidth(), image.getHeight(), image.getTransparency());
+    final Graphics2D g = compatible.createGraphics();
+    g.drawImage(image, 0, 0, null);
+    g.dispose();
+    return compatible;
+  }
+
+  /**
+   * A 64-bit FNV-1a hash of the encoded image, cheap next to decoding it.
+   */
+  static long hash(String encoded) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < encoded.length(); i++) {
+      hash ^= encoded.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  private static long sizeOf(BufferedImage image) {
+    return image == null ? 0 : 4L * image.getWidth() * image.getHeight();
+  }
+
+  private static class Entry {
+    final long hash;
+    final int length;
+    final BufferedImage image;
+    final long bytes;
+
+    Entry(long hash, int length, BufferedImage image) {
+      this.hash = hash;
+      this.length = length;
+      this.image = image;
+      this.bytes = sizeOf(image);
+    }
+  }
+}
@@ -5,34 +5,45 @@
  */
 package io.flutter.logging;
 
-import com.google.common.collect.ImmutableList;
 import com.google.gson.JsonObject;
 import com.intellij.execution.process.ProcessAdapter;
 import com.intellij.execution.process.ProcessEvent;
 import com.intellij.execution.process.ProcessHandler;
 import com.intellij.execution.ui.ConsoleViewContentType;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.Key;
 import com.intellij.util.EventDispatcher;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import io.flutter.FlutterUtils;
 import io.flutter.run.FlutterDebugProcess;
 import io.flutter.run.daemon.FlutterApp;
 import io.flutter.utils.VmServiceListenerAdapter;
 import io.flutter.vmService.ServiceExtensions;
+import io.flutter.vmService.StreamSubscriptionManager;
+import io.flutter.vmService.VMServiceManager;
 import org.dartlang.vm.service.VmService;
 import org.dartlang.vm.service.element.Event;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class FlutterLog implements FlutterLogEntry.ContentListener {
   private static final Logger LOG = Logger.getInstance(FlutterLog.class);
 
+  private static final Set<String> VM_STREAM_IDS =
+    Collections.unmodifiableSet(
+      new HashSet<>(Arrays.asList(VmService.LOGGING_STREAM_ID, VmService.EXTENSION_STREAM_ID, VmService.GC_STREAM_ID)));
+
   public interface Listener extends EventListener {
     void onEvent(@NotNull FlutterLogEntry entry);
 
@@ -80,10 +91,26 @@ public class FlutterLog implements FlutterLogEntry.ContentListener {
 
   private final FlutterLogEntryParser logEntryParser;
 
-  // TODO(pq): consider limiting size.
-  private final List<FlutterLogEntry> entries = new ArrayList<>();
+  @NotNull
+  private final FlutterLogStore store;
+  @NotNull
+  private final FlutterLogRateLimiter rateLimiter;
+  private final AtomicBoolean summaryFlushScheduled = new AtomicBoolean();
+  /**
+   * Held while entries pass through the rate limiter into the store and on to the listeners, so
+   * entries from the process, the VM and the summary flush are numbered and delivered in the order
+   * the rate limiter released them.
+   */
+  private final Object entryLock = new Object();
   private FlutterApp app;
 
+  /**
+   * The views showing this log, and the leases on the VM streams it reads while at least one is open.
+   */
+  private final Set<Listener> views = new HashSet<>();
+  private final List<Disposable> streamLeases = new ArrayList<>();
+  private StreamSubscriptionManager streamSubscriptions;
+
   public static boolean useFlutterLogView() {
     // TODO(devoncarew): Hard-coded to off.
     return false;
@@ -92,6 +119,9 @@ public class FlutterLog implements FlutterLogEntry.ContentListener {
   public FlutterLog(@NotNull Project project, @Nullable Module module) {
     logEntryParser = new FlutterLogEntryParser(project, module);
     logEntryParser.addListener(this, project);
+    store = new FlutterLogStore(new File(PathManager.getSystemPath(), "flutter" + File.separator + "logs"),
+                                logEntryParser.getMessageFilters());
+    rateLimiter = new FlutterLogRateLimiter(FlutterLogPreferences.getInstance(project), logEntryParser.getMessageFilters());
   }
 
   public void addConsoleEntry(@NotNull String text, @NotNull ConsoleViewContentType contentType) {
@@ -100,11 +130,36 @@ public class FlutterLog implements FlutterLogEntry.ContentListener {
 
   public void addListener(@NotNull Listener listener, @NotNull Disposable parent) {
     dispatcher.addListener(listener, parent);
+    synchronized (views) {
+      views.add(listener);
+      updateStreamLeases();
+    }
+    Disposer.register(parent, () -> removeListener(listener));
   }
 
   public void clear() {
-    // TODO(pq): add locking.
-    entries.clear();
+    synchronized (entryLock) {
+      store.clear();
+      rateLimiter.clear();
+    }
+  }
+
+  /**
+   * Drops all entries older than the given one.
+   */
+  public void clearBefore(@NotNull FlutterLogEntry entry) {
+    store.removeBefore(entry.getSequenceNumber());
+  }
+
+  /**
+   * Drops all entries and deletes any entries spilled to disk.
+   */
+  public void dispose() {
+    synchronized (views) {
+      views.clear();
+      updateStreamLeases();
+    }
+    store.dispose();
   }
 
   private FlutterDebugProcess getDebugProcess() {
@@ -139,22 +194,95 @@ public class FlutterLog implements FlutterLogEntry.ContentListener {
     }
   }
 
+  /**
+   * Returns all retained entries, reading spilled entries back from disk.
+   */
   public List<FlutterLogEntry> getEntries() {
-    return ImmutableList.copyOf(entries);
+    return store.getEntries(store.getFirstSequenceNumber(), store.getNextSequenceNumber());
+  }
+
+  @NotNull
+  public FlutterLogStore getStore() {
+    return store;
+  }
+
+  /**
+   * Returns the most recent entries that were suppressed by rate limiting or summarized, oldest
+   * first.
+   */
+  @NotNull
+  public List<FlutterLogEntry> getSuppressedEntries() {
+    return rateLimiter.getSuppressedEntries();
+  }
+
+  public boolean hasSuppressedEntries() {
+    return rateLimiter.hasSuppressedEntries();
   }
 
   public void removeListener(@NotNull Listener listener) {
     dispatcher.removeListener(listener);
+    synchronized (views) {
+      if (views.remove(listener)) {
+        updateStreamLeases();
+      }
+    }
+  }
+
+  /**
+   * Subscribes to the streams the log reads while a view is open, and releases them once the last view
+   * is closed so the VM stops sending events nobody will see.
+   */
+  private void updateStreamLeases() {
+    assert Thread.holdsLock(views);
+    if (streamSubscriptions != null && !views.isEmpty()) {
+      if (streamLeases.isEmpty()) {
+        for (String streamId : VM_STREAM_IDS) {
+          streamLeases.add(streamSubscriptions.listen(streamId));
+        }
+      }
+    }
+    else {
+      streamLeases.forEach(Disposable::dispose);
+      streamLeases.clear();
+    }
   }
 
   private void onEntry(@Nullable FlutterLogEntry entry) {
     if (entry != null) {
-      entries.add(entry);
-      entry.setSequenceNumber(entries.size());
+      synchronized (entryLock) {
+        add(rateLimiter.offer(entry, System.currentTimeMillis()));
+      }
+      if (rateLimiter.hasPendingSummaries()) {
+        scheduleSummaryFlush();
+      }
+    }
+  }
+
+  private void add(@NotNull List<FlutterLogEntry> entries) {
+    assert Thread.holdsLock(entryLock);
+    for (FlutterLogEntry entry : entries) {
+      store.add(entry);
       dispatcher.getMulticaster().onEvent(entry);
     }
   }
 
+  /**
+   * Ensures that suppressed entries are summarized even if no more entries arrive.
+   */
+  private void scheduleSummaryFlush() {
+    if (summaryFlushScheduled.compareAndSet(false, true)) {
+      AppExecutorUtil.getAppScheduledExecutorService().schedule(() -> {
+        summaryFlushScheduled.set(false);
+        synchronized (entryLock) {
+          add(rateLimiter.flush(System.currentTimeMillis()));
+        }
+        if (rateLimiter.hasPendingSummaries()) {
+          scheduleSummaryFlush();
+        }
+      }, FlutterLogRateLimiter.WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
   // TODO(pq): consider inverting and having services do their own listening, and just push entries.
   public void listenToProcess(@NotNull ProcessHandler processHandler, @NotNull Disposable parent) {
     processHandler.addProcessListener(new ProcessAdapter() {
@@ -173,6 +301,18 @@ public class FlutterLog implements FlutterLogEntry.ContentListener {
 
     logEntryParser.setVmServices(app, vmService);
 
+    final VMServiceManager vmServiceManager = app == null ? null : app.getVMServiceManager();
+    if (vmServiceManager != null) {
+      synchronized (views) {
+        // Leases taken for an earlier debug session belong to that session's VM.
+        streamLeases.forEach(Disposable::dispose);
+        streamLeases.clear();
+        streamSubscriptions = vmServiceManager.getStreamSubscriptions();
+        updateStreamLeases();
+      }
+    }
+
+    // Parse on a lane of our own so that a burst of log events doesn't hold up the VM service connection.
     vmService.addVmServiceListener(new VmServiceListenerAdapter() {
       @Override
       public void received(String streamId, Event event) {
@@ -181,7 +321,7 @@ public class FlutterLog implements FlutterLogEntry.ContentListener {
           entries.forEach(FlutterLog.this::onEntry);
         }
       }
-    });
+    }, VM_STREAM_IDS, AppExecutorUtil.getAppExecutorService());
   }
 
   public void setFlutterApp(FlutterApp app) {
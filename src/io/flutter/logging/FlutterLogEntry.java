@@ -76,6 +76,24 @@ public class FlutterLogEntry {
     this.inheritedStyle = inheritedStyle;
   }
 
+  /**
+   * Creates an entry whose styled text is computed from the message on first use.
+   */
+  FlutterLogEntry(long timestamp,
+                  @NotNull String category,
+                  int level,
+                  @NotNull String message,
+                  @NotNull Kind kind,
+                  @NotNull List<Filter> filters) {
+    this.timestamp = timestamp;
+    this.category = category;
+    this.level = level;
+    this.message = message;
+    this.kind = kind;
+    this.filters = filters;
+    this.inheritedStyle = null;
+  }
+
   public FlutterLogEntry(long timestamp, @NotNull LineInfo info, int level) {
     this(timestamp, info.getCategory(), level, info.getLine(), info.getKind(), info.getStyledText(), info.getFilters(),
          info.getInheritedStyle());
@@ -86,11 +86,19 @@ public class FlutterLogEntryParser {
     }
   }
 
+  @NotNull
+  private final List<Filter> messageFilters;
   private final LineHandler lineHandler;
   private CompletableFuture<InspectorService.ObjectGroup> inspectorObjectGroup;
 
   public FlutterLogEntryParser(@NotNull Project project, @Nullable Module module) {
-    lineHandler = new LineHandler(createMessageFilters(project, module), null);
+    messageFilters = createMessageFilters(project, module);
+    lineHandler = new LineHandler(messageFilters, null);
+  }
+
+  @NotNull
+  List<Filter> getMessageFilters() {
+    return messageFilters;
   }
 
   public FlutterDebugProcess getDebugProcess() {
@@ -185,6 +193,8 @@ public class FlutterLogEntryParser {
           return parseLoggingEvent(event);
         case VmService.EXTENSION_STREAM_ID:
           return parseExtensionEvent(event);
+        case VmService.GC_STREAM_ID:
+          return parseGCEvent(event);
       }
     }
 
@@ -199,6 +209,24 @@ public class FlutterLogEntryParser {
     return null;
   }
 
+  @Nullable
+  private List<FlutterLogEntry> parseGCEvent(@NotNull Event event) {
+    final JsonObject newSpace = event.getJson().getAsJsonObject("new");
+    final JsonObject oldSpace = event.getJson().getAsJsonObject("old");
+    if (newSpace == null || oldSpace == null) {
+      return null;
+    }
+
+    final double usedMB = (getLong(newSpace, "used") + getLong(oldSpace, "used")) / (1024.0 * 1024.0);
+    final double capacityMB = (getLong(newSpace, "capacity") + getLong(oldSpace, "capacity")) / (1024.0 * 1024.0);
+    final String message = "collected: " + df1.format(usedMB) + "MB used of " + df1.format(capacityMB) + "MB";
+    return Collections.singletonList(new FlutterLogEntry(timestamp(event), lineHandler.parseLineInfo(message, GC_CATEGORY), GC_EVENT_LEVEL));
+  }
+
+  private static long getLong(@NotNull JsonObject json, @NotNull String name) {
+    return json.has(name) ? json.get(name).getAsLong() : 0;
+  }
+
   private List<FlutterLogEntry> parseFlutterError(@NotNull Event event) {
     final List<FlutterLogEntry> entries = new ArrayList<>();
     final ExtensionData extensionData = event.getExtensionData();
@@ -32,8 +32,13 @@ class FlutterLogEntryPopup {
   }
 
   void showLogDialog(@NotNull String log) {
+    showLogDialog(log, POPUP_TITLE);
+  }
+
+  void showLogDialog(@NotNull String log, @NotNull String title) {
     logTextArea.setText(log);
-    JOptionPane.showMessageDialog(null, logScrollPane, POPUP_TITLE, JOptionPane.PLAIN_MESSAGE);
+    logTextArea.setCaretPosition(0);
+    JOptionPane.showMessageDialog(null, logScrollPane, title, JOptionPane.PLAIN_MESSAGE);
   }
 
   @NotNull
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.logging;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A compiled {@link FlutterLogFilterPanel.FilterParam}.
+ * <p>
+ * Entries match if their level is at least the filter level and, if there is an expression, their
+ * message or category contains it. Plain expressions use a substring search, case-folded once up
+ * front unless matching case; a regular expression is only compiled when asked for.
+ */
+class FlutterLogFilter {
+  private final int minLevel;
+  @Nullable
+  private final Matcher matcher;
+
+  private FlutterLogFilter(int minLevel, @Nullable Matcher matcher) {
+    this.minLevel = minLevel;
+    this.matcher = matcher;
+  }
+
+  @NotNull
+  static FlutterLogFilter create(@NotNull FlutterLogFilterPanel.FilterParam param) {
+    return create(param.getExpression(), param.isMatchCase(), param.isRegex(), param.getLogLevel());
+  }
+
+  @NotNull
+  static FlutterLogFilter create(@Nullable String expression, boolean matchCase, boolean regex, @NotNull FlutterLog.Level level) {
+    Matcher matcher = null;
+    if (expression != null && !expression.isEmpty()) {
+      if (regex) {
+        try {
+          final Pattern pattern = Pattern.compile(expression, Pattern.DOTALL | (matchCase ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+          matcher = text -> pattern.matcher(text).find();
+        }
+        catch (PatternSyntaxException e) {
+          // TODO(pq): Notify user; in the meantime, just fall-through.
+        }
+      }
+      else if (matchCase) {
+        matcher = text -> text.contains(expression);
+      }
+      else {
+        matcher = new CaseFoldingMatcher(expression);
+      }
+    }
+    return new FlutterLogFilter(level.value, matcher);
+  }
+
+  /**
+   * Returns whether the entry with the given sequence number matches, reading its message from the
+   * store only if its level and category do not decide the match.
+   */
+  boolean matches(@NotNull FlutterLogStore store, int sequence) {
+    if (store.getLevel(sequence) < minLevel) {
+      return false;
+    }
+    if (matcher == null) {
+      return true;
+    }
+    final String category = store.getCategory(sequence);
+    if (category != null && matcher.matches(category)) {
+      return true;
+    }
+    final FlutterLogEntry entry = store.get(sequence);
+    return entry != null && matcher.matches(entry.getMessage());
+  }
+
+  boolean matches(int level, @NotNull String category, @NotNull String message) {
+    if (level < minLevel) {
+      return false;
+    }
+    return matcher == null || matcher.matches(category) || matcher.matches(message);
+  }
+
+  private interface Matcher {
+    boolean matches(@NotNull String text);
+  }
+
+  /**
+   * A case-insensitive substring search, folding case the same way as
+   * {@link String#regionMatches(boolean, int, String, int, int)}.
+   */
+  static class CaseFoldingMatcher implements Matcher {
+    private final char[] folded;
+
+    CaseFoldingMatcher(@NotNull String needle) {
+      folded = new char[needle.length()];
+      for (int i = 0; i < folded.length; i++) {
+        folded[i] = fold(needle.charAt(i));
+      }
+    }
+
+    @Override
+    public boolean matches(@NotNull String text) {
+      final int last = text.length() - folded.length;
+      final char first = folded[0];
+      for (int i = 0; i <= last; i++) {
+        if (fold(text.charAt(i)) != first) {
+          continue;
+        }
+        int j = 1;
+        while (j < folded.length && fold(text.charAt(i + j)) == folded[j]) {
+          j++;
+        }
+        if (j == folded.length) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static char fold(char c) {
+      return Character.toLowerCase(Character.toUpperCase(c));
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.logging;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.BitSet;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The results of a filter, evaluated lazily and shared between the row sorter and the
+ * background evaluation of existing rows.
+ */
+class FlutterLogFilterResults {
+  static final int CHUNK_SIZE = 1000;
+
+  @NotNull
+  private final FlutterLogFilter filter;
+  @NotNull
+  private final FlutterLogStore store;
+  // Indexed by sequence number.
+  private final BitSet evaluated = new BitSet();
+  private final BitSet matched = new BitSet();
+
+  FlutterLogFilterResults(@NotNull FlutterLogFilter filter, @NotNull FlutterLogStore store) {
+    this.filter = filter;
+    this.store = store;
+  }
+
+  synchronized boolean matches(int sequenceNumber) {
+    if (evaluated.get(sequenceNumber)) {
+      return matched.get(sequenceNumber);
+    }
+    final boolean matches = filter.matches(store, sequenceNumber);
+    evaluated.set(sequenceNumber);
+    matched.set(sequenceNumber, matches);
+    return matches;
+  }
+
+  synchronized boolean isEvaluated(int sequenceNumber) {
+    return evaluated.get(sequenceNumber);
+  }
+
+  /**
+   * Evaluates the filter for the given entries in chunks of {@link #CHUNK_SIZE}, checking before
+   * each chunk whether the results are still wanted.
+   *
+   * @return false if evaluation stopped because the results were cancelled
+   */
+  boolean evaluate(@NotNull int[] sequenceNumbers, @NotNull BooleanSupplier isCancelled) {
+    for (int start = 0; start < sequenceNumbers.length; start += CHUNK_SIZE) {
+      if (isCancelled.getAsBoolean()) {
+        return false;
+      }
+      final int end = Math.min(sequenceNumbers.length, start + CHUNK_SIZE);
+      for (int i = start; i < end; i++) {
+        matches(sequenceNumbers[i]);
+      }
+    }
+    return !isCancelled.getAsBoolean();
+  }
+}
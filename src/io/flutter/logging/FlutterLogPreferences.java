@@ -10,6 +10,9 @@ import com.intellij.openapi.project.Project;
 import com.intellij.util.xmlb.XmlSerializerUtil;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @State(name = "FlutterLogPreferences", storages = @Storage(StoragePathMacros.WORKSPACE_FILE))
 public class FlutterLogPreferences implements PersistentStateComponent<FlutterLogPreferences> {
   private boolean clearOnReload = true;
@@ -24,6 +27,17 @@ public class FlutterLogPreferences implements PersistentStateComponent<FlutterLo
   private boolean toolWindowMatchCase = false;
   private boolean toolWindowRegex = false;
 
+  /**
+   * The maximum number of entries per second and category, or zero for no limit; see
+   * {@link FlutterLogRateLimiter}.
+   */
+  private int logRateLimit = FlutterLogRateLimiter.DEFAULT_ENTRIES_PER_SECOND;
+  /**
+   * Per-category overrides of {@link #logRateLimit}.
+   */
+  private Map<String, Integer> categoryLogRateLimits = new HashMap<>();
+  private boolean aggregateGcEvents = true;
+
   public static FlutterLogPreferences getInstance(Project project) {
     return ServiceManager.getService(project, FlutterLogPreferences.class);
   }
@@ -117,4 +131,36 @@ public class FlutterLogPreferences implements PersistentStateComponent<FlutterLo
   public void setToolWindowRegex(boolean toolWindowRegex) {
     this.toolWindowRegex = toolWindowRegex;
   }
+
+  public int getLogRateLimit() {
+    return logRateLimit;
+  }
+
+  public void setLogRateLimit(int logRateLimit) {
+    this.logRateLimit = logRateLimit;
+  }
+
+  public Map<String, Integer> getCategoryLogRateLimits() {
+    return categoryLogRateLimits;
+  }
+
+  public void setCategoryLogRateLimits(Map<String, Integer> categoryLogRateLimits) {
+    this.categoryLogRateLimits = categoryLogRateLimits;
+  }
+
+  /**
+   * Returns the maximum number of entries per second for the category, or zero for no limit.
+   */
+  public int getLogRateLimit(@NotNull String category) {
+    final Integer limit = categoryLogRateLimits.get(category);
+    return limit != null ? limit : logRateLimit;
+  }
+
+  public boolean isAggregateGcEvents() {
+    return aggregateGcEvents;
+  }
+
+  public void setAggregateGcEvents(boolean aggregateGcEvents) {
+    this.aggregateGcEvents = aggregateGcEvents;
+  }
 }
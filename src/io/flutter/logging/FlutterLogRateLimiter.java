@@ -0,0 +1,196 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.logging;
+
+import com.google.gson.JsonObject;
+import com.intellij.execution.filters.Filter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Limits the rate of log entries per category.
+ * <p>
+ * Each category has a token bucket that allows bursts of up to one second's worth of entries. Entries
+ * beyond the limit are suppressed, and once per second a summary entry reports how many entries of
+ * the category were suppressed, along with the first and last of them. GC events are not shown
+ * individually but summarized once per second.
+ * <p>
+ * Reloads, restarts and errors (entries at {@link FlutterLog.Level#SEVERE} or above) are never suppressed. The most recent suppressed entries are kept
+ * in full in a capped buffer; see {@link #getSuppressedEntries()}.
+ */
+class FlutterLogRateLimiter {
+  static final int DEFAULT_ENTRIES_PER_SECOND = 500;
+  static final int SUPPRESSED_BUFFER_SIZE = 10000;
+  static final long WINDOW_MILLIS = 1000;
+
+  @NotNull
+  private final FlutterLogPreferences preferences;
+  @NotNull
+  private final List<Filter> filters;
+
+  private final Map<String, Bucket> buckets = new HashMap<>();
+  private final ArrayDeque<FlutterLogEntry> suppressedEntries = new ArrayDeque<>();
+
+  FlutterLogRateLimiter(@NotNull FlutterLogPreferences preferences, @NotNull List<Filter> filters) {
+    this.preferences = preferences;
+    this.filters = filters;
+  }
+
+  /**
+   * Offers an entry received at the given time, and returns the entries to add to the log: any
+   * summaries that are due, followed by the entry itself unless it was suppressed.
+   */
+  @NotNull
+  synchronized List<FlutterLogEntry> offer(@NotNull FlutterLogEntry entry, long now) {
+    final List<FlutterLogEntry> result = flush(now);
+
+    final String category = entry.getCategory();
+    final boolean gc = category.equals(FlutterLogEntryParser.GC_CATEGORY) && preferences.isAggregateGcEvents();
+    final int limit = preferences.getLogRateLimit(category);
+    if (entry.getKind() != FlutterLogEntry.Kind.UNSPECIFIED || entry.getLevel() >= FlutterLog.Level.SEVERE.value || (!gc && limit <= 0)) {
+      result.add(entry);
+      return result;
+    }
+
+    final Bucket bucket = buckets.computeIfAbsent(category, Bucket::new);
+    if (!gc && bucket.tryAcquire(limit, now)) {
+      result.add(entry);
+    }
+    else {
+      bucket.suppress(entry, now);
+      suppressedEntries.addLast(entry);
+      if (suppressedEntries.size() > SUPPRESSED_BUFFER_SIZE) {
+        suppressedEntries.removeFirst();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns summaries for categories whose suppression window has ended by the given time.
+   */
+  @NotNull
+  synchronized List<FlutterLogEntry> flush(long now) {
+    final List<FlutterLogEntry> summaries = new ArrayList<>(1);
+    for (Bucket bucket : buckets.values()) {
+      if (bucket.suppressedCount > 0 && now - bucket.windowStart >= WINDOW_MILLIS) {
+        summaries.add(bucket.summarize());
+      }
+    }
+    return summaries;
+  }
+
+  /**
+   * Returns whether there are suppressed entries that have not been summarized yet.
+   */
+  synchronized boolean hasPendingSummaries() {
+    for (Bucket bucket : buckets.values()) {
+      if (bucket.suppressedCount > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the most recent suppressed entries, oldest first.
+   */
+  @NotNull
+  synchronized List<FlutterLogEntry> getSuppressedEntries() {
+    return new ArrayList<>(suppressedEntries);
+  }
+
+  synchronized boolean hasSuppressedEntries() {
+    return !suppressedEntries.isEmpty();
+  }
+
+  synchronized void clear() {
+    buckets.clear();
+    suppressedEntries.clear();
+  }
+
+  @NotNull
+  private static String count(int count, @NotNull String singular, @NotNull String plural) {
+    return count + " " + (count == 1 ? singular : plural);
+  }
+
+  private class Bucket {
+    @NotNull final String category;
+
+    double tokens = -1;
+    long lastRefill;
+
+    int suppressedCount;
+    long windowStart;
+    int maxLevel;
+    @Nullable FlutterLogEntry first;
+    @Nullable FlutterLogEntry last;
+
+    Bucket(@NotNull String category) {
+      this.category = category;
+    }
+
+    boolean tryAcquire(int limit, long now) {
+      if (tokens < 0) {
+        tokens = limit;
+      }
+      else {
+        tokens = Math.min(limit, tokens + (now - lastRefill) * limit / 1000.0);
+      }
+      lastRefill = now;
+
+      if (tokens >= 1) {
+        tokens--;
+        return true;
+      }
+      return false;
+    }
+
+    void suppress(@NotNull FlutterLogEntry entry, long now) {
+      if (suppressedCount == 0) {
+        windowStart = now;
+        maxLevel = entry.getLevel();
+        first = entry;
+      }
+      suppressedCount++;
+      maxLevel = Math.max(maxLevel, entry.getLevel());
+      last = entry;
+    }
+
+    @NotNull
+    FlutterLogEntry summarize() {
+      assert first != null && last != null;
+      final boolean gc = category.equals(FlutterLogEntryParser.GC_CATEGORY);
+      final String message;
+      if (gc) {
+        message = count(suppressedCount, "GC event", "GC events") + " in 1s";
+      }
+      else if (category.equals(FlutterLogEntryParser.STDIO_STDOUT_CATEGORY)) {
+        message = count(suppressedCount, "stdout line", "stdout lines") + " suppressed in 1s";
+      }
+      else {
+        message = count(suppressedCount, category + " entry", category + " entries") + " suppressed in 1s";
+      }
+
+      final JsonObject data = new JsonObject();
+      data.addProperty("category", category);
+      data.addProperty("count", suppressedCount);
+      data.addProperty("first", first.getMessage());
+      data.addProperty("last", last.getMessage());
+
+      final FlutterLogEntry summary =
+        new FlutterLogEntry(last.getTimestamp(), category, maxLevel, message, FlutterLogEntry.Kind.UNSPECIFIED, filters);
+      summary.setData(data.toString());
+
+      suppressedCount = 0;
+      first = null;
+      last = null;
+      return summary;
+    }
+  }
+}
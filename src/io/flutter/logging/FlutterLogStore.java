@@ -0,0 +1,427 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.logging;
+
+import com.intellij.execution.filters.Filter;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Holds the entries of a {@link FlutterLog}.
+ * <p>
+ * Only the most recent entries are kept in memory. Older entries are written to memory-mapped
+ * segment files and read back in on demand, so the memory used by a long-running session stays
+ * flat. Once the segment files reach their limit, the oldest segment is dropped along with its
+ * entries.
+ * <p>
+ * The level and category of every retained entry are kept in a small in-memory index, so that
+ * filtering on them does not need to page entries back in.
+ * <p>
+ * Entries are addressed by their sequence number, which starts at 1 and keeps increasing across
+ * {@link #clear()}. Entries read back from disk are copies: they have no associated data and do
+ * not see later changes to the original entry.
+ */
+public class FlutterLogStore {
+  private static final Logger LOG = Logger.getInstance(FlutterLogStore.class);
+
+  static final int DEFAULT_WINDOW_SIZE = 10000;
+  static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+  static final int DEFAULT_MAX_SEGMENTS = 32;
+
+  private static final int PAGE_CACHE_SIZE = 512;
+
+  // timestamp, kind, message length.
+  private static final int RECORD_HEADER_SIZE = 8 + 1 + 4;
+
+  private static final FlutterLogEntry.Kind[] KINDS = FlutterLogEntry.Kind.values();
+
+  private static final String SEGMENT_PREFIX = "flutter-log-";
+  private static final String SEGMENT_SUFFIX = ".segment";
+
+  /**
+   * The directories whose segment files left over from an earlier run have been deleted.
+   */
+  private static final Set<File> cleanedDirectories = new HashSet<>();
+
+  @Nullable
+  private final File directory;
+  @NotNull
+  private final List<Filter> filters;
+  private final int segmentSize;
+  private final int maxSegments;
+
+  /**
+   * The most recent entries, indexed by sequence number modulo the window size.
+   */
+  private final FlutterLogEntry[] window;
+
+  /**
+   * Entries recently read back from disk, in least recently used order.
+   */
+  private final LinkedHashMap<Integer, FlutterLogEntry> pageCache = new LinkedHashMap<Integer, FlutterLogEntry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Integer, FlutterLogEntry> eldest) {
+      return size() > PAGE_CACHE_SIZE;
+    }
+  };
+
+  // The index, addressed by sequence number minus indexBase.
+  private int indexBase = 1;
+  private int[] levels = new int[1024];
+  private int[] categoryIds = new int[1024];
+  /**
+   * The segment number in the high word and the position in the low word, or -1 if the entry is
+   * in memory or could not be written.
+   */
+  private long[] offsets = new long[1024];
+
+  private final List<String> categories = new ArrayList<>();
+  private final Map<String, Integer> categoryIdsByName = new HashMap<>();
+
+  private final List<Segment> segments = new ArrayList<>();
+  private int nextSegmentNumber;
+  private boolean spillFailed;
+  private boolean disposed;
+
+  private int firstSequence = 1;
+  private int nextSequence = 1;
+
+  /**
+   * Creates a store that spills to files in the given directory, or drops old entries if the
+   * directory is null.
+   */
+  public FlutterLogStore(@Nullable File directory, @NotNull List<Filter> filters) {
+    this(directory, filters, DEFAULT_WINDOW_SIZE, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+  }
+
+  FlutterLogStore(@Nullable File directory, @NotNull List<Filter> filters, int windowSize, int segmentSize, int maxSegments) {
+    this.directory = directory;
+    this.filters = filters;
+    this.window = new FlutterLogEntry[windowSize];
+    this.segmentSize = segmentSize;
+    this.maxSegments = maxSegments;
+  }
+
+  /**
+   * Adds the entry and assigns its sequence number.
+   */
+  public synchronized void add(@NotNull FlutterLogEntry entry) {
+    final int sequence = nextSequence++;
+    entry.setSequenceNumber(sequence);
+
+    ensureIndexCapacity(sequence);
+    final int index = sequence - indexBase;
+    levels[index] = entry.getLevel();
+    categoryIds[index] = getCategoryId(entry.getCategory());
+    offsets[index] = -1;
+
+    final int slot = sequence % window.length;
+    final FlutterLogEntry evicted = window[slot];
+    window[slot] = entry;
+    if (evicted != null && evicted.getSequenceNumber() >= firstSequence && !spill(evicted)) {
+      // The entry is gone; drop it, and everything before it, so the index stops growing.
+      removeBefore(evicted.getSequenceNumber() + 1);
+    }
+  }
+
+  /**
+   * Returns the entry with the given sequence number, reading it back from disk if needed, or
+   * null if the entry has been dropped.
+   */
+  @Nullable
+  public synchronized FlutterLogEntry get(int sequence) {
+    if (sequence < firstSequence || sequence >= nextSequence) {
+      return null;
+    }
+
+    final FlutterLogEntry entry = window[sequence % window.length];
+    if (entry != null && entry.getSequenceNumber() == sequence) {
+      return entry;
+    }
+
+    final FlutterLogEntry cached = pageCache.get(sequence);
+    if (cached != null) {
+      return cached;
+    }
+
+    final FlutterLogEntry read = read(sequence);
+    if (read != null) {
+      pageCache.put(sequence, read);
+    }
+    return read;
+  }
+
+  /**
+   * Returns the retained entries with sequence numbers in {@code [from, to)}.
+   */
+  @NotNull
+  public synchronized List<FlutterLogEntry> getEntries(int from, int to) {
+    from = Math.max(from, firstSequence);
+    to = Math.min(to, nextSequence);
+    final List<FlutterLogEntry> result = new ArrayList<>(Math.max(0, to - from));
+    for (int sequence = from; sequence < to; sequence++) {
+      final FlutterLogEntry entry = get(sequence);
+      if (entry != null) {
+        result.add(entry);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the level of the entry, or -1 if the entry has been dropped.
+   */
+  public synchronized int getLevel(int sequence) {
+    return isRetained(sequence) ? levels[sequence - indexBase] : -1;
+  }
+
+  /**
+   * Returns the category of the entry, or null if the entry has been dropped.
+   */
+  @Nullable
+  public synchronized String getCategory(int sequence) {
+    return isRetained(sequence) ? categories.get(categoryIds[sequence - indexBase]) : null;
+  }
+
+  /**
+   * Returns the sequence number of the oldest retained entry.
+   */
+  public synchronized int getFirstSequenceNumber() {
+    return firstSequence;
+  }
+
+  /**
+   * Returns the sequence number that the next entry will get.
+   */
+  public synchronized int getNextSequenceNumber() {
+    return nextSequence;
+  }
+
+  public synchronized int size() {
+    return nextSequence - firstSequence;
+  }
+
+  /**
+   * Drops all entries with a sequence number lower than the given one.
+   */
+  public synchronized void removeBefore(int sequence) {
+    sequence = Math.min(sequence, nextSequence);
+    if (sequence <= firstSequence) {
+      return;
+    }
+
+    for (int s = Math.max(firstSequence, nextSequence - window.length); s < sequence; s++) {
+      final int slot = s % window.length;
+      if (window[slot] != null && window[slot].getSequenceNumber() == s) {
+        window[slot] = null;
+      }
+    }
+    firstSequence = sequence;
+
+    final int first = sequence;
+    pageCache.keySet().removeIf(s -> s < first);
+    while (!segments.isEmpty() && segments.get(0).lastSequence < first) {
+      segments.remove(0).release();
+    }
+  }
+
+  /**
+   * Drops all entries.
+   */
+  public synchronized void clear() {
+    removeBefore(nextSequence);
+  }
+
+  /**
+   * Drops all entries and deletes the segment files. Entries added afterwards are kept in memory
+   * only.
+   */
+  public synchronized void dispose() {
+    disposed = true;
+    clear();
+    for (Segment segment : segments) {
+      segment.release();
+    }
+    segments.clear();
+  }
+
+  synchronized int getSegmentCount() {
+    return segments.size();
+  }
+
+  private boolean isRetained(int sequence) {
+    return sequence >= firstSequence && sequence < nextSequence;
+  }
+
+  private int getCategoryId(@NotNull String category) {
+    Integer id = categoryIdsByName.get(category);
+    if (id == null) {
+      id = categories.size();
+      categories.add(category);
+      categoryIdsByName.put(category, id);
+    }
+    return id;
+  }
+
+  private void ensureIndexCapacity(int sequence) {
+    if (sequence - indexBase < levels.length) {
+      return;
+    }
+
+    // Drop the index of removed entries before growing.
+    final int shift = firstSequence - indexBase;
+    final int count = sequence - firstSequence;
+    final int capacity = count < levels.length / 2 ? levels.length : levels.length * 2;
+    levels = shift(levels, shift, count, capacity);
+    categoryIds = shift(categoryIds, shift, count, capacity);
+    final long[] newOffsets = new long[capacity];
+    System.arraycopy(offsets, shift, newOffsets, 0, count);
+    offsets = newOffsets;
+    indexBase = firstSequence;
+  }
+
+  private static int[] shift(int[] values, int shift, int count, int capacity) {
+    final int[] result = capacity == values.length ? values : new int[capacity];
+    System.arraycopy(values, shift, result, 0, count);
+    return result;
+  }
+
+  /**
+   * Writes the entry to the current segment, and returns whether it could be written.
+   */
+  private boolean spill(@NotNull FlutterLogEntry entry) {
+    if (directory == null || spillFailed || disposed) {
+      return false;
+    }
+
+    final byte[] message = entry.getMessage().getBytes(StandardCharsets.UTF_8);
+    // Very long messages are truncated to fit in a segment.
+    final int length = Math.min(message.length, segmentSize - RECORD_HEADER_SIZE);
+
+    Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    if (segment == null || segment.buffer.remaining() < RECORD_HEADER_SIZE + length) {
+      segment = createSegment();
+      if (segment == null) {
+        return false;
+      }
+    }
+
+    final int position = segment.buffer.position();
+    segment.buffer.putLong(entry.getTimestamp());
+    segment.buffer.put((byte)entry.getKind().ordinal());
+    segment.buffer.putInt(length);
+    segment.buffer.put(message, 0, length);
+    segment.lastSequence = entry.getSequenceNumber();
+    offsets[entry.getSequenceNumber() - indexBase] = ((long)segment.number << 32) | position;
+    return true;
+  }
+
+  @Nullable
+  private Segment createSegment() {
+    if (segments.size() >= maxSegments) {
+      removeBefore(segments.get(0).lastSequence + 1);
+    }
+
+    try {
+      //noinspection ResultOfMethodCallIgnored
+      directory.mkdirs();
+      deleteStaleSegments(directory);
+      final File file = File.createTempFile(SEGMENT_PREFIX, SEGMENT_SUFFIX, directory);
+      file.deleteOnExit();
+      final MappedByteBuffer buffer;
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+        // The mapping stays valid after the channel is closed.
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+      }
+      final Segment segment = new Segment(nextSegmentNumber++, file, buffer);
+      segments.add(segment);
+      return segment;
+    }
+    catch (IOException e) {
+      LOG.warn("Unable to create log segment in " + directory + "; older log entries will be dropped", e);
+      spillFailed = true;
+      return null;
+    }
+  }
+
+  /**
+   * Deletes the segment files that an earlier run could not delete, the first time a segment is
+   * created in the directory.
+   * <p>
+   * Any segment file in the directory at that point is stale: the IDE's system directory is not
+   * shared between running instances, and other stores in this instance wait here before creating
+   * their first segment.
+   */
+  private static synchronized void deleteStaleSegments(@NotNull File directory) {
+    if (!cleanedDirectories.add(directory.getAbsoluteFile())) {
+      return;
+    }
+
+    final File[] stale = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+    if (stale != null) {
+      for (File file : stale) {
+        if (!file.delete()) {
+          LOG.info("Unable to delete stale log segment " + file);
+        }
+      }
+    }
+  }
+
+  @Nullable
+  private FlutterLogEntry read(int sequence) {
+    final int index = sequence - indexBase;
+    final long offset = offsets[index];
+    if (offset < 0 || segments.isEmpty()) {
+      return null;
+    }
+
+    final int segmentIndex = (int)(offset >>> 32) - segments.get(0).number;
+    if (segmentIndex < 0 || segmentIndex >= segments.size()) {
+      return null;
+    }
+
+    final ByteBuffer buffer = segments.get(segmentIndex).buffer.duplicate();
+    buffer.position((int)offset);
+    final long timestamp = buffer.getLong();
+    final FlutterLogEntry.Kind kind = KINDS[buffer.get()];
+    final byte[] message = new byte[buffer.getInt()];
+    buffer.get(message);
+
+    final FlutterLogEntry entry = new FlutterLogEntry(
+      timestamp, categories.get(categoryIds[index]), levels[index], new String(message, StandardCharsets.UTF_8), kind, filters);
+    entry.setSequenceNumber(sequence);
+    return entry;
+  }
+
+  private static class Segment {
+    final int number;
+    @NotNull final File file;
+    @NotNull final MappedByteBuffer buffer;
+    int lastSequence;
+
+    Segment(int number, @NotNull File file, @NotNull MappedByteBuffer buffer) {
+      this.number = number;
+      this.file = file;
+      this.buffer = buffer;
+    }
+
+    void release() {
+      // Deleting a mapped file can fail on some platforms; it is then removed on exit.
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+    }
+  }
+}
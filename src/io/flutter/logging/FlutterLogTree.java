@@ -22,10 +22,11 @@ import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import javax.swing.Timer;
 import javax.swing.*;
 import javax.swing.table.*;
 import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.MutableTreeNode;
+import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
@@ -33,8 +34,6 @@ import java.awt.datatransfer.StringSelection;
 import java.awt.event.*;
 import java.util.List;
 import java.util.*;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -45,6 +44,8 @@ public class FlutterLogTree extends TreeTable {
 
   private static final Logger LOG = Logger.getInstance(FlutterLogTree.class);
 
+  private static final int FLUSH_DELAY_MS = 100;
+
   private static class ColumnModel {
 
     class Column extends ColumnInfo<DefaultMutableTreeNode, FlutterLogEntry> {
@@ -65,7 +66,7 @@ public class FlutterLogTree extends TreeTable {
       @Override
       public FlutterLogEntry valueOf(DefaultMutableTreeNode node) {
         if (node instanceof FlutterEventNode) {
-          return ((FlutterEventNode)node).entry;
+          return ((FlutterEventNode)node).getEntry();
         }
         return null;
       }
@@ -178,7 +179,8 @@ public class FlutterLogTree extends TreeTable {
     private final FlutterLog log;
     @NotNull
     private final Alarm uiThreadAlarm;
-    @NotNull final Timer updateTimer;
+    @NotNull
+    private final FlutterLogTreeBatcher batcher;
 
     boolean autoScrollToEnd;
     // Cached for hide and restore.
@@ -210,7 +212,28 @@ public class FlutterLogTree extends TreeTable {
       setShowSequenceNumbers(false);
 
       uiThreadAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, parent);
-      updateTimer = new Timer(100, e -> uiExec(this::update, 0));
+      batcher = new FlutterLogTreeBatcher(this, log.getStore(), new FlutterLogTreeBatcher.Host() {
+        @Override
+        public void scheduleFlush() {
+          uiExec(TreeModel.this::flush, FLUSH_DELAY_MS);
+        }
+
+        @Override
+        public boolean shouldClearBefore(@NotNull FlutterLogEntry entry) {
+          return entry.getKind() == FlutterLogEntry.Kind.RELOAD && logPreferences.isClearOnReload() ||
+                 entry.getKind() == FlutterLogEntry.Kind.RESTART && logPreferences.isClearOnRestart();
+        }
+
+        @Override
+        public void clearBefore(@NotNull FlutterLogEntry entry) {
+          log.clearBefore(entry);
+          pathToSelectAndReveal = null;
+          if (treeTable != null) {
+            // Ensure selections are cleared on empty.
+            treeTable.getTree().clearSelection();
+          }
+        }
+      });
     }
 
     public void setUpdateCallback(UpdateCallback updateCallback) {
@@ -241,10 +264,14 @@ public class FlutterLogTree extends TreeTable {
       reload(getRoot());
       treeTable.updateUI();
 
-      final TreeTableTree tree = treeTable.getTree();
-
       // Restore/preserve selection state.
-      tree.setSelectionRows(treeTable.getSelectedRows());
+      treeTable.getTree().setSelectionRows(treeTable.getSelectedRows());
+
+      revealAndScroll();
+    }
+
+    private void revealAndScroll() {
+      final TreeTableTree tree = treeTable.getTree();
 
       // Select and reveal a selection path (e.g., on error) if specified.
       if (pathToSelectAndReveal != null) {
@@ -281,31 +308,54 @@ public class FlutterLogTree extends TreeTable {
     }
 
     public void clearEntries() {
+      batcher.clear();
       log.clear();
       getRoot().removeAllChildren();
       update();
     }
 
+    @NotNull
+    int[] getSequenceNumbers() {
+      final LogRootTreeNode root = getRoot();
+      final int[] sequenceNumbers = new int[root.getChildCount()];
+      for (int i = 0; i < sequenceNumbers.length; i++) {
+        sequenceNumbers[i] = ((FlutterEventNode)root.getChildAt(i)).getSequenceNumber();
+      }
+      return sequenceNumbers;
+    }
+
     // Cached, for example, by errors.
     TreePath pathToSelectAndReveal;
 
-    public void appendNode(FlutterLogEntry entry, boolean selectNode) {
-      if (treeTable == null || uiThreadAlarm.isDisposed()) {
+    /**
+     * Queues the entry to be added to the tree.
+     * <p>
+     * May be called from any thread. Entries are added in batches, at most once per
+     * {@link #FLUSH_DELAY_MS}, with a single insertion event per batch.
+     */
+    public void appendNode(@NotNull FlutterLogEntry entry, boolean selectNode) {
+      if (uiThreadAlarm.isDisposed()) {
         return;
       }
 
-      final FlutterEventNode node = new FlutterEventNode(entry);
-      getRoot().add(node);
-
-      if (selectNode) {
-        pathToSelectAndReveal = new TreePath(node.getPath());
-      }
+      batcher.add(entry, selectNode);
+    }
 
-      if (updateTimer.isRunning()) {
+    private void flush() {
+      if (!batcher.flush()) {
         return;
       }
-
-      updateTimer.restart();
+      if (batcher.getPathToReveal() != null) {
+        pathToSelectAndReveal = batcher.getPathToReveal();
+      }
+      else if (pathToSelectAndReveal != null && ((TreeNode)pathToSelectAndReveal.getLastPathComponent()).getParent() == null) {
+        // The row was dropped before it could be revealed.
+        pathToSelectAndReveal = null;
+      }
+      if (treeTable != null) {
+        columns.update();
+        revealAndScroll();
+      }
     }
 
     public boolean shouldShowTimestamps() {
@@ -349,29 +399,82 @@ public class FlutterLogTree extends TreeTable {
   }
 
   static class LogRootTreeNode extends DefaultMutableTreeNode {
-
+    /**
+     * Removes the first {@code count} children at once, rather than shifting the remaining children
+     * once per removed child.
+     */
+    @NotNull
+    Object[] removeLeadingChildren(int count) {
+      final List<TreeNode> leading = children.subList(0, count);
+      final Object[] removed = leading.toArray();
+      for (Object child : removed) {
+        ((MutableTreeNode)child).setParent(null);
+      }
+      leading.clear();
+      return removed;
+    }
   }
 
+  /**
+   * A row in the log.
+   * <p>
+   * Nodes only hold the sequence number of their entry, so that entries the store has spilled to
+   * disk are not kept in memory by the tree; they are read back in when rendered or filtered.
+   */
   public static class FlutterEventNode extends DefaultMutableTreeNode {
-    final FlutterLogEntry entry;
+    @NotNull
+    private final FlutterLogStore store;
+    private final int sequenceNumber;
 
-    FlutterEventNode(FlutterLogEntry entry) {
-      this.entry = entry;
+    FlutterEventNode(@NotNull FlutterLogStore store, @NotNull FlutterLogEntry entry) {
+      this.store = store;
+      this.sequenceNumber = entry.getSequenceNumber();
+    }
+
+    /**
+     * Returns the entry, or null if it has been dropped from the log.
+     */
+    @Nullable
+    public FlutterLogEntry getEntry() {
+      return store.get(sequenceNumber);
+    }
+
+    int getSequenceNumber() {
+      return sequenceNumber;
+    }
+
+    int getLogLevel() {
+      return store.getLevel(sequenceNumber);
+    }
+
+    @Nullable
+    String getCategory() {
+      return store.getCategory(sequenceNumber);
     }
 
     public void describeTo(@NotNull StringBuilder buffer) {
-      buffer
-        .append(TIMESTAMP_FORMAT.format(entry.getTimestamp()))
-        .append(" ").append(entry.getSequenceNumber())
-        .append(" ").append(entry.getLevelName())
-        .append(" ").append(entry.getCategory())
-        .append(" ").append(entry.getMessage());
-      if (!entry.getMessage().endsWith("\n")) {
-        buffer.append("\n");
+      final FlutterLogEntry entry = getEntry();
+      if (entry != null) {
+        FlutterLogTree.describeTo(entry, buffer);
       }
     }
   }
 
+  /**
+   * Appends a line describing the entry, as copied to the clipboard.
+   */
+  static void describeTo(@NotNull FlutterLogEntry entry, @NotNull StringBuilder buffer) {
+    buffer
+      .append(TIMESTAMP_FORMAT.format(entry.getTimestamp()))
+      .append(" ").append(entry.getSequenceNumber())
+      .append(" ").append(entry.getLevelName())
+      .append(" ").append(entry.getCategory())
+      .append(" ").append(entry.getMessage());
+    if (!entry.getMessage().endsWith("\n")) {
+      buffer.append("\n");
+    }
+  }
+
   private static final RowFilter<TableModel, Object> EMPTY_FILTER = new RowFilter<TableModel, Object>() {
     @Override
     public boolean include(Entry<? extends TableModel, ?> entry) {
@@ -379,6 +482,21 @@ public class FlutterLogTree extends TreeTable {
     }
   };
 
+  private static class FilterResultsRowFilter extends RowFilter<TableModel, Object> {
+    @NotNull
+    private final FlutterLogFilterResults results;
+
+    FilterResultsRowFilter(@NotNull FlutterLogFilterResults results) {
+      this.results = results;
+    }
+
+    @Override
+    public boolean include(Entry<? extends TableModel, ?> entry) {
+      final FlutterEventNode node = ((FlutterTreeTableModel)entry.getModel()).getNode((Integer)entry.getIdentifier());
+      return node == null || results.matches(node.getSequenceNumber());
+    }
+  }
+
   public interface EntryModel {
     SimpleTextAttributes style(@Nullable FlutterLogEntry entry, int attributes);
   }
@@ -392,6 +510,11 @@ public class FlutterLogTree extends TreeTable {
 
   private final TreeModel model;
   private FlutterLogFilterPanel.FilterParam filter;
+  /**
+   * Results for the latest filter while existing rows are evaluated in the background; null once
+   * they are applied to the row sorter.
+   */
+  private volatile FlutterLogFilterResults pendingResults;
   @NotNull
   private final TableRowSorter<TableModel> rowSorter;
   @NotNull
@@ -527,43 +650,27 @@ public class FlutterLogTree extends TreeTable {
       return;
     }
     this.filter = filter;
-    rowSorter.setRowFilter(getRowFilter(filter));
-  }
-
-  private RowFilter<TableModel, Object> getRowFilter(@NotNull FlutterLogFilterPanel.FilterParam filter) {
-    final RowFilter<TableModel, Object> logLevelFilter = RowFilter
-      .numberFilter(RowFilter.ComparisonType.AFTER, filter.getLogLevel().value - 1, FlutterTreeTableModel.ColumnIndex.LOG_LEVEL.index);
-    final RowFilter<TableModel, Object> expressionFilter = getExpressionFilter(filter);
-    return expressionFilter != null ? RowFilter.andFilter(Arrays.asList(logLevelFilter, expressionFilter)) : logLevelFilter;
-  }
 
-  private RowFilter<TableModel, Object> getExpressionFilter(@NotNull FlutterLogFilterPanel.FilterParam filter) {
-    final String nonNullExpression = filter.getExpression() == null ? "" : filter.getExpression();
-    if (!nonNullExpression.isEmpty() || filter.isMatchCase() || filter.isRegex()) {
-      final String quoteRegex = filter.isRegex() ? nonNullExpression : Pattern.quote(nonNullExpression);
-      final String matchCaseRegex = filter.isMatchCase() ? "" : "(?i)";
-      final String standardRegex = matchCaseRegex + "(?s).*" + quoteRegex + ".*";
-      try {
-        return RowFilter.regexFilter(
-          standardRegex,
-          FlutterTreeTableModel.ColumnIndex.MESSAGE.index,
-          FlutterTreeTableModel.ColumnIndex.CATEGORY.index
-        );
-      }
-      catch (PatternSyntaxException e) {
-        // TODO(pq): Notify user; in the meantime, just fall-through.
+    // Evaluate the existing rows off the UI thread, abandoning the work if the filter changes again.
+    // Until the results are applied, the previous filter stays in place. Afterwards, the row sorter
+    // only evaluates rows that have not been seen yet, such as newly appended ones.
+    final FlutterLogFilterResults results = new FlutterLogFilterResults(FlutterLogFilter.create(filter), model.log.getStore());
+    pendingResults = results;
+    final int[] sequenceNumbers = model.getSequenceNumbers();
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      if (!results.evaluate(sequenceNumbers, () -> pendingResults != results)) {
+        return;
       }
-    }
-
-    return null;
+      model.uiExec(() -> {
+        if (pendingResults == results) {
+          pendingResults = null;
+          rowSorter.setRowFilter(new FilterResultsRowFilter(results));
+        }
+      }, 0);
+    });
   }
 
   void append(@NotNull FlutterLogEntry entry, boolean selectNode) {
-    if (entry.getKind() == FlutterLogEntry.Kind.RELOAD && model.getLogPreferences().isClearOnReload() ||
-        entry.getKind() == FlutterLogEntry.Kind.RESTART && model.getLogPreferences().isClearOnRestart()
-    ) {
-      clearEntries();
-    }
     model.appendNode(entry, selectNode);
   }
 
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.logging;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adds log entries to the root of a {@link FlutterLogTree} in batches.
+ * <p>
+ * Entries may be queued from any thread. The first entry queued after a flush asks the host to
+ * schedule the next one. Each flush runs on the UI thread, adds every queued entry to the tree and
+ * fires a single tree model event for them.
+ */
+class FlutterLogTreeBatcher {
+  interface Host {
+    /**
+     * Arranges for {@link #flush()} to be called on the UI thread.
+     */
+    void scheduleFlush();
+
+    /**
+     * Returns whether adding the entry, such as a reload when clearing on reload, clears the log.
+     */
+    boolean shouldClearBefore(@NotNull FlutterLogEntry entry);
+
+    /**
+     * Drops the entries older than the given one from the log, before the tree drops their nodes.
+     */
+    void clearBefore(@NotNull FlutterLogEntry entry);
+  }
+
+  @NotNull
+  private final DefaultTreeModel model;
+  @NotNull
+  private final FlutterLogStore store;
+  @NotNull
+  private final Host host;
+
+  /**
+   * Entries appended since the last flush. Synchronize on the list.
+   */
+  private final List<PendingNode> pendingNodes = new ArrayList<>();
+  private boolean flushScheduled;
+
+  @Nullable
+  private TreePath pathToReveal;
+
+  /**
+   * Creates a batcher for a model whose root is a {@link FlutterLogTree.LogRootTreeNode}.
+   */
+  FlutterLogTreeBatcher(@NotNull DefaultTreeModel model, @NotNull FlutterLogStore store, @NotNull Host host) {
+    this.model = model;
+    this.store = store;
+    this.host = host;
+  }
+
+  /**
+   * Queues the entry to be added to the tree.
+   *
+   * @param selectNode whether to select and reveal the entry's row once it is added
+   */
+  void add(@NotNull FlutterLogEntry entry, boolean selectNode) {
+    synchronized (pendingNodes) {
+      pendingNodes.add(new PendingNode(entry, selectNode));
+      if (flushScheduled) {
+        return;
+      }
+      flushScheduled = true;
+    }
+    host.scheduleFlush();
+  }
+
+  /**
+   * Drops the queued entries.
+   */
+  void clear() {
+    synchronized (pendingNodes) {
+      pendingNodes.clear();
+    }
+  }
+
+  /**
+   * Adds the queued entries to the tree.
+   * <p>
+   * First removes the rows of entries the store has dropped. Then adds a row for each queued entry
+   * the store still has, and fires one nodesWereInserted event for them, or one
+   * nodeStructureChanged event if an entry cleared the log.
+   *
+   * @return whether any rows were added
+   */
+  boolean flush() {
+    final List<PendingNode> batch;
+    synchronized (pendingNodes) {
+      batch = new ArrayList<>(pendingNodes);
+      pendingNodes.clear();
+      flushScheduled = false;
+    }
+    pathToReveal = null;
+    if (batch.isEmpty()) {
+      return false;
+    }
+
+    removeDroppedNodes();
+
+    final FlutterLogTree.LogRootTreeNode root = getRoot();
+    final int oldChildCount = root.getChildCount();
+    final int firstSequence = store.getFirstSequenceNumber();
+    boolean cleared = false;
+    for (PendingNode pending : batch) {
+      if (pending.entry.getSequenceNumber() < firstSequence) {
+        // Dropped by the store before it could be shown.
+        continue;
+      }
+      if (host.shouldClearBefore(pending.entry)) {
+        // Keep the reload entry itself.
+        host.clearBefore(pending.entry);
+        root.removeAllChildren();
+        pathToReveal = null;
+        cleared = true;
+      }
+
+      final FlutterLogTree.FlutterEventNode node = new FlutterLogTree.FlutterEventNode(store, pending.entry);
+      root.add(node);
+      if (pending.selectNode) {
+        pathToReveal = new TreePath(node.getPath());
+      }
+    }
+
+    if (cleared) {
+      model.nodeStructureChanged(root);
+      return true;
+    }
+    final int[] indices = new int[root.getChildCount() - oldChildCount];
+    if (indices.length == 0) {
+      return false;
+    }
+    for (int i = 0; i < indices.length; i++) {
+      indices[i] = oldChildCount + i;
+    }
+    model.nodesWereInserted(root, indices);
+    return true;
+  }
+
+  /**
+   * Returns the row to select and reveal after the last flush, if an entry asked for it.
+   */
+  @Nullable
+  TreePath getPathToReveal() {
+    return pathToReveal;
+  }
+
+  /**
+   * Removes the rows of the entries that the store has dropped since the last flush, which are
+   * the leading rows, so the tree does not grow without bound or show blank rows.
+   */
+  private void removeDroppedNodes() {
+    final FlutterLogTree.LogRootTreeNode root = getRoot();
+    final int firstSequence = store.getFirstSequenceNumber();
+    int count = 0;
+    while (count < root.getChildCount() &&
+           ((FlutterLogTree.FlutterEventNode)root.getChildAt(count)).getSequenceNumber() < firstSequence) {
+      count++;
+    }
+    if (count == 0) {
+      return;
+    }
+
+    final int[] indices = new int[count];
+    for (int i = 0; i < count; i++) {
+      indices[i] = i;
+    }
+    final Object[] removed = root.removeLeadingChildren(count);
+    model.nodesWereRemoved(root, indices, removed);
+  }
+
+  @NotNull
+  private FlutterLogTree.LogRootTreeNode getRoot() {
+    return (FlutterLogTree.LogRootTreeNode)model.getRoot();
+  }
+
+  private static class PendingNode {
+    @NotNull final FlutterLogEntry entry;
+    final boolean selectNode;
+
+    PendingNode(@NotNull FlutterLogEntry entry, boolean selectNode) {
+      this.entry = entry;
+      this.selectNode = selectNode;
+    }
+  }
+}
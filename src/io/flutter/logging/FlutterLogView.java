@@ -161,7 +161,9 @@ public class FlutterLogView extends JPanel implements ConsoleView, DataProvider,
         new ClearOnRestartAction(),
         new ClearOnReloadAction(),
         new Separator(),
-        new ShowColorsAction()
+        new ShowColorsAction(),
+        new Separator(),
+        new ShowSuppressedEntriesAction()
       );
       if (ENABLE_LOGGING_CHANNELS) {
         actionGroup.addAll(Arrays.asList(new Separator(), new ConfigureChannelsAction()));
@@ -324,6 +326,26 @@ public class FlutterLogView extends JPanel implements ConsoleView, DataProvider,
     }
   }
 
+  private class ShowSuppressedEntriesAction extends AnAction {
+    ShowSuppressedEntriesAction() {
+      super("Show Suppressed Entries...", "Show the most recent entries suppressed by rate limiting", null);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+      final StringBuilder buffer = new StringBuilder();
+      for (FlutterLogEntry entry : getFlutterLog().getSuppressedEntries()) {
+        FlutterLogTree.describeTo(entry, buffer);
+      }
+      suppressedEntriesPopup.showLogDialog(buffer.toString(), "Suppressed Log Entries");
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+      e.getPresentation().setEnabled(getFlutterLog().hasSuppressedEntries());
+    }
+  }
+
   private class ConfigureChannelsAction extends AnAction {
     ConfigureChannelsAction() {
       super("Configure channels...");
@@ -511,6 +533,8 @@ public class FlutterLogView extends JPanel implements ConsoleView, DataProvider,
   @NotNull
   private final ClearLogAction clearLogAction = new ClearLogAction();
   @NotNull
+  private final FlutterLogEntryPopup suppressedEntriesPopup = new FlutterLogEntryPopup();
+  @NotNull
   private final DataPanel dataPanel;
   private JScrollPane dataPane;
   private Splitter treeSplitter;
@@ -613,7 +637,10 @@ public class FlutterLogView extends JPanel implements ConsoleView, DataProvider,
   private void updateDataPanel() {
     final List<FlutterLogTree.FlutterEventNode> selectedNodes = logTree.getSelectedNodes();
     if (!selectedNodes.isEmpty()) {
-      dataPanel.update(selectedNodes.get(0).entry);
+      final FlutterLogEntry entry = selectedNodes.get(0).getEntry();
+      if (entry != null) {
+        dataPanel.update(entry);
+      }
     }
   }
 
@@ -854,7 +881,7 @@ public class FlutterLogView extends JPanel implements ConsoleView, DataProvider,
 
   @Override
   public void dispose() {
-
+    getFlutterLog().dispose();
   }
 
   @Nullable
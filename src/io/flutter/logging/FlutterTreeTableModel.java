@@ -7,15 +7,20 @@ package io.flutter.logging;
 
 import com.intellij.ui.treeStructure.treetable.TreeTable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.event.TableModelListener;
 import javax.swing.table.TableModel;
+import javax.swing.tree.TreePath;
 
 class FlutterTreeTableModel implements TableModel {
+  @NotNull
+  private final TreeTable treeTable;
   @NotNull
   private final TableModel model;
 
   FlutterTreeTableModel(@NotNull TreeTable treeTable) {
+    this.treeTable = treeTable;
     model = treeTable.getModel();
   }
 
@@ -46,15 +51,31 @@ class FlutterTreeTableModel implements TableModel {
 
   @Override
   public Object getValueAt(int rowIndex, int columnIndex) {
-    final Object obj = model.getValueAt(rowIndex, columnIndex);
     final ColumnIndex index = ColumnIndex.forIndex(columnIndex);
 
+    // Answer level and category from the log's index, to avoid reading spilled entries back in.
+    if (index == ColumnIndex.LOG_LEVEL || index == ColumnIndex.CATEGORY) {
+      final FlutterLogTree.FlutterEventNode node = getNode(rowIndex);
+      if (node != null) {
+        return index == ColumnIndex.LOG_LEVEL ? (Object)node.getLogLevel() : node.getCategory();
+      }
+    }
+
+    final Object obj = model.getValueAt(rowIndex, columnIndex);
+
     if (index != ColumnIndex.INVALID && obj instanceof FlutterLogEntry) {
       return index.toValue((FlutterLogEntry)obj);
     }
     return obj;
   }
 
+  @Nullable
+  FlutterLogTree.FlutterEventNode getNode(int rowIndex) {
+    final TreePath path = treeTable.getTree().getPathForRow(rowIndex);
+    final Object node = path == null ? null : path.getLastPathComponent();
+    return node instanceof FlutterLogTree.FlutterEventNode ? (FlutterLogTree.FlutterEventNode)node : null;
+  }
+
   @Override
   public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
     model.setValueAt(aValue, rowIndex, columnIndex);
@@ -252,11 +252,17 @@ public class FlutterWidgetPerf implements Disposable, WidgetPerfListener {
   @Override
   public void addPerfListener(PerfModel listener) {
     perfListeners.add(listener);
+    updateProviderVisibility();
   }
 
   @Override
   public void removePerfListener(PerfModel listener) {
     perfListeners.remove(listener);
+    updateProviderVisibility();
+  }
+
+  private void updateProviderVisibility() {
+    perfProvider.setVisible(!currentEditors.isEmpty() || !perfListeners.isEmpty());
   }
 
   private StatsForReportKind getStatsForKind(PerfReportKind kind) {
@@ -410,6 +416,7 @@ public class FlutterWidgetPerf implements Disposable, WidgetPerfListener {
     AsyncUtils.invokeAndWait(() -> {
       currentEditors.clear();
       currentEditors.addAll(editors);
+      updateProviderVisibility();
 
       // Harvest old editors.
       harvestInvalidEditors(editors);
@@ -10,18 +10,19 @@ import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.util.concurrency.Semaphore;
+import io.flutter.vmService.TokenPositionTable;
 import org.dartlang.vm.service.VmService;
 import org.dartlang.vm.service.consumer.GetIsolateConsumer;
-import org.dartlang.vm.service.consumer.GetLibraryConsumer;
-import org.dartlang.vm.service.consumer.GetObjectConsumer;
 import org.dartlang.vm.service.element.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /// XXX probably not needed.
 class ScriptManager {
@@ -32,15 +33,14 @@ class ScriptManager {
   private final VirtualFileManager virtualFileManager = VirtualFileManager.getInstance();
 
   private IsolateRef isolateRef;
-  private final Map<String, Script> scriptMap = new HashMap<>();
-  private final Map<String, Map<Integer, Pair<Integer, Integer>>> linesAndColumnsMap = new HashMap<>();
+  private final Map<String, TokenPositionTable> linesAndColumnsMap = new HashMap<>();
 
   public ScriptManager(@NotNull VmService vmService) {
     this.vmService = vmService;
   }
 
   public void reset() {
-    scriptMap.clear();
+    linesAndColumnsMap.clear();
   }
 
   public void setCurrentIsolate(IsolateRef isolateRef) {
@@ -104,92 +104,46 @@ class ScriptManager {
 
   @Nullable
   private Library getLibrary(LibraryRef libraryRef) {
-    // TODO(devoncarew): Consider changing the signature to `CompletableFuture getLibrary(LibraryRef instance)`
-    // (see also the EvalOnDartLibrary implementation).
-
-    final Ref<Library> resultRef = Ref.create();
-    final Semaphore semaphore = new Semaphore();
-    semaphore.down();
-
-    vmService.getLibrary(isolateRef.getId(), libraryRef.getId(), new GetLibraryConsumer() {
-      @Override
-      public void received(Library library) {
-        resultRef.set(library);
-        semaphore.up();
-      }
-
-      @Override
-      public void onError(RPCError error) {
-        semaphore.up();
-      }
-    });
-    semaphore.waitFor(RESPONSE_WAIT_TIMEOUT);
-    return resultRef.get();
+    return waitFor(vmService.getObjectCache().getLibrary(isolateRef.getId(), libraryRef.getId()));
   }
 
   public void populateFor(ScriptRef scriptRef) {
-    if (!scriptMap.containsKey(scriptRef.getId())) {
-      scriptMap.put(scriptRef.getId(), getScriptSync(scriptRef));
-      linesAndColumnsMap.put(scriptRef.getId(), createTokenPosToLineAndColumnMap(scriptMap.get(scriptRef.getId())));
+    if (!linesAndColumnsMap.containsKey(scriptRef.getId())) {
+      linesAndColumnsMap.put(scriptRef.getId(), createTokenPositionTable(getScriptSync(scriptRef)));
     }
   }
 
   public Pair<Integer, Integer> getLineColumnPosForTokenPos(@NotNull ScriptRef scriptRef, int tokenPos) {
-    final Map<Integer, Pair<Integer, Integer>> map = linesAndColumnsMap.get(scriptRef.getId());
-    return map == null ? null : map.get(tokenPos);
+    final TokenPositionTable table = linesAndColumnsMap.get(scriptRef.getId());
+    if (table == null) {
+      return null;
+    }
+    final int line = table.getLine(tokenPos);
+    return line < 0 ? null : Pair.create(line, table.getColumn(tokenPos));
   }
 
   private Script getScriptSync(@NotNull final ScriptRef scriptRef) {
-    final Ref<Script> resultRef = Ref.create();
-    final Semaphore semaphore = new Semaphore();
-    semaphore.down();
-
-    vmService.getObject(isolateRef.getId(), scriptRef.getId(), new GetObjectConsumer() {
-      @Override
-      public void received(Obj script) {
-        resultRef.set((Script)script);
-        semaphore.up();
-      }
-
-      @Override
-      public void received(Sentinel response) {
-        semaphore.up();
-      }
-
-      @Override
-      public void onError(RPCError error) {
-        semaphore.up();
-      }
-    });
-
-    semaphore.waitFor(RESPONSE_WAIT_TIMEOUT);
-    return resultRef.get();
+    return waitFor(vmService.getObjectCache().getScript(isolateRef.getId(), scriptRef.getId()));
   }
 
-  private static Map<Integer, Pair<Integer, Integer>> createTokenPosToLineAndColumnMap(@Nullable final Script script) {
-    if (script == null) {
-      return null;
+  @Nullable
+  private static <T> T waitFor(@NotNull CompletableFuture<T> future) {
+    try {
+      return future.get(RESPONSE_WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
     }
-
-    // Each subarray consists of a line number followed by (tokenPos, columnNumber) pairs;
-    // see https://github.com/dart-lang/vm_service_drivers/blob/master/dart/tool/service.md#script.
-    final Map<Integer, Pair<Integer, Integer>> result = new HashMap<>();
-
-    for (List<Integer> lineAndPairs : script.getTokenPosTable()) {
-      final Iterator<Integer> iterator = lineAndPairs.iterator();
-      final int line = Math.max(0, iterator.next() - 1);
-      while (iterator.hasNext()) {
-        final int tokenPos = iterator.next();
-        final int column = Math.max(0, iterator.next() - 1);
-        result.put(tokenPos, Pair.create(line, column));
-      }
+    catch (InterruptedException | ExecutionException | TimeoutException e) {
+      return null;
     }
+  }
 
-    return result;
+  @Nullable
+  private static TokenPositionTable createTokenPositionTable(@Nullable final Script script) {
+    return script == null ? null : TokenPositionTable.forScript(script);
   }
 
   @Nullable
   public Script getScriptFor(@NotNull ScriptRef ref) {
-    return scriptMap.get(ref.getId());
+    final CompletableFuture<Script> script = vmService.getObjectCache().getScript(isolateRef.getId(), ref.getId());
+    return script.isDone() ? script.join() : null;
   }
 }
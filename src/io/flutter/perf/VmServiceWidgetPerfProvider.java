@@ -6,9 +6,11 @@
 package io.flutter.perf;
 
 import com.google.gson.JsonObject;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.fileEditor.FileEditor;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import io.flutter.inspector.DiagnosticsNode;
 import io.flutter.inspector.InspectorService;
 import io.flutter.run.daemon.FlutterApp;
@@ -21,6 +23,7 @@ import org.dartlang.vm.service.element.Event;
 import org.dartlang.vm.service.element.IsolateRef;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collections;
 import java.util.concurrent.CompletableFuture;
 
 public class VmServiceWidgetPerfProvider implements WidgetPerfProvider {
@@ -32,7 +35,13 @@ public class VmServiceWidgetPerfProvider implements WidgetPerfProvider {
   private boolean isStarted;
   private boolean isDisposed = false;
   private boolean connected;
+  private boolean visible;
   private StreamSubscription<IsolateRef> isolateRefStreamSubscription;
+  /**
+   * The lease on the Extension stream, which carries the widget rebuild and repaint counts. Held only
+   * while the stats are shown.
+   */
+  private Disposable extensionStreamLease;
   private CompletableFuture<InspectorService> inspectorService;
 
   VmServiceWidgetPerfProvider(@NotNull FlutterApp app) {
@@ -110,6 +119,7 @@ public class VmServiceWidgetPerfProvider implements WidgetPerfProvider {
     }
     isDisposed = true;
     connected = false;
+    updateExtensionStreamLease();
 
     // TODO(devoncarew): This method will be available in a future version of the service protocol library.
     //if (vmServiceListener != null) {
@@ -130,6 +140,9 @@ public class VmServiceWidgetPerfProvider implements WidgetPerfProvider {
     isolateRefStreamSubscription = vmServiceManager.getCurrentFlutterIsolate(
       (isolateRef) -> requestRepaint(When.soon), false);
 
+    updateExtensionStreamLease();
+
+    // Widget perf events are resolved to source locations, which can be slow, so handle them on a lane of our own.
     vmService.addVmServiceListener(new VmServiceListenerAdapter() {
       @Override
       public void received(String streamId, Event event) {
@@ -139,7 +152,7 @@ public class VmServiceWidgetPerfProvider implements WidgetPerfProvider {
       @Override
       public void connectionClosed() {
       }
-    });
+    }, Collections.singleton(VmService.EXTENSION_STREAM_ID), AppExecutorUtil.getAppExecutorService());
 
     inspectorService = InspectorService.create(app, app.getFlutterDebugProcess(), app.getVmService());
     inspectorService.whenCompleteAsync((service, throwable) -> {
@@ -149,6 +162,25 @@ public class VmServiceWidgetPerfProvider implements WidgetPerfProvider {
     requestRepaint(When.soon);
   }
 
+  @Override
+  public synchronized void setVisible(boolean visible) {
+    this.visible = visible;
+    updateExtensionStreamLease();
+  }
+
+  private synchronized void updateExtensionStreamLease() {
+    final VMServiceManager vmServiceManager = app.getVMServiceManager();
+    if (visible && connected && !isDisposed && vmServiceManager != null) {
+      if (extensionStreamLease == null) {
+        extensionStreamLease = vmServiceManager.getStreamSubscriptions().listen(VmService.EXTENSION_STREAM_ID);
+      }
+    }
+    else if (extensionStreamLease != null) {
+      extensionStreamLease.dispose();
+      extensionStreamLease = null;
+    }
+  }
+
   private IsolateRef getCurrentIsolateRef() {
     assert app.getVMServiceManager() != null;
     return app.getVMServiceManager().getCurrentFlutterIsolateRaw();
@@ -24,6 +24,12 @@ public interface WidgetPerfProvider extends Disposable {
 
   boolean isConnected();
 
+  /**
+   * Sets whether any editor or panel is showing the perf stats, so that the provider only subscribes
+   * to the VM streams it reads while they are shown.
+   */
+  void setVisible(boolean visible);
+
   boolean shouldDisplayPerfStats(FileEditor editor);
 
   CompletableFuture<DiagnosticsNode> getWidgetTree();
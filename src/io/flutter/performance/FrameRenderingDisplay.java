@@ -10,10 +10,12 @@ import com.intellij.openapi.util.Disposer;
 import com.intellij.ui.JBColor;
 import com.intellij.ui.components.JBLabel;
 import com.intellij.ui.components.JBPanel;
+import com.intellij.util.Alarm;
 import com.intellij.util.ui.JBUI;
 import com.intellij.util.ui.UIUtil;
 import io.flutter.run.daemon.FlutterApp;
 import io.flutter.vmService.DisplayRefreshRateManager;
+import io.flutter.vmService.FlutterFrameStore;
 import io.flutter.vmService.FlutterFramesMonitor;
 import io.flutter.vmService.VMServiceManager;
 import org.jetbrains.annotations.NotNull;
@@ -21,13 +23,13 @@ import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseEvent;
 import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
 import java.text.DecimalFormat;
 import java.util.List;
 import java.util.*;
-
-// TODO(devoncarew): We have a drawing artifacts issue - tall frame columns can be left behind
-// as artifacts when they scroll off the screen.
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class FrameRenderingDisplay {
   static final DecimalFormat df = new DecimalFormat();
@@ -43,7 +45,8 @@ public class FrameRenderingDisplay {
     assert app.getVMServiceManager() != null;
     final FlutterFramesMonitor flutterFramesMonitor = app.getVMServiceManager().getFlutterFramesMonitor();
 
-    final FrameRenderingPanel frameRenderingPanel = new FrameRenderingPanel(flutterFramesMonitor, app.getDisplayRefreshRateManager());
+    final FrameRenderingPanel frameRenderingPanel =
+      new FrameRenderingPanel(flutterFramesMonitor, app.getDisplayRefreshRateManager(), parentDisposable);
 
     final JBLabel targetFrameTimeLabel = new JBLabel();
     targetFrameTimeLabel.setFont(UIUtil.getLabelFont(UIUtil.FontSize.SMALL));
@@ -73,12 +76,7 @@ public class FrameRenderingDisplay {
     panel.add(frameRenderingPanel);
     panel.add(targetFrameTimePanel);
 
-    final FlutterFramesMonitor.Listener listener = event -> {
-      frameRenderingPanel.update();
-
-      // Repaint this after each frame so that the label does not get painted over by the frame rendering panel.
-      SwingUtilities.invokeLater(targetFrameTimeLabel::repaint);
-    };
+    final FlutterFramesMonitor.Listener listener = event -> frameRenderingPanel.update();
 
     flutterFramesMonitor.addListener(listener);
     Disposer.register(parentDisposable, () -> flutterFramesMonitor.removeListener(listener));
@@ -100,35 +98,79 @@ public class FrameRenderingDisplay {
   }
 }
 
+/**
+ * Paints a bar for each recent frame, newest on the right.
+ * <p>
+ * Bars are drawn into a backing image. When new frames arrive the existing bars are shifted left
+ * and only the new bars are drawn; the image is only redrawn in full when the size or frame budget
+ * changes.
+ */
 class FrameRenderingPanel extends JPanel {
   private final FlutterFramesMonitor framesMonitor;
 
   private final DisplayRefreshRateManager displayRefreshRateManager;
 
-  private final Map<FlutterFramesMonitor.FlutterFrameEvent, JComponent> frameWidgets = new HashMap<>();
-
-  private Rectangle lastSavedBounds;
-
-  FrameRenderingPanel(@NotNull FlutterFramesMonitor framesMonitor, @NotNull DisplayRefreshRateManager displayRefreshRateManager) {
+  private final Alarm repaintAlarm;
+  private final AtomicBoolean repaintPending = new AtomicBoolean();
+  private volatile long lastRepaintMillis;
+
+  private BufferedImage backingImage;
+  private int backingWidth;
+  private int backingHeight;
+  private int backingTargetMicros;
+  private long paintedFrameCount;
+
+  /**
+   * The frames shown in the backing image, and the distance from the right edge to the left edge
+   * of each frame's bar.
+   */
+  private FlutterFrameStore.Snapshot paintedFrames;
+  private int[] barOffsets = new int[0];
+
+  FrameRenderingPanel(@NotNull FlutterFramesMonitor framesMonitor,
+                      @NotNull DisplayRefreshRateManager displayRefreshRateManager,
+                      @NotNull Disposable parentDisposable) {
     this.framesMonitor = framesMonitor;
     this.displayRefreshRateManager = displayRefreshRateManager;
+    this.repaintAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, parentDisposable);
 
     setLayout(null);
     final Color color = UIUtil.getLabelDisabledForeground();
     //noinspection UseJBColor
     setForeground(new Color(color.getRed(), color.getGreen(), color.getBlue(), 0x7f));
+    ToolTipManager.sharedInstance().registerComponent(this);
   }
 
+  /**
+   * Schedule a repaint for newly arrived frames.
+   * <p>
+   * This may be called on any thread. Repaints are coalesced so that the panel is painted at most
+   * once per display refresh.
+   */
   public void update() {
-    SwingUtilities.invokeLater(this::updateFromFramesMonitor);
+    if (repaintAlarm.isDisposed() || !repaintPending.compareAndSet(false, true)) {
+      return;
+    }
+    final long minIntervalMillis = Math.round(1000.0 / displayRefreshRateManager.getCurrentDisplayRefreshRateRaw());
+    final long delay = Math.max(0, lastRepaintMillis + minIntervalMillis - System.currentTimeMillis());
+    repaintAlarm.addRequest(() -> {
+      repaintPending.set(false);
+      lastRepaintMillis = System.currentTimeMillis();
+      // Repaint the stacked siblings as well so that the target frame time label is not painted over.
+      final Container parent = getParent();
+      if (parent != null) {
+        parent.repaint();
+      }
+      else {
+        repaint();
+      }
+    }, delay);
   }
 
-  public void doLayout() {
-    if (lastSavedBounds != null && !lastSavedBounds.equals(getBounds())) {
-      lastSavedBounds = null;
-
-      SwingUtilities.invokeLater(this::updateFromFramesMonitor);
-    }
+  @Override
+  public void updateUI() {
+    super.updateUI();
+    backingImage = null;
   }
 
   private static final Stroke STROKE = new BasicStroke(
@@ -139,8 +181,14 @@ class FrameRenderingPanel extends JPanel {
   protected void paintComponent(Graphics g) {
     super.paintComponent(g);
 
-    final Rectangle bounds = getBounds();
-    final int height = bounds.height;
+    final int width = getWidth();
+    final int height = getHeight();
+    if (width <= 0 || height <= 0) {
+      return;
+    }
+
+    updateBackingImage(width, height);
+    UIUtil.drawImage(g, backingImage, 0, 0, null);
 
     if (height <= 20) {
       return;
@@ -156,7 +204,7 @@ class FrameRenderingPanel extends JPanel {
       final Path2D path = new Path2D.Float();
       // Slight left indent to allow space for [targetFrameTimeLabel].
       path.moveTo(34, height - y);
-      path.lineTo(bounds.width, height - y);
+      path.lineTo(width, height - y);
       g2.draw(path);
     }
     finally {
@@ -164,67 +212,125 @@ class FrameRenderingPanel extends JPanel {
     }
   }
 
-  void updateFromFramesMonitor() {
-    final Set<FlutterFramesMonitor.FlutterFrameEvent> frames = new HashSet<>(frameWidgets.keySet());
-
-    final Rectangle bounds = getBounds();
-    lastSavedBounds = bounds;
-
-    final int height = bounds.height;
-    final int inc = height <= 20 ? 1 : 2;
-
-    int x = bounds.width;
+  @Override
+  public String getToolTipText(MouseEvent event) {
+    final FlutterFrameStore.Snapshot frames = paintedFrames;
+    if (frames == null) {
+      return null;
+    }
+    final int index = findFrameAt(getWidth() - event.getX());
+    if (index < 0) {
+      return null;
+    }
 
-    final int widgetWidth = Math.min(Math.max(Math.round(height / 8.0f), 2), 5);
+    final String elapsed = FrameRenderingDisplay.df.format(frames.getElapsedMicros(index) / 1000.0d);
+    return frames.isSlowFrame(index)
+           ? "This frame took " + elapsed + "ms to render, which\ncan cause frame rate to drop below " +
+             Math.round(displayRefreshRateManager.getCurrentDisplayRefreshRateRaw()) + " FPS."
+           : "This frame took " + elapsed + "ms to render.";
+  }
 
-    synchronized (framesMonitor) {
-      for (FlutterFramesMonitor.FlutterFrameEvent frame : framesMonitor.frames) {
-        if (x + widgetWidth < 0) {
-          break;
-        }
+  /**
+   * Return the index of the frame whose bar covers the given distance from the right edge, or -1.
+   */
+  private int findFrameAt(int offsetFromRight) {
+    final int barWidth = getBarWidth(getHeight());
+    // Offsets increase with the frame index, so the bar is the first one starting at or past the point.
+    int low = 0;
+    int high = barOffsets.length - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (barOffsets[mid] < offsetFromRight) {
+        low = mid + 1;
+      }
+      else {
+        high = mid - 1;
+      }
+    }
+    if (low < barOffsets.length && barOffsets[low] - barWidth < offsetFromRight) {
+      return low;
+    }
+    return -1;
+  }
 
-        x -= (widgetWidth + inc);
+  private void updateBackingImage(int width, int height) {
+    final FlutterFrameStore.Snapshot frames = framesMonitor.getFrames();
+    final int targetMicros = displayRefreshRateManager.getTargetMicrosPerFrame();
+    final long newFrameCount = frames.getTotalFrameCount() - paintedFrameCount;
+
+    final boolean redrawAll = backingImage == null
+                              || backingWidth != width
+                              || backingHeight != height
+                              || backingTargetMicros != targetMicros
+                              || newFrameCount < 0
+                              || newFrameCount > frames.size();
+    if (!redrawAll && newFrameCount == 0) {
+      return;
+    }
 
-        final float msPerPixel = (2.0f * 1000000.0f / 60.0f) / height;
-        JComponent widget = frameWidgets.get(frame);
-        if (widget != null) {
-          frames.remove(frame);
-        }
-        else {
-          widget = new JLabel();
-          widget.setOpaque(true);
-          widget.setBackground(frame.isSlowFrame() ? JBColor.RED : UIUtil.getLabelForeground());
-          widget.setToolTipText(frame.isSlowFrame()
-                                ? "This frame took " +
-                                  FrameRenderingDisplay.df.format(frame.elapsedMicros / 1000.0d) +
-                                  "ms to render, which\ncan cause frame rate to drop below " +
-                                  Math.round(displayRefreshRateManager.getCurrentDisplayRefreshRateRaw()) + " FPS."
-                                : "This frame took " + FrameRenderingDisplay.df.format(frame.elapsedMicros / 1000.0d) + "ms to render.");
-          frameWidgets.put(frame, widget);
-          add(widget);
-        }
+    final int barWidth = getBarWidth(height);
+    final int gap = height <= 20 ? 1 : 2;
+    barOffsets = computeBarOffsets(frames, barWidth, gap, width);
 
-        int pixelHeight = Math.round(frame.elapsedMicros / msPerPixel);
+    if (redrawAll) {
+      backingImage = UIUtil.createImage(this, width, height, BufferedImage.TYPE_INT_ARGB);
+      backingWidth = width;
+      backingHeight = height;
+      backingTargetMicros = targetMicros;
+    }
+    final Graphics2D g = (Graphics2D)backingImage.getGraphics();
+    try {
+      final int count;
+      if (redrawAll) {
+        count = barOffsets.length;
+      }
+      else {
+        // Shift the existing bars left to make room for the new ones.
+        count = Math.min((int)newFrameCount, barOffsets.length);
+        final int shift = count == 0 ? 0 : barOffsets[count - 1] + (frames.isFrameSetStart(count - 1) ? barWidth : 0);
+        g.copyArea(shift, 0, width - shift, height, -shift, 0);
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(width - shift, 0, shift, height);
+        g.setComposite(AlphaComposite.SrcOver);
+      }
+      final float msPerPixel = (2.0f * 1000000.0f / 60.0f) / height;
+      for (int i = 0; i < count; i++) {
+        g.setColor(frames.isSlowFrame(i) ? JBColor.RED : UIUtil.getLabelForeground());
+        int pixelHeight = Math.round(frames.getElapsedMicros(i) / msPerPixel);
         if (pixelHeight > height) {
           pixelHeight = height;
         }
         pixelHeight = Math.max(1, pixelHeight);
-        widget.setPreferredSize(new Dimension(widgetWidth, pixelHeight));
-        widget.setBounds(x, height - pixelHeight, widgetWidth, pixelHeight);
-
-        // Add a gap between sets of frames.
-        if (frame.frameSetStart) {
-          x -= widgetWidth;
-        }
+        g.fillRect(width - barOffsets[i], height - pixelHeight, barWidth, pixelHeight);
       }
     }
+    finally {
+      g.dispose();
+    }
+
+    paintedFrames = frames;
+    paintedFrameCount = frames.getTotalFrameCount();
+  }
+
+  private static int getBarWidth(int height) {
+    return Math.min(Math.max(Math.round(height / 8.0f), 2), 5);
+  }
 
-    if (!frames.isEmpty()) {
-      for (FlutterFramesMonitor.FlutterFrameEvent frame : frames) {
-        final JComponent widget = frameWidgets.remove(frame);
-        remove(widget);
+  /**
+   * Lay out bars from the right edge, leaving an extra bar width after each frame set.
+   */
+  private static int[] computeBarOffsets(FlutterFrameStore.Snapshot frames, int barWidth, int gap, int width) {
+    final int[] offsets = new int[frames.size()];
+    int offset = 0;
+    int count = 0;
+    for (int i = 0; i < frames.size() && offset < width; i++) {
+      offset += barWidth + gap;
+      offsets[count++] = offset;
+      if (frames.isFrameSetStart(i)) {
+        offset += barWidth;
       }
     }
+    return Arrays.copyOf(offsets, count);
   }
 }
 
@@ -9,9 +9,11 @@ import com.intellij.openapi.Disposable;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.ui.components.JBLabel;
 import com.intellij.ui.components.JBPanel;
+import com.intellij.util.Alarm;
 import com.intellij.util.ui.JBUI;
 import com.intellij.util.ui.UIUtil;
 import io.flutter.run.daemon.FlutterApp;
+import io.flutter.vmService.FlutterFrameStore;
 import io.flutter.vmService.FlutterFramesMonitor;
 import org.jetbrains.annotations.NotNull;
 
@@ -19,16 +21,15 @@ import javax.swing.*;
 import java.awt.*;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class PerfFPSPanel extends JBPanel {
-  private static final NumberFormat fpsFormat = new DecimalFormat();
-
   private static final String PERFORMANCE_TAB_LABEL = "Frame rendering times";
 
-  static {
-    fpsFormat.setMinimumFractionDigits(1);
-    fpsFormat.setMaximumFractionDigits(1);
-  }
+  /**
+   * How often the frames per second label is updated while frames arrive.
+   */
+  private static final int UPDATE_INTERVAL_MS = 250;
 
   private final Disposable parentDisposable;
   private final @NotNull FlutterApp app;
@@ -49,12 +50,8 @@ public class PerfFPSPanel extends JBPanel {
     // FPS
     assert app.getVMServiceManager() != null;
     final FlutterFramesMonitor flutterFramesMonitor = app.getVMServiceManager().getFlutterFramesMonitor();
-    final JBLabel fpsLabel = new JBLabel(" ", SwingConstants.CENTER);
-    fpsLabel.setForeground(UIUtil.getLabelDisabledForeground());
-    final FlutterFramesMonitor.Listener listener = event -> {
-      fpsLabel.setText(fpsFormat.format(flutterFramesMonitor.getFPS()) + " frames per second");
-      SwingUtilities.invokeLater(fpsLabel::repaint);
-    };
+    final FpsLabel fpsLabel = new FpsLabel(flutterFramesMonitor, parentDisposable);
+    final FlutterFramesMonitor.Listener listener = event -> fpsLabel.scheduleUpdate();
     flutterFramesMonitor.addListener(listener);
     Disposer.register(parentDisposable, () -> flutterFramesMonitor.removeListener(listener));
     fpsLabel.setBorder(JBUI.Borders.empty(0, 5));
@@ -67,4 +64,74 @@ public class PerfFPSPanel extends JBPanel {
 
     add(frameRenderingPanel, BorderLayout.CENTER);
   }
+
+  /**
+   * Shows the frames per second, with the frame time stats in its tooltip.
+   * <p>
+   * Frame events arrive on the VM service thread, once per frame. The label is updated on the UI
+   * thread at most once per {@link #UPDATE_INTERVAL_MS}, and the tooltip is only built when shown.
+   */
+  private static class FpsLabel extends JBLabel {
+    @NotNull private final FlutterFramesMonitor framesMonitor;
+    @NotNull private final Alarm updateAlarm;
+    private final AtomicBoolean updatePending = new AtomicBoolean();
+
+    // Only used on the UI thread.
+    private final NumberFormat fpsFormat = new DecimalFormat();
+    private final NumberFormat msFormat = new DecimalFormat();
+
+    FpsLabel(@NotNull FlutterFramesMonitor framesMonitor, @NotNull Disposable parentDisposable) {
+      super(" ", SwingConstants.CENTER);
+      this.framesMonitor = framesMonitor;
+      this.updateAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, parentDisposable);
+      fpsFormat.setMinimumFractionDigits(1);
+      fpsFormat.setMaximumFractionDigits(1);
+      msFormat.setMaximumFractionDigits(1);
+      setForeground(UIUtil.getLabelDisabledForeground());
+      ToolTipManager.sharedInstance().registerComponent(this);
+    }
+
+    /**
+     * Schedules an update for newly arrived frames. This may be called on any thread.
+     */
+    void scheduleUpdate() {
+      if (updateAlarm.isDisposed() || !updatePending.compareAndSet(false, true)) {
+        return;
+      }
+      updateAlarm.addRequest(() -> {
+        updatePending.set(false);
+        final FlutterFrameStore.Snapshot frames = framesMonitor.getFrames();
+        setText(fpsFormat.format(framesMonitor.getFPS(frames)) + " frames per second");
+      }, UPDATE_INTERVAL_MS);
+    }
+
+    @Override
+    public String getToolTipText() {
+      final FlutterFrameStore.Snapshot frames = framesMonitor.getFrames();
+      if (frames.isEmpty()) {
+        return null;
+      }
+
+      final StringBuilder text = new StringBuilder("<html>");
+      text.append("Last ").append(frames.size()).append(" frames: ")
+        .append(msFormat.format(frames.getP50Micros() / 1000.0)).append("ms p50, ")
+        .append(msFormat.format(frames.getP90Micros() / 1000.0)).append("ms p90, ")
+        .append(msFormat.format(frames.getP99Micros() / 1000.0)).append("ms p99, ")
+        .append(frames.getSlowFrameCount()).append(" janky");
+
+      final FlutterFrameStore.History history = framesMonitor.getHistory();
+      if (history.size() > 0) {
+        int frameCount = 0;
+        int slowFrameCount = 0;
+        for (int i = 0; i < history.size(); i++) {
+          frameCount += history.getFrameCount(i);
+          slowFrameCount += history.getSlowFrameCount(i);
+        }
+        text.append("<br>Last ").append(history.size()).append(" active seconds: ")
+          .append(frameCount).append(" frames, ")
+          .append(slowFrameCount).append(" janky");
+      }
+      return text.append("</html>").toString();
+    }
+  }
 }
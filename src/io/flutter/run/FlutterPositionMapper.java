@@ -22,7 +22,6 @@ import com.intellij.xdebugger.XSourcePosition;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
 import com.jetbrains.lang.dart.util.DartResolveUtil;
 import com.jetbrains.lang.dart.util.DartUrlResolver;
-import gnu.trove.THashMap;
 import io.flutter.FlutterUtils;
 import io.flutter.dart.DartPlugin;
 import io.flutter.vmService.DartVmServiceDebugProcess;
@@ -35,7 +34,6 @@ import org.jetbrains.annotations.Nullable;
 import java.io.File;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -90,11 +88,13 @@ public class FlutterPositionMapper implements DartVmServiceDebugProcess.Position
   @Nullable
   private String remoteSourceRoot;
 
-  // TODO(skybrian) clear the cache at hot restart? (Old cache entries seem unlikely to be used again.)
   /**
-   * A cache containing each file version downloaded from Observatory. The key is an isolate id.
+   * Position maps and snapshots for each script version downloaded from Observatory.
+   * <p>
+   * Initialized when the debugger connects.
    */
-  private final Map<String, ObservatoryFile.Cache> fileCache = new THashMap<>();
+  @Nullable
+  private ObservatoryFile.Cache fileCache;
 
   public FlutterPositionMapper(@NotNull Project project,
                                @NotNull VirtualFile sourceRoot,
@@ -117,6 +117,7 @@ public class FlutterPositionMapper implements DartVmServiceDebugProcess.Position
       throw new IllegalStateException("already connected");
     }
     this.scriptProvider = provider;
+    this.fileCache = new ObservatoryFile.Cache(provider);
     this.remoteBaseUri = remoteBaseUri;
   }
 
@@ -245,17 +246,14 @@ public class FlutterPositionMapper implements DartVmServiceDebugProcess.Position
   @Nullable
   private XSourcePosition getSourcePosition(@NotNull final String isolateId, @NotNull final String scriptId,
                                             @NotNull final String scriptUri, int tokenPos) {
-    if (scriptProvider == null) {
+    if (fileCache == null) {
       FlutterUtils.warn(LOG, "attempted to get source position before connected to observatory");
       return null;
     }
 
     final VirtualFile local = findLocalFile(scriptUri);
 
-    final ObservatoryFile.Cache cache =
-      fileCache.computeIfAbsent(isolateId, (id) -> new ObservatoryFile.Cache(id, scriptProvider));
-
-    final ObservatoryFile remote = cache.downloadOrGet(scriptId, local == null);
+    final ObservatoryFile remote = fileCache.downloadOrGet(isolateId, scriptId, local == null);
     if (remote == null) return null;
 
     return remote.createPosition(local, tokenPos);
@@ -11,16 +11,14 @@ import com.intellij.util.PathUtil;
 import com.intellij.xdebugger.XDebuggerUtil;
 import com.intellij.xdebugger.XSourcePosition;
 import com.jetbrains.lang.dart.DartFileType;
-import gnu.trove.THashMap;
-import gnu.trove.TIntObjectHashMap;
 import io.flutter.vmService.DartVmServiceDebugProcess;
+import io.flutter.vmService.TokenPositionTable;
 import org.dartlang.vm.service.element.Script;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * A specific version of a Dart file, as downloaded from Observatory.
@@ -36,7 +34,7 @@ class ObservatoryFile {
    * Maps an observatory token id to its line and column.
    */
   @Nullable
-  private final TIntObjectHashMap<Position> positionMap;
+  private final TokenPositionTable positionMap;
 
   /**
    * User-visible source code downloaded from Observatory.
@@ -50,13 +48,7 @@ class ObservatoryFile {
   private final LightVirtualFile snapshot;
 
   ObservatoryFile(@NotNull Script script, boolean wantSnapshot) {
-    final @Nullable List<List<Integer>> tokenPosTable = script.getTokenPosTable();
-    if (tokenPosTable != null) {
-      positionMap = createPositionMap(tokenPosTable);
-    }
-    else {
-      positionMap = null;
-    }
+    positionMap = TokenPositionTable.forScript(script);
     snapshot = wantSnapshot ? createSnapshot(script) : null;
   }
 
@@ -79,37 +71,11 @@ class ObservatoryFile {
       return null;
     }
 
-    final Position pos = positionMap.get(tokenPos);
-    if (pos == null) {
+    final int line = positionMap.getLine(tokenPos);
+    if (line < 0) {
       return XDebuggerUtil.getInstance().createPositionByOffset(fileToUse, 0);
     }
-    return XDebuggerUtil.getInstance().createPosition(fileToUse, pos.line, pos.column);
-  }
-
-  /**
-   * Unpacks a position token table into a map from position id to Position.
-   * <p>
-   * <p>See <a href="https://github.com/dart-lang/vm_service_drivers/blob/master/dart/tool/service.md#scrip">docs</a>.
-   */
-  @NotNull
-  private static TIntObjectHashMap<Position> createPositionMap(@NotNull final List<List<Integer>> table) {
-    final TIntObjectHashMap<Position> result = new TIntObjectHashMap<>();
-
-    for (List<Integer> line : table) {
-      // Each line consists of a line number followed by (tokenId, columnNumber) pairs.
-      // Both lines and columns are one-based.
-      final Iterator<Integer> items = line.iterator();
-
-      // Convert line number from one-based to zero-based.
-      final int lineNumber = Math.max(0, items.next() - 1);
-      while (items.hasNext()) {
-        final int tokenId = items.next();
-        // Convert column from one-based to zero-based.
-        final int column = Math.max(0, items.next() - 1);
-        result.put(tokenId, new Position(lineNumber, column));
-      }
-    }
-    return result;
+    return XDebuggerUtil.getInstance().createPosition(fileToUse, line, positionMap.getColumn(tokenPos));
   }
 
   @Nullable
@@ -127,23 +93,19 @@ class ObservatoryFile {
   }
 
   /**
-   * A per-isolate cache of Observatory files.
+   * A cache of the position maps and snapshots built for downloaded scripts.
+   * <p>
+   * Scripts come from the VM service's shared object cache, which drops them on hot reload, hot
+   * restart or when it is full. Entries here are keyed weakly by the script object so they go away
+   * at the same time.
    */
   static class Cache {
-    @NotNull
-    private final String isolateId;
-
     @NotNull
     private final DartVmServiceDebugProcess.ScriptProvider provider;
 
-    /**
-     * A cache containing each file downloaded from Observatory. The key is a script id.
-     * Each version of a file is stored as a separate entry.
-     */
-    private final Map<String, ObservatoryFile> versions = new THashMap<>();
+    private final Map<Script, ObservatoryFile> versions = new WeakHashMap<>();
 
-    Cache(@NotNull String isolateId, @NotNull DartVmServiceDebugProcess.ScriptProvider provider) {
-      this.isolateId = isolateId;
+    Cache(@NotNull DartVmServiceDebugProcess.ScriptProvider provider) {
       this.provider = provider;
     }
 
@@ -155,17 +117,21 @@ class ObservatoryFile {
      * Returns null if not available.
      */
     @Nullable
-    ObservatoryFile downloadOrGet(@NotNull String scriptId, boolean wantSnapshot) {
-      final ObservatoryFile cached = this.versions.get(scriptId);
-      if (cached != null && (cached.hasSnapshot() || !wantSnapshot)) {
-        return cached;
-      }
-
+    ObservatoryFile downloadOrGet(@NotNull String isolateId, @NotNull String scriptId, boolean wantSnapshot) {
       final Script script = provider.downloadScript(isolateId, scriptId);
       if (script == null) return null;
 
+      synchronized (versions) {
+        final ObservatoryFile cached = versions.get(script);
+        if (cached != null && (cached.hasSnapshot() || !wantSnapshot)) {
+          return cached;
+        }
+      }
+
       final ObservatoryFile downloaded = new ObservatoryFile(script, wantSnapshot);
-      this.versions.put(scriptId, downloaded);
+      synchronized (versions) {
+        versions.put(script, downloaded);
+      }
 
       if (wantSnapshot && !downloaded.hasSnapshot()) {
         return null;
@@ -173,14 +139,4 @@ class ObservatoryFile {
       return downloaded;
     }
   }
-
-  private static class Position {
-    final int line; // zero-based
-    final int column; // zero-based
-
-    Position(int line, int column) {
-      this.line = line;
-      this.column = column;
-    }
-  }
 }
@@ -13,6 +13,7 @@ import com.intellij.execution.process.ProcessHandler;
 import com.intellij.execution.process.ProcessOutputTypes;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Key;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import io.flutter.FlutterUtils;
 import io.flutter.settings.FlutterSettings;
 import io.flutter.utils.StdoutJsonParser;
@@ -24,7 +25,7 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -32,7 +33,9 @@ import java.util.function.Function;
 /**
  * Sends JSON commands to a flutter daemon process, assigning a new id to each one.
  *
- * <p>Also handles dispatching incoming responses and events.
+ * <p>Also handles dispatching incoming responses and events. Output from the process is decoded on a
+ * reader thread of its own, which completes responses directly. Events are delivered in order on a
+ * separate thread, so a slow listener doesn't hold up the responses to commands such as hot reload.
  *
  * <p>The protocol is specified in
  * <a href="https://github.com/flutter/flutter/wiki/The-flutter-daemon-mode"
@@ -43,11 +46,25 @@ public class DaemonApi {
   public static final String COMPLETION_EXCEPTION_PREFIX = "java.util.concurrent.CompletionException: java.io.IOException: ";
 
   private static final int STDERR_LINES_TO_KEEP = 100;
+
+  /**
+   * How long to wait for a response before failing a command.
+   */
+  private static final long DEFAULT_TIMEOUT_SECONDS = 60;
+  /**
+   * Restarts can wait on a compile of the whole app, and serving DevTools may have to install it first.
+   */
+  private static final long LONG_TIMEOUT_SECONDS = 10 * 60;
+
   private static final Gson GSON = new Gson();
   private static final Logger LOG = Logger.getInstance(DaemonApi.class);
   @NotNull private final Consumer<String> callback;
   private final AtomicInteger nextId = new AtomicInteger();
-  private final Map<Integer, Command> pending = new LinkedHashMap<>();
+  private final Map<Integer, Command> pending = new ConcurrentHashMap<>();
+  /**
+   * Held while numbering and writing a command, so that commands are sent one at a time and in order.
+   */
+  private final Object sendLock = new Object();
   private final StdoutJsonParser stdoutParser = new StdoutJsonParser();
   /**
    * A ring buffer holding the last few lines that the process sent to stderr.
@@ -69,31 +86,32 @@ public class DaemonApi {
   }
 
   CompletableFuture<List<String>> daemonGetSupportedPlatforms(@NotNull String projectRoot) {
-    return send("daemon.getSupportedPlatforms", new DaemonGetSupportedPlatforms(projectRoot));
+    return send("daemon.getSupportedPlatforms", new DaemonGetSupportedPlatforms(projectRoot), DEFAULT_TIMEOUT_SECONDS);
   }
 
   CompletableFuture<RestartResult> restartApp(@NotNull String appId, boolean fullRestart, boolean pause, @NotNull String reason) {
-    return send("app.restart", new AppRestart(appId, fullRestart, pause, reason));
+    return send("app.restart", new AppRestart(appId, fullRestart, pause, reason), LONG_TIMEOUT_SECONDS);
   }
 
   CompletableFuture<Boolean> stopApp(@NotNull String appId) {
-    return send("app.stop", new AppStop(appId));
+    return send("app.stop", new AppStop(appId), DEFAULT_TIMEOUT_SECONDS);
   }
 
   CompletableFuture<DevToolsAddress> devToolsServe() {
-    return send("devtools.serve", new DevToolsServe());
+    return send("devtools.serve", new DevToolsServe(), LONG_TIMEOUT_SECONDS);
   }
 
   CompletableFuture<Boolean> detachApp(@NotNull String appId) {
-    return send("app.detach", new AppDetach(appId));
+    return send("app.detach", new AppDetach(appId), DEFAULT_TIMEOUT_SECONDS);
   }
 
   void cancelPending() {
     // We used to complete the commands with exceptions here (completeExceptionally), but that generally was surfaced
     // to the user as an exception in the tool. We now choose to not complete the command at all.
-    synchronized (pending) {
-      pending.clear();
+    for (Command cmd : pending.values()) {
+      cmd.cancelTimeout();
     }
+    pending.clear();
   }
 
   /**
@@ -102,17 +120,21 @@ public class DaemonApi {
   CompletableFuture<JsonObject> callAppServiceExtension(@NotNull String appId,
                                                         @NotNull String methodName,
                                                         @NotNull Map<String, Object> params) {
-    return send("app.callServiceExtension", new AppServiceExtension(appId, methodName, params));
+    return send("app.callServiceExtension", new AppServiceExtension(appId, methodName, params), DEFAULT_TIMEOUT_SECONDS);
   }
 
   CompletableFuture<Void> enableDeviceEvents() {
-    return send("device.enable", null);
+    return send("device.enable", null, DEFAULT_TIMEOUT_SECONDS);
   }
 
   /**
    * Receive responses and events from a process until it shuts down.
    */
   void listen(@NotNull ProcessHandler process, @NotNull DaemonEvent.Listener listener) {
+    // Both executors run one task at a time, in the order submitted.
+    final Executor reader = AppExecutorUtil.createBoundedApplicationPoolExecutor("DaemonApi reader", 1);
+    final Executor events = AppExecutorUtil.createBoundedApplicationPoolExecutor("DaemonApi events", 1);
+
     process.addProcessListener(new ProcessAdapter() {
       @Override
       public void onTextAvailable(@NotNull ProcessEvent event, @NotNull Key outputType) {
@@ -139,25 +161,20 @@ public class DaemonApi {
             LOG.info("[<-- " + text.trim() + "]");
           }
 
-          stdoutParser.appendOutput(text);
-
-          for (String line : stdoutParser.getAvailableLines()) {
-            final JsonObject obj = parseAndValidateDaemonEvent(line);
-            if (obj != null) {
-              dispatch(obj, listener);
-            }
-          }
+          reader.execute(() -> read(text, listener, events));
         }
       }
 
       @Override
       public void processWillTerminate(@NotNull ProcessEvent event, boolean willBeDestroyed) {
-        listener.processWillTerminate();
+        // Go through both executors so that the listener has seen all earlier events first.
+        reader.execute(() -> events.execute(listener::processWillTerminate));
       }
 
       @Override
       public void processTerminated(@NotNull ProcessEvent event) {
-        listener.processTerminated(event.getExitCode());
+        final int exitCode = event.getExitCode();
+        reader.execute(() -> events.execute(() -> listener.processTerminated(exitCode)));
       }
     });
 
@@ -165,45 +182,78 @@ public class DaemonApi {
     process.startNotify();
   }
 
+  /**
+   * Decodes output from the process, completing any commands it responds to and queueing events for the listener.
+   */
+  private void read(@NotNull String text, @NotNull DaemonEvent.Listener listener, @NotNull Executor events) {
+    stdoutParser.appendOutput(text);
+
+    for (String line : stdoutParser.getAvailableLines()) {
+      final DaemonMessage message = DaemonMessage.decode(line);
+      if (message == null) {
+        continue;
+      }
+      if (message.isEvent()) {
+        events.execute(() -> dispatchEvent(message, listener));
+      }
+      else {
+        dispatch(message, null);
+      }
+    }
+  }
+
   /**
    * Parses some JSON and handles it as either a command's response or an event.
    */
   void dispatch(@NotNull JsonObject obj, @Nullable DaemonEvent.Listener eventListener) {
-    final JsonPrimitive idField = obj.getAsJsonPrimitive("id");
-    if (idField == null) {
-      // It's an event.
+    final DaemonMessage message = DaemonMessage.fromJson(obj);
+    if (message != null) {
+      dispatch(message, eventListener);
+    }
+  }
+
+  /**
+   * Handles a message as either a command's response or an event.
+   */
+  private void dispatch(@NotNull DaemonMessage message, @Nullable DaemonEvent.Listener eventListener) {
+    if (message.isEvent()) {
       if (eventListener != null) {
-        DaemonEvent.dispatch(obj, eventListener);
+        dispatchEvent(message, eventListener);
       }
+      return;
     }
-    else {
-      final Command cmd = takePending(idField.getAsInt());
-      if (cmd == null) {
-        return;
-      }
 
-      final JsonElement error = obj.get("error");
-      if (error != null) {
-        final JsonElement trace = obj.get("trace");
-        String message = FLUTTER_ERROR_PREFIX + " " + cmd.method + ": " + error;
-        if (trace != null) {
-          message += "\n" + trace;
-        }
-        // Be sure to keep this statement in sync with COMPLETION_EXCEPTION_PREFIX.
-        cmd.completeExceptionally(new IOException(message));
-      }
-      else {
-        cmd.complete(obj.get("result"));
+    final Command cmd = takePending(message.id);
+    if (cmd == null) {
+      return;
+    }
+
+    if (message.error != null) {
+      String errorMessage = FLUTTER_ERROR_PREFIX + " " + cmd.method + ": " + message.error;
+      if (message.trace != null) {
+        errorMessage += "\n" + message.trace;
       }
+      // Be sure to keep this statement in sync with COMPLETION_EXCEPTION_PREFIX.
+      cmd.completeExceptionally(new IOException(errorMessage));
+    }
+    else {
+      cmd.complete(message.result);
+    }
+  }
+
+  private static void dispatchEvent(@NotNull DaemonMessage message, @NotNull DaemonEvent.Listener listener) {
+    assert message.event != null;
+    try {
+      message.event.accept(listener);
+    }
+    catch (Exception e) {
+      FlutterUtils.warn(LOG, "Error handling event from Flutter daemon: " + message.event, e);
     }
   }
 
   @Nullable
   private Command takePending(int id) {
-    final Command cmd;
-    synchronized (pending) {
-      cmd = pending.remove(id);
-    }
+    final Command cmd = pending.remove(id);
     if (cmd == null) {
       FlutterUtils.warn(LOG, "received a response for a request that wasn't sent: " + id);
       return null;
@@ -211,19 +261,25 @@ public class DaemonApi {
     return cmd;
   }
 
-  private <T> CompletableFuture<T> send(String method, @Nullable Params<T> params) {
-    // Synchronize on nextId to ensure that we send one command at a time and they are numbered in the order they are sent.
-    synchronized (nextId) {
+  private <T> CompletableFuture<T> send(String method, @Nullable Params<T> params, long timeoutSeconds) {
+    final Command<T> command;
+    synchronized (sendLock) {
       final int id = nextId.getAndIncrement();
-      final Command<T> command = new Command<>(method, params, id);
-      final String json = command.toString();
-      //noinspection NestedSynchronizedStatement
-      synchronized (pending) {
-        pending.put(id, command);
+      command = new Command<>(method, params, id);
+      pending.put(id, command);
+      callback.accept(command.toString());
+    }
+
+    // If the response has already arrived, the command is no longer pending and the timeout does nothing.
+    command.timeout = AppExecutorUtil.getAppScheduledExecutorService().schedule(() -> {
+      if (pending.remove(command.id, command)) {
+        command.completeExceptionally(new TimeoutException(method + " got no response in " + timeoutSeconds + "s"));
       }
-      callback.accept(json);
-      return command.done;
+    }, timeoutSeconds, TimeUnit.SECONDS);
+    if (command.done.isDone()) {
+      command.cancelTimeout();
     }
+    return command.done;
   }
 
   /**
@@ -347,6 +403,7 @@ public class DaemonApi {
 
     transient final @Nullable Function<JsonElement, T> parseResult;
     transient final CompletableFuture<T> done = new CompletableFuture<>();
+    transient volatile @Nullable ScheduledFuture<?> timeout;
 
     Command(@NotNull String method, @Nullable Params<T> params, int id) {
       this.method = method;
@@ -358,6 +415,7 @@ public class DaemonApi {
     }
 
     void complete(@Nullable JsonElement result) {
+      cancelTimeout();
       if (parseResult == null) {
         done.complete(null);
         return;
@@ -372,9 +430,17 @@ public class DaemonApi {
     }
 
     void completeExceptionally(Throwable t) {
+      cancelTimeout();
       done.completeExceptionally(t);
     }
 
+    void cancelTimeout() {
+      final ScheduledFuture<?> scheduled = timeout;
+      if (scheduled != null) {
+        scheduled.cancel(false);
+      }
+    }
+
     @Override
     public String toString() {
       return GSON.toJson(this);
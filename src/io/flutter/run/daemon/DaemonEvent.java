@@ -9,11 +9,14 @@ import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+
 /**
  * <p>A message received from a Flutter process that's not in response to a particular request.
  *
@@ -54,35 +57,12 @@ abstract class DaemonEvent {
 
   @Nullable
   static DaemonEvent create(@NotNull String eventName, @NotNull JsonObject params) {
+    final Class<? extends DaemonEvent> eventClass = getEventClass(eventName);
+    if (eventClass == null) {
+      return null; // Drop an unknown event.
+    }
     try {
-      switch (eventName) {
-        case "daemon.connected":
-          return GSON.fromJson(params, DaemonConnected.class);
-        case "daemon.log":
-          return GSON.fromJson(params, DaemonLog.class);
-        case "daemon.logMessage":
-          return GSON.fromJson(params, DaemonLogMessage.class);
-        case "daemon.showMessage":
-          return GSON.fromJson(params, DaemonShowMessage.class);
-        case "app.start":
-          return GSON.fromJson(params, AppStarting.class);
-        case "app.debugPort":
-          return GSON.fromJson(params, AppDebugPort.class);
-        case "app.started":
-          return GSON.fromJson(params, AppStarted.class);
-        case "app.log":
-          return GSON.fromJson(params, AppLog.class);
-        case "app.progress":
-          return GSON.fromJson(params, AppProgress.class);
-        case "app.stop":
-          return GSON.fromJson(params, AppStopped.class);
-        case "device.added":
-          return GSON.fromJson(params, DeviceAdded.class);
-        case "device.removed":
-          return GSON.fromJson(params, DeviceRemoved.class);
-        default:
-          return null; // Drop an unknown event.
-      }
+      return GSON.fromJson(params, eventClass);
     }
     catch (JsonSyntaxException e) {
       LOG.info("Unexpected parameters in event from flutter process: " + params);
@@ -90,6 +70,55 @@ abstract class DaemonEvent {
     }
   }
 
+  /**
+   * Reads the params of an event straight from a JSON stream, without building a tree first.
+   * Returns null and skips the params for an unknown event.
+   */
+  @Nullable
+  static DaemonEvent read(@NotNull String eventName, @NotNull JsonReader reader) throws IOException {
+    final Class<? extends DaemonEvent> eventClass = getEventClass(eventName);
+    if (eventClass == null) {
+      reader.skipValue();
+      return null;
+    }
+    return GSON.fromJson(reader, eventClass);
+  }
+
+  /**
+   * Returns the class that the params of the given event are read into, or null for an unknown event.
+   */
+  @Nullable
+  static Class<? extends DaemonEvent> getEventClass(@NotNull String eventName) {
+    switch (eventName) {
+      case "daemon.connected":
+        return DaemonConnected.class;
+      case "daemon.log":
+        return DaemonLog.class;
+      case "daemon.logMessage":
+        return DaemonLogMessage.class;
+      case "daemon.showMessage":
+        return DaemonShowMessage.class;
+      case "app.start":
+        return AppStarting.class;
+      case "app.debugPort":
+        return AppDebugPort.class;
+      case "app.started":
+        return AppStarted.class;
+      case "app.log":
+        return AppLog.class;
+      case "app.progress":
+        return AppProgress.class;
+      case "app.stop":
+        return AppStopped.class;
+      case "device.added":
+        return DeviceAdded.class;
+      case "device.removed":
+        return DeviceRemoved.class;
+      default:
+        return null;
+    }
+  }
+
   abstract void accept(Listener listener);
 
   @Override
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.run.daemon;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * A message read from a Flutter daemon process: either a response to a command or an event.
+ * <p>
+ * Messages are decoded in a single pass over the line. The params of an event are read straight
+ * into its {@link DaemonEvent} class, and only the result or error of a response is kept as a tree.
+ */
+class DaemonMessage {
+  private static final Logger LOG = Logger.getInstance(DaemonMessage.class);
+
+  private static final int NO_ID = -1;
+
+  final int id;
+  @Nullable final DaemonEvent event;
+  @Nullable final JsonElement result;
+  @Nullable final JsonElement error;
+  @Nullable final JsonElement trace;
+
+  private DaemonMessage(int id, @Nullable DaemonEvent event,
+                        @Nullable JsonElement result, @Nullable JsonElement error, @Nullable JsonElement trace) {
+    this.id = id;
+    this.event = event;
+    this.result = result;
+    this.error = error;
+    this.trace = trace;
+  }
+
+  boolean isEvent() {
+    return id == NO_ID;
+  }
+
+  /**
+   * Decodes a line of daemon output, returning null if it isn't a valid message or is an unknown event.
+   * <p>
+   * Accepts the same messages as {@link DaemonApi#parseAndValidateDaemonEvent(String)}.
+   */
+  @Nullable
+  static DaemonMessage decode(@NotNull String line) {
+    if (!line.startsWith("[{")) {
+      return null;
+    }
+
+    final JsonReader reader = new JsonReader(new StringReader(line));
+    reader.setLenient(true);
+    try {
+      String eventName = null;
+      JsonObject params = null;
+      DaemonEvent event = null;
+      boolean hasParams = false;
+      int id = NO_ID;
+      JsonElement result = null;
+      JsonElement error = null;
+      JsonElement trace = null;
+
+      reader.beginArray();
+      reader.beginObject();
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "event":
+            if (reader.peek() != JsonToken.STRING) {
+              return null;
+            }
+            eventName = reader.nextString();
+            break;
+          case "params":
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+              return null;
+            }
+            hasParams = true;
+            if (eventName != null) {
+              try {
+                event = DaemonEvent.read(eventName, reader);
+              }
+              catch (JsonSyntaxException e) {
+                LOG.info("Unexpected parameters in event from flutter process: " + line);
+                return null;
+              }
+            }
+            else {
+              // The event name usually comes first, but if not we have to keep the params until we know it.
+              params = readTree(reader).getAsJsonObject();
+            }
+            break;
+          case "id":
+            if (reader.peek() != JsonToken.NUMBER) {
+              return null;
+            }
+            id = reader.nextInt();
+            if (id < 0) {
+              return null;
+            }
+            break;
+          case "result":
+            result = readTree(reader);
+            break;
+          case "error":
+            error = readTree(reader);
+            break;
+          case "trace":
+            trace = readTree(reader);
+            break;
+          default:
+            reader.skipValue();
+        }
+      }
+      reader.endObject();
+      reader.endArray();
+      if (reader.peek() != JsonToken.END_DOCUMENT) {
+        return null;
+      }
+
+      if (eventName != null) {
+        if (!hasParams) {
+          return null;
+        }
+        if (params != null) {
+          event = DaemonEvent.create(eventName, params);
+        }
+        return event == null ? null : new DaemonMessage(NO_ID, event, null, null, null);
+      }
+      return id == NO_ID ? null : new DaemonMessage(id, null, result, error, trace);
+    }
+    catch (IOException | IllegalStateException | NumberFormatException | JsonParseException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Converts a message that has already been parsed, such as one from a test.
+   */
+  @Nullable
+  static DaemonMessage fromJson(@NotNull JsonObject obj) {
+    if (obj.has("id")) {
+      return new DaemonMessage(obj.getAsJsonPrimitive("id").getAsInt(), null, obj.get("result"), obj.get("error"), obj.get("trace"));
+    }
+    final JsonElement eventName = obj.get("event");
+    final JsonElement params = obj.get("params");
+    if (eventName == null || params == null || !params.isJsonObject()) {
+      return null;
+    }
+    final DaemonEvent event = DaemonEvent.create(eventName.getAsString(), params.getAsJsonObject());
+    return event == null ? null : new DaemonMessage(NO_ID, event, null, null, null);
+  }
+
+  @NotNull
+  private static JsonElement readTree(@NotNull JsonReader reader) {
+    return new JsonParser().parse(reader);
+  }
+}
@@ -775,6 +775,7 @@ public class FlutterApp implements Disposable {
 
   @Override
   public void dispose() {
+    myFlutterLog.dispose();
   }
 }
 
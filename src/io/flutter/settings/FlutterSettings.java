@@ -28,6 +28,12 @@ public class FlutterSettings {
   private static final String showStructuredErrors = "io.flutter.showStructuredErrors";
   private static final String showBuildMethodGuidesKey = "io.flutter.editor.showBuildMethodGuides";
   private static final String enableHotUiKey = "io.flutter.editor.enableHotUi";
+  private static final String inspectorPrefetchBudgetKey = "io.flutter.inspector.prefetchBudget";
+
+  /**
+   * How many details subtrees the inspector prefetches for the nodes likely to be selected next.
+   */
+  public static final int DEFAULT_INSPECTOR_PREFETCH_BUDGET = 3;
 
   /**
    * Registry key to suggest all run configurations instead of just one.
@@ -254,6 +260,19 @@ public class FlutterSettings {
     fireEvent();
   }
 
+  /**
+   * The number of details subtrees the inspector prefetches ahead of the selection, or 0 to not prefetch.
+   */
+  public int getInspectorPrefetchBudget() {
+    return Math.max(0, getPropertiesComponent().getInt(inspectorPrefetchBudgetKey, DEFAULT_INSPECTOR_PREFETCH_BUDGET));
+  }
+
+  public void setInspectorPrefetchBudget(int value) {
+    getPropertiesComponent().setValue(inspectorPrefetchBudgetKey, value, DEFAULT_INSPECTOR_PREFETCH_BUDGET);
+
+    fireEvent();
+  }
+
   public boolean isEnableHotUiInCodeEditor() {
     // We leave this setting off for now to avoid possible performance and
     // usability issues rendering previews directly in the code editor.
@@ -47,6 +47,17 @@ public class AsyncRateLimiter {
     requestScheduler = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, parentDisposable);
   }
 
+  /**
+   * Changes the maximum rate requests are issued at, taking effect after the next request.
+   */
+  public void setFramesPerSecond(double framesPerSecond) {
+    rateLimiter.setRate(framesPerSecond);
+  }
+
+  public double getFramesPerSecond() {
+    return rateLimiter.getRate();
+  }
+
   public void scheduleRequest() {
     final boolean scheduleRequestImmediately;
     synchronized (requestScheduleLock) {
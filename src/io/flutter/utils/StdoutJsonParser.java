@@ -15,31 +15,54 @@ import java.util.List;
  * are emitted over the course of multiple calls to appendOutput. Regular lines
  * on the other hand are emitted immediately so users do not have to wait for
  * debug output.
+ * <p>
+ * Each chunk is scanned with indexOf for the characters that can end a line, and
+ * lines that lie entirely within one chunk are sliced out of it directly. Only
+ * text that continues into the next chunk is copied into the buffer.
  */
 public class StdoutJsonParser {
+  /**
+   * The start of the current line carried over from previous chunks.
+   */
   private final StringBuilder buffer = new StringBuilder();
   private boolean bufferIsJson = false;
   private final List<String> lines = new ArrayList<>();
   private boolean eatNextEol = false;
   private boolean isPotentialWindowsReturn = false;
 
+  // State for the chunk currently being processed.
+  private String chunk;
+  private int lineStart;
+  private int nextNewline;
+  private int nextReturn;
+  private int nextBracket;
+
   /**
    * Write new output to this [StdoutJsonParser].
    */
   public void appendOutput(String string) {
-    for (int i = 0; i < string.length(); ++i) {
+    chunk = string;
+    lineStart = 0;
+    nextNewline = nextReturn = nextBracket = -2;
+
+    final int length = string.length();
+    int i = 0;
+    while (i < length) {
       final char c = string.charAt(i);
 
       if (eatNextEol) {
         eatNextEol = false;
 
+        // The current line is empty, so skipping the character just moves the line start.
         if (c == '\n') {
+          lineStart = ++i;
           continue;
         }
 
         if (c == '\r' && !isPotentialWindowsReturn) {
           eatNextEol = true;
           isPotentialWindowsReturn = true;
+          lineStart = ++i;
           continue;
         }
       }
@@ -48,62 +71,133 @@ public class StdoutJsonParser {
         isPotentialWindowsReturn = false;
 
         if (c != '\n') {
-          flushLine();
+          flushLine(i);
         }
       }
 
-      buffer.append(c);
+      // The character is now part of the current line.
+      i++;
 
-      if (!bufferIsJson && buffer.length() == 2 && buffer.charAt(0) == '[' && c == '{') {
+      if (!bufferIsJson && lineLength(i) == 2 && lineCharAt(0) == '[' && c == '{') {
         bufferIsJson = true;
       }
-      else if (bufferIsJson && c == ']' && possiblyTerminatesJson(buffer, string, i)) {
-        flushLine();
+      else if (bufferIsJson && c == ']' && possiblyTerminatesJson(i)) {
+        flushLine(i);
       }
 
       if (c == '\n') {
-        flushLine();
+        flushLine(i);
       }
 
       if (c == '\r') {
         // Wait and decide whether to flush depending on next character.
         isPotentialWindowsReturn = true;
       }
+
+      // Skip over the characters that cannot end the line or start JSON.
+      if (!eatNextEol && !isPotentialWindowsReturn && lineLength(i) >= 2) {
+        i = nextSpecialCharacter(i);
+      }
+    }
+
+    if (lineStart < length) {
+      buffer.append(string, lineStart, length);
+      lineStart = length;
     }
+    chunk = null;
 
     // Eagerly flush if we are not within JSON so regular log text is written as soon as possible.
     if (!bufferIsJson) {
-      flushLine();
+      flushLine(length);
     }
-    else if (buffer.toString().endsWith("}]")) {
+    else if (endsWithJsonTerminator()) {
       eatNextEol = true;
-      flushLine();
+      flushLine(length);
     }
   }
 
-  private boolean possiblyTerminatesJson(StringBuilder output, String input, int inputIndex) {
+  private int lineLength(int end) {
+    return buffer.length() + end - lineStart;
+  }
+
+  private char lineCharAt(int index) {
+    return index < buffer.length() ? buffer.charAt(index) : chunk.charAt(lineStart + index - buffer.length());
+  }
+
+  private boolean possiblyTerminatesJson(int end) {
     // This is an approximate approach to look for json message terminations inside of strings -
     // where the normally terminating eol gets separated from the json.
 
-    if (output.length() < 2 || inputIndex + 1 >= input.length()) {
+    final int length = lineLength(end);
+    if (length < 2 || end >= chunk.length()) {
       return false;
     }
 
     // Look for '}', ']', and a letter
-    final char prev = output.charAt(output.length() - 2);
-    final char current = output.charAt(output.length() - 1);
-    final char next = input.charAt(inputIndex + 1);
+    final char prev = lineCharAt(length - 2);
+    final char current = lineCharAt(length - 1);
+    final char next = chunk.charAt(end);
 
     return prev == '}' && current == ']' && Character.isAlphabetic(next);
   }
 
-  private void flushLine() {
-    if (buffer.length() > 0) {
-      synchronized (lines) {
-        lines.add(buffer.toString());
+  private boolean endsWithJsonTerminator() {
+    final int length = buffer.length();
+    return length >= 2 && buffer.charAt(length - 2) == '}' && buffer.charAt(length - 1) == ']';
+  }
+
+  /**
+   * Returns the index of the next character at or after {@code from} that may change the parser
+   * state, or the length of the chunk if there is none.
+   */
+  private int nextSpecialCharacter(int from) {
+    nextNewline = indexOf('\n', from, nextNewline);
+    nextReturn = indexOf('\r', from, nextReturn);
+    int next = min(nextNewline, nextReturn);
+    if (bufferIsJson) {
+      nextBracket = indexOf(']', from, nextBracket);
+      next = min(next, nextBracket);
+    }
+    return next == -1 ? chunk.length() : next;
+  }
+
+  /**
+   * Returns the index of the character at or after {@code from}, reusing a previous result that is
+   * still valid. -2 means there is no previous result, and -1 that the character does not occur.
+   */
+  private int indexOf(char c, int from, int previous) {
+    return previous == -1 || previous >= from ? previous : chunk.indexOf(c, from);
+  }
+
+  private static int min(int a, int b) {
+    if (a == -1) {
+      return b;
+    }
+    return b == -1 ? a : Math.min(a, b);
+  }
+
+  /**
+   * Emits the current line, which ends at the given index of the chunk.
+   */
+  private void flushLine(int end) {
+    final String line;
+    if (buffer.length() == 0) {
+      line = chunk == null || lineStart == end ? null : chunk.substring(lineStart, end);
+    }
+    else {
+      if (chunk != null) {
+        buffer.append(chunk, lineStart, end);
       }
+      line = buffer.toString();
       buffer.setLength(0);
     }
+    lineStart = end;
+
+    if (line != null) {
+      synchronized (lines) {
+        lines.add(line);
+      }
+    }
     bufferIsJson = false;
   }
 
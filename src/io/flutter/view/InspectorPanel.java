@@ -29,6 +29,7 @@ import io.flutter.editor.FlutterMaterialIcons;
 import io.flutter.inspector.*;
 import io.flutter.pub.PubRoot;
 import io.flutter.run.daemon.FlutterApp;
+import io.flutter.settings.FlutterSettings;
 import io.flutter.utils.*;
 import org.dartlang.vm.service.element.InstanceRef;
 import org.dartlang.vm.service.element.IsolateRef;
@@ -113,6 +114,18 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
    */
   private final InspectorObjectGroupManager selectionGroups;
 
+  /**
+   * Details subtrees loaded ahead of the nodes likely to be selected next.
+   * <p>
+   * Only used by the details subtree panel.
+   */
+  @Nullable private final DetailsSubtreePrefetcher prefetcher;
+
+  /**
+   * Patches the displayed tree when a refreshed copy of it is loaded.
+   */
+  private final InspectorTreePatcher treePatcher;
+
   /**
    * Node being highlighted due to the current hover.
    */
@@ -127,6 +140,11 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
   private DefaultMutableTreeNode lastExpanded;
   private boolean isActive = false;
   private final Map<InspectorInstanceRef, DefaultMutableTreeNode> valueToTreeNode = new HashMap<>();
+  /**
+   * The tree nodes in valueToTreeNode, by where their widgets were created, so
+   * that the selection can follow the caret without asking the device.
+   */
+  private final CreationLocationIndex<DefaultMutableTreeNode> creationLocationIndex = new CreationLocationIndex<>();
 
   /**
    * When visibleToUser is false we should dispose all allocated objects and
@@ -167,6 +185,7 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
     this.inspectorService = inspectorService;
     this.treeGroups = new InspectorObjectGroupManager(inspectorService, "tree");
     this.selectionGroups = new InspectorObjectGroupManager(inspectorService, "selection");
+    this.prefetcher = detailsSubtree ? new DetailsSubtreePrefetcher(inspectorService) : null;
     this.isApplicable = isApplicable;
     this.detailsSubtree = detailsSubtree;
     this.isSummaryTree = isSummaryTree;
@@ -199,6 +218,7 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
     myRootsTree.setToggleClickCount(0);
 
     myRootsTree.addTreeExpansionListener(new MyTreeExpansionListener());
+    treePatcher = new InspectorTreePatcher(myRootsTree, new MyTreePatcherHost());
     final InspectorTreeMouseListener mouseListener = new InspectorTreeMouseListener(this, myRootsTree);
     myRootsTree.addMouseListener(mouseListener);
     myRootsTree.addMouseMotionListener(mouseListener);
@@ -494,6 +514,9 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
     programaticSelectionChangeInProgress = true;
     treeGroups.clear(isolateStopped);
     selectionGroups.clear(isolateStopped);
+    if (prefetcher != null) {
+      prefetcher.clear(isolateStopped);
+    }
 
     currentShowNode = null;
     selectedNode = null;
@@ -510,6 +533,7 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
     }
     programaticSelectionChangeInProgress = false;
     valueToTreeNode.clear();
+    creationLocationIndex.clear();
   }
 
   public void onIsolateStopped() {
@@ -518,8 +542,22 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
     shutdownTree(true);
   }
 
+  /**
+   * Drops prefetched details subtrees, which may no longer match the app
+   * after a frame or a reload.
+   */
+  private void discardPrefetches() {
+    if (prefetcher != null) {
+      prefetcher.invalidate();
+    }
+    if (subtreePanel != null) {
+      subtreePanel.discardPrefetches();
+    }
+  }
+
   @Override
   public CompletableFuture<?> onForceRefresh() {
+    discardPrefetches();
     if (!visibleToUser) {
       return CompletableFuture.completedFuture(null);
     }
@@ -588,21 +626,66 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
                                  DiagnosticsNode detailsSelection,
                                  boolean setSubtreeRoot,
                                  boolean textEditorUpdated) {
+    recomputeTreeRoot(newSelection, detailsSelection, setSubtreeRoot, textEditorUpdated, null);
+  }
+
+  /**
+   * @param prefetch the already requested details subtree of subtreeRoot, if
+   *                 any, whose group becomes the next tree group
+   */
+  private void recomputeTreeRoot(DiagnosticsNode newSelection,
+                                 DiagnosticsNode detailsSelection,
+                                 boolean setSubtreeRoot,
+                                 boolean textEditorUpdated,
+                                 @Nullable DetailsSubtreePrefetcher.Prefetch prefetch) {
     treeGroups.cancelNext();
-    treeGroups.getNext().safeWhenComplete(detailsSubtree
-                                          ? treeGroups.getNext().getDetailsSubtree(subtreeRoot)
-                                          : treeGroups.getNext().getRoot(treeType), (final DiagnosticsNode n, Throwable error) -> {
+    final CompletableFuture<DiagnosticsNode> nodeFuture;
+    if (prefetch != null) {
+      treeGroups.setNext(prefetch.group);
+      nodeFuture = prefetch.subtree;
+    }
+    else {
+      nodeFuture = detailsSubtree
+                   ? treeGroups.getNext().getDetailsSubtree(subtreeRoot)
+                   : treeGroups.getNext().getRoot(treeType);
+    }
+    treeGroups.getNext().safeWhenComplete(nodeFuture, (final DiagnosticsNode n, Throwable error) -> {
       if (error != null) {
         FlutterUtils.warn(LOG, error);
         treeGroups.cancelNext();
         return;
       }
-      // TODO(jacobr): as a performance optimization we should check if the
-      // new tree is identical to the existing tree in which case we should
-      // dispose the new tree and keep the old tree.
+      final DefaultMutableTreeNode existingRoot = getRootNode();
+      final DiagnosticsNode existingDiagnostic = getDiagnosticNode(existingRoot);
+      if (n != null && existingDiagnostic != null && InspectorTreePatcher.subtreesIdentical(existingRoot, n)) {
+        // Nothing changed so keep the existing tree and the group backing it.
+        treeGroups.cancelNext();
+        if (valueToTreeNode.isEmpty()) {
+          registerTreeNodes(existingRoot);
+        }
+        refreshSelection(newSelection, detailsSelection, setSubtreeRoot, textEditorUpdated);
+        return;
+      }
       treeGroups.promoteNext();
-      clearValueToTreeNodeMapping();
-      if (n != null) {
+      if (n != null && existingDiagnostic != null && InspectorTreePatcher.getDiffKey(existingDiagnostic).equals(InspectorTreePatcher.getDiffKey(n))) {
+        // Patch the existing tree so that unchanged nodes keep their
+        // expansion and selection state.
+        final Map<InspectorInstanceRef, DefaultMutableTreeNode> previousValueToTreeNode = new HashMap<>(valueToTreeNode);
+        valueToTreeNode.clear();
+        creationLocationIndex.clear();
+        treePatcher.patch(existingRoot, n);
+        if (parentTree != null) {
+          final Set<InspectorInstanceRef> changedValues = new HashSet<>(previousValueToTreeNode.keySet());
+          changedValues.addAll(valueToTreeNode.keySet());
+          for (InspectorInstanceRef v : changedValues) {
+            if (previousValueToTreeNode.get(v) != valueToTreeNode.get(v)) {
+              parentTree.maybeUpdateValueUI(v);
+            }
+          }
+        }
+      }
+      else if (n != null) {
+        clearValueToTreeNodeMapping();
         final DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode(n);
         getTreeModel().setRoot(rootNode);
         setupTreeNode(rootNode, n, true);
@@ -615,12 +698,27 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
         }
       }
       else {
+        clearValueToTreeNodeMapping();
         getTreeModel().setRoot(null);
       }
       refreshSelection(newSelection, detailsSelection, setSubtreeRoot, textEditorUpdated);
     });
   }
 
+  private void registerTreeNodes(DefaultMutableTreeNode root) {
+    for (final Enumeration e = root.depthFirstEnumeration(); e.hasMoreElements(); ) {
+      final DefaultMutableTreeNode node = (DefaultMutableTreeNode)e.nextElement();
+      final DiagnosticsNode diagnostic = getDiagnosticNode(node);
+      if (diagnostic != null && !diagnostic.isProperty() && diagnostic.getValueRef().getId() != null) {
+        valueToTreeNode.put(diagnostic.getValueRef(), node);
+        indexCreationLocation(node, diagnostic);
+        if (parentTree != null) {
+          parentTree.maybeUpdateValueUI(diagnostic.getValueRef());
+        }
+      }
+    }
+  }
+
   private void clearValueToTreeNodeMapping() {
     if (parentTree != null) {
       for (InspectorInstanceRef v : valueToTreeNode.keySet()) {
@@ -628,6 +726,49 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
       }
     }
     valueToTreeNode.clear();
+    creationLocationIndex.clear();
+  }
+
+  private void indexCreationLocation(DefaultMutableTreeNode node, DiagnosticsNode diagnostic) {
+    final InspectorSourceLocation location = diagnostic.getCreationLocation();
+    if (location != null) {
+      creationLocationIndex.add(location.getPath(), location.getLine(), location.getColumn(), node);
+    }
+  }
+
+  /**
+   * Selects the node for a widget created at the location, if one is already
+   * loaded, as if the user had selected it. The device is told about the new
+   * selection but not asked for it.
+   * <p>
+   * Returns whether a node was found.
+   */
+  @Override
+  public boolean selectLocation(@NotNull InspectorService.Location location, boolean textEditorUpdated) {
+    if (!visibleToUser || !isSummaryTree || detailsSubtree || legacyMode) {
+      return false;
+    }
+    final DefaultMutableTreeNode rootNode = getRootNode();
+    DefaultMutableTreeNode match = null;
+    for (DefaultMutableTreeNode node : creationLocationIndex.get(location.getPath(), location.getLine(), location.getColumn())) {
+      // Skip nodes that were removed from the tree since they were indexed.
+      if (node.getRoot() != rootNode || getDiagnosticNode(node) == null) {
+        continue;
+      }
+      if (node == selectedNode) {
+        return true;
+      }
+      if (match == null) {
+        match = node;
+      }
+    }
+    if (match == null) {
+      return false;
+    }
+    setSelectedNode(match);
+    syncTreeSelection();
+    onSelectedNodeChanged(textEditorUpdated);
+    return true;
   }
 
   /**
@@ -668,7 +809,30 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
 
     // Clear now to eliminate frame of highlighted nodes flicker.
     clearValueToTreeNodeMapping();
-    recomputeTreeRoot(selection, null, false, true);
+    recomputeTreeRoot(selection, null, false, true, prefetcher != null ? prefetcher.take(node) : null);
+  }
+
+  /**
+   * Loads the details subtrees of the given nodes, most likely to be shown
+   * next first, so showing one of them doesn't wait on the device.
+   */
+  void prefetchDetailsSubtrees(List<DiagnosticsNode> candidates) {
+    assert (detailsSubtree);
+    if (prefetcher == null || !visibleToUser) {
+      return;
+    }
+    prefetcher.prefetch(candidates, FlutterSettings.getInstance().getInspectorPrefetchBudget());
+  }
+
+  /**
+   * Returns the fraction of details subtrees that had been prefetched by the
+   * time they were shown.
+   */
+  public double getPrefetchHitRate() {
+    if (subtreePanel != null) {
+      return subtreePanel.getPrefetchHitRate();
+    }
+    return prefetcher != null ? prefetcher.getHitRate() : 0;
   }
 
   DefaultMutableTreeNode getSubtreeRootNode() {
@@ -753,6 +917,7 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
     // Properties do not have unique values so should not go in the valueToTreeNode map.
     if (valueRef.getId() != null && !diagnosticsNode.isProperty()) {
       valueToTreeNode.put(valueRef, node);
+      indexCreationLocation(node, diagnosticsNode);
     }
     if (parentTree != null) {
       parentTree.maybeUpdateValueUI(valueRef);
@@ -827,6 +992,7 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
 
   public void onFlutterFrame() {
     flutterAppFrameReady = true;
+    discardPrefetches();
     if (!visibleToUser) {
       return;
     }
@@ -1088,20 +1254,48 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
     if (selectedNodes.length > 0) {
       assert (selectedNodes.length == 1);
       setSelectedNode(selectedNodes[0]);
+      onSelectedNodeChanged(false);
+    }
+  }
 
-      final DiagnosticsNode selectedDiagnostic = getSelectedDiagnostic();
-      // Don't reroot if the selected value is already visible in the details tree.
-      final boolean maybeReroot = isSummaryTree && subtreePanel != null && selectedDiagnostic != null &&
-                                  !subtreePanel.hasDiagnosticsValue(selectedDiagnostic.getValueRef());
-      syncSelectionHelper(maybeReroot, null, false);
-      if (!maybeReroot) {
-        if (isSummaryTree && subtreePanel != null) {
-          subtreePanel.selectAndShowNode(selectedDiagnostic);
-        }
-        else if (parentTree != null) {
-          parentTree.selectAndShowNode(firstAncestorInParentTree(selectedNode));
-        }
+  private void onSelectedNodeChanged(boolean textEditorUpdated) {
+    final DiagnosticsNode selectedDiagnostic = getSelectedDiagnostic();
+    // Don't reroot if the selected value is already visible in the details tree.
+    final boolean maybeReroot = isSummaryTree && subtreePanel != null && selectedDiagnostic != null &&
+                                !subtreePanel.hasDiagnosticsValue(selectedDiagnostic.getValueRef());
+    syncSelectionHelper(maybeReroot, null, textEditorUpdated);
+    if (!maybeReroot) {
+      if (isSummaryTree && subtreePanel != null) {
+        subtreePanel.selectAndShowNode(selectedDiagnostic);
       }
+      else if (parentTree != null) {
+        parentTree.selectAndShowNode(firstAncestorInParentTree(selectedNode));
+      }
+    }
+    if (isSummaryTree && subtreePanel != null && selectedNode != null) {
+      subtreePanel.prefetchDetailsSubtrees(getPrefetchCandidates(selectedNode));
+    }
+  }
+
+  /**
+   * Returns the nodes the user is likely to select after the given node, in
+   * the order they are likely to be selected when moving through the tree.
+   */
+  private static List<DiagnosticsNode> getPrefetchCandidates(DefaultMutableTreeNode node) {
+    final List<DiagnosticsNode> candidates = new ArrayList<>();
+    addPrefetchCandidate(candidates, node.getNextSibling());
+    if (node.getChildCount() > 0) {
+      addPrefetchCandidate(candidates, node.getFirstChild());
+    }
+    addPrefetchCandidate(candidates, node.getPreviousSibling());
+    addPrefetchCandidate(candidates, node.getParent());
+    return candidates;
+  }
+
+  private static void addPrefetchCandidate(List<DiagnosticsNode> candidates, TreeNode node) {
+    final DiagnosticsNode diagnostic = getDiagnosticNode(node);
+    if (diagnostic != null) {
+      candidates.add(diagnostic);
     }
   }
 
@@ -1549,6 +1743,43 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
     }
   }
 
+  private class MyTreePatcherHost implements InspectorTreePatcher.Host {
+    @Override
+    public void nodeReused(DefaultMutableTreeNode treeNode, DiagnosticsNode node) {
+      valueToTreeNode.put(node.getValueRef(), treeNode);
+      indexCreationLocation(treeNode, node);
+    }
+
+    @Override
+    public void setupTreeNode(DefaultMutableTreeNode treeNode, DiagnosticsNode node) {
+      InspectorPanel.this.setupTreeNode(treeNode, node, false);
+    }
+
+    @Override
+    public void setupChildren(DefaultMutableTreeNode treeNode, DiagnosticsNode node, ArrayList<DiagnosticsNode> children) {
+      InspectorPanel.this.setupChildren(node, treeNode, children, false);
+    }
+
+    @Override
+    public void loadChildren(DefaultMutableTreeNode treeNode) {
+      maybeLoadChildren(treeNode);
+    }
+
+    @Override
+    public void expand(List<TreePath> paths, boolean expandSubtrees) {
+      programaticExpansionInProgress = true;
+      for (TreePath path : paths) {
+        if (expandSubtrees) {
+          expandAll(myRootsTree, path, false);
+        }
+        else {
+          myRootsTree.expandPath(path);
+        }
+      }
+      programaticExpansionInProgress = false;
+    }
+  }
+
   private class MyTreeExpansionListener implements TreeExpansionListener {
     @Override
     public void treeExpanded(TreeExpansionEvent event) {
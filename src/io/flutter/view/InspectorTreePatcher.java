@@ -0,0 +1,257 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.view;
+
+import io.flutter.inspector.DiagnosticsNode;
+
+import javax.swing.*;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
+import java.util.*;
+
+import static io.flutter.view.InspectorPanel.getDiagnosticNode;
+
+/**
+ * Updates the tree nodes displaying an inspector tree so that they display a
+ * newer copy of the same tree.
+ * <p>
+ * New nodes are matched to existing tree nodes by {@link #getDiffKey}.
+ * Matching tree nodes are reused, so they keep their expansion and selection
+ * state, and only the TreeModel events for what actually changed are fired.
+ */
+class InspectorTreePatcher {
+  /**
+   * How the panel owning the tree builds and tracks its tree nodes.
+   */
+  interface Host {
+    /**
+     * Called for each reused tree node that displays a node that isn't a
+     * property and has a value.
+     */
+    void nodeReused(DefaultMutableTreeNode treeNode, DiagnosticsNode node);
+
+    /**
+     * Builds a tree node, and any subtree that is already loaded, for a node
+     * that wasn't displayed before.
+     */
+    void setupTreeNode(DefaultMutableTreeNode treeNode, DiagnosticsNode node);
+
+    /**
+     * Replaces the loading placeholder of a reused tree node now that its
+     * children are available.
+     */
+    void setupChildren(DefaultMutableTreeNode treeNode, DiagnosticsNode node, ArrayList<DiagnosticsNode> children);
+
+    /**
+     * Starts loading the children of an expanded tree node whose new node
+     * doesn't have them yet.
+     */
+    void loadChildren(DefaultMutableTreeNode treeNode);
+
+    /**
+     * Expands the given paths, and the loaded subtrees below them if
+     * expandSubtrees is set, without treating it as a user action.
+     */
+    void expand(List<TreePath> paths, boolean expandSubtrees);
+  }
+
+  private final JTree tree;
+  private final Host host;
+
+  InspectorTreePatcher(JTree tree, Host host) {
+    this.tree = tree;
+    this.host = host;
+  }
+
+  /**
+   * Key identifying which tree node a DiagnosticsNode should be displayed in
+   * when diffing trees.
+   * <p>
+   * Nodes are identified by the Dart object they describe and their creation
+   * location. Properties do not have stable value ids so they are identified
+   * by name.
+   */
+  static String getDiffKey(DiagnosticsNode node) {
+    if (node.isProperty()) {
+      return "property:" + node.getName();
+    }
+    return node.getValueRef().getId() + ":" + node.getLocationId();
+  }
+
+  /**
+   * Returns whether the new subtree would display exactly what the existing
+   * tree node displays.
+   */
+  static boolean subtreesIdentical(DefaultMutableTreeNode treeNode, DiagnosticsNode newNode) {
+    final DiagnosticsNode existing = getDiagnosticNode(treeNode);
+    if (existing == null || !getDiffKey(existing).equals(getDiffKey(newNode)) || !newNode.identicalDisplayIgnoringChildren(existing)) {
+      return false;
+    }
+    final List<DiagnosticsNode> newChildren = getLoadedChildren(newNode);
+    if (newChildren == null) {
+      return hasLoadingPlaceholder(treeNode);
+    }
+    if (hasLoadingPlaceholder(treeNode) || treeNode.getChildCount() != newChildren.size()) {
+      return false;
+    }
+    for (int i = 0; i < newChildren.size(); ++i) {
+      if (!subtreesIdentical((DefaultMutableTreeNode)treeNode.getChildAt(i), newChildren.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the properties and children of the node in the order they are
+   * displayed or null if the children have not been loaded yet.
+   */
+  private static List<DiagnosticsNode> getLoadedChildren(DiagnosticsNode node) {
+    if (node.hasChildren() && !node.childrenReady()) {
+      return null;
+    }
+    final List<DiagnosticsNode> children = new ArrayList<>(node.getInlineProperties());
+    final ArrayList<DiagnosticsNode> loaded = node.getChildren().getNow(null);
+    if (loaded != null) {
+      children.addAll(loaded);
+    }
+    return children;
+  }
+
+  private static boolean hasLoadingPlaceholder(DefaultMutableTreeNode node) {
+    return node.getChildCount() == 1 && ((DefaultMutableTreeNode)node.getFirstChild()).getUserObject() instanceof String;
+  }
+
+  /**
+   * Updates an existing tree node, which must have the same diff key as
+   * newNode, to display newNode.
+   */
+  void patch(DefaultMutableTreeNode treeNode, DiagnosticsNode newNode) {
+    final DiagnosticsNode existing = getDiagnosticNode(treeNode);
+    final DefaultTreeModel model = (DefaultTreeModel)tree.getModel();
+    // The existing node belongs to the previous object group so always switch
+    // to the new node even if it displays identically.
+    treeNode.setUserObject(newNode);
+    if (newNode.getValueRef().getId() != null && !newNode.isProperty()) {
+      host.nodeReused(treeNode, newNode);
+    }
+    if (!newNode.identicalDisplayIgnoringChildren(existing)) {
+      model.nodeChanged(treeNode);
+    }
+
+    final List<DiagnosticsNode> newChildren = getLoadedChildren(newNode);
+    if (newChildren == null) {
+      // The children will be loaded lazily from the new group.
+      if (!hasLoadingPlaceholder(treeNode)) {
+        treeNode.removeAllChildren();
+        treeNode.add(new DefaultMutableTreeNode("Loading..."));
+        model.nodeStructureChanged(treeNode);
+        if (tree.isExpanded(new TreePath(treeNode.getPath()))) {
+          host.loadChildren(treeNode);
+        }
+      }
+      return;
+    }
+    if (hasLoadingPlaceholder(treeNode)) {
+      final ArrayList<DiagnosticsNode> children = newNode.getChildren().getNow(null);
+      host.setupChildren(treeNode, newNode, children != null ? children : new ArrayList<>());
+      return;
+    }
+    treeNode.setAllowsChildren(!newChildren.isEmpty());
+
+    // Match new children to existing tree nodes with the same key.
+    final Map<String, ArrayDeque<DefaultMutableTreeNode>> existingByKey = new HashMap<>();
+    for (int i = 0; i < treeNode.getChildCount(); ++i) {
+      final DefaultMutableTreeNode child = (DefaultMutableTreeNode)treeNode.getChildAt(i);
+      final DiagnosticsNode diagnostic = getDiagnosticNode(child);
+      if (diagnostic != null) {
+        existingByKey.computeIfAbsent(getDiffKey(diagnostic), (key) -> new ArrayDeque<>()).add(child);
+      }
+    }
+    final DefaultMutableTreeNode[] matches = new DefaultMutableTreeNode[newChildren.size()];
+    final Set<DefaultMutableTreeNode> reused = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (int i = 0; i < newChildren.size(); ++i) {
+      final ArrayDeque<DefaultMutableTreeNode> candidates = existingByKey.get(getDiffKey(newChildren.get(i)));
+      if (candidates != null && !candidates.isEmpty()) {
+        matches[i] = candidates.poll();
+        reused.add(matches[i]);
+      }
+    }
+
+    for (int i = treeNode.getChildCount() - 1; i >= 0; --i) {
+      final DefaultMutableTreeNode child = (DefaultMutableTreeNode)treeNode.getChildAt(i);
+      if (!reused.contains(child)) {
+        model.removeNodeFromParent(child);
+      }
+    }
+
+    // The remaining children are in their original order. If the reused
+    // nodes were reordered fall back to replacing the children wholesale.
+    boolean inOrder = true;
+    int next = 0;
+    for (DefaultMutableTreeNode match : matches) {
+      if (match != null) {
+        if (next >= treeNode.getChildCount() || treeNode.getChildAt(next) != match) {
+          inOrder = false;
+          break;
+        }
+        next++;
+      }
+    }
+
+    List<TreePath> expanded = Collections.emptyList();
+    if (!inOrder) {
+      // The tree forgets which descendants were expanded when the structure
+      // changes, so remember them to expand the reused nodes again.
+      final Enumeration<TreePath> descendants = tree.getExpandedDescendants(new TreePath(treeNode.getPath()));
+      if (descendants != null) {
+        expanded = Collections.list(descendants);
+      }
+      treeNode.removeAllChildren();
+    }
+    final List<DefaultMutableTreeNode> added = new ArrayList<>();
+    for (int i = 0; i < matches.length; ++i) {
+      final DiagnosticsNode newChild = newChildren.get(i);
+      if (matches[i] != null) {
+        if (!inOrder) {
+          treeNode.add(matches[i]);
+        }
+        continue;
+      }
+      final DefaultMutableTreeNode childTreeNode = new DefaultMutableTreeNode();
+      host.setupTreeNode(childTreeNode, newChild);
+      if (newChild.isProperty()) {
+        childTreeNode.setAllowsChildren(childTreeNode.getChildCount() > 0);
+      }
+      else if (newChild.childrenReady()) {
+        added.add(childTreeNode);
+      }
+      if (inOrder) {
+        model.insertNodeInto(childTreeNode, treeNode, i);
+      }
+      else {
+        treeNode.add(childTreeNode);
+      }
+    }
+    if (!inOrder) {
+      model.nodeStructureChanged(treeNode);
+      host.expand(expanded, false);
+    }
+    // Match the full rebuild case where loaded subtrees are shown expanded.
+    final List<TreePath> addedPaths = new ArrayList<>(added.size());
+    for (DefaultMutableTreeNode node : added) {
+      addedPaths.add(new TreePath(node.getPath()));
+    }
+    host.expand(addedPaths, true);
+
+    for (int i = 0; i < matches.length; ++i) {
+      if (matches[i] != null) {
+        patch(matches[i], newChildren.get(i));
+      }
+    }
+  }
+}
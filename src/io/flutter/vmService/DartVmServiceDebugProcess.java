@@ -13,12 +13,11 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Disposer;
-import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.wm.WindowManager;
-import com.intellij.testFramework.LightVirtualFile;
 import com.intellij.util.BitUtil;
 import com.intellij.util.TimeoutUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.xdebugger.*;
 import com.intellij.xdebugger.breakpoints.XBreakpointHandler;
 import com.intellij.xdebugger.evaluation.XDebuggerEditorsProvider;
@@ -28,8 +27,6 @@ import com.intellij.xdebugger.frame.XSuspendContext;
 import com.jetbrains.lang.dart.ide.runner.actions.DartPopFrameAction;
 import com.jetbrains.lang.dart.ide.runner.base.DartDebuggerEditorsProvider;
 import com.jetbrains.lang.dart.util.DartUrlResolver;
-import gnu.trove.THashMap;
-import gnu.trove.TIntObjectHashMap;
 import io.flutter.FlutterBundle;
 import io.flutter.FlutterUtils;
 import io.flutter.ObservatoryConnector;
@@ -38,7 +35,6 @@ import io.flutter.vmService.frame.DartVmServiceEvaluator;
 import io.flutter.vmService.frame.DartVmServiceStackFrame;
 import io.flutter.vmService.frame.DartVmServiceSuspendContext;
 import org.dartlang.vm.service.VmService;
-import org.dartlang.vm.service.consumer.GetObjectConsumer;
 import org.dartlang.vm.service.consumer.VMConsumer;
 import org.dartlang.vm.service.element.Event;
 import org.dartlang.vm.service.element.*;
@@ -64,8 +60,6 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
   @NotNull private final XBreakpointHandler[] myBreakpointHandlers;
   private final IsolatesInfo myIsolatesInfo;
   @NotNull private final Map<String, CompletableFuture<Object>> mySuspendedIsolateIds = Collections.synchronizedMap(new HashMap<>());
-  private final Map<String, LightVirtualFile> myScriptIdToContentMap = new THashMap<>();
-  private final Map<String, TIntObjectHashMap<Pair<Integer, Integer>>> myScriptIdToLinesAndColumnsMap = new THashMap<>();
   @Nullable private final VirtualFile myCurrentWorkingDirectory;
   @NotNull private final ObservatoryConnector myConnector;
   @NotNull private final ExecutionEnvironment executionEnvironment;
@@ -205,6 +199,11 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
       public void logInformation(final String message, final Throwable exception) {
         LOG.debug(message, exception);
       }
+
+      @Override
+      public boolean isInformationEnabled() {
+        return LOG.isDebugEnabled();
+      }
     });
   }
 
@@ -545,37 +544,22 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
 
   // TODO(devoncarew): Re-implement this in terms of the generated vm service protocol library.
   private void onOpenSourceLocationRequest(@NotNull String isolateId, @NotNull String scriptId, int tokenPos) {
-    myVmServiceWrapper.getObject(isolateId, scriptId, new GetObjectConsumer() {
-      @Override
-      public void received(Obj response) {
-        if (response instanceof Script) {
-          ApplicationManager.getApplication().executeOnPooledThread(() -> {
-            final XSourcePosition source =
-              getSourcePosition(isolateId, toScriptRef((Script)response), tokenPos);
-            if (source != null) {
-              final Project project = getSession().getProject();
-              final OpenFileHyperlinkInfo
-                info = new OpenFileHyperlinkInfo(project, source.getFile(), source.getLine());
-              ApplicationManager.getApplication().invokeLater(() -> ApplicationManager.getApplication().runWriteAction(() -> {
-                info.navigate(project);
-
-                ProjectUtil.focusProjectWindow(project, true);
-              }));
-            }
-          });
-        }
-      }
-
-      @Override
-      public void received(Sentinel response) {
-        // ignore
+    myVmServiceWrapper.getScript(isolateId, scriptId).thenAcceptAsync(script -> {
+      if (script == null) {
+        return;
       }
+      final XSourcePosition source = getSourcePosition(isolateId, toScriptRef(script), tokenPos);
+      if (source != null) {
+        final Project project = getSession().getProject();
+        final OpenFileHyperlinkInfo
+          info = new OpenFileHyperlinkInfo(project, source.getFile(), source.getLine());
+        ApplicationManager.getApplication().invokeLater(() -> ApplicationManager.getApplication().runWriteAction(() -> {
+          info.navigate(project);
 
-      @Override
-      public void onError(RPCError error) {
-        // ignore
+          ProjectUtil.focusProjectWindow(project, true);
+        }));
       }
-    });
+    }, AppExecutorUtil.getAppExecutorService());
   }
 
   /**
@@ -593,25 +577,6 @@ public class DartVmServiceDebugProcess extends XDebugProcess {
     return uri.startsWith("dart:_") || uri.startsWith("dart:") && uri.contains("-patch/");
   }
 
-  @NotNull
-  private static TIntObjectHashMap<Pair<Integer, Integer>> createTokenPosToLineAndColumnMap(@NotNull final List<List<Integer>> tokenPosTable) {
-    // Each subarray consists of a line number followed by (tokenPos, columnNumber) pairs
-    // see https://github.com/dart-lang/vm_service_drivers/blob/master/dart/tool/service.md#script
-    final TIntObjectHashMap<Pair<Integer, Integer>> result = new TIntObjectHashMap<>();
-
-    for (List<Integer> lineAndPairs : tokenPosTable) {
-      final Iterator<Integer> iterator = lineAndPairs.iterator();
-      final int line = Math.max(0, iterator.next() - 1);
-      while (iterator.hasNext()) {
-        final int tokenPos = iterator.next();
-        final int column = Math.max(0, iterator.next() - 1);
-        result.put(tokenPos, Pair.create(line, column));
-      }
-    }
-
-    return result;
-  }
-
   private static void focusProject(@NotNull Project project) {
     final JFrame projectFrame = WindowManager.getInstance().getFrame(project);
     final int frameState = projectFrame.getExtendedState();
@@ -0,0 +1,486 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.vmService;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A fixed capacity store of recent frame timings.
+ * <p>
+ * Frames are kept in primitive ring buffers. Running totals for the current frame set, slow frame
+ * counts and a frame time histogram are maintained as frames are added and evicted, so recording a
+ * frame does not depend on the number of frames retained.
+ * <p>
+ * Frames are added from a single thread. Readers get immutable {@link Snapshot}s, which are only
+ * built, along with their percentiles, when a reader asks and frames were added since the last
+ * one; reading an unchanged snapshot doesn't lock. A coarser {@link History} with per-second
+ * aggregates is kept for a longer period and is rebuilt the same way after a second is completed.
+ */
+public class FlutterFrameStore {
+  static final int HISTOGRAM_BUCKET_MICROS = 100;
+  static final int HISTOGRAM_BUCKETS = 1000;
+  static final long HISTORY_BUCKET_MICROS = 1000000;
+  static final int DEFAULT_HISTORY_CAPACITY = 600;
+
+  private static final byte FRAME_SET_START = 1;
+  private static final byte SLOW_FRAME = 2;
+
+  private final int capacity;
+
+  private final int[] frameIds;
+  private final long[] startTimes;
+  private final long[] elapsedTimes;
+  private final int[] costs;
+  private final byte[] flags;
+
+  /**
+   * Index of the next slot to write.
+   */
+  private int head;
+  private int size;
+
+  private int setFrameCount;
+  private long setCost;
+  private int slowFrameCount;
+  private long totalFrameCount;
+  private long totalSlowFrameCount;
+
+  private final int[] histogram = new int[HISTOGRAM_BUCKETS];
+
+  /**
+   * The number of completed seconds kept, plus one for the second being aggregated.
+   */
+  private final int historySlots;
+  private final long[] historyStartTimes;
+  private final int[] historyFrameCounts;
+  private final int[] historySlowFrameCounts;
+  private final long[] historyMaxElapsed;
+  private final long[] historyTotalElapsed;
+  private int historyHead;
+  private int historySize;
+
+  /**
+   * The second currently being aggregated, or -1 if no frames have been added.
+   */
+  private long openBucket = -1;
+
+  /**
+   * Incremented whenever the retained frames change.
+   */
+  private volatile long frameVersion;
+  /**
+   * Incremented whenever a second is completed.
+   */
+  private volatile long historyVersion;
+
+  private volatile Snapshot snapshot = Snapshot.EMPTY;
+  private volatile History history = History.EMPTY;
+
+  public FlutterFrameStore(int capacity) {
+    this(capacity, DEFAULT_HISTORY_CAPACITY);
+  }
+
+  public FlutterFrameStore(int capacity, int historyCapacity) {
+    this.capacity = capacity;
+    frameIds = new int[capacity];
+    startTimes = new long[capacity];
+    elapsedTimes = new long[capacity];
+    costs = new int[capacity];
+    flags = new byte[capacity];
+
+    historySlots = historyCapacity + 1;
+    historyStartTimes = new long[historySlots];
+    historyFrameCounts = new int[historySlots];
+    historySlowFrameCounts = new int[historySlots];
+    historyMaxElapsed = new long[historySlots];
+    historyTotalElapsed = new long[historySlots];
+  }
+
+  /**
+   * Record a frame.
+   *
+   * @param frameSetStart        whether the frame starts a new set of frames after an idle period
+   * @param targetMicrosPerFrame the frame budget at the time the frame was rendered
+   */
+  public synchronized void add(int frameId, long startMicros, long elapsedMicros, boolean frameSetStart, int targetMicrosPerFrame) {
+    if (size == capacity) {
+      evict((head - size + capacity) % capacity);
+    }
+
+    final boolean slow = elapsedMicros > targetMicrosPerFrame;
+    int cost = (int)(elapsedMicros / targetMicrosPerFrame);
+    if (elapsedMicros > (long)cost * targetMicrosPerFrame) {
+      cost++;
+    }
+
+    frameIds[head] = frameId;
+    startTimes[head] = startMicros;
+    elapsedTimes[head] = elapsedMicros;
+    costs[head] = cost;
+    flags[head] = (byte)((frameSetStart ? FRAME_SET_START : 0) | (slow ? SLOW_FRAME : 0));
+    head = (head + 1) % capacity;
+    size++;
+
+    if (frameSetStart) {
+      setFrameCount = 1;
+      setCost = cost;
+    }
+    else {
+      setFrameCount++;
+      setCost += cost;
+    }
+    histogram[bucketFor(elapsedMicros)]++;
+    totalFrameCount++;
+    if (slow) {
+      slowFrameCount++;
+      totalSlowFrameCount++;
+    }
+
+    aggregate(startMicros, elapsedMicros, slow);
+    frameVersion++;
+  }
+
+  /**
+   * Remove all frames and history.
+   */
+  public synchronized void clear() {
+    head = 0;
+    size = 0;
+    setFrameCount = 0;
+    setCost = 0;
+    slowFrameCount = 0;
+    totalFrameCount = 0;
+    totalSlowFrameCount = 0;
+    Arrays.fill(histogram, 0);
+    historyHead = 0;
+    historySize = 0;
+    openBucket = -1;
+    frameVersion++;
+    historyVersion++;
+  }
+
+  /**
+   * Return the retained frames. This only blocks if frames were added since the last call.
+   */
+  @NotNull
+  public Snapshot getSnapshot() {
+    final Snapshot current = snapshot;
+    if (current.version == frameVersion) {
+      return current;
+    }
+    synchronized (this) {
+      if (snapshot.version != frameVersion) {
+        snapshot = createSnapshot();
+      }
+      return snapshot;
+    }
+  }
+
+  /**
+   * Return the per-second aggregates for completed seconds. This only blocks if a second was
+   * completed since the last call.
+   */
+  @NotNull
+  public History getHistory() {
+    final History current = history;
+    if (current.version == historyVersion) {
+      return current;
+    }
+    synchronized (this) {
+      if (history.version != historyVersion) {
+        history = createHistory();
+      }
+      return history;
+    }
+  }
+
+  private void evict(int index) {
+    size--;
+    // The frame belongs to the current set only if every retained frame does.
+    if (setFrameCount > size) {
+      setFrameCount--;
+      setCost -= costs[index];
+    }
+    histogram[bucketFor(elapsedTimes[index])]--;
+    if ((flags[index] & SLOW_FRAME) != 0) {
+      slowFrameCount--;
+    }
+  }
+
+  private void aggregate(long startMicros, long elapsedMicros, boolean slow) {
+    final long bucket = startMicros / HISTORY_BUCKET_MICROS;
+    if (bucket != openBucket) {
+      if (openBucket != -1) {
+        historyVersion++;
+      }
+      openBucket = bucket;
+      if (historySize == historySlots) {
+        historySize--;
+      }
+      historyStartTimes[historyHead] = bucket * HISTORY_BUCKET_MICROS;
+      historyFrameCounts[historyHead] = 0;
+      historySlowFrameCounts[historyHead] = 0;
+      historyMaxElapsed[historyHead] = 0;
+      historyTotalElapsed[historyHead] = 0;
+      historyHead = (historyHead + 1) % historySlots;
+      historySize++;
+    }
+
+    final int index = (historyHead - 1 + historySlots) % historySlots;
+    historyFrameCounts[index]++;
+    if (slow) {
+      historySlowFrameCounts[index]++;
+    }
+    historyMaxElapsed[index] = Math.max(historyMaxElapsed[index], elapsedMicros);
+    historyTotalElapsed[index] += elapsedMicros;
+  }
+
+  private static int bucketFor(long elapsedMicros) {
+    return (int)Math.min(elapsedMicros / HISTOGRAM_BUCKET_MICROS, HISTOGRAM_BUCKETS - 1);
+  }
+
+  /**
+   * Return the upper bound of the histogram bucket containing the given percentile.
+   */
+  private long percentile(double fraction) {
+    final int rank = Math.max(1, (int)Math.ceil(fraction * size));
+    int seen = 0;
+    for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+      seen += histogram[i];
+      if (seen >= rank) {
+        return (long)(i + 1) * HISTOGRAM_BUCKET_MICROS;
+      }
+    }
+    return 0;
+  }
+
+  private Snapshot createSnapshot() {
+    final int[] ids = new int[size];
+    final long[] starts = new long[size];
+    final long[] elapsed = new long[size];
+    final byte[] frameFlags = new byte[size];
+    final int first = (head - size + capacity) % capacity;
+    final int firstRun = Math.min(size, capacity - first);
+    System.arraycopy(frameIds, first, ids, 0, firstRun);
+    System.arraycopy(startTimes, first, starts, 0, firstRun);
+    System.arraycopy(elapsedTimes, first, elapsed, 0, firstRun);
+    System.arraycopy(flags, first, frameFlags, 0, firstRun);
+    if (firstRun < size) {
+      System.arraycopy(frameIds, 0, ids, firstRun, size - firstRun);
+      System.arraycopy(startTimes, 0, starts, firstRun, size - firstRun);
+      System.arraycopy(elapsedTimes, 0, elapsed, firstRun, size - firstRun);
+      System.arraycopy(flags, 0, frameFlags, firstRun, size - firstRun);
+    }
+    return new Snapshot(frameVersion, ids, starts, elapsed, frameFlags, setFrameCount, setCost, slowFrameCount, totalFrameCount,
+                        totalSlowFrameCount, percentile(0.5), percentile(0.9), percentile(0.99));
+  }
+
+  /**
+   * Create a history containing every bucket except the open one.
+   */
+  private History createHistory() {
+    final int count = openBucket == -1 ? 0 : historySize - 1;
+    final long[] starts = new long[count];
+    final int[] frameCounts = new int[count];
+    final int[] slowFrameCounts = new int[count];
+    final long[] maxElapsed = new long[count];
+    final long[] totalElapsed = new long[count];
+    for (int i = 0; i < count; i++) {
+      final int index = (historyHead - 1 - count + i + 2 * historySlots) % historySlots;
+      starts[i] = historyStartTimes[index];
+      frameCounts[i] = historyFrameCounts[index];
+      slowFrameCounts[i] = historySlowFrameCounts[index];
+      maxElapsed[i] = historyMaxElapsed[index];
+      totalElapsed[i] = historyTotalElapsed[index];
+    }
+    return new History(historyVersion, starts, frameCounts, slowFrameCounts, maxElapsed, totalElapsed);
+  }
+
+  /**
+   * An immutable view of the retained frames. Index 0 is the most recent frame.
+   */
+  public static class Snapshot {
+    static final Snapshot EMPTY = new Snapshot(0, new int[0], new long[0], new long[0], new byte[0], 0, 0, 0, 0, 0, 0, 0, 0);
+
+    /**
+     * The version of the store's frames this was built from.
+     */
+    final long version;
+
+    // Stored oldest first.
+    private final int[] frameIds;
+    private final long[] startTimes;
+    private final long[] elapsedTimes;
+    private final byte[] flags;
+
+    private final int currentSetFrameCount;
+    private final long currentSetCost;
+    private final int slowFrameCount;
+    private final long totalFrameCount;
+    private final long totalSlowFrameCount;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+
+    Snapshot(long version,
+             int[] frameIds,
+             long[] startTimes,
+             long[] elapsedTimes,
+             byte[] flags,
+             int currentSetFrameCount,
+             long currentSetCost,
+             int slowFrameCount,
+             long totalFrameCount,
+             long totalSlowFrameCount,
+             long p50,
+             long p90,
+             long p99) {
+      this.version = version;
+      this.frameIds = frameIds;
+      this.startTimes = startTimes;
+      this.elapsedTimes = elapsedTimes;
+      this.flags = flags;
+      this.currentSetFrameCount = currentSetFrameCount;
+      this.currentSetCost = currentSetCost;
+      this.slowFrameCount = slowFrameCount;
+      this.totalFrameCount = totalFrameCount;
+      this.totalSlowFrameCount = totalSlowFrameCount;
+      this.p50 = p50;
+      this.p90 = p90;
+      this.p99 = p99;
+    }
+
+    public int size() {
+      return frameIds.length;
+    }
+
+    public boolean isEmpty() {
+      return frameIds.length == 0;
+    }
+
+    public int getFrameId(int index) {
+      return frameIds[toOffset(index)];
+    }
+
+    public long getStartTimeMicros(int index) {
+      return startTimes[toOffset(index)];
+    }
+
+    public long getElapsedMicros(int index) {
+      return elapsedTimes[toOffset(index)];
+    }
+
+    public boolean isFrameSetStart(int index) {
+      return (flags[toOffset(index)] & FRAME_SET_START) != 0;
+    }
+
+    public boolean isSlowFrame(int index) {
+      return (flags[toOffset(index)] & SLOW_FRAME) != 0;
+    }
+
+    /**
+     * The number of frames since the most recent frame set start.
+     */
+    public int getCurrentSetFrameCount() {
+      return currentSetFrameCount;
+    }
+
+    /**
+     * The number of frame budgets used by the frames since the most recent frame set start.
+     */
+    public long getCurrentSetCost() {
+      return currentSetCost;
+    }
+
+    /**
+     * The number of retained frames that exceeded their frame budget.
+     */
+    public int getSlowFrameCount() {
+      return slowFrameCount;
+    }
+
+    public long getTotalFrameCount() {
+      return totalFrameCount;
+    }
+
+    public long getTotalSlowFrameCount() {
+      return totalSlowFrameCount;
+    }
+
+    /**
+     * The median frame time of the retained frames, rounded up to the histogram resolution.
+     */
+    public long getP50Micros() {
+      return p50;
+    }
+
+    public long getP90Micros() {
+      return p90;
+    }
+
+    public long getP99Micros() {
+      return p99;
+    }
+
+    private int toOffset(int index) {
+      return frameIds.length - 1 - index;
+    }
+  }
+
+  /**
+   * An immutable list of per-second frame aggregates, oldest first. Seconds without frames are
+   * not included.
+   */
+  public static class History {
+    static final History EMPTY = new History(0, new long[0], new int[0], new int[0], new long[0], new long[0]);
+
+    /**
+     * The version of the store's history this was built from.
+     */
+    final long version;
+
+    private final long[] startTimes;
+    private final int[] frameCounts;
+    private final int[] slowFrameCounts;
+    private final long[] maxElapsed;
+    private final long[] totalElapsed;
+
+    History(long version, long[] startTimes, int[] frameCounts, int[] slowFrameCounts, long[] maxElapsed, long[] totalElapsed) {
+      this.version = version;
+      this.startTimes = startTimes;
+      this.frameCounts = frameCounts;
+      this.slowFrameCounts = slowFrameCounts;
+      this.maxElapsed = maxElapsed;
+      this.totalElapsed = totalElapsed;
+    }
+
+    public int size() {
+      return startTimes.length;
+    }
+
+    public long getStartTimeMicros(int index) {
+      return startTimes[index];
+    }
+
+    public int getFrameCount(int index) {
+      return frameCounts[index];
+    }
+
+    public int getSlowFrameCount(int index) {
+      return slowFrameCounts[index];
+    }
+
+    public long getMaxElapsedMicros(int index) {
+      return maxElapsed[index];
+    }
+
+    public long getAverageElapsedMicros(int index) {
+      return frameCounts[index] == 0 ? 0 : totalElapsed[index] / frameCounts[index];
+    }
+  }
+}
@@ -6,6 +6,7 @@
 package io.flutter.vmService;
 
 import com.google.gson.JsonObject;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.EventDispatcher;
 import io.flutter.utils.VmServiceListenerAdapter;
@@ -15,10 +16,8 @@ import org.dartlang.vm.service.element.ExtensionData;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.EventListener;
-import java.util.LinkedList;
-import java.util.List;
 
-public class FlutterFramesMonitor {
+public class FlutterFramesMonitor implements Disposable {
   static final int maxFrames = 200;
 
   private final DisplayRefreshRateManager displayRefreshRateManager;
@@ -66,10 +65,18 @@ public class FlutterFramesMonitor {
     }
   }
 
-  public List<FlutterFrameEvent> frames = new LinkedList<>();
+  private final FlutterFrameStore store = new FlutterFrameStore(maxFrames);
 
-  public FlutterFramesMonitor(@NotNull DisplayRefreshRateManager displayRefreshRateManager, @NotNull VmService vmService) {
+  /**
+   * The lease on the Extension stream, which carries the Flutter.Frame events.
+   */
+  @NotNull private final Disposable extensionStreamLease;
+
+  public FlutterFramesMonitor(@NotNull DisplayRefreshRateManager displayRefreshRateManager,
+                              @NotNull VmService vmService,
+                              @NotNull StreamSubscriptionManager streamSubscriptions) {
     this.displayRefreshRateManager = displayRefreshRateManager;
+    extensionStreamLease = streamSubscriptions.listen(VmService.EXTENSION_STREAM_ID);
     vmService.addVmServiceListener(new VmServiceListenerAdapter() {
       @Override
       public void received(String streamId, Event event) {
@@ -82,6 +89,11 @@ public class FlutterFramesMonitor {
     });
   }
 
+  @Override
+  public void dispose() {
+    extensionStreamLease.dispose();
+  }
+
   private void onVmServiceReceived(String streamId, Event event) {
     if (StringUtil.equals(streamId, VmService.EXTENSION_STREAM_ID)) {
       if (StringUtil.equals("Flutter.Frame", event.getExtensionKind())) {
@@ -91,40 +103,42 @@ public class FlutterFramesMonitor {
   }
 
   public boolean hasFps() {
-    return !frames.isEmpty();
+    return !store.getSnapshot().isEmpty();
   }
 
   /**
    * Return the most recent FPS value.
    */
   public double getFPS() {
-    int frameCount = 0;
-    int costCount = 0;
-
-    synchronized (this) {
-      for (FlutterFrameEvent frame : frames) {
-        frameCount++;
-
-        int targetMicrosPerFrame = displayRefreshRateManager.getTargetMicrosPerFrame();
-        long thisCost = frame.elapsedMicros / targetMicrosPerFrame;
-        if (frame.elapsedMicros > (thisCost * targetMicrosPerFrame)) {
-          thisCost++;
-        }
-
-        costCount += thisCost;
-
-        if (frame.frameSetStart) {
-          break;
-        }
-      }
-    }
+    return getFPS(store.getSnapshot());
+  }
 
-    if (costCount == 0) {
+  /**
+   * Return the FPS value for the given snapshot of the most recent frames.
+   */
+  public double getFPS(@NotNull FlutterFrameStore.Snapshot snapshot) {
+    if (snapshot.getCurrentSetCost() == 0) {
       return 0.0;
     }
 
     final double targetDisplayRefreshRate = displayRefreshRateManager.getCurrentDisplayRefreshRateRaw();
-    return frameCount * targetDisplayRefreshRate / costCount;
+    return snapshot.getCurrentSetFrameCount() * targetDisplayRefreshRate / snapshot.getCurrentSetCost();
+  }
+
+  /**
+   * Return the most recent frames. This does not block the thread recording frames.
+   */
+  @NotNull
+  public FlutterFrameStore.Snapshot getFrames() {
+    return store.getSnapshot();
+  }
+
+  /**
+   * Return per-second frame aggregates covering a longer period than {@link #getFrames()}.
+   */
+  @NotNull
+  public FlutterFrameStore.History getHistory() {
+    return store.getHistory();
   }
 
   public void addListener(Listener listener) {
@@ -139,12 +153,8 @@ public class FlutterFramesMonitor {
     final FlutterFrameEvent frameEvent = new FlutterFrameEvent(event.getExtensionData(), lastEventFinished);
     lastEventFinished = frameEvent.getFrameFinishedMicros();
 
-    synchronized (this) {
-      frames.add(0, frameEvent);
-      if (frames.size() > maxFrames) {
-        frames.remove(frames.size() - 1);
-      }
-    }
+    store.add(frameEvent.frameId, frameEvent.startTimeMicros, frameEvent.elapsedMicros, frameEvent.frameSetStart,
+              displayRefreshRateManager.getTargetMicrosPerFrame());
 
     eventDispatcher.getMulticaster().handleFrameEvent(frameEvent);
   }
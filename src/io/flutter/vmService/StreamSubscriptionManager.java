@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.vmService;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import io.flutter.FlutterUtils;
+import org.dartlang.vm.service.VmService;
+import org.dartlang.vm.service.consumer.SuccessConsumer;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.element.Success;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Shares the VM service event streams between the parts of the plugin that listen to them.
+ * <p>
+ * Each subsystem takes a lease on the streams it needs with {@link #listen(String)} and disposes the
+ * lease when it stops needing them. streamListen is sent when the first lease on a stream is taken
+ * and streamCancel when the last one is disposed, so one subsystem can't cancel a stream that another
+ * is still reading, and a stream nobody reads isn't left running.
+ */
+public class StreamSubscriptionManager {
+  private static final Logger LOG = Logger.getInstance(StreamSubscriptionManager.class);
+
+  /**
+   * See the error codes in {@link RPCError}.
+   */
+  private static final int STREAM_ALREADY_SUBSCRIBED = 103;
+  private static final int STREAM_NOT_SUBSCRIBED = 104;
+
+  @NotNull private final VmService vmService;
+
+  /**
+   * The number of leases on each stream with at least one.
+   * <p>
+   * Requests are sent while holding the lock so that a listen and a cancel for the same stream reach
+   * the VM in the order the counts changed.
+   */
+  private final Map<String, Integer> subscriberCounts = new HashMap<>();
+
+  public StreamSubscriptionManager(@NotNull VmService vmService) {
+    this.vmService = vmService;
+  }
+
+  /**
+   * Subscribes to the given stream until the returned lease is disposed.
+   * <p>
+   * Disposing the lease more than once has no further effect.
+   */
+  @NotNull
+  public Disposable listen(@NotNull String streamId) {
+    synchronized (subscriberCounts) {
+      final int count = subscriberCounts.getOrDefault(streamId, 0);
+      subscriberCounts.put(streamId, count + 1);
+      if (count == 0) {
+        vmService.streamListen(streamId, new LoggingConsumer("streamListen", streamId, STREAM_ALREADY_SUBSCRIBED));
+      }
+    }
+    final AtomicBoolean released = new AtomicBoolean();
+    return () -> {
+      if (released.compareAndSet(false, true)) {
+        release(streamId);
+      }
+    };
+  }
+
+  /**
+   * Sends streamListen again for every stream with a lease.
+   * <p>
+   * Used when the Flutter isolate is replaced after a restart, so that no stream is left unsubscribed
+   * if the VM dropped it. Streams that are still subscribed are answered with an error that is ignored.
+   */
+  public void resubscribe() {
+    synchronized (subscriberCounts) {
+      for (String streamId : subscriberCounts.keySet()) {
+        vmService.streamListen(streamId, new LoggingConsumer("streamListen", streamId, STREAM_ALREADY_SUBSCRIBED));
+      }
+    }
+  }
+
+  /**
+   * Returns the number of undisposed leases on the given stream.
+   */
+  public int getSubscriberCount(@NotNull String streamId) {
+    synchronized (subscriberCounts) {
+      return subscriberCounts.getOrDefault(streamId, 0);
+    }
+  }
+
+  /**
+   * Returns the streams with at least one lease.
+   */
+  @NotNull
+  public List<String> getSubscribedStreams() {
+    synchronized (subscriberCounts) {
+      return new ArrayList<>(subscriberCounts.keySet());
+    }
+  }
+
+  private void release(@NotNull String streamId) {
+    synchronized (subscriberCounts) {
+      final Integer count = subscriberCounts.get(streamId);
+      if (count == null) {
+        return;
+      }
+      if (count > 1) {
+        subscriberCounts.put(streamId, count - 1);
+        return;
+      }
+      subscriberCounts.remove(streamId);
+      vmService.streamCancel(streamId, new LoggingConsumer("streamCancel", streamId, STREAM_NOT_SUBSCRIBED));
+    }
+  }
+
+  private static class LoggingConsumer implements SuccessConsumer {
+    private final String method;
+    private final String streamId;
+    private final int expectedErrorCode;
+
+    LoggingConsumer(String method, String streamId, int expectedErrorCode) {
+      this.method = method;
+      this.streamId = streamId;
+      this.expectedErrorCode = expectedErrorCode;
+    }
+
+    @Override
+    public void received(Success response) {
+    }
+
+    @Override
+    public void onError(RPCError error) {
+      if (error.getCode() != expectedErrorCode && error.getCode() != RPCError.REQUEST_CANCELLED) {
+        FlutterUtils.warn(LOG, method + "(" + streamId + ") failed: " + error.getMessage());
+      }
+    }
+  }
+}
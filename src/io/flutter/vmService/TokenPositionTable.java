@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.vmService;
+
+import org.dartlang.vm.service.element.Script;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Maps token positions in a {@link Script} to zero-based lines and columns.
+ * <p>
+ * The table is decoded from the script's unboxed token table into parallel int arrays sorted by token
+ * position, and lookups use a binary search. Tables are shared between everyone asking about the
+ * same script object; see {@link #forScript(Script)}.
+ * <p>
+ * See <a href="https://github.com/dart-lang/sdk/blob/master/runtime/vm/service/service.md#script">Script</a>.
+ */
+public class TokenPositionTable {
+  private static final TokenPositionTable EMPTY = new TokenPositionTable(new int[0], new int[0], new int[0]);
+
+  private static final Map<Script, TokenPositionTable> tables = new WeakHashMap<>();
+
+  private final int[] tokenPositions;
+  private final int[] lines;
+  private final int[] columns;
+
+  private TokenPositionTable(int[] tokenPositions, int[] lines, int[] columns) {
+    this.tokenPositions = tokenPositions;
+    this.lines = lines;
+    this.columns = columns;
+  }
+
+  /**
+   * Returns the table for the given script, or null if the script has no token position table.
+   * <p>
+   * The table is built the first time it is requested and kept for as long as the script object
+   * is reachable.
+   */
+  @Nullable
+  public static TokenPositionTable forScript(@NotNull Script script) {
+    synchronized (tables) {
+      if (tables.containsKey(script)) {
+        return tables.get(script);
+      }
+    }
+    final int[][] rows = script.getTokenPosTableArray();
+    final TokenPositionTable table = rows == null ? null : decode(rows);
+    synchronized (tables) {
+      tables.put(script, table);
+    }
+    return table;
+  }
+
+  /**
+   * Decodes a token position table.
+   * <p>
+   * Each row is a one-based line number followed by (token position, one-based column) pairs.
+   * If a token position appears more than once, the last entry wins.
+   */
+  @NotNull
+  static TokenPositionTable decode(@NotNull int[][] table) {
+    int count = 0;
+    for (int[] row : table) {
+      count += (row.length - 1) / 2;
+    }
+    if (count == 0) {
+      return EMPTY;
+    }
+
+    int[] tokenPositions = new int[count];
+    int[] lines = new int[count];
+    int[] columns = new int[count];
+    boolean sorted = true;
+    int index = 0;
+    for (int[] row : table) {
+      if (row.length == 0) {
+        continue;
+      }
+      final int line = Math.max(0, row[0] - 1);
+      for (int i = 1; i + 1 < row.length; i += 2) {
+        tokenPositions[index] = row[i];
+        lines[index] = line;
+        columns[index] = Math.max(0, row[i + 1] - 1);
+        if (index > 0 && tokenPositions[index] <= tokenPositions[index - 1]) {
+          sorted = false;
+        }
+        index++;
+      }
+    }
+
+    if (!sorted) {
+      // Sort by token position, breaking ties by original order so that later entries win below.
+      final long[] keys = new long[count];
+      for (int i = 0; i < count; i++) {
+        keys[i] = ((long)tokenPositions[i] << 32) | i;
+      }
+      Arrays.sort(keys);
+
+      final int[] sortedPositions = new int[count];
+      final int[] sortedLines = new int[count];
+      final int[] sortedColumns = new int[count];
+      int unique = 0;
+      for (long key : keys) {
+        final int from = (int)key;
+        if (unique > 0 && sortedPositions[unique - 1] == tokenPositions[from]) {
+          unique--;
+        }
+        sortedPositions[unique] = tokenPositions[from];
+        sortedLines[unique] = lines[from];
+        sortedColumns[unique] = columns[from];
+        unique++;
+      }
+      tokenPositions = Arrays.copyOf(sortedPositions, unique);
+      lines = Arrays.copyOf(sortedLines, unique);
+      columns = Arrays.copyOf(sortedColumns, unique);
+    }
+
+    return new TokenPositionTable(tokenPositions, lines, columns);
+  }
+
+  /**
+   * Returns the number of token positions in the table.
+   */
+  public int size() {
+    return tokenPositions.length;
+  }
+
+  /**
+   * Returns the zero-based line of the token, or -1 if the token is not in the table.
+   */
+  public int getLine(int tokenPos) {
+    final int index = Arrays.binarySearch(tokenPositions, tokenPos);
+    return index < 0 ? -1 : lines[index];
+  }
+
+  /**
+   * Returns the zero-based column of the token, or -1 if the token is not in the table.
+   */
+  public int getColumn(int tokenPos) {
+    final int index = Arrays.binarySearch(tokenPositions, tokenPos);
+    return index < 0 ? -1 : columns[index];
+  }
+}
@@ -49,9 +49,16 @@ public class VMServiceManager implements FlutterApp.FlutterAppListener, Disposab
   @NotNull private final Map<String, EventStream<ServiceExtensionState>> serviceExtensionState = new THashMap<>();
 
   private final EventStream<IsolateRef> flutterIsolateRefStream;
+  private boolean hadFlutterIsolate;
 
   private volatile boolean firstFrameEventReceived = false;
   private final VmService vmService;
+  @NotNull private final StreamSubscriptionManager streamSubscriptions;
+
+  /**
+   * The leases on the streams this class reads itself, released when the connection is disposed.
+   */
+  private final List<Disposable> streamLeases = new ArrayList<>();
 
   /**
    * Temporarily stores service extensions that we need to add. We should not add extensions until the first frame event
@@ -72,16 +79,16 @@ public class VMServiceManager implements FlutterApp.FlutterAppListener, Disposab
 
     this.heapMonitor = new HeapMonitor(app.getFlutterDebugProcess().getVmServiceWrapper());
     this.displayRefreshRateManager = new DisplayRefreshRateManager(this, vmService);
-    this.flutterFramesMonitor = new FlutterFramesMonitor(displayRefreshRateManager, vmService);
+    streamSubscriptions = new StreamSubscriptionManager(vmService);
+    this.flutterFramesMonitor = new FlutterFramesMonitor(displayRefreshRateManager, vmService, streamSubscriptions);
+    Disposer.register(this, flutterFramesMonitor);
     flutterIsolateRefStream = new EventStream<>();
 
-    // The VM Service depends on events from the Extension event stream to determine when Flutter.Frame
-    // events are fired. Without the call to listen, events from the stream will not be sent.
-    vmService.streamListen(VmService.EXTENSION_STREAM_ID, VmServiceConsumers.EMPTY_SUCCESS_CONSUMER);
-
-    vmService.streamListen(VmService.LOGGING_STREAM_ID, VmServiceConsumers.EMPTY_SUCCESS_CONSUMER);
-
-    vmService.streamListen(VmService.SERVICE_STREAM_ID, VmServiceConsumers.EMPTY_SUCCESS_CONSUMER);
+    // The first frame and service extension state events arrive on the Extension stream, console
+    // output on the Logging stream, and service registrations on the Service stream.
+    streamLeases.add(streamSubscriptions.listen(VmService.EXTENSION_STREAM_ID));
+    streamLeases.add(streamSubscriptions.listen(VmService.LOGGING_STREAM_ID));
+    streamLeases.add(streamSubscriptions.listen(VmService.SERVICE_STREAM_ID));
 
     final VmServiceListener myVmServiceListener = new VmServiceListenerAdapter() {
       @Override
@@ -145,6 +152,14 @@ public class VMServiceManager implements FlutterApp.FlutterAppListener, Disposab
     return heapMonitor;
   }
 
+  /**
+   * Returns the manager that VM service stream subscriptions for this app should be taken through.
+   */
+  @NotNull
+  public StreamSubscriptionManager getStreamSubscriptions() {
+    return streamSubscriptions;
+  }
+
   public void addRegisteredExtensionRPCs(Isolate isolate, boolean attach) {
     // If attach was called, there is a risk we may never receive a
     // Flutter.Frame or Flutter.FirstFrame event so we need to query the
@@ -217,6 +232,8 @@ public class VMServiceManager implements FlutterApp.FlutterAppListener, Disposab
 
   @Override
   public void dispose() {
+    streamLeases.forEach(Disposable::dispose);
+    streamLeases.clear();
     onVmConnectionClosed();
   }
 
@@ -231,6 +248,13 @@ public class VMServiceManager implements FlutterApp.FlutterAppListener, Disposab
         // Isolate didn't change.
         return;
       }
+      if (ref != null) {
+        if (hadFlutterIsolate) {
+          // The app was restarted; make sure the new isolate's events reach everyone holding a lease.
+          streamSubscriptions.resubscribe();
+        }
+        hadFlutterIsolate = true;
+      }
       flutterIsolateRefStream.setValue(ref);
     }
   }
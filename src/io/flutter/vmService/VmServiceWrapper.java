@@ -5,9 +5,8 @@ import com.intellij.execution.ui.ConsoleViewContentType;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.openapi.util.Ref;
 import com.intellij.util.Alarm;
-import com.intellij.util.concurrency.Semaphore;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.xdebugger.XSourcePosition;
 import com.intellij.xdebugger.breakpoints.XBreakpointProperties;
 import com.intellij.xdebugger.breakpoints.XLineBreakpoint;
@@ -31,6 +30,9 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class VmServiceWrapper implements Disposable {
@@ -471,38 +473,13 @@ public class VmServiceWrapper implements Disposable {
     addRequest(() -> myVmService.getStack(isolateId, new StackConsumer() {
       @Override
       public void received(final Stack vmStack) {
-        ApplicationManager.getApplication().executeOnPooledThread(() -> {
-          InstanceRef exceptionToAddToFrame = exception;
-
-          // Check for async causal frames; fall back to using regular sync frames.
-          ElementList<Frame> elementList = vmStack.getAsyncCausalFrames();
-          if (elementList == null) {
-            elementList = vmStack.getFrames();
-          }
-
-          final List<Frame> vmFrames = Lists.newArrayList(elementList);
-          final List<XStackFrame> xStackFrames = new ArrayList<>(vmFrames.size());
+        // Check for async causal frames; fall back to using regular sync frames.
+        ElementList<Frame> elementList = vmStack.getAsyncCausalFrames();
+        if (elementList == null) {
+          elementList = vmStack.getFrames();
+        }
 
-          for (final Frame vmFrame : vmFrames) {
-            if (vmFrame.getKind() == FrameKind.AsyncSuspensionMarker) {
-              // Render an asynchronous gap.
-              final XStackFrame markerFrame = new DartAsyncMarkerFrame();
-              xStackFrames.add(markerFrame);
-            }
-            else {
-              final DartVmServiceStackFrame stackFrame =
-                new DartVmServiceStackFrame(myDebugProcess, isolateId, vmFrame, vmFrames, exceptionToAddToFrame);
-              stackFrame.setIsDroppableFrame(vmFrame.getKind() == FrameKind.Regular);
-              xStackFrames.add(stackFrame);
-
-              if (!stackFrame.isInDartSdkPatchFile()) {
-                // The exception (if any) is added to the frame where debugger stops and to the upper frames.
-                exceptionToAddToFrame = null;
-              }
-            }
-          }
-          container.addStackFrames(firstFrameIndex == 0 ? xStackFrames : xStackFrames.subList(firstFrameIndex, xStackFrames.size()), true);
-        });
+        new StackFramesBuilder(isolateId, Lists.newArrayList(elementList), firstFrameIndex, container, exception).start();
       }
 
       @Override
@@ -512,35 +489,140 @@ public class VmServiceWrapper implements Disposable {
     }));
   }
 
-  @Nullable
-  public Script getScriptSync(@NotNull final String isolateId, @NotNull final String scriptId) {
-    assertSyncRequestAllowed();
+  /**
+   * Resolves the frames of a stack and passes them to the container as their scripts arrive.
+   * <p>
+   * All distinct scripts referenced by the stack are requested at once. Frames are added in order,
+   * so each time a script arrives, the run of frames whose scripts are all available is added.
+   */
+  private class StackFramesBuilder {
+    @NotNull private final String isolateId;
+    @NotNull private final List<Frame> vmFrames;
+    private final int firstFrameIndex;
+    @NotNull private final XExecutionStack.XStackFrameContainer container;
+
+    /**
+     * The script for each frame, or null for frames without a location.
+     */
+    @NotNull private final List<CompletableFuture<Script>> frameScripts;
+
+    // Guarded by this.
+    @Nullable private InstanceRef exceptionToAddToFrame;
+    private int nextFrame;
+    private boolean done;
+
+    StackFramesBuilder(@NotNull String isolateId,
+                       @NotNull List<Frame> vmFrames,
+                       int firstFrameIndex,
+                       @NotNull XExecutionStack.XStackFrameContainer container,
+                       @Nullable InstanceRef exception) {
+      this.isolateId = isolateId;
+      this.vmFrames = vmFrames;
+      this.firstFrameIndex = firstFrameIndex;
+      this.container = container;
+      this.exceptionToAddToFrame = exception;
+
+      final Map<String, CompletableFuture<Script>> scripts = new HashMap<>();
+      frameScripts = new ArrayList<>(vmFrames.size());
+      for (Frame vmFrame : vmFrames) {
+        final SourceLocation location = vmFrame.getKind() == FrameKind.AsyncSuspensionMarker ? null : vmFrame.getLocation();
+        frameScripts.add(location == null ? null : scripts.computeIfAbsent(
+          location.getScript().getId(), (scriptId) -> withTimeout(getScript(isolateId, scriptId))));
+      }
+    }
 
-    final Semaphore semaphore = new Semaphore();
-    semaphore.down();
+    void start() {
+      final Set<CompletableFuture<Script>> pending = new HashSet<>(frameScripts);
+      pending.remove(null);
+      for (CompletableFuture<Script> script : pending) {
+        script.whenComplete((v, t) -> ApplicationManager.getApplication().executeOnPooledThread(this::addReadyFrames));
+      }
+      if (pending.isEmpty()) {
+        ApplicationManager.getApplication().executeOnPooledThread(this::addReadyFrames);
+      }
+    }
 
-    final Ref<Script> resultRef = Ref.create();
+    private synchronized void addReadyFrames() {
+      if (done) {
+        return;
+      }
 
-    addRequest(() -> myVmService.getObject(isolateId, scriptId, new GetObjectConsumer() {
-      @Override
-      public void received(Obj script) {
-        resultRef.set((Script)script);
-        semaphore.up();
+      final List<XStackFrame> xStackFrames = new ArrayList<>();
+      while (nextFrame < vmFrames.size()) {
+        final CompletableFuture<Script> script = frameScripts.get(nextFrame);
+        if (script != null && !script.isDone()) {
+          break;
+        }
+        final XStackFrame frame = createFrame(vmFrames.get(nextFrame), script == null ? null : script.getNow(null));
+        if (nextFrame >= firstFrameIndex) {
+          xStackFrames.add(frame);
+        }
+        nextFrame++;
       }
 
-      @Override
-      public void received(Sentinel response) {
-        semaphore.up();
+      done = nextFrame == vmFrames.size();
+      if (!xStackFrames.isEmpty() || done) {
+        container.addStackFrames(xStackFrames, done);
       }
+    }
 
-      @Override
-      public void onError(RPCError error) {
-        semaphore.up();
+    @NotNull
+    private XStackFrame createFrame(@NotNull Frame vmFrame, @Nullable Script script) {
+      if (vmFrame.getKind() == FrameKind.AsyncSuspensionMarker) {
+        // Render an asynchronous gap.
+        return new DartAsyncMarkerFrame();
       }
-    }));
 
-    semaphore.waitFor(RESPONSE_WAIT_TIMEOUT);
-    return resultRef.get();
+      // The script is in the shared cache now, so resolving the position does not block.
+      final SourceLocation location = vmFrame.getLocation();
+      final XSourcePosition position =
+        script == null ? null : myDebugProcess.getSourcePosition(isolateId, location.getScript(), location.getTokenPos());
+      final DartVmServiceStackFrame stackFrame =
+        new DartVmServiceStackFrame(myDebugProcess, isolateId, vmFrame, vmFrames, exceptionToAddToFrame, position);
+      stackFrame.setIsDroppableFrame(vmFrame.getKind() == FrameKind.Regular);
+
+      if (!stackFrame.isInDartSdkPatchFile()) {
+        // The exception (if any) is added to the frame where debugger stops and to the upper frames.
+        exceptionToAddToFrame = null;
+      }
+      return stackFrame;
+    }
+  }
+
+  /**
+   * Returns a future that completes like the given one, or with null after {@link #RESPONSE_WAIT_TIMEOUT}.
+   */
+  @NotNull
+  private static <T> CompletableFuture<T> withTimeout(@NotNull CompletableFuture<T> future) {
+    if (future.isDone()) {
+      return future;
+    }
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    future.whenComplete((value, t) -> result.complete(t == null ? value : null));
+    AppExecutorUtil.getAppScheduledExecutorService()
+      .schedule(() -> result.complete(null), RESPONSE_WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+    return result;
+  }
+
+  @Nullable
+  public Script getScriptSync(@NotNull final String isolateId, @NotNull final String scriptId) {
+    assertSyncRequestAllowed();
+
+    try {
+      return getScript(isolateId, scriptId).get(RESPONSE_WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+    catch (InterruptedException | ExecutionException | TimeoutException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the script from the object cache shared by all users of this VM service connection,
+   * downloading it if needed. Completes with null if the script is not available.
+   */
+  @NotNull
+  public CompletableFuture<Script> getScript(@NotNull final String isolateId, @NotNull final String scriptId) {
+    return myVmService.getObjectCache().getScript(isolateId, scriptId);
   }
 
   public void getObject(@NotNull final String isolateId, @NotNull final String objectId, @NotNull final GetObjectConsumer consumer) {
@@ -34,17 +34,34 @@ public class DartVmServiceStackFrame extends XStackFrame {
                                  @NotNull final Frame vmFrame,
                                  @Nullable List<Frame> vmFrames,
                                  @Nullable final InstanceRef exception) {
+    this(debugProcess, isolateId, vmFrame, vmFrames, exception, computeSourcePosition(debugProcess, isolateId, vmFrame));
+  }
+
+  /**
+   * Creates a frame whose source position has already been resolved.
+   */
+  public DartVmServiceStackFrame(@NotNull final DartVmServiceDebugProcess debugProcess,
+                                 @NotNull final String isolateId,
+                                 @NotNull final Frame vmFrame,
+                                 @Nullable List<Frame> vmFrames,
+                                 @Nullable final InstanceRef exception,
+                                 @Nullable final XSourcePosition sourcePosition) {
     myDebugProcess = debugProcess;
     myIsolateId = isolateId;
     myVmFrame = vmFrame;
     myVmFrames = vmFrames;
     myException = exception;
+    mySourcePosition = sourcePosition;
+  }
+
+  @Nullable
+  private static XSourcePosition computeSourcePosition(@NotNull final DartVmServiceDebugProcess debugProcess,
+                                                      @NotNull final String isolateId,
+                                                      @NotNull final Frame vmFrame) {
     if (vmFrame.getLocation() == null) {
-      mySourcePosition = null;
-    }
-    else {
-      mySourcePosition = debugProcess.getSourcePosition(isolateId, vmFrame.getLocation().getScript(), vmFrame.getLocation().getTokenPos());
+      return null;
     }
+    return debugProcess.getSourcePosition(isolateId, vmFrame.getLocation().getScript(), vmFrame.getLocation().getTokenPos());
   }
 
   @NotNull
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CreationLocationIndexTest {
+  @Test
+  public void findsValuesByLocation() {
+    final CreationLocationIndex<String> index = new CreationLocationIndex<>();
+    index.add("file:///main.dart", 10, 5, "a");
+    index.add("file:///main.dart", 10, 5, "b");
+    index.add("file:///main.dart", 12, 5, "c");
+    index.add("file:///other.dart", 10, 5, "d");
+
+    assertEquals(Arrays.asList("a", "b"), index.get("file:///main.dart", 10, 5));
+    assertEquals(Collections.singletonList("c"), index.get("file:///main.dart", 12, 5));
+    assertEquals(Collections.singletonList("d"), index.get("file:///other.dart", 10, 5));
+    assertTrue(index.get("file:///main.dart", 10, 6).isEmpty());
+  }
+
+  @Test
+  public void ignoresMissingLocations() {
+    final CreationLocationIndex<String> index = new CreationLocationIndex<>();
+    index.add(null, 10, 5, "a");
+    index.add("file:///main.dart", -1, -1, "b");
+
+    assertTrue(index.isEmpty());
+  }
+
+  @Test
+  public void addingAgainKeepsOrder() {
+    final CreationLocationIndex<String> index = new CreationLocationIndex<>();
+    index.add("file:///main.dart", 10, 5, "a");
+    index.add("file:///main.dart", 10, 5, "b");
+    index.add("file:///main.dart", 10, 5, "a");
+
+    assertEquals(Arrays.asList("a", "b"), index.get("file:///main.dart", 10, 5));
+
+    index.clear();
+    assertTrue(index.isEmpty());
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.intellij.util.ReflectionUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+
+import static io.flutter.testing.JsonTesting.curly;
+import static org.junit.Assert.*;
+
+public class DiagnosticsNodeTest {
+  private static final String WIDGET = curly(
+    "description:\"Padding\"",
+    "type:\"_ElementDiagnosticableTreeNode\"",
+    "widgetRuntimeType:\"Padding\"",
+    "style:\"dense\"",
+    "hasChildren:true",
+    "createdByLocalProject:true",
+    "stateful:false",
+    "locationId:12",
+    "objectId:\"inspector-1\"",
+    "valueId:\"inspector-2\"",
+    "children:[" + curly("description:\"Text\"", "objectId:\"inspector-3\"") + "]",
+    "properties:[" +
+    curly("name:\"padding\"", "description:\"EdgeInsets.all(8.0)\"", "propertyType:\"EdgeInsetsGeometry\"",
+          "level:\"info\"", "objectId:\"inspector-4\"", "valueId:\"inspector-5\"") + "]");
+
+  private static DiagnosticsNode parse(String json) {
+    return new DiagnosticsNode(new JsonParser().parse(json).getAsJsonObject(), CompletableFuture.completedFuture(null), null, false, null);
+  }
+
+  private static <T> T getField(DiagnosticsNode node, Class<T> type, String name) {
+    return ReflectionUtil.getField(DiagnosticsNode.class, node, type, name);
+  }
+
+  @Test
+  public void decodesMembers() {
+    final DiagnosticsNode node = parse(WIDGET);
+
+    assertEquals("Padding", node.getDescription());
+    assertEquals("Padding", node.getWidgetRuntimeType());
+    assertEquals("_ElementDiagnosticableTreeNode", node.getType());
+    assertEquals("Padding", node.getStringMember("description"));
+    assertNull(node.getName());
+    assertEquals(DiagnosticsTreeStyle.dense, node.getStyle());
+    assertEquals(DiagnosticLevel.info, node.getLevel());
+    assertEquals(12, node.getLocationId());
+    assertEquals("inspector-1", node.getDartDiagnosticRef().getId());
+    assertEquals("inspector-2", node.getValueRef().getId());
+    assertSame(node.getValueRef(), node.getValueRef());
+  }
+
+  @Test
+  public void decodesFlags() {
+    final DiagnosticsNode defaults = parse("{}");
+    assertTrue(defaults.getShowName());
+    assertTrue(defaults.getShowSeparator());
+    assertTrue(defaults.getAllowWrap());
+    assertFalse(defaults.hasChildren());
+    assertFalse(defaults.getIsQuoted());
+    assertFalse(defaults.hasIsQuoted());
+    assertFalse(defaults.isCreatedByLocalProject());
+    assertFalse(defaults.isSummaryTree());
+    assertFalse(defaults.isStateful());
+    assertFalse(defaults.getMissingIfNull());
+    assertFalse(defaults.getIsDiagnosticableValue());
+    assertEquals(DiagnosticsTreeStyle.sparse, defaults.getStyle());
+    assertNull(defaults.getDartDiagnosticRef().getId());
+
+    final DiagnosticsNode flipped = parse(curly(
+      "showName:false", "showSeparator:false", "allowWrap:false", "hasChildren:true", "quoted:true",
+      "createdByLocalProject:true", "summaryTree:true", "stateful:true", "missingIfNull:true",
+      "isDiagnosticableValue:true", "level:\"hidden\"", "defaultLevel:\"fine\"", "style:\"notAStyle\""));
+    assertFalse(flipped.getShowName());
+    assertFalse(flipped.getShowSeparator());
+    assertEquals("", flipped.getSeparator());
+    assertFalse(flipped.getAllowWrap());
+    assertTrue(flipped.hasChildren());
+    assertTrue(flipped.getIsQuoted());
+    assertTrue(flipped.hasIsQuoted());
+    assertTrue(flipped.isCreatedByLocalProject());
+    assertTrue(flipped.isSummaryTree());
+    assertTrue(flipped.isStateful());
+    assertTrue(flipped.getMissingIfNull());
+    assertTrue(flipped.getIsDiagnosticableValue());
+    assertEquals(DiagnosticLevel.hidden, flipped.getLevel());
+    assertEquals(DiagnosticLevel.fine, flipped.getDefaultLevel());
+    // Unknown styles fall back to the default.
+    assertEquals(DiagnosticsTreeStyle.sparse, flipped.getStyle());
+
+    assertTrue(parse("{\"quoted\":false}").hasIsQuoted());
+  }
+
+  @Test
+  public void keepsOnlyOtherMembers() {
+    assertNull(getField(parse(WIDGET), JsonObject.class, "otherMembers"));
+
+    final DiagnosticsNode node = parse(curly(
+      "name:\"dpr\"", "description:\"2.0\"", "unit:\"x\"", "tooltip:\"physical pixels per logical pixel\"",
+      "values:[\"a\",\"b\"]", "ifNull:\"none\""));
+    final JsonObject others = getField(node, JsonObject.class, "otherMembers");
+    assertEquals(new HashSet<>(Arrays.asList("unit", "tooltip", "values", "ifNull")), others.keySet());
+
+    assertEquals("dpr", node.getName());
+    assertTrue(node.hasUnit());
+    assertEquals("x", node.getUnit());
+    assertTrue(node.hasTooltip());
+    assertEquals("physical pixels per logical pixel", node.getTooltip());
+    assertEquals(Arrays.asList("a", "b"), node.getValues());
+    assertEquals("none", node.getIfNull());
+    assertEquals("none", node.getStringMember("ifNull"));
+    assertFalse(node.hasIfTrue());
+    assertNull(node.getIfTrue());
+    assertFalse(node.hasCreationLocation());
+  }
+
+  @Test
+  public void releasesInlineJsonOnceDecoded() {
+    final DiagnosticsNode node = parse(WIDGET);
+    assertNotNull(getField(node, JsonArray.class, "childrenJson"));
+    assertNotNull(getField(node, JsonArray.class, "propertiesJson"));
+    assertTrue(node.childrenReady());
+    assertTrue(node.hasInlineProperties());
+
+    final ArrayList<DiagnosticsNode> children = node.getChildren().getNow(null);
+    assertEquals(1, children.size());
+    assertEquals("Text", children.get(0).getDescription());
+    assertSame(node, children.get(0).getParent());
+    assertNull(getField(node, JsonArray.class, "childrenJson"));
+    assertSame(children, node.getChildren().getNow(null));
+    assertTrue(node.childrenReady());
+
+    final ArrayList<DiagnosticsNode> properties = node.getInlineProperties();
+    assertEquals(1, properties.size());
+    assertEquals("padding", properties.get(0).getName());
+    assertEquals("EdgeInsetsGeometry", properties.get(0).getPropertyType());
+    assertTrue(properties.get(0).isProperty());
+    assertNull(getField(node, JsonArray.class, "propertiesJson"));
+    assertSame(properties, node.getInlineProperties());
+    assertTrue(node.hasInlineProperties());
+  }
+
+  @Test
+  public void comparesDisplay() {
+    final DiagnosticsNode node = parse(WIDGET);
+    // Only the ids differ.
+    assertTrue(node.identicalDisplay(parse(WIDGET.replace("inspector-", "inspector-9"))));
+    // Comparing decodes the inline children and properties; the result doesn't change once they're released.
+    final DiagnosticsNode decoded = parse(WIDGET);
+    decoded.getChildren();
+    decoded.getInlineProperties();
+    assertTrue(node.identicalDisplay(decoded));
+    assertTrue(decoded.identicalDisplay(node));
+
+    assertFalse(node.identicalDisplay(null));
+    assertFalse(node.identicalDisplay(parse(WIDGET.replace("\"dense\"", "\"sparse\""))));
+    assertFalse(node.identicalDisplay(parse(WIDGET.replace("\"stateful\":false", "\"stateful\":true"))));
+    assertFalse(node.identicalDisplay(parse(WIDGET.replace("\"locationId\":12", "\"locationId\":13"))));
+    assertFalse(node.identicalDisplay(parse(WIDGET.replace("\"locationId\":12", "\"locationId\":12,\"tooltip\":\"t\""))));
+
+    final DiagnosticsNode otherChild = parse(WIDGET.replace("\"Text\"", "\"RichText\""));
+    assertFalse(node.identicalDisplay(otherChild));
+    assertTrue(node.identicalDisplayIgnoringChildren(otherChild));
+
+    final DiagnosticsNode otherProperty = parse(WIDGET.replace("all(8.0)", "all(4.0)"));
+    assertFalse(node.identicalDisplay(otherProperty));
+    assertTrue(node.identicalDisplayIgnoringChildren(otherProperty));
+  }
+}
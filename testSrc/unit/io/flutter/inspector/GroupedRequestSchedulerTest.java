@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class GroupedRequestSchedulerTest {
+  private final List<String> started = new ArrayList<>();
+  private final List<CompletableFuture<String>> pending = new ArrayList<>();
+  // Runs requests synchronously so the test can inspect the scheduler state.
+  private final GroupedRequestScheduler scheduler = new GroupedRequestScheduler(Runnable::run, 2);
+
+  private CompletableFuture<String> add(Object lane, String name) {
+    return add(lane, null, name);
+  }
+
+  private CompletableFuture<String> add(Object lane, BooleanSupplier isLowPriority, String name) {
+    return scheduler.schedule(lane, isLowPriority, null, () -> {
+      started.add(name);
+      final CompletableFuture<String> future = new CompletableFuture<>();
+      pending.add(future);
+      return future;
+    });
+  }
+
+  @Test
+  public void ordersRequestsWithinALane() {
+    final Object group = new Object();
+    final CompletableFuture<String> first = add(group, "a1");
+    final CompletableFuture<String> second = add(group, "a2");
+
+    assertEquals(1, started.size());
+    assertEquals(1, scheduler.getQueueDepth());
+
+    pending.get(0).complete("done");
+    assertEquals("done", first.getNow(null));
+    assertEquals(2, started.size());
+    assertEquals("a2", started.get(1));
+    assertFalse(second.isDone());
+  }
+
+  @Test
+  public void runsLanesConcurrentlyUpToWindow() {
+    add(new Object(), "a");
+    add(new Object(), "b");
+    add(new Object(), "c");
+
+    assertEquals(2, started.size());
+    assertEquals(2, scheduler.getInFlightCount());
+    assertEquals(1, scheduler.getQueueDepth());
+
+    pending.get(1).complete(null);
+    assertEquals(3, started.size());
+    assertEquals("c", started.get(2));
+    assertEquals(1, scheduler.getCompletedRequestCount());
+  }
+
+  @Test
+  public void skipsStaleRequests() {
+    final Object group = new Object();
+    final boolean[] stale = {false};
+    add(group, "a");
+    final CompletableFuture<String> skipped = scheduler.schedule(group, () -> stale[0], () -> {
+      fail("stale request should not be issued");
+      return null;
+    });
+    stale[0] = true;
+    pending.get(0).complete(null);
+
+    assertTrue(skipped.isDone());
+    assertNull(skipped.getNow("not null"));
+    assertEquals(0, scheduler.getInFlightCount());
+  }
+
+  @Test
+  public void leavesASlotForNormalRequests() {
+    add(new Object(), () -> true, "low1");
+    add(new Object(), () -> true, "low2");
+
+    // With two slots, low priority requests only use one.
+    assertEquals(1, started.size());
+    add(new Object(), "normal");
+    assertEquals(2, started.size());
+    assertEquals("normal", started.get(1));
+  }
+
+  @Test
+  public void startsNormalRequestsBeforeLowPriorityOnes() {
+    add(new Object(), "a");
+    add(new Object(), "b");
+    add(new Object(), () -> true, "low");
+    add(new Object(), "c");
+    assertEquals(2, started.size());
+
+    pending.get(0).complete(null);
+    assertEquals("c", started.get(2));
+    pending.get(1).complete(null);
+    assertEquals(3, started.size());
+    pending.get(2).complete(null);
+    assertEquals("low", started.get(3));
+  }
+
+  @Test
+  public void raisingPriorityStartsWaitingRequest() {
+    final boolean[] lowPriority = {true};
+    add(new Object(), "a");
+    add(new Object(), () -> lowPriority[0], "prefetch");
+    assertEquals(1, started.size());
+
+    lowPriority[0] = false;
+    scheduler.onPriorityChanged();
+    assertEquals(2, started.size());
+    assertEquals("prefetch", started.get(1));
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import io.flutter.utils.math.Matrix4;
+import org.junit.Test;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LayoutGeometryIndexTest {
+  private static Matrix4 translation(double x, double y) {
+    final Matrix4 matrix = Matrix4.identity();
+    matrix.translate(x, y, 0);
+    return matrix;
+  }
+
+  @Test
+  public void returnsContainingRectsInOrder() {
+    final LayoutGeometryIndex<String> index = new LayoutGeometryIndex<>(
+      Arrays.asList("child", "sibling", "root"),
+      Arrays.asList(new Rectangle2D.Double(0, 0, 10, 10), new Rectangle2D.Double(0, 0, 10, 10), new Rectangle2D.Double(0, 0, 100, 100)),
+      Arrays.asList(translation(20, 20), translation(50, 50), Matrix4.identity()));
+
+    assertEquals(Arrays.asList("child", "root"), index.hitTest(25, 25));
+    assertEquals(Arrays.asList("sibling", "root"), index.hitTest(60, 60));
+    assertEquals(Collections.singletonList("root"), index.hitTest(40, 40));
+    assertTrue(index.hitTest(101, 50).isEmpty());
+    assertTrue(index.hitTest(-1, 50).isEmpty());
+  }
+
+  @Test
+  public void handlesRotatedRects() {
+    final Matrix4 rotated = translation(50, 50);
+    rotated.rotateZ(Math.PI / 4);
+    final LayoutGeometryIndex<String> index = new LayoutGeometryIndex<>(
+      Collections.singletonList("diamond"),
+      Collections.singletonList(new Rectangle2D.Double(-10, -10, 20, 20)),
+      Collections.singletonList(rotated));
+
+    assertEquals(Collections.singletonList("diamond"), index.hitTest(50, 63));
+    // Inside the rotated rect's bounding box but outside the rect itself.
+    assertTrue(index.hitTest(60, 61).isEmpty());
+  }
+
+  @Test
+  public void findsRectsAcrossManyCells() {
+    final List<String> values = new ArrayList<>();
+    final List<Rectangle2D> rects = new ArrayList<>();
+    final List<Matrix4> transforms = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      values.add("cell" + i);
+      rects.add(new Rectangle2D.Double(0, 0, 10, 10));
+      transforms.add(translation((i % 10) * 10, (i / 10) * 10));
+    }
+    values.add("background");
+    rects.add(new Rectangle2D.Double(0, 0, 100, 100));
+    transforms.add(Matrix4.identity());
+    final LayoutGeometryIndex<String> index = new LayoutGeometryIndex<>(values, rects, transforms);
+
+    assertEquals(Arrays.asList("cell37", "background"), index.hitTest(75, 35));
+    assertEquals(Arrays.asList("cell99", "background"), index.hitTest(99, 99));
+  }
+
+  @Test
+  public void ignoresCollapsedRects() {
+    final LayoutGeometryIndex<String> index = new LayoutGeometryIndex<>(
+      Arrays.asList("empty", "box"),
+      Arrays.asList(new Rectangle2D.Double(0, 0, 0, 0), new Rectangle2D.Double(0, 0, 100, 100)),
+      Arrays.asList(translation(10, 10), Matrix4.identity()));
+
+    assertEquals(Collections.singletonList("box"), index.hitTest(10, 50));
+  }
+}
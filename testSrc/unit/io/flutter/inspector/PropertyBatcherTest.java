@@ -0,0 +1,293 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.dartlang.vm.service.element.Instance;
+import org.dartlang.vm.service.element.InstanceRef;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class PropertyBatcherTest {
+  private final AtomicInteger propertyGeneration = new AtomicInteger();
+  private final FakeLibrary library = new FakeLibrary();
+  private final PropertyBatcher batcher = new PropertyBatcher("group_0", propertyGeneration, library);
+
+  /**
+   * Stands in for the inspector library of an object group.
+   * <p>
+   * Scheduled requests wait until {@link #runScheduled()} is called. Each
+   * property evaluates to a string naming the object and property, unless the
+   * property is in {@link #throwingProperties}.
+   */
+  private static class FakeLibrary implements PropertyBatcher.Library {
+    private static final Pattern ACCESSOR =
+      Pattern.compile("\\(WidgetInspectorService\\.instance\\.toObject\\('([^']*)', 'group_0'\\) as dynamic\\)\\.(\\w+)");
+
+    final List<Runnable> scheduled = new ArrayList<>();
+    final List<List<String>> evaluated = new ArrayList<>();
+    final Set<String> throwingProperties = new HashSet<>();
+    final Object tag = new Object();
+    boolean disposed;
+    /**
+     * Whether to dispose the group while the next evaluation is in flight.
+     */
+    boolean disposeDuringEvaluation;
+
+    @Override
+    public <T> CompletableFuture<T> addRequest(String requestName, Supplier<CompletableFuture<T>> request) {
+      assertEquals("getDartObjectProperties", requestName);
+      final CompletableFuture<T> result = new CompletableFuture<>();
+      if (disposed) {
+        result.complete(null);
+        return result;
+      }
+      scheduled.add(() -> {
+        if (disposed) {
+          // Skipped, as EvalOnDartLibrary skips the requests of disposed groups.
+          result.complete(null);
+          return;
+        }
+        request.get().whenComplete((value, t) -> {
+          if (t != null) {
+            result.completeExceptionally(t);
+          }
+          else {
+            result.complete(value);
+          }
+        });
+      });
+      return result;
+    }
+
+    void runScheduled() {
+      while (!scheduled.isEmpty()) {
+        scheduled.remove(0).run();
+      }
+    }
+
+    @Override
+    public Object getRequestTag() {
+      return tag;
+    }
+
+    @Override
+    public CompletableFuture<Instance> evaluateList(String expression, Object tag) {
+      assertSame(this.tag, tag);
+      assertTrue(expression, expression.startsWith("<Object>[") && expression.endsWith("]"));
+
+      final List<String> accessors = new ArrayList<>();
+      final JsonArray elements = new JsonArray();
+      boolean throwing = false;
+      final Matcher matcher = ACCESSOR.matcher(expression);
+      while (matcher.find()) {
+        accessors.add(matcher.group(1) + "." + matcher.group(2));
+        throwing |= throwingProperties.contains(matcher.group(2));
+        final JsonObject element = new JsonObject();
+        element.addProperty("type", "@Instance");
+        element.addProperty("kind", "String");
+        element.addProperty("valueAsString", matcher.group(1) + "." + matcher.group(2));
+        elements.add(element);
+      }
+      evaluated.add(accessors);
+
+      if (disposeDuringEvaluation) {
+        disposed = true;
+      }
+      final CompletableFuture<Instance> result = new CompletableFuture<>();
+      if (throwing) {
+        result.completeExceptionally(new RuntimeException("getter threw"));
+      }
+      else {
+        final JsonObject list = new JsonObject();
+        list.addProperty("type", "Instance");
+        list.addProperty("kind", "List");
+        list.add("elements", elements);
+        result.complete(new Instance(list));
+      }
+      return result;
+    }
+
+    @Override
+    public boolean isDisposed() {
+      return disposed;
+    }
+  }
+
+  private static Map<String, String> values(CompletableFuture<Map<String, InstanceRef>> future) {
+    assertTrue(future.isDone());
+    final Map<String, InstanceRef> properties = future.getNow(null);
+    if (properties == null) {
+      return null;
+    }
+    final Map<String, String> values = new TreeMap<>();
+    for (Map.Entry<String, InstanceRef> entry : properties.entrySet()) {
+      values.put(entry.getKey(), entry.getValue().getValueAsString());
+    }
+    return values;
+  }
+
+  private static Map<String, String> map(String... keysAndValues) {
+    final Map<String, String> map = new TreeMap<>();
+    for (int i = 0; i < keysAndValues.length; i += 2) {
+      map.put(keysAndValues[i], keysAndValues[i + 1]);
+    }
+    return map;
+  }
+
+  private static Throwable failure(CompletableFuture<?> future) {
+    assertTrue(future.isCompletedExceptionally());
+    try {
+      future.get();
+    }
+    catch (ExecutionException e) {
+      return e.getCause();
+    }
+    catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    fail("expected a failure");
+    return null;
+  }
+
+  @Test
+  public void splitsOneListBetweenRequests() {
+    final CompletableFuture<Map<String, InstanceRef>> padding = batcher.getProperties("o1", new String[]{"padding", "child"});
+    final CompletableFuture<Map<String, InstanceRef>> color = batcher.getProperties("o2", new String[]{"color"});
+    final CompletableFuture<Map<String, InstanceRef>> size = batcher.getProperties("o3", new String[]{"width", "height"});
+    assertEquals(1, library.scheduled.size());
+    assertFalse(padding.isDone());
+
+    library.runScheduled();
+
+    assertEquals(Collections.singletonList(Arrays.asList("o1.padding", "o1.child", "o2.color", "o3.width", "o3.height")),
+                 library.evaluated);
+    assertEquals(map("child", "o1.child", "padding", "o1.padding"), values(padding));
+    assertEquals(map("color", "o2.color"), values(color));
+    assertEquals(map("height", "o3.height", "width", "o3.width"), values(size));
+  }
+
+  @Test
+  public void startsANewBatchOnceTheRequestRuns() {
+    final CompletableFuture<Map<String, InstanceRef>> first = batcher.getProperties("o1", new String[]{"color"});
+    library.runScheduled();
+    final CompletableFuture<Map<String, InstanceRef>> second = batcher.getProperties("o2", new String[]{"color"});
+    assertEquals(1, library.scheduled.size());
+    library.runScheduled();
+
+    assertEquals(Arrays.asList(Collections.singletonList("o1.color"), Collections.singletonList("o2.color")), library.evaluated);
+    assertEquals(map("color", "o1.color"), values(first));
+    assertEquals(map("color", "o2.color"), values(second));
+  }
+
+  @Test
+  public void retriesRequestsOneAtATimeWhenAGetterThrows() {
+    library.throwingProperties.add("broken");
+    final CompletableFuture<Map<String, InstanceRef>> before = batcher.getProperties("o1", new String[]{"color"});
+    final CompletableFuture<Map<String, InstanceRef>> broken = batcher.getProperties("o2", new String[]{"size", "broken"});
+    final CompletableFuture<Map<String, InstanceRef>> after = batcher.getProperties("o3", new String[]{"color"});
+    library.runScheduled();
+
+    assertEquals(Arrays.asList(Arrays.asList("o1.color", "o2.size", "o2.broken", "o3.color"),
+                               Collections.singletonList("o1.color"),
+                               Arrays.asList("o2.size", "o2.broken"),
+                               Collections.singletonList("o3.color")),
+                 library.evaluated);
+    assertEquals(map("color", "o1.color"), values(before));
+    assertEquals("getter threw", failure(broken).getMessage());
+    assertEquals(map("color", "o3.color"), values(after));
+  }
+
+  @Test
+  public void skipsRequestsOfADisposedGroup() {
+    final CompletableFuture<Map<String, InstanceRef>> color = batcher.getProperties("o1", new String[]{"color"});
+    final CompletableFuture<Map<String, InstanceRef>> size = batcher.getProperties("o2", new String[]{"size"});
+    library.disposed = true;
+    library.runScheduled();
+
+    assertTrue(library.evaluated.isEmpty());
+    assertNull(values(color));
+    assertNull(values(size));
+
+    // Requests made after disposal aren't scheduled at all.
+    assertNull(values(batcher.getProperties("o3", new String[]{"color"})));
+    assertTrue(library.scheduled.isEmpty());
+  }
+
+  @Test
+  public void doesNotRetryOnceTheGroupIsDisposed() {
+    library.throwingProperties.add("broken");
+    library.disposeDuringEvaluation = true;
+    final CompletableFuture<Map<String, InstanceRef>> color = batcher.getProperties("o1", new String[]{"color"});
+    final CompletableFuture<Map<String, InstanceRef>> broken = batcher.getProperties("o2", new String[]{"broken"});
+    library.runScheduled();
+
+    assertEquals(1, library.evaluated.size());
+    assertEquals("getter threw", failure(color).getMessage());
+    assertEquals("getter threw", failure(broken).getMessage());
+  }
+
+  @Test
+  public void memoizesValuesUntilThePropertyGenerationChanges() {
+    final CompletableFuture<Map<String, InstanceRef>> first = batcher.getProperties("o1", new String[]{"color"});
+    assertSame(first, batcher.getProperties("o1", new String[]{"color"}));
+    library.runScheduled();
+    assertSame(first, batcher.getProperties("o1", new String[]{"color"}));
+    assertEquals(1, library.evaluated.size());
+
+    // Other property names are a different request.
+    assertNotSame(first, batcher.getProperties("o1", new String[]{"color", "size"}));
+    library.runScheduled();
+    assertEquals(2, library.evaluated.size());
+
+    propertyGeneration.incrementAndGet();
+    final CompletableFuture<Map<String, InstanceRef>> refreshed = batcher.getProperties("o1", new String[]{"color"});
+    assertNotSame(first, refreshed);
+    library.runScheduled();
+    assertEquals(3, library.evaluated.size());
+    assertEquals(map("color", "o1.color"), values(refreshed));
+  }
+
+  @Test
+  public void forgetsFailures() {
+    library.throwingProperties.add("broken");
+    final CompletableFuture<Map<String, InstanceRef>> failed = batcher.getProperties("o1", new String[]{"broken"});
+    library.runScheduled();
+    assertTrue(failed.isCompletedExceptionally());
+
+    library.throwingProperties.clear();
+    final CompletableFuture<Map<String, InstanceRef>> retried = batcher.getProperties("o1", new String[]{"broken"});
+    assertNotSame(failed, retried);
+    library.runScheduled();
+    assertEquals(map("broken", "o1.broken"), values(retried));
+  }
+
+  @Test
+  public void memoizesOtherRequests() {
+    final int[] requests = new int[1];
+    final Supplier<CompletableFuture<Map<String, InstanceRef>>> request = () -> {
+      requests[0]++;
+      return new CompletableFuture<>();
+    };
+    final CompletableFuture<Map<String, InstanceRef>> values = batcher.memoize("enumValues o1", request);
+    assertSame(values, batcher.memoize("enumValues o1", request));
+    assertEquals(1, requests[0]);
+
+    propertyGeneration.incrementAndGet();
+    assertNotSame(values, batcher.memoize("enumValues o1", request));
+    assertEquals(2, requests[0]);
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+import static org.junit.Assert.*;
+
+public class ScreenshotCacheTest {
+  private static JsonObject screenshotJson(int width, int height, int rgb) throws IOException {
+    final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, rgb);
+      }
+    }
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", out);
+
+    final JsonObject transformedRect = new JsonObject();
+    transformedRect.addProperty("left", 0);
+    transformedRect.addProperty("top", 0);
+    transformedRect.addProperty("width", width);
+    transformedRect.addProperty("height", height);
+    final JsonObject json = new JsonObject();
+    json.addProperty("image", Base64.getEncoder().encodeToString(out.toByteArray()));
+    json.add("transformedRect", transformedRect);
+    return json;
+  }
+
+  @Test
+  public void reusesImageWhenUnchanged() throws IOException {
+    final ScreenshotCache cache = new ScreenshotCache();
+    final Screenshot first = cache.decode("a", screenshotJson(4, 3, 0xff00ff00));
+    final Screenshot second = cache.decode("a", screenshotJson(4, 3, 0xff00ff00));
+
+    assertEquals(4, first.image.getWidth());
+    assertEquals(3, first.image.getHeight());
+    assertEquals(0xff00ff00, first.image.getRGB(1, 1));
+    assertSame(first.image, second.image);
+    assertEquals(1, cache.getDecodeCount());
+    assertEquals(1, cache.getReuseCount());
+  }
+
+  @Test
+  public void decodesChangedImage() throws IOException {
+    final ScreenshotCache cache = new ScreenshotCache();
+    final Screenshot first = cache.decode("a", screenshotJson(4, 3, 0xff00ff00));
+    final Screenshot second = cache.decode("a", screenshotJson(4, 3, 0xffff0000));
+
+    assertNotSame(first.image, second.image);
+    assertEquals(0xffff0000, second.image.getRGB(1, 1));
+    assertEquals(2, cache.getDecodeCount());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void keysAreIndependent() throws IOException {
+    final ScreenshotCache cache = new ScreenshotCache();
+    final Screenshot a = cache.decode("a", screenshotJson(4, 3, 0xff00ff00));
+    final Screenshot b = cache.decode("b", screenshotJson(4, 3, 0xff00ff00));
+
+    assertNotSame(a.image, b.image);
+    assertEquals(2, cache.getDecodeCount());
+    assertEquals(0, cache.getReuseCount());
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsed() throws IOException {
+    final ScreenshotCache cache = new ScreenshotCache(2, Long.MAX_VALUE);
+    final JsonObject json = screenshotJson(4, 3, 0xff00ff00);
+    cache.decode("a", json);
+    cache.decode("b", json);
+    // Using "a" makes "b" the least recently used.
+    cache.decode("a", json);
+    cache.decode("c", json);
+    assertEquals(2, cache.size());
+
+    cache.decode("a", json);
+    assertEquals(2, cache.getReuseCount());
+    cache.decode("b", json);
+    assertEquals(2, cache.getReuseCount());
+    assertEquals(4, cache.getDecodeCount());
+  }
+
+  @Test
+  public void evictsToStayWithinByteBudget() throws IOException {
+    // Room for a single 4x3 image.
+    final ScreenshotCache cache = new ScreenshotCache(10, 4 * 4 * 3);
+    final JsonObject json = screenshotJson(4, 3, 0xff00ff00);
+    cache.decode("a", json);
+    cache.decode("b", json);
+    assertEquals(1, cache.size());
+
+    // The newest entry is kept even if it alone is over budget.
+    cache.decode("c", screenshotJson(10, 10, 0xff00ff00));
+    assertEquals(1, cache.size());
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.logging;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class FlutterLogFilterResultsTest {
+  private static FlutterLogStore store(int entries) {
+    final FlutterLogStore store = new FlutterLogStore(null, Collections.emptyList(), entries, 1024, 4);
+    for (int i = 0; i < entries; i++) {
+      store.add(new FlutterLogEntry(1000, "flutter.log", i % 2 == 0 ? 800 : 500, "message " + i,
+                                    FlutterLogEntry.Kind.UNSPECIFIED, Collections.emptyList()));
+    }
+    return store;
+  }
+
+  private static int[] sequenceNumbers(int count) {
+    final int[] sequenceNumbers = new int[count];
+    for (int i = 0; i < count; i++) {
+      sequenceNumbers[i] = i + 1;
+    }
+    return sequenceNumbers;
+  }
+
+  @Test
+  public void evaluatesAllEntries() {
+    final int count = FlutterLogFilterResults.CHUNK_SIZE * 2 + 10;
+    final FlutterLogFilterResults results =
+      new FlutterLogFilterResults(FlutterLogFilter.create(null, false, false, FlutterLog.Level.INFO), store(count));
+
+    assertTrue(results.evaluate(sequenceNumbers(count), () -> false));
+    for (int sequence = 1; sequence <= count; sequence++) {
+      assertTrue(results.isEvaluated(sequence));
+    }
+    assertTrue(results.matches(1));
+    assertFalse(results.matches(2));
+  }
+
+  @Test
+  public void stopsWhenCancelled() {
+    final int count = FlutterLogFilterResults.CHUNK_SIZE * 3;
+    final FlutterLogFilterResults results =
+      new FlutterLogFilterResults(FlutterLogFilter.create(null, false, false, FlutterLog.Level.INFO), store(count));
+
+    // A newer filter replaces these results after the first chunk.
+    final int[] checks = new int[1];
+    assertFalse(results.evaluate(sequenceNumbers(count), () -> ++checks[0] > 1));
+
+    assertTrue(results.isEvaluated(FlutterLogFilterResults.CHUNK_SIZE));
+    assertFalse(results.isEvaluated(FlutterLogFilterResults.CHUNK_SIZE + 1));
+    assertFalse(results.isEvaluated(count));
+  }
+
+  @Test
+  public void reportsCancellationAfterTheLastChunk() {
+    final FlutterLogFilterResults results =
+      new FlutterLogFilterResults(FlutterLogFilter.create(null, false, false, FlutterLog.Level.INFO), store(10));
+
+    // Results that went stale while the last chunk was evaluated are not applied.
+    final int[] checks = new int[1];
+    assertFalse(results.evaluate(sequenceNumbers(10), () -> ++checks[0] > 1));
+    assertTrue(results.isEvaluated(10));
+  }
+}
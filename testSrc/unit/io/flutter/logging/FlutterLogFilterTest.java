@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.logging;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class FlutterLogFilterTest {
+  private static FlutterLogFilter filter(String expression, boolean matchCase, boolean regex) {
+    return FlutterLogFilter.create(expression, matchCase, regex, FlutterLog.Level.NONE);
+  }
+
+  @Test
+  public void filtersOnLevel() {
+    final FlutterLogFilter filter = FlutterLogFilter.create(null, false, false, FlutterLog.Level.INFO);
+    assertTrue(filter.matches(800, "flutter.log", "message"));
+    assertTrue(filter.matches(1000, "flutter.log", "message"));
+    assertFalse(filter.matches(700, "flutter.log", "message"));
+  }
+
+  @Test
+  public void matchesLiteralsIgnoringCase() {
+    final FlutterLogFilter filter = filter("Frame.*", false, false);
+    assertTrue(filter.matches(0, "stdout", "building frame.* now"));
+    assertTrue(filter.matches(0, "stdout", "FRAME.*"));
+    assertFalse(filter.matches(0, "stdout", "frames"));
+    assertTrue(filter.matches(0, "my FRAME.* category", ""));
+    assertFalse(filter("long needle", false, false).matches(0, "", "long"));
+  }
+
+  @Test
+  public void matchesLiteralsWithCase() {
+    final FlutterLogFilter filter = filter("Frame", true, false);
+    assertTrue(filter.matches(0, "stdout", "a Frame"));
+    assertFalse(filter.matches(0, "stdout", "a frame"));
+  }
+
+  @Test
+  public void matchesRegularExpressions() {
+    assertFalse(filter("fr.me", false, false).matches(0, "", "frame"));
+    assertTrue(filter("fr.me", false, true).matches(0, "", "FRAME"));
+    assertFalse(filter("fr.me", true, true).matches(0, "", "FRAME"));
+    assertTrue(filter("a.b", false, true).matches(0, "", "a\nb"));
+  }
+
+  @Test
+  public void ignoresInvalidRegularExpressions() {
+    assertTrue(filter("(", false, true).matches(0, "", "anything"));
+  }
+
+  @Test
+  public void ignoresEmptyExpressions() {
+    assertTrue(filter("", true, true).matches(0, "", "anything"));
+  }
+
+  @Test
+  public void matchesStoredEntries() {
+    final FlutterLogStore store = new FlutterLogStore(null, Collections.emptyList(), 1, 1024, 1);
+    store.add(new FlutterLogEntry(0, "runtime.gc", 400, "collected", FlutterLogEntry.Kind.UNSPECIFIED, Collections.emptyList()));
+    store.add(new FlutterLogEntry(0, "stdout", 800, "hello", FlutterLogEntry.Kind.UNSPECIFIED, Collections.emptyList()));
+
+    // The first entry has been dropped, but its category is still indexed.
+    assertTrue(filter("GC", false, false).matches(store, 1));
+    assertFalse(filter("collected", false, false).matches(store, 1));
+    assertTrue(filter("hello", false, false).matches(store, 2));
+    assertFalse(FlutterLogFilter.create(null, false, false, FlutterLog.Level.WARNING).matches(store, 2));
+  }
+}
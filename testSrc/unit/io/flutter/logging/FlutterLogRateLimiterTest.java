@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.logging;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FlutterLogRateLimiterTest {
+  private final FlutterLogPreferences preferences = new FlutterLogPreferences();
+  private final FlutterLogRateLimiter limiter = new FlutterLogRateLimiter(preferences, Collections.emptyList());
+
+  private static FlutterLogEntry entry(String category, String message) {
+    return new FlutterLogEntry(0, category, 800, message, FlutterLogEntry.Kind.UNSPECIFIED, Collections.emptyList());
+  }
+
+  @Test
+  public void passesEntriesWithinLimit() {
+    preferences.setLogRateLimit(2);
+    assertEquals(1, limiter.offer(entry("stdout", "a"), 0).size());
+    assertEquals(1, limiter.offer(entry("stdout", "b"), 0).size());
+    assertFalse(limiter.hasPendingSummaries());
+  }
+
+  @Test
+  public void summarizesSuppressedEntries() {
+    preferences.setLogRateLimit(2);
+    limiter.offer(entry("stdout", "a"), 0);
+    limiter.offer(entry("stdout", "b"), 0);
+    assertTrue(limiter.offer(entry("stdout", "c"), 10).isEmpty());
+    assertTrue(limiter.offer(entry("stdout", "d"), 20).isEmpty());
+    assertTrue(limiter.hasPendingSummaries());
+    assertTrue(limiter.flush(500).isEmpty());
+
+    final List<FlutterLogEntry> summaries = limiter.flush(1010);
+    assertEquals(1, summaries.size());
+    final FlutterLogEntry summary = summaries.get(0);
+    assertEquals("2 stdout lines suppressed in 1s", summary.getMessage());
+    assertEquals("stdout", summary.getCategory());
+    final JsonObject data = new JsonParser().parse((String)summary.getData()).getAsJsonObject();
+    assertEquals(2, data.get("count").getAsInt());
+    assertEquals("c", data.get("first").getAsString());
+    assertEquals("d", data.get("last").getAsString());
+
+    assertFalse(limiter.hasPendingSummaries());
+    assertEquals(2, limiter.getSuppressedEntries().size());
+  }
+
+  @Test
+  public void refillsTokensOverTime() {
+    preferences.setLogRateLimit(10);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(1, limiter.offer(entry("stdout", "a"), 0).size());
+    }
+    assertTrue(limiter.offer(entry("stdout", "b"), 0).isEmpty());
+
+    // 100ms refills one token; the suppressed entry is summarized once its window ends.
+    assertEquals(1, limiter.offer(entry("stdout", "c"), 100).size());
+    final List<FlutterLogEntry> result = limiter.offer(entry("stdout", "d"), 1000);
+    assertEquals(2, result.size());
+    assertEquals("1 stdout line suppressed in 1s", result.get(0).getMessage());
+    assertEquals("d", result.get(1).getMessage());
+  }
+
+  @Test
+  public void limitsCategoriesSeparately() {
+    preferences.setLogRateLimit(1);
+    preferences.getCategoryLogRateLimits().put("noisy", 0);
+    limiter.offer(entry("stdout", "a"), 0);
+    assertEquals(1, limiter.offer(entry("flutter.log", "b"), 0).size());
+    for (int i = 0; i < 100; i++) {
+      assertEquals(1, limiter.offer(entry("noisy", "c"), 0).size());
+    }
+  }
+
+  @Test
+  public void neverSuppressesReloadsAndErrors() {
+    preferences.setLogRateLimit(1);
+    limiter.offer(entry("flutter.tools", "a"), 0);
+    final FlutterLogEntry reload = entry("flutter.tools", "Performing hot reload...");
+    reload.setKind(FlutterLogEntry.Kind.RELOAD);
+    assertEquals(Collections.singletonList(reload), limiter.offer(reload, 0));
+
+    final FlutterLogEntry error =
+      new FlutterLogEntry(0, "flutter.tools", FlutterLog.Level.SEVERE.value, "Exception caught", FlutterLogEntry.Kind.UNSPECIFIED,
+                          Collections.emptyList());
+    assertEquals(Collections.singletonList(error), limiter.offer(error, 0));
+
+    preferences.setAggregateGcEvents(true);
+    final FlutterLogEntry gcError =
+      new FlutterLogEntry(0, FlutterLogEntryParser.GC_CATEGORY, FlutterLog.Level.SHOUT.value, "gc failed", FlutterLogEntry.Kind.UNSPECIFIED,
+                          Collections.emptyList());
+    assertEquals(Collections.singletonList(gcError), limiter.offer(gcError, 0));
+    assertFalse(limiter.hasPendingSummaries());
+  }
+
+  @Test
+  public void aggregatesGcEvents() {
+    limiter.offer(entry(FlutterLogEntryParser.GC_CATEGORY, "gc 1"), 0);
+    limiter.offer(entry(FlutterLogEntryParser.GC_CATEGORY, "gc 2"), 300);
+    final List<FlutterLogEntry> summaries = limiter.flush(1000);
+    assertEquals(1, summaries.size());
+    assertEquals("2 GC events in 1s", summaries.get(0).getMessage());
+
+    preferences.setAggregateGcEvents(false);
+    assertEquals(1, limiter.offer(entry(FlutterLogEntryParser.GC_CATEGORY, "gc 3"), 2000).size());
+  }
+
+  @Test
+  public void countsSummariesInTheSingular() {
+    preferences.setLogRateLimit(1);
+    limiter.offer(entry("flutter.log", "a"), 0);
+    limiter.offer(entry("flutter.log", "b"), 0);
+    limiter.offer(entry("flutter.log", "c"), 0);
+    limiter.offer(entry("noisy", "a"), 0);
+    limiter.offer(entry("noisy", "b"), 0);
+    limiter.offer(entry(FlutterLogEntryParser.GC_CATEGORY, "gc 1"), 0);
+
+    final List<String> messages = new ArrayList<>();
+    for (FlutterLogEntry summary : limiter.flush(1000)) {
+      messages.add(summary.getMessage());
+    }
+    Collections.sort(messages);
+    assertEquals(Arrays.asList("1 GC event in 1s", "1 noisy entry suppressed in 1s", "2 flutter.log entries suppressed in 1s"),
+                 messages);
+  }
+
+  @Test
+  public void capsSuppressedEntries() {
+    preferences.setLogRateLimit(1);
+    for (int i = 0; i < FlutterLogRateLimiter.SUPPRESSED_BUFFER_SIZE + 10; i++) {
+      limiter.offer(entry("stdout", String.valueOf(i)), 0);
+    }
+    final List<FlutterLogEntry> suppressed = limiter.getSuppressedEntries();
+    assertEquals(FlutterLogRateLimiter.SUPPRESSED_BUFFER_SIZE, suppressed.size());
+    assertEquals(String.valueOf(FlutterLogRateLimiter.SUPPRESSED_BUFFER_SIZE + 9), suppressed.get(suppressed.size() - 1).getMessage());
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.logging;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FlutterLogStoreTest {
+  private File directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("flutter-log-store").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    final File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+      }
+    }
+    //noinspection ResultOfMethodCallIgnored
+    directory.delete();
+  }
+
+  private static FlutterLogEntry entry(String message) {
+    return entry("flutter.log", 800, message);
+  }
+
+  private static FlutterLogEntry entry(String category, int level, String message) {
+    return new FlutterLogEntry(1000, category, level, message, FlutterLogEntry.Kind.UNSPECIFIED, Collections.emptyList());
+  }
+
+  @Test
+  public void assignsSequenceNumbers() {
+    final FlutterLogStore store = new FlutterLogStore(directory, Collections.emptyList(), 4, 1024, 4);
+    final FlutterLogEntry first = entry("a");
+    final FlutterLogEntry second = entry("b");
+    store.add(first);
+    store.add(second);
+
+    assertEquals(1, first.getSequenceNumber());
+    assertEquals(2, second.getSequenceNumber());
+    assertSame(second, store.get(2));
+    assertNull(store.get(3));
+    assertEquals(2, store.size());
+  }
+
+  @Test
+  public void readsSpilledEntriesBack() {
+    final FlutterLogStore store = new FlutterLogStore(directory, Collections.emptyList(), 2, 1024, 4);
+    store.add(new FlutterLogEntry(42, "gc", 400, "collected \u00e9", FlutterLogEntry.Kind.RELOAD, Collections.emptyList()));
+    store.add(entry("b"));
+    store.add(entry("c"));
+
+    assertEquals(1, store.getSegmentCount());
+    final FlutterLogEntry spilled = store.get(1);
+    assertNotNull(spilled);
+    assertEquals(1, spilled.getSequenceNumber());
+    assertEquals(42, spilled.getTimestamp());
+    assertEquals("gc", spilled.getCategory());
+    assertEquals(400, spilled.getLevel());
+    assertEquals("collected \u00e9", spilled.getMessage());
+    assertEquals(FlutterLogEntry.Kind.RELOAD, spilled.getKind());
+    assertSame(spilled, store.get(1));
+
+    final List<FlutterLogEntry> entries = store.getEntries(0, 10);
+    assertEquals(3, entries.size());
+    assertEquals("c", entries.get(2).getMessage());
+  }
+
+  @Test
+  public void indexesLevelsAndCategories() {
+    final FlutterLogStore store = new FlutterLogStore(directory, Collections.emptyList(), 1, 1024, 4);
+    store.add(entry("one", 300, "a"));
+    store.add(entry("two", 900, "b"));
+
+    assertEquals(300, store.getLevel(1));
+    assertEquals("one", store.getCategory(1));
+    assertEquals(900, store.getLevel(2));
+    assertEquals(-1, store.getLevel(3));
+  }
+
+  @Test
+  public void dropsEvictedEntriesWithoutDirectory() {
+    final FlutterLogStore store = new FlutterLogStore(null, Collections.emptyList(), 4, 1024, 4);
+    for (int i = 0; i < 10000; i++) {
+      store.add(entry(String.valueOf(i)));
+    }
+
+    assertEquals(9997, store.getFirstSequenceNumber());
+    assertEquals(4, store.size());
+    assertNull(store.get(9996));
+    assertEquals(-1, store.getLevel(9996));
+    assertEquals("9996", store.get(9997).getMessage());
+    assertEquals(4, store.getEntries(0, 10001).size());
+  }
+
+  @Test
+  public void dropsOldestSegmentAtLimit() {
+    // Each record takes 13 bytes plus the message; two fit in a segment.
+    final FlutterLogStore store = new FlutterLogStore(directory, Collections.emptyList(), 1, 30, 2);
+    for (int i = 0; i < 8; i++) {
+      store.add(entry(String.valueOf(i)));
+    }
+
+    assertEquals(2, store.getSegmentCount());
+    assertEquals(5, store.getFirstSequenceNumber());
+    assertNull(store.get(4));
+    assertNotNull(store.get(5));
+    assertEquals("4", store.get(5).getMessage());
+    assertEquals("7", store.get(8).getMessage());
+  }
+
+  @Test
+  public void removesEntriesBefore() {
+    final FlutterLogStore store = new FlutterLogStore(directory, Collections.emptyList(), 2, 1024, 4);
+    for (int i = 0; i < 5; i++) {
+      store.add(entry(String.valueOf(i)));
+    }
+    store.removeBefore(4);
+
+    assertNull(store.get(3));
+    assertEquals("3", store.get(4).getMessage());
+    assertEquals(2, store.size());
+    assertEquals(0, store.getSegmentCount());
+
+    store.clear();
+    assertEquals(0, store.size());
+    final FlutterLogEntry next = entry("next");
+    store.add(next);
+    assertEquals(6, next.getSequenceNumber());
+  }
+
+  @Test
+  public void growsIndex() {
+    final FlutterLogStore store = new FlutterLogStore(null, Collections.emptyList(), 16, 1024, 4);
+    for (int i = 0; i < 5000; i++) {
+      store.add(entry("c" + (i % 3), i, "m"));
+      if (i % 1000 == 999) {
+        store.removeBefore(i - 10);
+      }
+    }
+
+    assertEquals(4989, store.getFirstSequenceNumber());
+    assertEquals(4999, store.getLevel(5000));
+    assertEquals("c1", store.getCategory(4997));
+  }
+
+  @Test
+  public void deletesStaleSegmentsOnFirstUse() throws IOException {
+    final File stale = new File(directory, "flutter-log-1234.segment");
+    final File other = new File(directory, "notes.txt");
+    assertTrue(stale.createNewFile());
+    assertTrue(other.createNewFile());
+
+    final FlutterLogStore store = new FlutterLogStore(directory, Collections.emptyList(), 1, 1024, 4);
+    store.add(entry("a"));
+    assertTrue(stale.exists());
+    store.add(entry("b"));
+
+    assertFalse(stale.exists());
+    assertTrue(other.exists());
+    assertEquals(1, store.getSegmentCount());
+  }
+
+  @Test
+  public void stopsSpillingAfterDispose() {
+    final FlutterLogStore store = new FlutterLogStore(directory, Collections.emptyList(), 1, 1024, 4);
+    store.add(entry("a"));
+    store.add(entry("b"));
+    assertEquals(1, store.getSegmentCount());
+
+    store.dispose();
+    store.add(entry("c"));
+    store.add(entry("d"));
+
+    assertEquals(0, store.getSegmentCount());
+    final File[] files = directory.listFiles();
+    assertNotNull(files);
+    assertEquals(0, files.length);
+    assertEquals("d", store.get(4).getMessage());
+  }
+}
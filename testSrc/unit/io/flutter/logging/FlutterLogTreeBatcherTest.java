@@ -0,0 +1,199 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.logging;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.DefaultTreeModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the batcher's flushes directly, as the tree model's UI thread alarm would.
+ */
+public class FlutterLogTreeBatcherTest {
+  private final FlutterLogTree.LogRootTreeNode root = new FlutterLogTree.LogRootTreeNode();
+  private final DefaultTreeModel model = new DefaultTreeModel(root);
+  private final List<String> events = new ArrayList<>();
+  private final List<Integer> clearedBefore = new ArrayList<>();
+  private int scheduledFlushes;
+
+  private FlutterLogStore store = new FlutterLogStore(null, Collections.emptyList(), 4, 1024, 4);
+
+  private final FlutterLogTreeBatcher batcher = new FlutterLogTreeBatcher(model, store, new FlutterLogTreeBatcher.Host() {
+    @Override
+    public void scheduleFlush() {
+      scheduledFlushes++;
+    }
+
+    @Override
+    public boolean shouldClearBefore(@NotNull FlutterLogEntry entry) {
+      return entry.getKind() == FlutterLogEntry.Kind.RELOAD;
+    }
+
+    @Override
+    public void clearBefore(@NotNull FlutterLogEntry entry) {
+      clearedBefore.add(entry.getSequenceNumber());
+      store.removeBefore(entry.getSequenceNumber());
+    }
+  });
+
+  {
+    model.addTreeModelListener(new TreeModelListener() {
+      @Override
+      public void treeNodesChanged(TreeModelEvent e) {
+        events.add("changed " + Arrays.toString(e.getChildIndices()));
+      }
+
+      @Override
+      public void treeNodesInserted(TreeModelEvent e) {
+        events.add("inserted " + Arrays.toString(e.getChildIndices()));
+      }
+
+      @Override
+      public void treeNodesRemoved(TreeModelEvent e) {
+        events.add("removed " + Arrays.toString(e.getChildIndices()));
+      }
+
+      @Override
+      public void treeStructureChanged(TreeModelEvent e) {
+        events.add("structure");
+      }
+    });
+  }
+
+  /**
+   * Adds an entry to the store and queues it, as FlutterLog and the tree do.
+   */
+  private FlutterLogEntry append(FlutterLogEntry.Kind kind, boolean selectNode) {
+    final FlutterLogEntry entry = new FlutterLogEntry(1000, "flutter.log", 800, "message", kind, Collections.emptyList());
+    store.add(entry);
+    batcher.add(entry, selectNode);
+    return entry;
+  }
+
+  private FlutterLogEntry append() {
+    return append(FlutterLogEntry.Kind.UNSPECIFIED, false);
+  }
+
+  private List<Integer> rows() {
+    final List<Integer> rows = new ArrayList<>();
+    for (int i = 0; i < root.getChildCount(); i++) {
+      rows.add(((FlutterLogTree.FlutterEventNode)root.getChildAt(i)).getSequenceNumber());
+    }
+    return rows;
+  }
+
+  @Test
+  public void insertsEachBatchWithOneEvent() {
+    append();
+    append();
+    append();
+    assertEquals(1, scheduledFlushes);
+    assertTrue(rows().isEmpty());
+
+    assertTrue(batcher.flush());
+    assertEquals(Arrays.asList(1, 2, 3), rows());
+    assertEquals(Collections.singletonList("inserted [0, 1, 2]"), events);
+
+    append();
+    assertEquals(2, scheduledFlushes);
+    assertTrue(batcher.flush());
+    assertEquals(Arrays.asList(1, 2, 3, 4), rows());
+    assertEquals(Arrays.asList("inserted [0, 1, 2]", "inserted [3]"), events);
+
+    // Nothing queued.
+    assertFalse(batcher.flush());
+    assertEquals(2, events.size());
+  }
+
+  @Test
+  public void removesDroppedRowsBeforeInserting() {
+    append();
+    append();
+    append();
+    batcher.flush();
+    events.clear();
+
+    // The store only keeps four entries, so these drop entries 1 and 2.
+    append();
+    append();
+    append();
+    assertEquals(3, store.getFirstSequenceNumber());
+    assertTrue(batcher.flush());
+
+    assertEquals(Arrays.asList(3, 4, 5, 6), rows());
+    assertEquals(Arrays.asList("removed [0, 1]", "inserted [1, 2, 3]"), events);
+  }
+
+  @Test
+  public void skipsEntriesDroppedBeforeTheFlush() {
+    for (int i = 0; i < 10; i++) {
+      append();
+    }
+    assertEquals(1, scheduledFlushes);
+    assertTrue(batcher.flush());
+
+    assertEquals(Arrays.asList(7, 8, 9, 10), rows());
+    assertEquals(Collections.singletonList("inserted [0, 1, 2, 3]"), events);
+  }
+
+  @Test
+  public void clearsBeforeReloads() {
+    append();
+    append();
+    batcher.flush();
+    events.clear();
+
+    append(FlutterLogEntry.Kind.UNSPECIFIED, true);
+    final FlutterLogEntry reload = append(FlutterLogEntry.Kind.RELOAD, false);
+    append();
+    assertTrue(batcher.flush());
+
+    assertEquals(Collections.singletonList(reload.getSequenceNumber()), clearedBefore);
+    assertEquals(Arrays.asList(4, 5), rows());
+    // Entry 1 had already left the store's window.
+    assertEquals(Arrays.asList("removed [0]", "structure"), events);
+    // The row to reveal was cleared with the rest.
+    assertNull(batcher.getPathToReveal());
+  }
+
+  @Test
+  public void revealsSelectedEntries() {
+    append();
+    final FlutterLogEntry error = append(FlutterLogEntry.Kind.FLUTTER_ERROR, true);
+    append();
+    batcher.flush();
+
+    assertNotNull(batcher.getPathToReveal());
+    final FlutterLogTree.FlutterEventNode node = (FlutterLogTree.FlutterEventNode)batcher.getPathToReveal().getLastPathComponent();
+    assertEquals(error.getSequenceNumber(), node.getSequenceNumber());
+    assertSame(root, node.getParent());
+
+    append();
+    batcher.flush();
+    assertNull(batcher.getPathToReveal());
+  }
+
+  @Test
+  public void dropsQueuedEntriesOnClear() {
+    append();
+    batcher.clear();
+    assertFalse(batcher.flush());
+    assertTrue(rows().isEmpty());
+    assertTrue(events.isEmpty());
+
+    append();
+    assertEquals(2, scheduledFlushes);
+  }
+}
@@ -40,6 +40,7 @@ class MockWidgetPerfProvider implements WidgetPerfProvider {
   WidgetPerfListener widgetPerfListener;
   boolean isDisposed = false;
   boolean shouldDisplayStats = true;
+  boolean isVisible = false;
   List<List<String>> requests = new ArrayList<>();
   List<Iterable<Integer>> locationIdRequests = new ArrayList<>();
 
@@ -58,6 +59,11 @@ class MockWidgetPerfProvider implements WidgetPerfProvider {
     return true;
   }
 
+  @Override
+  public void setVisible(boolean visible) {
+    isVisible = visible;
+  }
+
   @Override
   public boolean shouldDisplayPerfStats(FileEditor editor) {
     return shouldDisplayStats;
@@ -489,7 +495,9 @@ public class FlutterWidgetPerfTest {
       path -> new FakeFileLocationMapper(path)
     );
     final MockPerfModel perfModel = new MockPerfModel();
+    assertFalse(widgetPerfProvider.isVisible);
     flutterWidgetPerf.addPerfListener(perfModel);
+    assertTrue(widgetPerfProvider.isVisible);
 
     widgetPerfProvider.simulateWidgetPerfEvent(PerfReportKind.rebuild,
                                                "{\"startTime\":1000,\"events\":[1,1,2,1,3,1,4,1,6,1,10,4,11,4,12,4,13,1,14,1,95,1,96,1,97,6,100,6,102,6,104,6,105,1,106,1],\"newLocations\":{\"/sample/project/main.dart\":[1,11,14,2,18,16,3,23,17,4,40,16,6,46,16,10,69,9,11,70,9,12,71,18,13,41,19,14,42,20,95,51,58],\"/sample/project/clock.dart\":[96,33,12,97,52,12,100,53,16,102,54,14,104,55,17,105,34,15,106,35,16]}}");
@@ -547,6 +555,7 @@ public class FlutterWidgetPerfTest {
     assertEquals(1, perfModel.idleCount);
 
     flutterWidgetPerf.removePerfListener(perfModel);
+    assertFalse(widgetPerfProvider.isVisible);
     flutterWidgetPerf.dispose();
   }
 }
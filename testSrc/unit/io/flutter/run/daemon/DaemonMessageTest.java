@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.run.daemon;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that we decode lines of daemon output into responses and events.
+ */
+public class DaemonMessageTest {
+
+  @Test
+  public void decodesResponses() {
+    final DaemonMessage message = DaemonMessage.decode("[{\"id\":23,\"result\":{\"code\":0}}]\n");
+    assertNotNull(message);
+    assertFalse(message.isEvent());
+    assertEquals(23, message.id);
+    assertNotNull(message.result);
+    assertEquals(0, message.result.getAsJsonObject().get("code").getAsInt());
+    assertNull(message.error);
+  }
+
+  @Test
+  public void decodesErrors() {
+    final DaemonMessage message = DaemonMessage.decode("[{\"id\":1,\"error\":\"oops\",\"trace\":\"at main\"}]");
+    assertNotNull(message);
+    assertEquals("oops", message.error.getAsString());
+    assertEquals("at main", message.trace.getAsString());
+  }
+
+  @Test
+  public void decodesEvents() {
+    final DaemonMessage message = DaemonMessage.decode("[{\"event\":\"app.log\",\"params\":{\"appId\":\"foo\",\"log\":\"hello\"}}]");
+    assertNotNull(message);
+    assertTrue(message.isEvent());
+    assertTrue(message.event instanceof DaemonEvent.AppLog);
+    assertEquals("hello", ((DaemonEvent.AppLog)message.event).log);
+  }
+
+  @Test
+  public void decodesEventsWithParamsFirst() {
+    final DaemonMessage message = DaemonMessage.decode("[{\"params\":{\"appId\":\"foo\"},\"event\":\"app.started\"}]");
+    assertNotNull(message);
+    assertTrue(message.event instanceof DaemonEvent.AppStarted);
+    assertEquals("foo", ((DaemonEvent.AppStarted)message.event).appId);
+  }
+
+  @Test
+  public void dropsUnknownEvents() {
+    assertNull(DaemonMessage.decode("[{\"event\":\"app.unknown\",\"params\":{}}]"));
+  }
+
+  @Test
+  public void dropsEventsWithUnexpectedParams() {
+    assertNull(DaemonMessage.decode("[{\"event\":\"app.log\",\"params\":{\"appId\":\"foo\",\"error\":{\"x\":1}}}]"));
+    assertNull(DaemonMessage.decode("[{\"params\":{\"appId\":\"foo\",\"error\":{\"x\":1}},\"event\":\"app.log\"}]"));
+  }
+
+  @Test
+  public void rejectsInvalidMessages() {
+    assertNull(DaemonMessage.decode("hello"));
+    assertNull(DaemonMessage.decode("[{'foo':'bar"));
+    assertNull(DaemonMessage.decode("[{}]"));
+    assertNull(DaemonMessage.decode("[{id:'23'}]"));
+    assertNull(DaemonMessage.decode("[{id:2.5}]"));
+    assertNull(DaemonMessage.decode("[{\"event\":\"app.log\"}]"));
+    assertNull(DaemonMessage.decode("[{\"id\":1}] trailing"));
+  }
+}
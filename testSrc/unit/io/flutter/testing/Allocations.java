@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.testing;
+
+import org.junit.Assume;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Static methods for tests that check how much a piece of code allocates.
+ *
+ * <p>Uses the per-thread allocation counter of the HotSpot ThreadMXBean. Tests
+ * are skipped on JVMs that don't support it.
+ */
+public class Allocations {
+
+  private Allocations() {}
+
+  /**
+   * Runs the task repeatedly and returns the average number of bytes it allocated per run.
+   *
+   * <p>The task is run a few times first so that one-time allocations (class loading,
+   * lazily built caches, JIT) aren't counted.
+   */
+  public static long bytesPerRun(int runs, Runnable task) {
+    final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)bean;
+    Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+    for (int i = 0; i < runs; i++) {
+      task.run();
+    }
+
+    final long thread = Thread.currentThread().getId();
+    final long before = threads.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < runs; i++) {
+      task.run();
+    }
+    return (threads.getThreadAllocatedBytes(thread) - before) / runs;
+  }
+}
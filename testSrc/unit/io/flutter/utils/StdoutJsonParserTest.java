@@ -5,9 +5,12 @@
  */
 package io.flutter.utils;
 
+import io.flutter.testing.Allocations;
 import org.junit.Test;
 
-import static org.junit.Assert.assertArrayEquals;
+import java.util.List;
+
+import static org.junit.Assert.*;
 
 public class StdoutJsonParserTest {
   @Test
@@ -129,4 +132,66 @@ public class StdoutJsonParserTest {
       parser.getAvailableLines().toArray()
     );
   }
+
+  @Test
+  public void linesSplitAcrossChunks() {
+    final StdoutJsonParser parser = new StdoutJsonParser();
+    parser.appendOutput("one\ntwo\r");
+    parser.appendOutput("\nthree\r");
+    parser.appendOutput("four\n[{'a':[1,");
+    parser.appendOutput("2]}");
+    parser.appendOutput("]\n");
+    parser.appendOutput("[{'b':'}]'}");
+    parser.appendOutput("]\r\n");
+    parser.appendOutput("done");
+
+    assertArrayEquals(
+      "validating parser results",
+      new String[]{"one\n", "two\r", "\n", "three\r", "four\n", "[{'a':[1,2]}]\n", "[{'b':'}]'}]\r\n", "done"},
+      parser.getAvailableLines().toArray()
+    );
+  }
+
+  @Test(timeout = 10000)
+  public void scansLongChunksInLinearTime() {
+    // 100k short lines in one chunk, half of them inside JSON messages. Rescanning the rest of the
+    // chunk for every line would take minutes.
+    final StringBuilder chunk = new StringBuilder();
+    for (int i = 0; i < 50000; i++) {
+      chunk.append("[{\"id\":").append(i).append("}]\n");
+      chunk.append("line ").append(i).append("\r\n");
+    }
+    final StdoutJsonParser parser = new StdoutJsonParser();
+    parser.appendOutput(chunk.toString());
+
+    final List<String> lines = parser.getAvailableLines();
+    assertEquals(100000, lines.size());
+    assertEquals("[{\"id\":49999}]\n", lines.get(99998));
+    assertEquals("line 49999\r\n", lines.get(99999));
+  }
+
+  @Test
+  public void buffersSplitJsonInLinearSpace() {
+    // A 1MB message, such as a large service extension response, arriving in 1KB pieces.
+    final StringBuilder json = new StringBuilder("[{\"result\":\"");
+    while (json.length() < 1 << 20) {
+      json.append("0123456789abcdef");
+    }
+    final String message = json.append("\"}]\n").toString();
+    final String[] pieces = new String[(message.length() + 1023) / 1024];
+    for (int i = 0; i < pieces.length; i++) {
+      pieces[i] = message.substring(i * 1024, Math.min(message.length(), (i + 1) * 1024));
+    }
+
+    final StdoutJsonParser parser = new StdoutJsonParser();
+    final long bytes = Allocations.bytesPerRun(5, () -> {
+      for (String piece : pieces) {
+        parser.appendOutput(piece);
+      }
+      assertEquals(message, parser.getAvailableLines().get(0));
+    });
+    // Growing the buffer and copying out the line is a small multiple of the message size; copying
+    // the buffer for every piece would be hundreds of times larger.
+    assertTrue("allocated " + bytes + " bytes for " + message.length() + " characters", bytes < message.length() * 16L);
+  }
 }
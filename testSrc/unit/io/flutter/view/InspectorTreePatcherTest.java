@@ -0,0 +1,277 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.view;
+
+import com.google.gson.JsonParser;
+import io.flutter.inspector.DiagnosticsNode;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.swing.*;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static io.flutter.testing.JsonTesting.curly;
+import static org.junit.Assert.*;
+
+public class InspectorTreePatcherTest {
+  private DefaultMutableTreeNode root;
+  private DefaultTreeModel model;
+  private JTree tree;
+  private InspectorTreePatcher patcher;
+  private final List<String> events = new ArrayList<>();
+  private final List<DefaultMutableTreeNode> reusedNodes = new ArrayList<>();
+
+  private static int nextObjectId = 0;
+
+  /**
+   * Returns the JSON for a widget. The object id changes on every call, as it
+   * does between object groups, while the value id stays the same.
+   */
+  private static String widget(String valueId, String description, String... children) {
+    return widget(valueId, description, new ArrayList<>(), children);
+  }
+
+  private static String widget(String valueId, String description, List<String> properties, String... children) {
+    return curly("description:\"" + description + "\"", "valueId:\"" + valueId + "\"", "objectId:\"o" + nextObjectId++ + "\"",
+                 "hasChildren:" + (children.length > 0), "children:[" + String.join(",", children) + "]",
+                 "properties:[" + String.join(",", properties) + "]");
+  }
+
+  private static String property(String name, String description) {
+    return curly("name:\"" + name + "\"", "description:\"" + description + "\"", "objectId:\"o" + nextObjectId++ + "\"");
+  }
+
+  private static DiagnosticsNode parse(String json) {
+    return new DiagnosticsNode(new JsonParser().parse(json).getAsJsonObject(), CompletableFuture.completedFuture(null), null, false, null);
+  }
+
+  /**
+   * Builds tree nodes the way InspectorPanel does, without firing events.
+   */
+  private static void setupTreeNode(DefaultMutableTreeNode treeNode, DiagnosticsNode node) {
+    treeNode.setUserObject(node);
+    final List<DiagnosticsNode> children = new ArrayList<>(node.getInlineProperties());
+    children.addAll(node.getChildren().getNow(new ArrayList<>()));
+    for (DiagnosticsNode child : children) {
+      final DefaultMutableTreeNode childTreeNode = new DefaultMutableTreeNode();
+      setupTreeNode(childTreeNode, child);
+      treeNode.add(childTreeNode);
+    }
+  }
+
+  private void show(String json) {
+    root = new DefaultMutableTreeNode();
+    setupTreeNode(root, parse(json));
+    model = new DefaultTreeModel(root);
+    tree = new JTree(model);
+    model.addTreeModelListener(new TreeModelListener() {
+      @Override
+      public void treeNodesChanged(TreeModelEvent e) {
+        events.add("changed " + describe(e));
+      }
+
+      @Override
+      public void treeNodesInserted(TreeModelEvent e) {
+        events.add("inserted " + describe(e));
+      }
+
+      @Override
+      public void treeNodesRemoved(TreeModelEvent e) {
+        events.add("removed " + describe(e));
+      }
+
+      @Override
+      public void treeStructureChanged(TreeModelEvent e) {
+        events.add("structure " + describe(e));
+      }
+    });
+    patcher = new InspectorTreePatcher(tree, new InspectorTreePatcher.Host() {
+      @Override
+      public void nodeReused(DefaultMutableTreeNode treeNode, DiagnosticsNode node) {
+        reusedNodes.add(treeNode);
+      }
+
+      @Override
+      public void setupTreeNode(DefaultMutableTreeNode treeNode, DiagnosticsNode node) {
+        InspectorTreePatcherTest.setupTreeNode(treeNode, node);
+      }
+
+      @Override
+      public void setupChildren(DefaultMutableTreeNode treeNode, DiagnosticsNode node, ArrayList<DiagnosticsNode> children) {
+        fail("no placeholders in these trees");
+      }
+
+      @Override
+      public void loadChildren(DefaultMutableTreeNode treeNode) {
+        fail("no placeholders in these trees");
+      }
+
+      @Override
+      public void expand(List<TreePath> paths, boolean expandSubtrees) {
+        for (TreePath path : paths) {
+          tree.expandPath(path);
+        }
+      }
+    });
+  }
+
+  private static String describe(TreeModelEvent e) {
+    final Object parent = e.getTreePath().getLastPathComponent();
+    if (e.getChildren() == null) {
+      return InspectorPanel.getDiagnosticNode((DefaultMutableTreeNode)parent).getDescription();
+    }
+    final StringBuilder out = new StringBuilder();
+    for (int i = 0; i < e.getChildren().length; i++) {
+      out.append(InspectorPanel.getDiagnosticNode((DefaultMutableTreeNode)e.getChildren()[i]).getDescription())
+        .append('@').append(e.getChildIndices()[i]);
+    }
+    return out.toString();
+  }
+
+  private DefaultMutableTreeNode child(int... indices) {
+    DefaultMutableTreeNode node = root;
+    for (int index : indices) {
+      node = (DefaultMutableTreeNode)node.getChildAt(index);
+    }
+    return node;
+  }
+
+  private static TreePath path(DefaultMutableTreeNode node) {
+    return new TreePath(node.getPath());
+  }
+
+  private List<String> childDescriptions(DefaultMutableTreeNode node) {
+    final List<String> descriptions = new ArrayList<>();
+    for (int i = 0; i < node.getChildCount(); i++) {
+      descriptions.add(InspectorPanel.getDiagnosticNode(node.getChildAt(i)).getDescription());
+    }
+    return descriptions;
+  }
+
+  private void patch(String json) {
+    final DiagnosticsNode node = parse(json);
+    assertEquals(InspectorTreePatcher.getDiffKey(InspectorPanel.getDiagnosticNode(root)), InspectorTreePatcher.getDiffKey(node));
+    patcher.patch(root, node);
+    // Every tree node now displays the new tree.
+    assertTrue(InspectorTreePatcher.subtreesIdentical(root, parse(json)));
+  }
+
+  @Before
+  public void setUp() {
+    events.clear();
+    reusedNodes.clear();
+  }
+
+  @Test
+  public void detectsIdenticalSubtrees() {
+    show(widget("1", "Column", widget("2", "Text"), widget("3", "Padding", widget("4", "Text"))));
+
+    assertTrue(InspectorTreePatcher.subtreesIdentical(root, parse(
+      widget("1", "Column", widget("2", "Text"), widget("3", "Padding", widget("4", "Text"))))));
+    assertFalse(InspectorTreePatcher.subtreesIdentical(root, parse(
+      widget("1", "Column", widget("2", "Text"), widget("3", "Padding", widget("4", "RichText"))))));
+    assertFalse(InspectorTreePatcher.subtreesIdentical(root, parse(
+      widget("1", "Column", widget("2", "Text"), widget("3", "Padding", widget("5", "Text"))))));
+    assertFalse(InspectorTreePatcher.subtreesIdentical(root, parse(
+      widget("1", "Column", widget("2", "Text")))));
+  }
+
+  @Test
+  public void insertsChildren() {
+    show(widget("1", "Column", widget("2", "Text"), widget("3", "Padding", widget("4", "Text"))));
+    final DefaultMutableTreeNode text = child(0);
+    final DefaultMutableTreeNode padding = child(1);
+    tree.expandPath(path(padding));
+    tree.setSelectionPath(path(child(1, 0)));
+    final DefaultMutableTreeNode selected = child(1, 0);
+
+    patch(widget("1", "Column", widget("2", "Text"), widget("5", "Icon"), widget("3", "Padding", widget("4", "Text"))));
+
+    assertEquals(Arrays.asList("Text", "Icon", "Padding"), childDescriptions(root));
+    assertSame(text, child(0));
+    assertSame(padding, child(2));
+    assertSame(selected, child(2, 0));
+    assertEquals(Arrays.asList("inserted Icon@1"), events);
+    assertTrue(tree.isExpanded(path(padding)));
+    assertEquals(path(selected), tree.getSelectionPath());
+    assertEquals(4, reusedNodes.size());
+  }
+
+  @Test
+  public void removesChildren() {
+    show(widget("1", "Column", widget("2", "Text"), widget("3", "Padding", widget("4", "Text")), widget("5", "Icon")));
+    final DefaultMutableTreeNode padding = child(1);
+    final DefaultMutableTreeNode icon = child(2);
+    tree.expandPath(path(padding));
+    tree.setSelectionPath(path(icon));
+
+    patch(widget("1", "Column", widget("3", "Padding", widget("4", "Text")), widget("5", "Icon")));
+
+    assertEquals(Arrays.asList("Padding", "Icon"), childDescriptions(root));
+    assertSame(padding, child(0));
+    assertSame(icon, child(1));
+    assertEquals(Arrays.asList("removed Text@0"), events);
+    assertTrue(tree.isExpanded(path(padding)));
+    assertEquals(path(icon), tree.getSelectionPath());
+  }
+
+  @Test
+  public void reordersChildren() {
+    show(widget("1", "Column", widget("2", "Text"), widget("3", "Padding", widget("4", "Text"))));
+    final DefaultMutableTreeNode text = child(0);
+    final DefaultMutableTreeNode padding = child(1);
+    tree.expandPath(path(padding));
+
+    patch(widget("1", "Column", widget("3", "Padding", widget("4", "Text")), widget("2", "Text")));
+
+    assertEquals(Arrays.asList("Padding", "Text"), childDescriptions(root));
+    assertSame(padding, child(0));
+    assertSame(text, child(1));
+    assertEquals(Arrays.asList("structure Column"), events);
+    // The moved subtree is expanded again.
+    assertTrue(tree.isExpanded(path(padding)));
+  }
+
+  @Test
+  public void updatesChangedNodesOnly() {
+    show(widget("1", "Column", widget("2", "Text"), widget("3", "Padding", widget("4", "Text"))));
+    final DefaultMutableTreeNode inner = child(1, 0);
+
+    patch(widget("1", "Column", widget("2", "Text"), widget("3", "Padding", widget("4", "RichText"))));
+
+    assertSame(inner, child(1, 0));
+    assertEquals("RichText", InspectorPanel.getDiagnosticNode(inner).getDescription());
+    assertEquals(Arrays.asList("changed RichText@0"), events);
+  }
+
+  @Test
+  public void matchesPropertiesByName() {
+    show(widget("1", "Padding", Arrays.asList(property("padding", "EdgeInsets.all(8.0)"), property("key", "null")),
+                widget("2", "Text")));
+    final DefaultMutableTreeNode padding = child(0);
+    final DefaultMutableTreeNode text = child(2);
+
+    // Property values change identity on every refresh, so only the name is used to match them.
+    patch(widget("1", "Padding", Arrays.asList(property("padding", "EdgeInsets.all(4.0)"), property("margin", "null")),
+                 widget("2", "Text")));
+
+    assertEquals(Arrays.asList("EdgeInsets.all(4.0)", "null", "Text"), childDescriptions(root));
+    assertSame(padding, child(0));
+    assertSame(text, child(2));
+    assertEquals("margin", InspectorPanel.getDiagnosticNode(child(1)).getName());
+    assertEquals(Arrays.asList("removed null@1", "inserted null@1", "changed EdgeInsets.all(4.0)@0"), events);
+    // Properties aren't tracked by value.
+    assertEquals(2, reusedNodes.size());
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.vmService;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FlutterFrameStoreTest {
+  private static final int TARGET = 16666;
+
+  @Test
+  public void snapshotListsNewestFirst() {
+    final FlutterFrameStore store = new FlutterFrameStore(4);
+    for (int i = 0; i < 6; i++) {
+      store.add(i, i * 20000L, 1000 + i, i == 0, TARGET);
+    }
+
+    final FlutterFrameStore.Snapshot snapshot = store.getSnapshot();
+    assertEquals(4, snapshot.size());
+    assertEquals(5, snapshot.getFrameId(0));
+    assertEquals(2, snapshot.getFrameId(3));
+    assertEquals(1005, snapshot.getElapsedMicros(0));
+    assertEquals(40000L, snapshot.getStartTimeMicros(3));
+    assertEquals(6, snapshot.getTotalFrameCount());
+  }
+
+  @Test
+  public void snapshotIsNotChangedByLaterFrames() {
+    final FlutterFrameStore store = new FlutterFrameStore(4);
+    store.add(1, 0, 1000, true, TARGET);
+    final FlutterFrameStore.Snapshot snapshot = store.getSnapshot();
+    store.add(2, 20000, 1000, false, TARGET);
+
+    assertEquals(1, snapshot.size());
+    assertEquals(2, store.getSnapshot().size());
+  }
+
+  @Test
+  public void tracksCurrentFrameSet() {
+    final FlutterFrameStore store = new FlutterFrameStore(3);
+    store.add(1, 0, 1000, true, TARGET);
+    store.add(2, 20000, 20000, false, TARGET);
+    FlutterFrameStore.Snapshot snapshot = store.getSnapshot();
+    assertEquals(2, snapshot.getCurrentSetFrameCount());
+    assertEquals(3, snapshot.getCurrentSetCost());
+
+    // Evicting frames from the current set removes their cost.
+    store.add(3, 40000, 1000, false, TARGET);
+    store.add(4, 60000, 1000, false, TARGET);
+    snapshot = store.getSnapshot();
+    assertEquals(3, snapshot.getCurrentSetFrameCount());
+    assertEquals(4, snapshot.getCurrentSetCost());
+
+    store.add(5, 500000, 1000, true, TARGET);
+    snapshot = store.getSnapshot();
+    assertEquals(1, snapshot.getCurrentSetFrameCount());
+    assertEquals(1, snapshot.getCurrentSetCost());
+    assertTrue(snapshot.isFrameSetStart(0));
+  }
+
+  @Test
+  public void countsSlowFramesInWindow() {
+    final FlutterFrameStore store = new FlutterFrameStore(2);
+    store.add(1, 0, 30000, true, TARGET);
+    store.add(2, 40000, 1000, false, TARGET);
+    assertEquals(1, store.getSnapshot().getSlowFrameCount());
+    assertTrue(store.getSnapshot().isSlowFrame(1));
+
+    store.add(3, 60000, 1000, false, TARGET);
+    assertEquals(0, store.getSnapshot().getSlowFrameCount());
+    assertEquals(1, store.getSnapshot().getTotalSlowFrameCount());
+  }
+
+  @Test
+  public void computesPercentiles() {
+    final FlutterFrameStore store = new FlutterFrameStore(100);
+    for (int i = 1; i <= 100; i++) {
+      store.add(i, i * 20000L, i * 1000L - 50, false, TARGET);
+    }
+
+    final FlutterFrameStore.Snapshot snapshot = store.getSnapshot();
+    assertEquals(50000, snapshot.getP50Micros());
+    assertEquals(90000, snapshot.getP90Micros());
+    assertEquals(99000, snapshot.getP99Micros());
+  }
+
+  @Test
+  public void aggregatesCompletedSeconds() {
+    final FlutterFrameStore store = new FlutterFrameStore(10, 2);
+    store.add(1, 100000, 1000, true, TARGET);
+    store.add(2, 200000, 20000, false, TARGET);
+    assertEquals(0, store.getHistory().size());
+
+    store.add(3, 1100000, 3000, false, TARGET);
+    FlutterFrameStore.History history = store.getHistory();
+    assertEquals(1, history.size());
+    assertEquals(0, history.getStartTimeMicros(0));
+    assertEquals(2, history.getFrameCount(0));
+    assertEquals(1, history.getSlowFrameCount(0));
+    assertEquals(20000, history.getMaxElapsedMicros(0));
+    assertEquals(10500, history.getAverageElapsedMicros(0));
+
+    store.add(4, 5100000, 1000, true, TARGET);
+    store.add(5, 7100000, 1000, true, TARGET);
+    history = store.getHistory();
+    assertEquals(2, history.size());
+    assertEquals(1000000, history.getStartTimeMicros(0));
+    assertEquals(5000000, history.getStartTimeMicros(1));
+  }
+
+  @Test
+  public void snapshotIsOnlyRebuiltAfterChanges() {
+    final FlutterFrameStore store = new FlutterFrameStore(10);
+    store.add(1, 0, 1000, true, TARGET);
+    final FlutterFrameStore.Snapshot snapshot = store.getSnapshot();
+    assertSame(snapshot, store.getSnapshot());
+
+    store.add(2, 20000, 1000, false, TARGET);
+    store.add(3, 40000, 1000, false, TARGET);
+    final FlutterFrameStore.Snapshot next = store.getSnapshot();
+    assertNotSame(snapshot, next);
+    assertEquals(1, snapshot.size());
+    assertEquals(3, next.size());
+    assertSame(next, store.getSnapshot());
+  }
+
+  @Test
+  public void clearRemovesFrames() {
+    final FlutterFrameStore store = new FlutterFrameStore(10);
+    store.add(1, 0, 1000, true, TARGET);
+    store.add(2, 2000000, 1000, true, TARGET);
+    store.clear();
+
+    assertTrue(store.getSnapshot().isEmpty());
+    assertEquals(0, store.getHistory().size());
+  }
+}
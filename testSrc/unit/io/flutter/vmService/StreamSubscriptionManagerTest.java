@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.vmService;
+
+import com.intellij.openapi.Disposable;
+import org.dartlang.vm.service.VmService;
+import org.dartlang.vm.service.consumer.SuccessConsumer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StreamSubscriptionManagerTest {
+  private final List<String> sent = new ArrayList<>();
+  private final VmService vmService = new VmService() {
+    @Override
+    public void streamListen(String streamId, SuccessConsumer consumer) {
+      sent.add("listen " + streamId);
+    }
+
+    @Override
+    public void streamCancel(String streamId, SuccessConsumer consumer) {
+      sent.add("cancel " + streamId);
+    }
+  };
+  private final StreamSubscriptionManager manager = new StreamSubscriptionManager(vmService);
+
+  @Test
+  public void sendsRequestsOnlyForFirstAndLastLease() {
+    final Disposable first = manager.listen(VmService.EXTENSION_STREAM_ID);
+    final Disposable second = manager.listen(VmService.EXTENSION_STREAM_ID);
+    assertEquals(Collections.singletonList("listen Extension"), sent);
+    assertEquals(2, manager.getSubscriberCount(VmService.EXTENSION_STREAM_ID));
+
+    first.dispose();
+    assertEquals(1, sent.size());
+    second.dispose();
+    assertEquals(Arrays.asList("listen Extension", "cancel Extension"), sent);
+    assertEquals(0, manager.getSubscriberCount(VmService.EXTENSION_STREAM_ID));
+    assertTrue(manager.getSubscribedStreams().isEmpty());
+  }
+
+  @Test
+  public void ignoresRepeatedDispose() {
+    final Disposable first = manager.listen(VmService.LOGGING_STREAM_ID);
+    manager.listen(VmService.LOGGING_STREAM_ID);
+    first.dispose();
+    first.dispose();
+    assertEquals(1, manager.getSubscriberCount(VmService.LOGGING_STREAM_ID));
+    assertEquals(Collections.singletonList("listen Logging"), sent);
+  }
+
+  @Test
+  public void resubscribesStreamsWithLeases() {
+    manager.listen(VmService.EXTENSION_STREAM_ID);
+    manager.listen(VmService.LOGGING_STREAM_ID).dispose();
+    sent.clear();
+
+    manager.resubscribe();
+    assertEquals(Collections.singletonList("listen Extension"), sent);
+  }
+}
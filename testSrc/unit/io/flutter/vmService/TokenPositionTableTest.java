@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.vmService;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.flutter.testing.Allocations;
+import org.dartlang.vm.service.element.Script;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TokenPositionTableTest {
+  private static Script script(String tokenPosTable) {
+    final JsonObject json = new JsonObject();
+    json.add("tokenPosTable", new JsonParser().parse(tokenPosTable));
+    return new Script(json);
+  }
+
+  private static TokenPositionTable decode(String tokenPosTable) {
+    return TokenPositionTable.forScript(script(tokenPosTable));
+  }
+
+  @Test
+  public void convertsToZeroBasedLinesAndColumns() {
+    final TokenPositionTable table = decode("[[1, 10, 1, 12, 5], [3, 20, 7]]");
+    assertEquals(3, table.size());
+    assertEquals(0, table.getLine(10));
+    assertEquals(0, table.getColumn(10));
+    assertEquals(4, table.getColumn(12));
+    assertEquals(2, table.getLine(20));
+    assertEquals(6, table.getColumn(20));
+  }
+
+  @Test
+  public void returnsMinusOneForUnknownTokens() {
+    final TokenPositionTable table = decode("[[1, 10, 1]]");
+    assertEquals(-1, table.getLine(11));
+    assertEquals(-1, table.getColumn(9));
+    assertEquals(-1, decode("[[1], [2]]").getLine(0));
+  }
+
+  @Test
+  public void sortsOutOfOrderTokens() {
+    final TokenPositionTable table = decode("[[1, 30, 1], [2, 10, 2, 20, 3], [3, 5, 4]]");
+    assertEquals(4, table.size());
+    assertEquals(2, table.getLine(5));
+    assertEquals(1, table.getLine(10));
+    assertEquals(1, table.getLine(20));
+    assertEquals(0, table.getLine(30));
+  }
+
+  @Test
+  public void laterDuplicatesWin() {
+    final TokenPositionTable table = decode("[[1, 10, 1], [2, 5, 1], [3, 10, 4]]");
+    assertEquals(2, table.size());
+    assertEquals(2, table.getLine(10));
+    assertEquals(3, table.getColumn(10));
+  }
+
+  @Test
+  public void sharesTablesPerScript() {
+    final Script script = script("[[1, 10, 1]]");
+    final TokenPositionTable table = TokenPositionTable.forScript(script);
+    assertNotNull(table);
+    assertSame(table, TokenPositionTable.forScript(script));
+
+    assertNull(TokenPositionTable.forScript(new Script(new JsonObject())));
+    assertEquals(0, TokenPositionTable.decode(new int[0][]).size());
+  }
+
+  @Test
+  public void packsLargeTables() {
+    // One row per line with ten tokens each, like the table for a 100k-token file.
+    final int[][] rows = new int[10000][];
+    for (int line = 0; line < rows.length; line++) {
+      rows[line] = new int[21];
+      rows[line][0] = line + 1;
+      for (int i = 0; i < 10; i++) {
+        rows[line][1 + i * 2] = line * 100 + i * 10;
+        rows[line][2 + i * 2] = i * 4 + 1;
+      }
+    }
+    final int tokens = rows.length * 10;
+
+    final TokenPositionTable[] table = new TokenPositionTable[1];
+    final long decodeBytes = Allocations.bytesPerRun(20, () -> table[0] = TokenPositionTable.decode(rows));
+    assertEquals(tokens, table[0].size());
+    // Three ints per token; a map from boxed positions to Position objects took about 80 bytes per token.
+    assertTrue("decoding allocated " + decodeBytes / tokens + " bytes per token", decodeBytes < tokens * 16L);
+
+    final long lookupBytes = Allocations.bytesPerRun(20, () -> {
+      for (int line = 0; line < rows.length; line += 7) {
+        assertEquals(line, table[0].getLine(line * 100 + 50));
+        assertEquals(20, table[0].getColumn(line * 100 + 50));
+        assertEquals(-1, table[0].getLine(line * 100 + 51));
+      }
+    });
+    assertTrue("lookups allocated " + lookupBytes + " bytes", lookupBytes < 64);
+  }
+}
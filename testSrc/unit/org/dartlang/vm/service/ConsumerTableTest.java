@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package org.dartlang.vm.service;
+
+import com.google.gson.JsonObject;
+import org.dartlang.vm.service.consumer.VersionConsumer;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.element.Version;
+import org.dartlang.vm.service.internal.RequestSink;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConsumerTableTest {
+  private final List<JsonObject> sent = new ArrayList<>();
+  private final VmService vmService = new VmService();
+
+  {
+    vmService.requestSink = new RequestSink() {
+      @Override
+      public void add(JsonObject request) {
+        sent.add(request);
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+
+  private static ConsumerTable.Entry entry(int id, Object tag, long timeoutMillis) {
+    return new ConsumerTable.Entry(id, "getVersion", null, tag, timeoutMillis);
+  }
+
+  @Test
+  public void storesCollidingIdsInOverflow() {
+    final ConsumerTable table = new ConsumerTable(4);
+    for (int id = 1; id <= 10; id++) {
+      table.put(entry(id, null, 1000));
+    }
+    assertEquals(10, table.size());
+    assertEquals(7, table.remove(7).id);
+    assertNull(table.remove(7));
+    assertEquals(1, table.remove(1).id);
+    assertNull(table.remove(11));
+    assertEquals(8, table.size());
+  }
+
+  @Test
+  public void removesExpiredAndTaggedEntries() {
+    final ConsumerTable table = new ConsumerTable(4);
+    final Object tag = new Object();
+    table.put(entry(1, null, 0));
+    table.put(entry(2, tag, 60000));
+    table.put(entry(5, tag, 60000));
+    table.put(entry(3, null, 60000));
+
+    final List<ConsumerTable.Entry> expired = table.removeExpired(System.nanoTime() + 1);
+    assertEquals(1, expired.size());
+    assertEquals(1, expired.get(0).id);
+    assertEquals(2, table.removeTagged(tag).size());
+    assertEquals(1, table.size());
+  }
+
+  @Test
+  public void completesRequestsById() {
+    final Recorder recorder = new Recorder();
+    vmService.getVersion(recorder);
+    assertEquals(1, vmService.getInFlightRequestCount());
+
+    final String id = sent.get(0).get("id").getAsString();
+    vmService.processMessage("{\"jsonrpc\":\"2.0\",\"id\":\"" + id + "\",\"result\":{\"type\":\"Version\",\"major\":3,\"minor\":0}}");
+    assertEquals(3, recorder.version.getMajor());
+    assertEquals(0, vmService.getInFlightRequestCount());
+  }
+
+  @Test
+  public void cancelsTaggedRequests() {
+    final Object tag = new Object();
+    final Recorder tagged = new Recorder();
+    final Recorder untagged = new Recorder();
+    vmService.sendTagged(tag, 60000, () -> vmService.getVersion(tagged));
+    vmService.getVersion(untagged);
+
+    assertEquals(1, vmService.cancelRequests(tag));
+    assertEquals(RPCError.REQUEST_CANCELLED, tagged.error.getCode());
+    assertNull(untagged.error);
+    assertEquals(1, vmService.getInFlightRequestCount());
+
+    // A late response for the cancelled request is ignored.
+    final String id = sent.get(0).get("id").getAsString();
+    vmService.processMessage("{\"jsonrpc\":\"2.0\",\"id\":\"" + id + "\",\"result\":{\"type\":\"Version\",\"major\":3,\"minor\":0}}");
+    assertNull(tagged.version);
+  }
+
+  @Test
+  public void failsRequestsPastTheirDeadline() throws Exception {
+    final Recorder recorder = new Recorder();
+    vmService.sendTagged(null, 0, () -> vmService.getVersion(recorder));
+    Thread.sleep(1);
+    vmService.failExpiredRequests();
+    assertEquals(RPCError.REQUEST_TIMED_OUT, recorder.error.getCode());
+    assertEquals(1, vmService.getTimedOutRequestCount());
+    assertEquals(0, vmService.getInFlightRequestCount());
+  }
+
+  private static class Recorder implements VersionConsumer {
+    Version version;
+    RPCError error;
+
+    @Override
+    public void received(Version response) {
+      version = response;
+    }
+
+    @Override
+    public void onError(RPCError error) {
+      this.error = error;
+    }
+  }
+}
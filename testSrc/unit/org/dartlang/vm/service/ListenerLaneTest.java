@@ -0,0 +1,225 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package org.dartlang.vm.service;
+
+import com.google.gson.JsonObject;
+import org.dartlang.vm.service.element.Event;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ListenerLaneTest {
+  private final VmService vmService = new VmService();
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private void sendEvent(String streamId, String kind) {
+    vmService.processMessage("{\"jsonrpc\":\"2.0\",\"method\":\"streamNotify\",\"params\":{\"streamId\":\"" + streamId +
+                             "\",\"event\":{\"type\":\"Event\",\"kind\":\"" + kind + "\"}}}");
+  }
+
+  @Test
+  public void deliversSynchronouslyWithoutExecutor() {
+    final List<String> received = new ArrayList<>();
+    vmService.addVmServiceListener(new Recorder(received));
+    sendEvent("Extension", "Extension");
+    assertEquals(Collections.singletonList("Extension/Extension"), received);
+  }
+
+  @Test
+  public void slowListenerOnlyDelaysItsOwnLane() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(3);
+    final List<String> slow = Collections.synchronizedList(new ArrayList<>());
+    vmService.addVmServiceListener(new Recorder(slow) {
+      @Override
+      public void received(String streamId, Event event) {
+        try {
+          release.await();
+        }
+        catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        super.received(streamId, event);
+        done.countDown();
+      }
+    }, null, executor);
+    final List<String> fast = new ArrayList<>();
+    vmService.addVmServiceListener(new Recorder(fast));
+
+    sendEvent("Extension", "Extension");
+    sendEvent("Logging", "Logging");
+    sendEvent("Debug", "PauseStart");
+    assertEquals(3, fast.size());
+    assertTrue(slow.isEmpty());
+
+    final ListenerLane lane = vmService.getListenerLanes().get(0);
+    assertTrue(lane.getQueuedCount() >= 2);
+
+    release.countDown();
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(fast, slow);
+    assertEquals(3, lane.getDeliveredCount());
+  }
+
+  @Test
+  public void filtersByStream() throws Exception {
+    final CountDownLatch done = new CountDownLatch(1);
+    final List<String> received = Collections.synchronizedList(new ArrayList<>());
+    vmService.addVmServiceListener(new Recorder(received) {
+      @Override
+      public void received(String streamId, Event event) {
+        super.received(streamId, event);
+        done.countDown();
+      }
+    }, Collections.singleton("Logging"), executor);
+
+    sendEvent("Extension", "Extension");
+    sendEvent("Logging", "Logging");
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(Collections.singletonList("Logging/Logging"), received);
+  }
+
+  @Test
+  public void removesListeners() {
+    final List<String> received = new ArrayList<>();
+    final Recorder recorder = new Recorder(received);
+    vmService.addVmServiceListener(recorder);
+    vmService.removeVmServiceListener(recorder);
+    sendEvent("Extension", "Extension");
+    assertTrue(received.isEmpty());
+    assertTrue(vmService.getListenerLanes().isEmpty());
+  }
+
+  @Test
+  public void dropsEventsOnceTheQueueIsFull() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch started = new CountDownLatch(1);
+    final List<String> received = Collections.synchronizedList(new ArrayList<>());
+    final ListenerLane lane = new ListenerLane(new Recorder(received) {
+      @Override
+      public void received(String streamId, Event event) {
+        started.countDown();
+        try {
+          release.await();
+        }
+        catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        super.received(streamId, event);
+      }
+
+      @Override
+      public void connectionClosed() {
+        received.add("closed");
+      }
+    }, null, executor, 2);
+
+    lane.received("Extension", event("First"));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    lane.received("Extension", event("Second"));
+    lane.received("Extension", event("Third"));
+    lane.received("Extension", event("Fourth"));
+    assertEquals(2, lane.getQueuedCount());
+    assertEquals(1, lane.getDroppedCount());
+    // Connection notifications are queued regardless.
+    lane.connectionClosed();
+    assertEquals(3, lane.getQueuedCount());
+
+    release.countDown();
+    waitForDelivery(lane);
+    assertEquals(Arrays.asList("Extension/First", "Extension/Second", "Extension/Third", "closed"), received);
+    assertEquals(3, lane.getDeliveredCount());
+    assertEquals(1, lane.getDroppedCount());
+  }
+
+  @Test
+  public void removingAListenerDropsItsQueue() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch started = new CountDownLatch(1);
+    final List<String> received = Collections.synchronizedList(new ArrayList<>());
+    final Recorder recorder = new Recorder(received) {
+      @Override
+      public void received(String streamId, Event event) {
+        started.countDown();
+        try {
+          release.await();
+        }
+        catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        super.received(streamId, event);
+      }
+    };
+    vmService.addVmServiceListener(recorder, null, executor);
+    final ListenerLane lane = vmService.getListenerLanes().get(0);
+
+    sendEvent("Extension", "Extension");
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    sendEvent("Logging", "Logging");
+    sendEvent("Debug", "PauseStart");
+    assertEquals(2, lane.getQueuedCount());
+
+    vmService.removeVmServiceListener(recorder);
+    assertEquals(0, lane.getQueuedCount());
+    release.countDown();
+    waitForDelivery(lane);
+    // Only the event already being delivered arrives.
+    assertEquals(Collections.singletonList("Extension/Extension"), received);
+  }
+
+  private static Event event(String kind) {
+    final JsonObject json = new JsonObject();
+    json.addProperty("type", "Event");
+    json.addProperty("kind", kind);
+    return new Event(json);
+  }
+
+  private void waitForDelivery(ListenerLane lane) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (lane.getQueuedCount() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    // Let the last notification polled from the queue finish.
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+  }
+
+  private static class Recorder implements VmServiceListener {
+    private final List<String> received;
+
+    Recorder(List<String> received) {
+      this.received = received;
+    }
+
+    @Override
+    public void connectionOpened() {
+    }
+
+    @Override
+    public void received(String streamId, Event event) {
+      received.add(streamId + "/" + event.getKind());
+    }
+
+    @Override
+    public void connectionClosed() {
+    }
+  }
+}
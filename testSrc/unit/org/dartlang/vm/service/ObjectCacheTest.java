@@ -0,0 +1,172 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package org.dartlang.vm.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.dartlang.vm.service.consumer.GetObjectConsumer;
+import org.dartlang.vm.service.element.EventKind;
+import org.dartlang.vm.service.element.Library;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.element.Script;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class ObjectCacheTest {
+  private final List<String> requested = new ArrayList<>();
+  private final List<GetObjectConsumer> pending = new ArrayList<>();
+
+  private final VmService vmService = new VmService() {
+    @Override
+    public void getObject(String isolateId, String objectId, GetObjectConsumer consumer) {
+      requested.add(isolateId + "/" + objectId);
+      pending.add(consumer);
+    }
+  };
+
+  private static Script script(String id, String source) {
+    final JsonObject json = new JsonObject();
+    json.addProperty("type", "Script");
+    json.addProperty("id", id);
+    json.addProperty("source", source);
+    return new Script(json);
+  }
+
+  private static Library library(String id) {
+    final JsonObject json = new JsonObject();
+    json.addProperty("type", "Library");
+    json.addProperty("id", id);
+    return new Library(json);
+  }
+
+  @Test
+  public void sharesInFlightRequests() {
+    final ObjectCache cache = new ObjectCache(vmService);
+    final CompletableFuture<Script> first = cache.getScript("i1", "s1");
+    final CompletableFuture<Script> second = cache.getScript("i1", "s1");
+    assertEquals(1, requested.size());
+    assertFalse(first.isDone());
+
+    final Script script = script("s1", "main() {}");
+    pending.get(0).received(script);
+    assertSame(script, first.join());
+    assertSame(script, second.join());
+
+    assertSame(script, cache.getScript("i1", "s1").join());
+    assertEquals(1, requested.size());
+    assertEquals(2, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void keysByIsolate() {
+    final ObjectCache cache = new ObjectCache(vmService);
+    cache.getScript("i1", "s1");
+    cache.getScript("i2", "s1");
+    assertEquals(2, requested.size());
+  }
+
+  @Test
+  public void doesNotCacheFailures() {
+    final ObjectCache cache = new ObjectCache(vmService);
+    final CompletableFuture<Script> first = cache.getScript("i1", "s1");
+    pending.get(0).onError(new RPCError(new JsonObject()));
+    assertNull(first.join());
+
+    cache.getScript("i1", "s1");
+    assertEquals(2, requested.size());
+  }
+
+  @Test
+  public void returnsNullForOtherTypes() {
+    final ObjectCache cache = new ObjectCache(vmService);
+    final CompletableFuture<Library> library = cache.getLibrary("i1", "l1");
+    pending.get(0).received(library("l1"));
+    assertNotNull(library.join());
+    assertNull(cache.getScript("i1", "l1").join());
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsed() {
+    final ObjectCache cache = new ObjectCache(vmService, 2 * ObjectCache.weigh(script("s1", "0123456789")) + 1);
+    cache.getScript("i1", "s1");
+    pending.get(0).received(script("s1", "0123456789"));
+    cache.getScript("i1", "s2");
+    pending.get(1).received(script("s2", "0123456789"));
+    // Touch s1 so that s2 is the least recently used.
+    cache.getScript("i1", "s1");
+    cache.getScript("i1", "s3");
+    pending.get(2).received(script("s3", "0123456789"));
+
+    assertEquals(2, cache.size());
+    cache.getScript("i1", "s1");
+    assertEquals(3, requested.size());
+    cache.getScript("i1", "s2");
+    assertEquals(4, requested.size());
+  }
+
+  @Test
+  public void weighsTokenPositionTables() {
+    // 1000 lines of 20 token positions each, for a short source.
+    final Script script = script("s1", "main() {}");
+    final JsonArray table = new JsonArray();
+    for (int line = 1; line <= 1000; line++) {
+      final JsonArray entry = new JsonArray();
+      entry.add(line);
+      for (int i = 0; i < 20; i++) {
+        entry.add(line * 1000 + i);
+        entry.add(i * 4 + 1);
+      }
+      table.add(entry);
+    }
+    script.getJson().add("tokenPosTable", table);
+
+    final int weight = ObjectCache.weigh(script);
+    // Every boxed token position is charged for its primitive, number and text.
+    assertTrue(weight > 41000 * 70);
+
+    final ObjectCache cache = new ObjectCache(vmService, 2L * weight + 1);
+    for (int i = 0; i < 3; i++) {
+      cache.getScript("i1", "s" + i);
+      pending.get(i).received(script);
+    }
+    assertEquals(2, cache.size());
+    assertEquals(2L * weight, cache.getWeight());
+  }
+
+  @Test
+  public void invalidatesOnReload() {
+    final ObjectCache cache = new ObjectCache(vmService);
+    cache.getScript("i1", "s1");
+    pending.get(0).received(script("s1", "a"));
+    cache.getScript("i2", "s1");
+    pending.get(1).received(script("s1", "b"));
+
+    cache.handleIsolateEvent(EventKind.IsolateReload, "i1");
+    assertEquals(1, cache.size());
+    assertEquals(ObjectCache.weigh(script("s1", "b")), cache.getWeight());
+
+    cache.getScript("i1", "s1");
+    assertEquals(3, requested.size());
+  }
+
+  @Test
+  public void ignoresResponsesForInvalidatedRequests() {
+    final ObjectCache cache = new ObjectCache(vmService);
+    final CompletableFuture<Script> future = cache.getScript("i1", "s1");
+    cache.handleIsolateEvent(EventKind.IsolateExit, "i1");
+    pending.get(0).received(script("s1", "a"));
+
+    assertNotNull(future.join());
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getWeight());
+  }
+}
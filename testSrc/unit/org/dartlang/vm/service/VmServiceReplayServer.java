@@ -0,0 +1,430 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package org.dartlang.vm.service;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.dartlang.vm.service.internal.VmServiceConst;
+import org.dartlang.vm.service.logging.Logging;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves a {@link VmServiceRecorder} recording over a local {@code ws://} endpoint, so that a
+ * {@link VmService} connected with {@link VmServiceBase#connect(String)} sees the recorded session
+ * without a running VM.
+ * <p>
+ * The requests for each method are answered with the responses to the recorded requests for that
+ * method, in the order those requests were sent; once they run out the last one is repeated.
+ * Parameters are not compared, since object ids, isolate ids and object group names differ from one
+ * session to the next. A {@code getVersion} request that was not recorded is answered with the
+ * client's own protocol version. Events and other messages the VM sent unprompted are played back by
+ * {@link #playEvents()}, either at their recorded pace or as fast as the connection allows.
+ * <p>
+ * The server accepts one connection.
+ */
+public final class VmServiceReplayServer implements Closeable, VmServiceConst {
+  private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+  private static final int OPCODE_CONTINUATION = 0x0;
+  private static final int OPCODE_TEXT = 0x1;
+  private static final int OPCODE_CLOSE = 0x8;
+  private static final int OPCODE_PING = 0x9;
+  private static final int OPCODE_PONG = 0xA;
+
+  /**
+   * The recorded responses to each method, in the order they were recorded.
+   */
+  private final Map<String, Deque<JsonObject>> responses = new HashMap<>();
+
+  /**
+   * The recorded messages that did not answer a request.
+   */
+  private final List<Entry> events = new ArrayList<>();
+
+  private final boolean realTime;
+  private final ServerSocket serverSocket;
+  private final CompletableFuture<Socket> connection = new CompletableFuture<>();
+  private volatile Socket socket;
+  private OutputStream out;
+  private volatile boolean closed;
+  private int unmatchedRequestCount;
+
+  /**
+   * Create a server for the given recording and start listening on a free local port.
+   *
+   * @param realTime whether events are played back at their recorded pace rather than as fast as
+   *                 possible
+   */
+  public VmServiceReplayServer(List<Entry> recording, boolean realTime) throws IOException {
+    this.realTime = realTime;
+    index(recording);
+    serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    final Thread thread = new Thread(this::serve, "VM service replay server");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Return the URL to pass to {@link VmServiceBase#connect(String)}.
+   */
+  public String getUrl() {
+    return "ws://127.0.0.1:" + serverSocket.getLocalPort() + "/ws";
+  }
+
+  /**
+   * Return the number of recorded events that {@link #playEvents()} sends.
+   */
+  public int getEventCount() {
+    return events.size();
+  }
+
+  /**
+   * Return the number of requests that had no recorded response.
+   */
+  public synchronized int getUnmatchedRequestCount() {
+    return unmatchedRequestCount;
+  }
+
+  /**
+   * Send the recorded events to the connected client, on a thread of their own. The returned
+   * future completes once every event has been written.
+   */
+  public CompletableFuture<Void> playEvents() {
+    return connection.thenAcceptAsync((socket) -> {
+      final long start = System.nanoTime();
+      final long firstMicros = events.isEmpty() ? 0 : events.get(0).timeMicros;
+      for (Entry event : events) {
+        if (realTime) {
+          final long dueNanos = TimeUnit.MICROSECONDS.toNanos(event.timeMicros - firstMicros);
+          final long waitNanos = dueNanos - (System.nanoTime() - start);
+          if (waitNanos > 0) {
+            try {
+              TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              return;
+            }
+          }
+        }
+        if (!sendText(event.json)) {
+          return;
+        }
+      }
+    });
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    serverSocket.close();
+    connection.cancel(false);
+    final Socket socket = this.socket;
+    if (socket != null) {
+      socket.close();
+    }
+  }
+
+  private void index(List<Entry> recording) {
+    final JsonParser parser = new JsonParser();
+    // The requests sent for each method, in order, and the responses to them by request id.
+    final Map<String, List<String>> requestIds = new LinkedHashMap<>();
+    final Map<String, JsonObject> responsesById = new HashMap<>();
+    for (Entry entry : recording) {
+      final JsonObject message = parser.parse(entry.json).getAsJsonObject();
+      final String id = message.has(ID) ? message.get(ID).getAsString() : null;
+      if (entry.direction == VmServiceRecorder.SENT) {
+        if (id != null && message.has(METHOD)) {
+          requestIds.computeIfAbsent(message.get(METHOD).getAsString(), (k) -> new ArrayList<>()).add(id);
+        }
+      }
+      else if (id != null && !message.has(METHOD)) {
+        responsesById.put(id, message);
+      }
+      else {
+        events.add(entry);
+      }
+    }
+    // Answer the requests for each method in the order they were sent, whatever order the
+    // responses arrived in.
+    for (Map.Entry<String, List<String>> method : requestIds.entrySet()) {
+      for (String id : method.getValue()) {
+        final JsonObject response = responsesById.get(id);
+        if (response != null) {
+          responses.computeIfAbsent(method.getKey(), (k) -> new ArrayDeque<>()).add(response);
+        }
+      }
+    }
+  }
+
+  private void serve() {
+    try {
+      final Socket socket = serverSocket.accept();
+      this.socket = socket;
+      socket.setTcpNoDelay(true);
+      final InputStream in = new BufferedInputStream(socket.getInputStream());
+      synchronized (this) {
+        out = new BufferedOutputStream(socket.getOutputStream());
+      }
+      handshake(in);
+      connection.complete(socket);
+      readFrames(in);
+    }
+    catch (IOException e) {
+      if (!closed) {
+        Logging.getLogger().logError("VM service replay failed", e);
+      }
+    }
+    finally {
+      connection.cancel(false);
+    }
+  }
+
+  private void handshake(InputStream in) throws IOException {
+    String key = null;
+    String line;
+    while (!(line = readLine(in)).isEmpty()) {
+      final int colon = line.indexOf(':');
+      if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key")) {
+        key = line.substring(colon + 1).trim();
+      }
+    }
+    if (key == null) {
+      throw new IOException("Missing Sec-WebSocket-Key in handshake");
+    }
+    final String response = "HTTP/1.1 101 Switching Protocols\r\n" +
+                            "Upgrade: websocket\r\n" +
+                            "Connection: Upgrade\r\n" +
+                            "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n" +
+                            "\r\n";
+    synchronized (this) {
+      out.write(response.getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+    }
+  }
+
+  static String acceptKey(String key) {
+    try {
+      final MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+      final byte[] digest = sha1.digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII));
+      return Base64.getEncoder().encodeToString(digest);
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    final StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = in.read()) != '\n') {
+      if (c == -1) {
+        throw new EOFException("Connection closed during handshake");
+      }
+      if (c != '\r') {
+        line.append((char)c);
+      }
+    }
+    return line.toString();
+  }
+
+  private void readFrames(InputStream in) throws IOException {
+    final ByteArrayOutputStream message = new ByteArrayOutputStream();
+    while (!closed) {
+      final int first = in.read();
+      if (first == -1) {
+        return;
+      }
+      final boolean fin = (first & 0x80) != 0;
+      final int opcode = first & 0x0F;
+      final byte[] payload = readPayload(in);
+      switch (opcode) {
+        case OPCODE_TEXT:
+        case OPCODE_CONTINUATION:
+          message.write(payload);
+          if (fin) {
+            onRequest(new String(message.toByteArray(), StandardCharsets.UTF_8));
+            message.reset();
+          }
+          break;
+        case OPCODE_PING:
+          writeFrame(OPCODE_PONG, payload);
+          break;
+        case OPCODE_CLOSE:
+          writeFrame(OPCODE_CLOSE, payload);
+          return;
+        default:
+          break;
+      }
+    }
+  }
+
+  private static byte[] readPayload(InputStream in) throws IOException {
+    final DataInputStream data = new DataInputStream(in);
+    final int second = data.readUnsignedByte();
+    final boolean masked = (second & 0x80) != 0;
+    long length = second & 0x7F;
+    if (length == 126) {
+      length = data.readUnsignedShort();
+    }
+    else if (length == 127) {
+      length = data.readLong();
+    }
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("Frame too large: " + length);
+    }
+    final byte[] mask = new byte[4];
+    if (masked) {
+      data.readFully(mask);
+    }
+    final byte[] payload = new byte[(int)length];
+    data.readFully(payload);
+    if (masked) {
+      for (int i = 0; i < payload.length; i++) {
+        payload[i] ^= mask[i & 3];
+      }
+    }
+    return payload;
+  }
+
+  private void onRequest(String text) {
+    final JsonObject request = new JsonParser().parse(text).getAsJsonObject();
+    if (!request.has(ID) || !request.has(METHOD)) {
+      // A response to a service extension call from the VM; nothing to answer.
+      return;
+    }
+    final JsonObject response = responseTo(request);
+    response.add(ID, request.get(ID));
+    sendText(response.toString());
+  }
+
+  private synchronized JsonObject responseTo(JsonObject request) {
+    final String method = request.get(METHOD).getAsString();
+    final Deque<JsonObject> recorded = responses.get(method);
+    if (recorded != null && !recorded.isEmpty()) {
+      final JsonObject response = recorded.size() > 1 ? recorded.poll() : recorded.peek();
+      final JsonObject copy = new JsonObject();
+      for (Map.Entry<String, JsonElement> member : response.entrySet()) {
+        copy.add(member.getKey(), member.getValue());
+      }
+      return copy;
+    }
+    unmatchedRequestCount++;
+    final JsonObject response = new JsonObject();
+    response.addProperty(JSONRPC, JSONRPC_VERSION);
+    if ("getVersion".equals(method)) {
+      final JsonObject version = new JsonObject();
+      version.addProperty(TYPE, "Version");
+      version.addProperty("major", VmService.versionMajor);
+      version.addProperty("minor", VmService.versionMinor);
+      response.add(RESULT, version);
+    }
+    else {
+      final JsonObject error = new JsonObject();
+      error.addProperty(CODE, METHOD_NOT_FOUND);
+      error.addProperty(MESSAGE, "No recorded response to " + method);
+      response.add(ERROR, error);
+    }
+    return response;
+  }
+
+  private boolean sendText(String text) {
+    try {
+      writeFrame(OPCODE_TEXT, text.getBytes(StandardCharsets.UTF_8));
+      return true;
+    }
+    catch (IOException e) {
+      if (!closed) {
+        Logging.getLogger().logError("VM service replay failed to send", e);
+      }
+      return false;
+    }
+  }
+
+  private synchronized void writeFrame(int opcode, byte[] payload) throws IOException {
+    out.write(0x80 | opcode);
+    if (payload.length < 126) {
+      out.write(payload.length);
+    }
+    else if (payload.length <= 0xFFFF) {
+      out.write(126);
+      out.write(payload.length >>> 8);
+      out.write(payload.length);
+    }
+    else {
+      out.write(127);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        out.write((int)((long)payload.length >>> shift));
+      }
+    }
+    out.write(payload);
+    out.flush();
+  }
+
+  /**
+   * Read the messages in a recording, in the order they were recorded.
+   */
+  public static List<Entry> read(InputStream in) throws IOException {
+    final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    final List<Entry> entries = new ArrayList<>();
+    int lineNumber = 0;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      if (line.isEmpty()) {
+        continue;
+      }
+      final char direction = line.charAt(0);
+      final int space = line.indexOf(' ');
+      if ((direction != VmServiceRecorder.SENT && direction != VmServiceRecorder.RECEIVED) || space < 2) {
+        throw new IOException("Malformed recording line " + lineNumber + ": " + line);
+      }
+      final long micros;
+      try {
+        micros = Long.parseLong(line.substring(1, space));
+      }
+      catch (NumberFormatException e) {
+        throw new IOException("Malformed recording line " + lineNumber + ": " + line, e);
+      }
+      entries.add(new Entry(direction, micros, line.substring(space + 1)));
+    }
+    return entries;
+  }
+
+  /**
+   * A recorded message.
+   */
+  public static final class Entry {
+    /**
+     * Either {@link VmServiceRecorder#SENT} or {@link VmServiceRecorder#RECEIVED}.
+     */
+    public final char direction;
+
+    /**
+     * When the message was recorded, in microseconds since recording started.
+     */
+    public final long timeMicros;
+
+    public final String json;
+
+    public Entry(char direction, long timeMicros, String json) {
+      this.direction = direction;
+      this.timeMicros = timeMicros;
+      this.json = json;
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package org.dartlang.vm.service;
+
+import com.google.gson.JsonObject;
+import org.dartlang.vm.service.consumer.ServiceExtensionConsumer;
+import org.dartlang.vm.service.consumer.VMConsumer;
+import org.dartlang.vm.service.element.Event;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.element.VM;
+import org.dartlang.vm.service.internal.RequestSink;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class VmServiceReplayServerTest {
+  private static final String EVENT =
+    "{\"jsonrpc\":\"2.0\",\"method\":\"streamNotify\",\"params\":{\"streamId\":\"Extension\",\"event\":{\"type\":\"Event\",\"kind\":\"Extension\"}}}";
+
+  private VmServiceReplayServer server;
+  private VmService vmService;
+
+  @After
+  public void tearDown() throws Exception {
+    if (vmService != null) {
+      vmService.disconnect();
+    }
+    if (server != null) {
+      server.close();
+    }
+  }
+
+  @Test
+  public void recordsTraffic() throws Exception {
+    final VmService recorded = new VmService();
+    recorded.requestSink = new RequestSink() {
+      @Override
+      public void add(JsonObject request) {
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final VmServiceRecorder recorder = new VmServiceRecorder(out);
+    recorded.startRecording(recorder);
+    recorded.getVM(new VMRecorder());
+    recorded.processMessage("{\"jsonrpc\":\"2.0\",\"id\":\"1\",\"result\":{\"type\":\"VM\",\"name\":\"vm\"}}");
+    recorded.stopRecording();
+    recorded.processMessage(EVENT);
+    recorder.close();
+
+    final List<VmServiceReplayServer.Entry> entries = VmServiceReplayServer.read(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(2, entries.size());
+    assertEquals(VmServiceRecorder.SENT, entries.get(0).direction);
+    assertTrue(entries.get(0).json.contains("\"getVM\""));
+    assertEquals(VmServiceRecorder.RECEIVED, entries.get(1).direction);
+    assertTrue(entries.get(1).timeMicros >= entries.get(0).timeMicros);
+  }
+
+  @Test
+  public void replaysResponsesAndEvents() throws Exception {
+    server = new VmServiceReplayServer(Arrays.asList(
+      new VmServiceReplayServer.Entry(VmServiceRecorder.SENT, 0, "{\"jsonrpc\":\"2.0\",\"id\":\"7\",\"method\":\"getVM\",\"params\":{}}"),
+      new VmServiceReplayServer.Entry(VmServiceRecorder.RECEIVED, 10, EVENT),
+      new VmServiceReplayServer.Entry(VmServiceRecorder.RECEIVED, 20,
+                                  "{\"jsonrpc\":\"2.0\",\"id\":\"7\",\"result\":{\"type\":\"VM\",\"name\":\"replayed\"}}"),
+      new VmServiceReplayServer.Entry(VmServiceRecorder.RECEIVED, 30, EVENT)
+    ), false);
+    assertEquals(2, server.getEventCount());
+
+    vmService = VmService.connect(server.getUrl());
+
+    final VMRecorder first = new VMRecorder();
+    vmService.getVM(first);
+    assertEquals("replayed", first.await().getName());
+    // Requests beyond the recorded ones get the last recorded response again.
+    final VMRecorder second = new VMRecorder();
+    vmService.getVM(second);
+    assertEquals("replayed", second.await().getName());
+
+    final CountDownLatch events = new CountDownLatch(2);
+    vmService.addVmServiceListener(new VmServiceListener() {
+      @Override
+      public void connectionOpened() {
+      }
+
+      @Override
+      public void received(String streamId, Event event) {
+        events.countDown();
+      }
+
+      @Override
+      public void connectionClosed() {
+      }
+    });
+    server.playEvents().get(5, TimeUnit.SECONDS);
+    assertTrue(events.await(5, TimeUnit.SECONDS));
+    // Only the unrecorded getVersion sent while connecting was synthesized.
+    assertEquals(1, server.getUnmatchedRequestCount());
+  }
+
+  @Test
+  public void matchesResponsesByMethodInOrder() throws Exception {
+    final String method = "ext.flutter.inspector.getRootWidgetSummaryTree";
+    server = new VmServiceReplayServer(Arrays.asList(
+      new VmServiceReplayServer.Entry(VmServiceRecorder.SENT, 0, request("1", method, "tree_1")),
+      new VmServiceReplayServer.Entry(VmServiceRecorder.SENT, 1, request("2", method, "tree_2")),
+      new VmServiceReplayServer.Entry(VmServiceRecorder.RECEIVED, 2, "{\"jsonrpc\":\"2.0\",\"id\":\"2\",\"result\":{\"n\":2}}"),
+      new VmServiceReplayServer.Entry(VmServiceRecorder.RECEIVED, 3, "{\"jsonrpc\":\"2.0\",\"id\":\"1\",\"result\":{\"n\":1}}")
+    ), false);
+
+    vmService = VmService.connect(server.getUrl());
+
+    // The object group names of the replaying session differ from the recorded ones.
+    assertEquals(1, callExtension(method, "tree_8").get("n").getAsInt());
+    assertEquals(2, callExtension(method, "tree_9").get("n").getAsInt());
+    assertEquals(2, callExtension(method, "tree_10").get("n").getAsInt());
+    assertEquals(1, server.getUnmatchedRequestCount());
+  }
+
+  private static String request(String id, String method, String objectGroup) {
+    return "{\"jsonrpc\":\"2.0\",\"id\":\"" + id + "\",\"method\":\"" + method +
+           "\",\"params\":{\"isolateId\":\"isolates/1\",\"objectGroup\":\"" + objectGroup + "\"}}";
+  }
+
+  private JsonObject callExtension(String method, String objectGroup) throws Exception {
+    final JsonObject params = new JsonObject();
+    params.addProperty("objectGroup", objectGroup);
+    final CompletableFuture<JsonObject> result = new CompletableFuture<>();
+    vmService.callServiceExtension("isolates/2", method, params, new ServiceExtensionConsumer() {
+      @Override
+      public void received(JsonObject response) {
+        result.complete(response);
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        result.completeExceptionally(new RuntimeException(error.getMessage()));
+      }
+    });
+    return result.get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void computesAcceptKey() {
+    // The example from RFC 6455, section 1.3.
+    assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=", VmServiceReplayServer.acceptKey("dGhlIHNhbXBsZSBub25jZQ=="));
+  }
+
+  private static class VMRecorder implements VMConsumer {
+    private final CompletableFuture<VM> result = new CompletableFuture<>();
+
+    VM await() throws Exception {
+      return result.get(5, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void received(VM response) {
+      result.complete(response);
+    }
+
+    @Override
+    public void onError(RPCError error) {
+      result.completeExceptionally(new RuntimeException(error.getMessage()));
+    }
+  }
+}
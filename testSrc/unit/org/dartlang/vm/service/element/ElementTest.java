@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package org.dartlang.vm.service.element;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.flutter.testing.Allocations;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ElementTest {
+  private static JsonObject parse(String json) {
+    return new JsonParser().parse(json).getAsJsonObject();
+  }
+
+  @Test
+  public void reusesElementLists() {
+    final Instance instance = new Instance(parse(
+      "{\"type\":\"Instance\",\"fields\":[{\"value\":{\"type\":\"@Instance\"}},{\"value\":{\"type\":\"@Instance\"}}]}"));
+    final ElementList<BoundField> fields = instance.getFields();
+    assertEquals(2, fields.size());
+    assertSame(fields, instance.getFields());
+    assertSame(fields.get(1), instance.getFields().get(1));
+    assertNotSame(fields.get(0), fields.get(1));
+  }
+
+  @Test
+  public void returnsNullForMissingLists() {
+    final Instance instance = new Instance(parse("{\"type\":\"Instance\",\"elements\":null}"));
+    assertNull(instance.getFields());
+    assertNull(instance.getElements());
+  }
+
+  @Test
+  public void readsIntArrays() {
+    final Script script = new Script(parse("{\"type\":\"Script\",\"tokenPosTable\":[[1,10,1],[2]]}"));
+    final int[][] table = script.getTokenPosTableArray();
+    assertArrayEquals(new int[]{1, 10, 1}, table[0]);
+    assertArrayEquals(new int[]{2}, table[1]);
+    // The script doesn't keep a decoded copy alongside its JSON.
+    assertNotSame(table, script.getTokenPosTableArray());
+    assertEquals(Arrays.asList(1, 10, 1), script.getTokenPosTable().get(0));
+
+    assertNull(new Script(parse("{\"type\":\"Script\"}")).getTokenPosTableArray());
+  }
+
+  @Test
+  public void readsCoverage() {
+    final SourceReportCoverage coverage = new SourceReportCoverage(parse("{\"hits\":[1,2],\"misses\":[]}"));
+    assertArrayEquals(new int[]{1, 2}, coverage.getHitsArray());
+    assertEquals(0, coverage.getMissesArray().length);
+  }
+
+  @Test
+  public void walksFieldsWithoutAllocating() {
+    final StringBuilder json = new StringBuilder("{\"type\":\"Instance\",\"fields\":[");
+    for (int i = 0; i < 50; i++) {
+      if (i > 0) json.append(',');
+      json.append("{\"decl\":{\"type\":\"@Field\",\"name\":\"f").append(i).append("\"},\"value\":{\"type\":\"@Instance\"}}");
+    }
+    final Instance instance = new Instance(parse(json.append("]}").toString()));
+
+    final long bytes = Allocations.bytesPerRun(1000, () -> {
+      final ElementList<BoundField> fields = instance.getFields();
+      for (int i = 0; i < fields.size(); i++) {
+        assertNotNull(fields.get(i));
+      }
+    });
+    // Before the wrappers were memoized every pass allocated a new list and 50 BoundFields (~850 bytes).
+    assertTrue("allocated " + bytes + " bytes per pass", bytes < 200);
+  }
+}
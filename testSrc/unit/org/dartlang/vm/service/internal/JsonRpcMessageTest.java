@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package org.dartlang.vm.service.internal;
+
+import com.google.gson.JsonParser;
+import io.flutter.testing.Allocations;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JsonRpcMessageTest {
+  @Test
+  public void scansNotification() {
+    final JsonRpcMessage message = JsonRpcMessage.scan(
+      "{\"jsonrpc\":\"2.0\", \"method\" : \"streamNotify\", " +
+      "\"params\":{\"event\":{\"kind\":\"Extension\",\"data\":[1,{\"s\":\"}\\\"]\"}]},\"streamId\":\"Ext\\u0065nsion\"}}");
+
+    assertNotNull(message);
+    assertFalse(message.has("id"));
+    assertTrue(message.has("params"));
+    assertEquals("streamNotify", message.getString("method"));
+    assertEquals("Extension", message.peekString("params", "streamId"));
+    assertEquals("Extension", message.getObject("params", "event").get("kind").getAsString());
+  }
+
+  @Test
+  public void scansResponse() {
+    final JsonRpcMessage message = JsonRpcMessage.scan("{\"id\":12,\"result\":{\"type\":\"Success\"}}");
+
+    assertNotNull(message);
+    assertEquals("12", message.getString("id"));
+    assertEquals("Success", message.getObject("result").get("type").getAsString());
+    assertFalse(message.has("error"));
+    assertNull(message.getObject("error"));
+  }
+
+  @Test
+  public void rejectsMalformedMessages() {
+    assertNull(JsonRpcMessage.scan("[1, 2]"));
+    assertNull(JsonRpcMessage.scan("{\"id\":1"));
+    assertNull(JsonRpcMessage.scan("{\"id\":1} trailing"));
+    assertNull(JsonRpcMessage.scan("{\"result\":{\"a\":\"unterminated}}"));
+  }
+
+  @Test
+  public void routesWithoutDecoding() {
+    final StringBuilder result = new StringBuilder("{\"type\":\"Instance\",\"elements\":[");
+    for (int i = 0; i < 1000; i++) {
+      if (i > 0) result.append(',');
+      result.append("{\"type\":\"@Instance\",\"kind\":\"String\",\"valueAsString\":\"value ").append(i).append("\"}");
+    }
+    final String response = "{\"jsonrpc\":\"2.0\",\"id\":\"42\",\"result\":" + result.append("]}") + "}";
+    final String notification = "{\"jsonrpc\":\"2.0\",\"method\":\"streamNotify\",\"params\":" +
+                                "{\"streamId\":\"Timeline\",\"event\":" + result + "}}";
+
+    // What the service needs to route a message: the response id, or the notification's stream.
+    final long scanned = Allocations.bytesPerRun(200, () -> {
+      final JsonRpcMessage message = JsonRpcMessage.scan(response);
+      assertEquals("42", message.getString("id"));
+      assertFalse(message.has("error"));
+      assertEquals("Timeline", JsonRpcMessage.scan(notification).peekString("params", "streamId"));
+    });
+    final long parsed = Allocations.bytesPerRun(200, () -> {
+      new JsonParser().parse(response);
+      new JsonParser().parse(notification);
+    });
+
+    // Scanning only allocates the message, its span table and the peeked strings.
+    assertTrue("scanning allocated " + scanned + " bytes", scanned < 1024);
+    assertTrue("scanning allocated " + scanned + " bytes, parsing " + parsed, scanned * 100 < parsed);
+  }
+}
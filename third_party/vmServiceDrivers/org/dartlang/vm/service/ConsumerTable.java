@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.dartlang.vm.service;
+
+import org.dartlang.vm.service.consumer.Consumer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The {@link Consumer}s waiting for responses to requests, keyed by request id.
+ * <p>
+ * Request ids are assigned sequentially, so an entry is normally stored in the slot of a ring
+ * indexed by its id, without locking or boxing the id. An entry whose slot is still held by an
+ * older request goes into an overflow map instead.
+ */
+class ConsumerTable {
+  static final int DEFAULT_CAPACITY = 1024;
+
+  private final AtomicReferenceArray<Entry> slots;
+  private final int mask;
+  private final ConcurrentHashMap<Integer, Entry> overflow = new ConcurrentHashMap<>();
+  private final AtomicInteger size = new AtomicInteger();
+
+  ConsumerTable() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Create a table whose ring holds the given number of entries, rounded up to a power of two.
+   */
+  ConsumerTable(int capacity) {
+    final int length = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    slots = new AtomicReferenceArray<>(length);
+    mask = length - 1;
+  }
+
+  void put(Entry entry) {
+    size.incrementAndGet();
+    if (!slots.compareAndSet(entry.id & mask, null, entry)) {
+      overflow.put(entry.id, entry);
+    }
+  }
+
+  /**
+   * Remove and return the entry with the given id, or {@code null} if there is none.
+   */
+  Entry remove(int id) {
+    final int index = id & mask;
+    final Entry entry = slots.get(index);
+    if (entry != null && entry.id == id && slots.compareAndSet(index, entry, null)) {
+      size.decrementAndGet();
+      return entry;
+    }
+    final Entry overflowed = overflow.remove(id);
+    if (overflowed != null) {
+      size.decrementAndGet();
+    }
+    return overflowed;
+  }
+
+  /**
+   * Remove and return the entries whose deadline is before the given time, in {@link System#nanoTime()} terms.
+   */
+  List<Entry> removeExpired(long now) {
+    final List<Entry> expired = new ArrayList<>();
+    for (int i = 0; i < slots.length(); i++) {
+      final Entry entry = slots.get(i);
+      if (entry != null && now - entry.deadline > 0 && slots.compareAndSet(i, entry, null)) {
+        size.decrementAndGet();
+        expired.add(entry);
+      }
+    }
+    for (Entry entry : overflow.values()) {
+      if (now - entry.deadline > 0 && overflow.remove(entry.id, entry)) {
+        size.decrementAndGet();
+        expired.add(entry);
+      }
+    }
+    return expired;
+  }
+
+  /**
+   * Remove and return the entries with the given tag.
+   */
+  List<Entry> removeTagged(Object tag) {
+    final List<Entry> removed = new ArrayList<>();
+    for (int i = 0; i < slots.length(); i++) {
+      final Entry entry = slots.get(i);
+      if (entry != null && entry.tag == tag && slots.compareAndSet(i, entry, null)) {
+        size.decrementAndGet();
+        removed.add(entry);
+      }
+    }
+    for (Entry entry : overflow.values()) {
+      if (entry.tag == tag && overflow.remove(entry.id, entry)) {
+        size.decrementAndGet();
+        removed.add(entry);
+      }
+    }
+    return removed;
+  }
+
+  int size() {
+    return size.get();
+  }
+
+  static class Entry {
+    final int id;
+    final String method;
+    final Consumer consumer;
+    final Object tag;
+    final long timeoutMillis;
+    final long deadline;
+
+    Entry(int id, String method, Consumer consumer, Object tag, long timeoutMillis) {
+      this.id = id;
+      this.method = method;
+      this.consumer = consumer;
+      this.tag = tag;
+      this.timeoutMillis = timeoutMillis;
+      this.deadline = System.nanoTime() + timeoutMillis * 1000000;
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.dartlang.vm.service;
+
+import org.dartlang.vm.service.element.Event;
+import org.dartlang.vm.service.logging.Logging;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link VmServiceListener} registered with a {@link VmService}, along with the streams it
+ * listens to and the lane its notifications are delivered on.
+ * <p>
+ * A lane without an executor calls the listener directly on the thread reading from the VM. A lane
+ * with an executor queues notifications and delivers them in order, one at a time, on that
+ * executor, so a slow listener only delays its own notifications. Once {@link #DEFAULT_MAX_QUEUED}
+ * notifications are waiting, further events are dropped and counted rather than queued, so a
+ * listener that cannot keep up does not hold on to an unbounded backlog.
+ */
+public final class ListenerLane {
+  /**
+   * The number of notifications a lane queues before it drops events.
+   */
+  public static final int DEFAULT_MAX_QUEUED = 10000;
+
+  private final VmServiceListener listener;
+  private final Set<String> streamIds;
+  private final Executor executor;
+  private final int maxQueued;
+
+  private final ConcurrentLinkedQueue<Notification> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean draining = new AtomicBoolean();
+
+  private final AtomicInteger queuedCount = new AtomicInteger();
+  private final AtomicLong deliveredCount = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+  private volatile long lastLagNanos;
+  private volatile long maxLagNanos;
+  private volatile boolean removed;
+
+  ListenerLane(VmServiceListener listener, Set<String> streamIds, Executor executor) {
+    this(listener, streamIds, executor, DEFAULT_MAX_QUEUED);
+  }
+
+  ListenerLane(VmServiceListener listener, Set<String> streamIds, Executor executor, int maxQueued) {
+    this.listener = listener;
+    this.streamIds = streamIds == null ? null : Collections.unmodifiableSet(new HashSet<>(streamIds));
+    this.executor = executor;
+    this.maxQueued = maxQueued;
+  }
+
+  public VmServiceListener getListener() {
+    return listener;
+  }
+
+  /**
+   * Return the streams that this listener receives events from, or {@code null} for all streams.
+   */
+  public Set<String> getStreamIds() {
+    return streamIds;
+  }
+
+  /**
+   * Return the number of notifications waiting to be delivered.
+   */
+  public int getQueuedCount() {
+    return queuedCount.get();
+  }
+
+  /**
+   * Return the number of events that have been delivered.
+   */
+  public long getDeliveredCount() {
+    return deliveredCount.get();
+  }
+
+  /**
+   * Return the number of events that were dropped because the queue was full.
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * Return how long the most recently delivered event waited in the queue, in milliseconds.
+   */
+  public long getLastLagMillis() {
+    return lastLagNanos / 1000000;
+  }
+
+  /**
+   * Return the longest that any event has waited in the queue, in milliseconds.
+   */
+  public long getMaxLagMillis() {
+    return maxLagNanos / 1000000;
+  }
+
+  boolean accepts(String streamId) {
+    return streamIds == null || streamIds.contains(streamId);
+  }
+
+  void connectionOpened() {
+    deliver(new Notification(Notification.OPENED, null, null));
+  }
+
+  void received(String streamId, Event event) {
+    deliver(new Notification(Notification.EVENT, streamId, event));
+  }
+
+  void connectionClosed() {
+    deliver(new Notification(Notification.CLOSED, null, null));
+  }
+
+  /**
+   * Stop delivering notifications and drop the queued ones. A notification that is being delivered
+   * when this is called still completes.
+   */
+  void remove() {
+    removed = true;
+    while (queue.poll() != null) {
+      queuedCount.decrementAndGet();
+    }
+  }
+
+  private void deliver(Notification notification) {
+    if (removed) {
+      return;
+    }
+    if (executor == null) {
+      notification.run();
+      return;
+    }
+    // Connection notifications are never dropped, so the listener always learns of a close.
+    if (notification.kind == Notification.EVENT && queuedCount.get() >= maxQueued) {
+      droppedCount.incrementAndGet();
+      return;
+    }
+    queue.add(notification);
+    queuedCount.incrementAndGet();
+    scheduleDrain();
+  }
+
+  private void scheduleDrain() {
+    if (draining.compareAndSet(false, true)) {
+      executor.execute(this::drain);
+    }
+  }
+
+  private void drain() {
+    try {
+      Notification notification;
+      while (!removed && (notification = queue.poll()) != null) {
+        queuedCount.decrementAndGet();
+        final long lag = System.nanoTime() - notification.queuedAt;
+        lastLagNanos = lag;
+        if (lag > maxLagNanos) {
+          maxLagNanos = lag;
+        }
+        notification.run();
+      }
+    } finally {
+      draining.set(false);
+    }
+    // A notification may have been added after the last poll but before the lane was released.
+    if (!removed && !queue.isEmpty()) {
+      scheduleDrain();
+    }
+  }
+
+  private class Notification implements Runnable {
+    static final int OPENED = 0;
+    static final int EVENT = 1;
+    static final int CLOSED = 2;
+
+    final int kind;
+    final String streamId;
+    final Event event;
+    final long queuedAt = System.nanoTime();
+
+    Notification(int kind, String streamId, Event event) {
+      this.kind = kind;
+      this.streamId = streamId;
+      this.event = event;
+    }
+
+    @Override
+    public void run() {
+      try {
+        switch (kind) {
+          case OPENED:
+            listener.connectionOpened();
+            break;
+          case EVENT:
+            deliveredCount.incrementAndGet();
+            listener.received(streamId, event);
+            break;
+          case CLOSED:
+            listener.connectionClosed();
+            break;
+        }
+      } catch (Exception e) {
+        if (kind == EVENT) {
+          Logging.getLogger().logError("Exception processing event: " + streamId + ", " + event.getJson(), e);
+        } else {
+          Logging.getLogger().logError("Exception notifying listener", e);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.dartlang.vm.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import org.dartlang.vm.service.consumer.GetObjectConsumer;
+import org.dartlang.vm.service.element.*;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A cache of {@link Script}, {@link ClassObj} and {@link Library} objects keyed by isolate and
+ * object id.
+ * <p>
+ * The VM does not change these objects once it has handed out their ids, except across a reload
+ * of the isolate. Concurrent requests for the same object share a single {@code getObject} call.
+ * Once the total weight of the cached objects exceeds the limit, the least recently used objects
+ * are dropped. All objects belonging to an isolate are dropped when the isolate is reloaded or
+ * exits.
+ */
+public class ObjectCache {
+  /**
+   * The default weight limit. Objects weigh {@link #BASE_WEIGHT} plus an estimate of the heap taken
+   * by the JSON they keep, so the limit bounds the retained heap.
+   */
+  static final long DEFAULT_MAX_WEIGHT = 16 * 1024 * 1024;
+  static final int BASE_WEIGHT = 1024;
+
+  // Estimated heap sizes of Gson's tree, assuming compressed references.
+  private static final int OBJECT_SIZE = 64;
+  private static final int MEMBER_SIZE = 80;
+  private static final int ARRAY_SIZE = 56;
+  private static final int ARRAY_ELEMENT_SIZE = 8;
+  private static final int STRING_SIZE = 40;
+  private static final int PRIMITIVE_SIZE = 16;
+
+  private final VmServiceBase vmService;
+  private final long maxWeight;
+
+  private final Object lock = new Object();
+
+  /**
+   * Cached and in-flight objects in least recently used order. Synchronize on {@link #lock}.
+   */
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long weight;
+  private long hitCount;
+  private long missCount;
+
+  ObjectCache(VmServiceBase vmService) {
+    this(vmService, DEFAULT_MAX_WEIGHT);
+  }
+
+  ObjectCache(VmServiceBase vmService, long maxWeight) {
+    this.vmService = vmService;
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Return the script with the given id. The future completes with {@code null} if the object is
+   * not a script or could not be fetched.
+   */
+  public CompletableFuture<Script> getScript(String isolateId, String scriptId) {
+    return get(isolateId, scriptId, Script.class);
+  }
+
+  /**
+   * Return the library with the given id. The future completes with {@code null} if the object is
+   * not a library or could not be fetched.
+   */
+  public CompletableFuture<Library> getLibrary(String isolateId, String libraryId) {
+    return get(isolateId, libraryId, Library.class);
+  }
+
+  /**
+   * Return the class with the given id. The future completes with {@code null} if the object is
+   * not a class or could not be fetched.
+   */
+  public CompletableFuture<ClassObj> getClassObj(String isolateId, String classId) {
+    return get(isolateId, classId, ClassObj.class);
+  }
+
+  /**
+   * Drop all objects belonging to the given isolate.
+   */
+  public void invalidate(String isolateId) {
+    synchronized (lock) {
+      final Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+      while (iterator.hasNext()) {
+        final Map.Entry<Key, Entry> next = iterator.next();
+        if (next.getKey().isolateId.equals(isolateId)) {
+          weight -= next.getValue().weight;
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Drop all objects.
+   */
+  public void clear() {
+    synchronized (lock) {
+      entries.clear();
+      weight = 0;
+    }
+  }
+
+  public int size() {
+    synchronized (lock) {
+      return entries.size();
+    }
+  }
+
+  public long getWeight() {
+    synchronized (lock) {
+      return weight;
+    }
+  }
+
+  public long getHitCount() {
+    synchronized (lock) {
+      return hitCount;
+    }
+  }
+
+  public long getMissCount() {
+    synchronized (lock) {
+      return missCount;
+    }
+  }
+
+  /**
+   * Called for each event on the Isolate stream.
+   */
+  void handleIsolateEvent(EventKind kind, String isolateId) {
+    if (isolateId != null && (kind == EventKind.IsolateReload || kind == EventKind.IsolateExit)) {
+      invalidate(isolateId);
+    }
+  }
+
+  private <T extends Obj> CompletableFuture<T> get(String isolateId, String objectId, Class<T> type) {
+    final Key key = new Key(isolateId, objectId);
+    final Entry entry;
+    synchronized (lock) {
+      final Entry existing = entries.get(key);
+      if (existing != null) {
+        hitCount++;
+        return existing.future.thenApply(value -> type.isInstance(value) ? type.cast(value) : null);
+      }
+      missCount++;
+      entry = new Entry();
+      entries.put(key, entry);
+    }
+
+    vmService.getObject(isolateId, objectId, new GetObjectConsumer() {
+      @Override
+      public void received(Obj response) {
+        final boolean cacheable = response instanceof Script || response instanceof ClassObj || response instanceof Library;
+        onResponse(key, entry, cacheable ? response : null);
+      }
+
+      @Override
+      public void received(Sentinel response) {
+        onResponse(key, entry, null);
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        onResponse(key, entry, null);
+      }
+    });
+    return entry.future.thenApply(value -> type.isInstance(value) ? type.cast(value) : null);
+  }
+
+  private void onResponse(Key key, Entry entry, Obj value) {
+    // Weigh outside the lock; it walks the whole JSON tree.
+    final int valueWeight = value == null ? 0 : weigh(value);
+    synchronized (lock) {
+      // The entry may have been invalidated while the request was in flight.
+      if (entries.get(key) == entry) {
+        if (value == null) {
+          entries.remove(key);
+        } else {
+          entry.weight = valueWeight;
+          weight += entry.weight;
+          evict(key);
+        }
+      }
+    }
+    entry.future.complete(value);
+  }
+
+  /**
+   * Drop least recently used objects until the cache is within its limit, keeping the given entry.
+   */
+  private void evict(Key keep) {
+    final Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+    while (weight > maxWeight && iterator.hasNext()) {
+      final Map.Entry<Key, Entry> next = iterator.next();
+      // In-flight requests have no weight yet.
+      if (next.getValue().weight == 0 || next.getKey().equals(keep)) {
+        continue;
+      }
+      weight -= next.getValue().weight;
+      iterator.remove();
+    }
+  }
+
+  static int weigh(Obj value) {
+    return (int) Math.min(Integer.MAX_VALUE, BASE_WEIGHT + estimateSize(value.getJson()));
+  }
+
+  /**
+   * Returns an estimate of the heap taken by the given JSON tree. Numbers are parsed lazily by Gson,
+   * so they keep their text as well; a script's token position table takes several times the size
+   * of its source.
+   */
+  static long estimateSize(JsonElement json) {
+    if (json == null || json.isJsonNull()) {
+      return 0;
+    }
+    if (json.isJsonObject()) {
+      long size = OBJECT_SIZE;
+      for (Map.Entry<String, JsonElement> member : json.getAsJsonObject().entrySet()) {
+        size += MEMBER_SIZE + member.getKey().length() + estimateSize(member.getValue());
+      }
+      return size;
+    }
+    if (json.isJsonArray()) {
+      final JsonArray array = json.getAsJsonArray();
+      long size = ARRAY_SIZE + (long) ARRAY_ELEMENT_SIZE * array.size();
+      for (JsonElement element : array) {
+        size += estimateSize(element);
+      }
+      return size;
+    }
+    final JsonPrimitive primitive = json.getAsJsonPrimitive();
+    if (primitive.isBoolean()) {
+      return PRIMITIVE_SIZE;
+    }
+    // Strings, and numbers wrapping their text.
+    return PRIMITIVE_SIZE + (primitive.isNumber() ? PRIMITIVE_SIZE : 0) + STRING_SIZE + primitive.getAsString().length();
+  }
+
+  private static class Key {
+    final String isolateId;
+    final String objectId;
+
+    Key(String isolateId, String objectId) {
+      this.isolateId = isolateId;
+      this.objectId = objectId;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      final Key key = (Key) other;
+      return isolateId.equals(key.isolateId) && objectId.equals(key.objectId);
+    }
+
+    @Override
+    public int hashCode() {
+      return isolateId.hashCode() * 31 + objectId.hashCode();
+    }
+  }
+
+  private static class Entry {
+    final CompletableFuture<Obj> future = new CompletableFuture<>();
+    int weight;
+  }
+}
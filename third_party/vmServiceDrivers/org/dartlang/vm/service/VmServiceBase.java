@@ -14,35 +14,53 @@
 package org.dartlang.vm.service;
 
 import com.google.common.collect.Maps;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import de.roderick.weberknecht.WebSocket;
 import de.roderick.weberknecht.WebSocketEventHandler;
 import de.roderick.weberknecht.WebSocketException;
 import de.roderick.weberknecht.WebSocketMessage;
 import org.dartlang.vm.service.consumer.*;
 import org.dartlang.vm.service.element.*;
+import org.dartlang.vm.service.internal.JsonRpcMessage;
 import org.dartlang.vm.service.internal.RequestSink;
 import org.dartlang.vm.service.internal.VmServiceConst;
 import org.dartlang.vm.service.internal.WebSocketRequestSink;
 import org.dartlang.vm.service.logging.Logging;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Internal {@link VmService} base class containing non-generated code.
  */
 @SuppressWarnings({"unused", "WeakerAccess"})
 abstract class VmServiceBase implements VmServiceConst {
+  /**
+   * How long a request may wait for a response before its consumer is failed, unless it was sent
+   * with a timeout of its own.
+   */
+  public static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  /**
+   * How often requests are checked for having passed their deadline.
+   */
+  static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+  private static final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "VM service request sweeper");
+    thread.setDaemon(true);
+    return thread;
+  });
+
   /**
    * Connect to the VM observatory service via the specified URI
    *
@@ -81,9 +99,12 @@ abstract class VmServiceBase implements VmServiceConst {
 
       @Override
       public void onMessage(WebSocketMessage message) {
-        Logging.getLogger().logInformation("VM message: " + message.getText());
+        final String text = message.getText();
+        if (Logging.getLogger().isInformationEnabled()) {
+          Logging.getLogger().logInformation("VM message: " + text);
+        }
         try {
-          vmService.processMessage(message.getText());
+          vmService.processMessage(text);
         } catch (Exception e) {
           Logging.getLogger().logError(e.getMessage(), e);
         }
@@ -180,15 +201,21 @@ abstract class VmServiceBase implements VmServiceConst {
   }
 
   /**
-   * A mapping between {@link String} ids' and the associated {@link Consumer} that was passed when
-   * the request was made. Synchronize against {@link #consumerMapLock} before accessing this field.
+   * The {@link Consumer}s that were passed when requests were made, waiting for their responses.
+   */
+  private final ConsumerTable consumers = new ConsumerTable();
+
+  /**
+   * The number of requests that were failed because they got no response before their deadline.
    */
-  private final Map<String, Consumer> consumerMap = Maps.newHashMap();
+  private final AtomicLong timedOutRequestCount = new AtomicLong();
 
   /**
-   * The object used to synchronize access to {@link #consumerMap}.
+   * The tag and timeout for requests made by the current thread; see {@link #sendTagged}.
    */
-  private final Object consumerMapLock = new Object();
+  private final ThreadLocal<RequestOptions> requestOptions = new ThreadLocal<>();
+
+  private volatile ScheduledFuture<?> sweep;
 
   /**
    * The unique ID for the next request.
@@ -196,9 +223,15 @@ abstract class VmServiceBase implements VmServiceConst {
   private final AtomicInteger nextId = new AtomicInteger();
 
   /**
-   * A list of objects to which {@link Event}s from the VM are forwarded.
+   * The listeners to which {@link Event}s from the VM are forwarded. The array is replaced rather
+   * than modified, under {@link #listenersLock}, so that events can be forwarded without locking.
    */
-  private final List<VmServiceListener> vmListeners = new ArrayList<>();
+  private volatile ListenerLane[] listenerLanes = new ListenerLane[0];
+
+  /**
+   * The object used to synchronize changes to {@link #listenerLanes}.
+   */
+  private final Object listenersLock = new Object();
 
   /**
    * A list of objects to which {@link Event}s from the VM are forwarded.
@@ -213,17 +246,67 @@ abstract class VmServiceBase implements VmServiceConst {
   Version runtimeVersion;
 
   /**
-   * Add a listener to receive {@link Event}s from the VM.
+   * Cached scripts, classes and libraries shared by all users of this connection.
+   */
+  private final ObjectCache objectCache = new ObjectCache(this);
+
+  /**
+   * Where traffic on this connection is recorded, if anywhere.
+   */
+  private volatile VmServiceRecorder recorder;
+
+  /**
+   * Add a listener to receive {@link Event}s from the VM. The listener is called on the thread
+   * reading from the VM, before any further messages are processed.
    */
   public void addVmServiceListener(VmServiceListener listener) {
-    vmListeners.add(listener);
+    addListenerLane(new ListenerLane(listener, null, null));
   }
 
   /**
-   * Remove the given listener from the VM.
+   * Add a listener to receive {@link Event}s from the given streams, or from all streams if
+   * {@code streamIds} is {@code null}. The listener is called on the given executor, one
+   * notification at a time and in the order received, so that a slow listener does not delay
+   * responses or other listeners. Events that arrive while {@link ListenerLane#DEFAULT_MAX_QUEUED}
+   * notifications are waiting are dropped; see {@link ListenerLane#getDroppedCount()}.
+   */
+  public void addVmServiceListener(VmServiceListener listener, Set<String> streamIds, Executor executor) {
+    addListenerLane(new ListenerLane(listener, streamIds, executor));
+  }
+
+  private void addListenerLane(ListenerLane lane) {
+    synchronized (listenersLock) {
+      final ListenerLane[] lanes = Arrays.copyOf(listenerLanes, listenerLanes.length + 1);
+      lanes[lanes.length - 1] = lane;
+      listenerLanes = lanes;
+    }
+  }
+
+  /**
+   * Remove the given listener from the VM. Notifications queued for it are dropped.
    */
   public void removeVmServiceListener(VmServiceListener listener) {
-    vmListeners.remove(listener);
+    synchronized (listenersLock) {
+      final ListenerLane[] lanes = listenerLanes;
+      for (int i = 0; i < lanes.length; i++) {
+        if (lanes[i].getListener() == listener) {
+          lanes[i].remove();
+          final ListenerLane[] newLanes = new ListenerLane[lanes.length - 1];
+          System.arraycopy(lanes, 0, newLanes, 0, i);
+          System.arraycopy(lanes, i + 1, newLanes, i, lanes.length - i - 1);
+          listenerLanes = newLanes;
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the registered listeners, with the number of notifications queued for each, how long
+   * their events have waited to be delivered, and how many were dropped.
+   */
+  public List<ListenerLane> getListenerLanes() {
+    return Arrays.asList(listenerLanes.clone());
   }
 
   /**
@@ -247,6 +330,28 @@ abstract class VmServiceBase implements VmServiceConst {
     return runtimeVersion;
   }
 
+  /**
+   * Return the cache of scripts, classes and libraries for this connection.
+   */
+  public ObjectCache getObjectCache() {
+    return objectCache;
+  }
+
+  /**
+   * Record the messages sent and received on this connection, until {@link #stopRecording()} is
+   * called.
+   */
+  public void startRecording(VmServiceRecorder recorder) {
+    this.recorder = recorder;
+  }
+
+  /**
+   * Stop recording messages. The recorder is not closed.
+   */
+  public void stopRecording() {
+    recorder = null;
+  }
+
   /**
    * Disconnect from the VM observatory service.
    */
@@ -331,55 +436,186 @@ abstract class VmServiceBase implements VmServiceConst {
     request(method, params, consumer);
   }
 
+  /**
+   * Sends the requests made by {@code send} on this thread with the given tag and timeout.
+   * <p>
+   * The consumer of a request that gets no response within the timeout is sent a
+   * {@link RPCError#REQUEST_TIMED_OUT} error, and all requests with a tag can be cancelled with
+   * {@link #cancelRequests(Object)}.
+   */
+  public void sendTagged(Object tag, long timeoutMillis, Runnable send) {
+    final RequestOptions previous = requestOptions.get();
+    requestOptions.set(new RequestOptions(tag, timeoutMillis));
+    try {
+      send.run();
+    } finally {
+      requestOptions.set(previous);
+    }
+  }
+
+  /**
+   * Cancel the requests sent with the given tag that are still waiting for a response. Their
+   * consumers are sent a {@link RPCError#REQUEST_CANCELLED} error, and any responses that arrive
+   * later are ignored.
+   *
+   * @return the number of requests cancelled
+   */
+  public int cancelRequests(Object tag) {
+    final List<ConsumerTable.Entry> cancelled = consumers.removeTagged(tag);
+    for (ConsumerTable.Entry entry : cancelled) {
+      try {
+        entry.consumer.onError(RPCError.cancelled(entry.method));
+      } catch (Exception e) {
+        Logging.getLogger().logError("Exception cancelling request: " + entry.method, e);
+      }
+    }
+    return cancelled.size();
+  }
+
+  /**
+   * Return the number of requests that have been sent and are waiting for a response.
+   */
+  public int getInFlightRequestCount() {
+    return consumers.size();
+  }
+
+  /**
+   * Return the number of requests that were failed because they got no response in time.
+   */
+  public long getTimedOutRequestCount() {
+    return timedOutRequestCount.get();
+  }
+
   /**
    * Sends the request and associates the request with the passed {@link Consumer}.
    */
   protected void request(String method, JsonObject params, Consumer consumer) {
 
     // Assemble the request
-    String id = Integer.toString(nextId.incrementAndGet());
+    final int id = nextId.incrementAndGet();
     JsonObject request = new JsonObject();
 
     request.addProperty(JSONRPC, JSONRPC_VERSION);
-    request.addProperty(ID, id);
+    request.addProperty(ID, Integer.toString(id));
     request.addProperty(METHOD, method);
     request.add(PARAMS, params);
 
     // Cache the consumer to receive the response
-    synchronized (consumerMapLock) {
-      consumerMap.put(id, consumer);
+    final RequestOptions options = requestOptions.get();
+    if (options == null) {
+      consumers.put(new ConsumerTable.Entry(id, method, consumer, null, DEFAULT_REQUEST_TIMEOUT_MILLIS));
+    } else {
+      consumers.put(new ConsumerTable.Entry(id, method, consumer, options.tag, options.timeoutMillis));
     }
+    startSweeping();
 
     // Send the request
-    requestSink.add(request);
+    send(request);
   }
 
-  public void connectionOpened() {
-    for (VmServiceListener listener : new ArrayList<>(vmListeners)) {
+  private void send(JsonObject message) {
+    final VmServiceRecorder recorder = this.recorder;
+    if (recorder != null) {
+      recorder.sent(message.toString());
+    }
+    requestSink.add(message);
+  }
+
+  private void startSweeping() {
+    if (sweep != null) {
+      return;
+    }
+    synchronized (consumers) {
+      if (sweep == null) {
+        final Sweep task = new Sweep(this);
+        task.future = sweeper.scheduleWithFixedDelay(task, SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        sweep = task.future;
+      }
+    }
+  }
+
+  /**
+   * Fail the consumers of requests that have passed their deadline.
+   */
+  void failExpiredRequests() {
+    final List<ConsumerTable.Entry> expired = consumers.removeExpired(System.nanoTime());
+    if (expired.isEmpty()) {
+      return;
+    }
+    timedOutRequestCount.addAndGet(expired.size());
+    for (ConsumerTable.Entry entry : expired) {
+      Logging.getLogger().logInformation("No response to " + entry.method + " (id " + entry.id + ") after " + entry.timeoutMillis + "ms");
       try {
-        listener.connectionOpened();
+        entry.consumer.onError(RPCError.timedOut(entry.method, entry.timeoutMillis));
       } catch (Exception e) {
-        Logging.getLogger().logError("Exception notifying listener", e);
+        Logging.getLogger().logError("Exception failing request: " + entry.method, e);
       }
     }
   }
 
+  public void connectionOpened() {
+    for (ListenerLane lane : listenerLanes) {
+      lane.connectionOpened();
+    }
+  }
+
   private void forwardEvent(String streamId, Event event) {
-    for (VmServiceListener listener : new ArrayList<>(vmListeners)) {
-      try {
-        listener.received(streamId, event);
-      } catch (Exception e) {
-        Logging.getLogger().logError("Exception processing event: " + streamId + ", " + event.getJson(), e);
+    for (ListenerLane lane : listenerLanes) {
+      if (lane.accepts(streamId)) {
+        lane.received(streamId, event);
+      }
+    }
+  }
+
+  private boolean hasListener(String streamId) {
+    for (ListenerLane lane : listenerLanes) {
+      if (lane.accepts(streamId)) {
+        return true;
       }
     }
+    return false;
   }
 
   public void connectionClosed() {
-    for (VmServiceListener listener : new ArrayList<>(vmListeners)) {
-      try {
-        listener.connectionClosed();
-      } catch (Exception e) {
-        Logging.getLogger().logError("Exception notifying listener", e);
+    final ScheduledFuture<?> scheduled = sweep;
+    if (scheduled != null) {
+      scheduled.cancel(false);
+    }
+
+    for (ListenerLane lane : listenerLanes) {
+      lane.connectionClosed();
+    }
+  }
+
+  private static class RequestOptions {
+    final Object tag;
+    final long timeoutMillis;
+
+    RequestOptions(Object tag, long timeoutMillis) {
+      this.tag = tag;
+      this.timeoutMillis = timeoutMillis;
+    }
+  }
+
+  /**
+   * Periodically fails expired requests. Only holds on to the service weakly, and stops once the
+   * service has been collected.
+   */
+  private static class Sweep implements Runnable {
+    private final WeakReference<VmServiceBase> service;
+    volatile ScheduledFuture<?> future;
+
+    Sweep(VmServiceBase service) {
+      this.service = new WeakReference<>(service);
+    }
+
+    @Override
+    public void run() {
+      final VmServiceBase vmService = service.get();
+      if (vmService != null) {
+        vmService.failExpiredRequests();
+      } else if (future != null) {
+        future.cancel(false);
       }
     }
   }
@@ -400,41 +636,52 @@ abstract class VmServiceBase implements VmServiceConst {
   /**
    * Process the response from the VM service and forward that response to the consumer associated
    * with the response id.
+   * <p>
+   * The message is scanned rather than fully decoded; only the parts a consumer needs are decoded.
    */
   void processMessage(String jsonText) {
     if (jsonText == null || jsonText.isEmpty()) {
       return;
     }
+    final VmServiceRecorder recorder = this.recorder;
+    if (recorder != null) {
+      recorder.received(jsonText);
+    }
 
-    // Decode the JSON
-    JsonObject json;
-    try {
-      json = (JsonObject) new JsonParser().parse(jsonText);
-    } catch (Exception e) {
-      Logging.getLogger().logError("Parse message failed: " + jsonText, e);
+    // Scan the JSON
+    final JsonRpcMessage message = JsonRpcMessage.scan(jsonText);
+    if (message == null) {
+      Logging.getLogger().logError("Parse message failed: " + jsonText);
       return;
     }
 
-    if (json.has("method")) {
-      if (!json.has(PARAMS)) {
-        final String message = "Missing " + PARAMS;
-        Logging.getLogger().logError(message);
+    if (message.has(METHOD)) {
+      if (!message.has(PARAMS)) {
+        final String errorMessage = "Missing " + PARAMS;
+        Logging.getLogger().logError(errorMessage);
         final JsonObject response = new JsonObject();
         response.addProperty(JSONRPC, JSONRPC_VERSION);
         final JsonObject error = new JsonObject();
         error.addProperty(CODE, INVALID_REQUEST);
-        error.addProperty(MESSAGE, message);
+        error.addProperty(MESSAGE, errorMessage);
         response.add(ERROR, error);
-        requestSink.add(response);
+        send(response);
         return;
       }
-      if (json.has("id")) {
+      if (message.has(ID)) {
+        final JsonObject json;
+        try {
+          json = message.toJsonObject();
+        } catch (Exception e) {
+          Logging.getLogger().logError("Parse message failed: " + jsonText, e);
+          return;
+        }
         processRequest(json);
       } else {
-        processNotification(json);
+        processNotification(message);
       }
-    } else if (json.has("result") || json.has("error")) {
-      processResponse(json);
+    } else if (message.has(RESULT) || message.has(ERROR)) {
+      processResponse(message);
     } else {
       Logging.getLogger().logError("Malformed message");
     }
@@ -455,7 +702,7 @@ abstract class VmServiceBase implements VmServiceConst {
       error.addProperty(CODE, INVALID_REQUEST);
       error.addProperty(MESSAGE, message);
       response.add(ERROR, error);
-      requestSink.add(response);
+      send(response);
       return;
     }
 
@@ -471,7 +718,7 @@ abstract class VmServiceBase implements VmServiceConst {
       error.addProperty(CODE, INVALID_REQUEST);
       error.addProperty(MESSAGE, message);
       response.add(ERROR, error);
-      requestSink.add(response);
+      send(response);
       return;
     }
 
@@ -485,7 +732,7 @@ abstract class VmServiceBase implements VmServiceConst {
       error.addProperty(CODE, INVALID_REQUEST);
       error.addProperty(MESSAGE, message);
       response.add(ERROR, error);
-      requestSink.add(response);
+      send(response);
       return;
     }
 
@@ -496,7 +743,7 @@ abstract class VmServiceBase implements VmServiceConst {
       error.addProperty(CODE, METHOD_NOT_FOUND);
       error.addProperty(MESSAGE, message);
       response.add(ERROR, error);
-      requestSink.add(response);
+      send(response);
       return;
     }
 
@@ -505,7 +752,7 @@ abstract class VmServiceBase implements VmServiceConst {
       runner.run(params, new RemoteServiceCompleter() {
         public void result(JsonObject result) {
           response.add(RESULT, result);
-          requestSink.add(response);
+          send(response);
         }
 
         public void error(int code, String message, JsonObject data) {
@@ -516,7 +763,7 @@ abstract class VmServiceBase implements VmServiceConst {
             error.add(DATA, data);
           }
           response.add(ERROR, error);
-          requestSink.add(response);
+          send(response);
         }
       });
     } catch (Exception e) {
@@ -526,7 +773,7 @@ abstract class VmServiceBase implements VmServiceConst {
       error.addProperty(CODE, SERVER_ERROR);
       error.addProperty(MESSAGE, message);
       response.add(ERROR, error);
-      requestSink.add(response);
+      send(response);
     }
   }
 
@@ -541,36 +788,42 @@ abstract class VmServiceBase implements VmServiceConst {
       }
     };
 
-  void processNotification(JsonObject json) {
-    String method;
+  void processNotification(JsonRpcMessage message) {
+    final String method;
     try {
-      method = json.get(METHOD).getAsString();
+      method = message.getString(METHOD);
     } catch (Exception e) {
       Logging.getLogger().logError("Request malformed " + METHOD, e);
       return;
     }
-    JsonObject params;
-    try {
-      params = json.get(PARAMS).getAsJsonObject();
-    } catch (Exception e) {
-      Logging.getLogger().logError("Event missing " + PARAMS, e);
-      return;
-    }
     if ("streamNotify".equals(method)) {
       String streamId;
       try {
-        streamId = params.get(STREAM_ID).getAsString();
+        streamId = message.peekString(PARAMS, STREAM_ID);
       } catch (Exception e) {
         Logging.getLogger().logError("Event missing " + STREAM_ID, e);
         return;
       }
+      if (streamId == null) {
+        Logging.getLogger().logError("Event missing " + STREAM_ID);
+        return;
+      }
+      final boolean isolateEvent = VmService.ISOLATE_STREAM_ID.equals(streamId);
+      if (!isolateEvent && !hasListener(streamId)) {
+        // Nobody will look at the event, so don't bother decoding it.
+        return;
+      }
       Event event;
       try {
-        event = new Event(params.get(EVENT).getAsJsonObject());
+        event = new Event(message.getObject(PARAMS, EVENT));
       } catch (Exception e) {
         Logging.getLogger().logError("Event missing " + EVENT, e);
         return;
       }
+      if (isolateEvent) {
+        final IsolateRef isolate = event.getIsolate();
+        objectCache.handleIsolateEvent(event.getKind(), isolate == null ? null : isolate.getId());
+      }
       forwardEvent(streamId, event);
     } else {
       if (!remoteServiceRunners.containsKey(method)) {
@@ -578,6 +831,13 @@ abstract class VmServiceBase implements VmServiceConst {
         return;
       }
 
+      JsonObject params;
+      try {
+        params = message.getObject(PARAMS);
+      } catch (Exception e) {
+        Logging.getLogger().logError("Event missing " + PARAMS, e);
+        return;
+      }
       final RemoteServiceRunner runner = remoteServiceRunners.get(method);
       try {
         runner.run(params, ignoreCallback);
@@ -587,9 +847,8 @@ abstract class VmServiceBase implements VmServiceConst {
     }
   }
 
-  void processResponse(JsonObject json) {
-    JsonElement idElem = json.get(ID);
-    if (idElem == null) {
+  void processResponse(JsonRpcMessage message) {
+    if (!message.has(ID)) {
       Logging.getLogger().logError("Response missing " + ID);
       return;
     }
@@ -597,23 +856,29 @@ abstract class VmServiceBase implements VmServiceConst {
     // Get the consumer associated with this response
     String id;
     try {
-      id = idElem.getAsString();
+      id = message.getString(ID);
     } catch (Exception e) {
       Logging.getLogger().logError("Response missing " + ID, e);
       return;
     }
-    Consumer consumer = consumerMap.remove(id);
-    if (consumer == null) {
-      Logging.getLogger().logError("No consumer associated with " + ID + ": " + id);
+    ConsumerTable.Entry entry = null;
+    try {
+      entry = consumers.remove(Integer.parseInt(id));
+    } catch (NumberFormatException e) {
+      // Not one of our ids.
+    }
+    if (entry == null) {
+      // The request may have timed out or been cancelled.
+      Logging.getLogger().logInformation("No consumer associated with " + ID + ": " + id);
       return;
     }
+    final Consumer consumer = entry.consumer;
 
     // Forward the response if the request was successfully executed
-    JsonElement resultElem = json.get(RESULT);
-    if (resultElem != null) {
+    if (message.has(RESULT)) {
       JsonObject result;
       try {
-        result = resultElem.getAsJsonObject();
+        result = message.getObject(RESULT);
       } catch (Exception e) {
         Logging.getLogger().logError("Response has invalid " + RESULT, e);
         return;
@@ -632,11 +897,10 @@ abstract class VmServiceBase implements VmServiceConst {
     }
 
     // Forward an error if the request failed
-    resultElem = json.get(ERROR);
-    if (resultElem != null) {
+    if (message.has(ERROR)) {
       JsonObject error;
       try {
-        error = resultElem.getAsJsonObject();
+        error = message.getObject(ERROR);
       } catch (Exception e) {
         Logging.getLogger().logError("Response has invalid " + RESULT, e);
         return;
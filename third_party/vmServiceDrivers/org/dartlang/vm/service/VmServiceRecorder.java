@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.dartlang.vm.service;
+
+import org.dartlang.vm.service.logging.Logging;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Records the messages sent and received on a {@link VmService} connection.
+ * <p>
+ * Each message is appended as one line: {@code >} for a message sent to the VM or {@code <} for one
+ * received from it, the microseconds since recording started, a space, and the message's JSON. The
+ * VM service never sends raw line breaks within a message, so a line always holds a whole message.
+ * <p>
+ * See {@link VmServiceBase#startRecording(VmServiceRecorder)}. The tests replay recordings with
+ * {@code VmServiceReplayServer}.
+ */
+public final class VmServiceRecorder implements Closeable, Flushable {
+  public static final char SENT = '>';
+  public static final char RECEIVED = '<';
+
+  private final Writer out;
+  private final long startNanos = System.nanoTime();
+  private boolean failed;
+
+  public VmServiceRecorder(OutputStream out) {
+    this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+  }
+
+  void sent(String json) {
+    record(SENT, json);
+  }
+
+  void received(String json) {
+    record(RECEIVED, json);
+  }
+
+  private synchronized void record(char direction, String json) {
+    if (failed) {
+      return;
+    }
+    final long micros = (System.nanoTime() - startNanos) / 1000;
+    try {
+      out.write(direction);
+      out.write(Long.toString(micros));
+      out.write(' ');
+      out.write(json);
+      out.write('\n');
+    } catch (IOException e) {
+      // Stop recording rather than fail the connection.
+      failed = true;
+      Logging.getLogger().logError("Failed to record VM service message", e);
+    }
+  }
+
+  @Override
+  public synchronized void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    out.close();
+  }
+}
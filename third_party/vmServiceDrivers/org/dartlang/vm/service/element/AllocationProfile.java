@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 @SuppressWarnings({"WeakerAccess", "unused"})
@@ -51,12 +50,7 @@ public class AllocationProfile extends Response {
    * Allocation information for all class types.
    */
   public ElementList<ClassHeapStats> getMembers() {
-    return new ElementList<ClassHeapStats>(json.get("members").getAsJsonArray()) {
-      @Override
-      protected ClassHeapStats basicGet(JsonArray array, int index) {
-        return new ClassHeapStats(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("members", ClassHeapStats::new);
   }
 
   /**
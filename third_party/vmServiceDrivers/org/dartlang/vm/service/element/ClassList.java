@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 @SuppressWarnings({"WeakerAccess", "unused"})
@@ -26,11 +25,6 @@ public class ClassList extends Response {
   }
 
   public ElementList<ClassRef> getClasses() {
-    return new ElementList<ClassRef>(json.get("classes").getAsJsonArray()) {
-      @Override
-      protected ClassRef basicGet(JsonArray array, int index) {
-        return new ClassRef(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("classes", ClassRef::new);
   }
 }
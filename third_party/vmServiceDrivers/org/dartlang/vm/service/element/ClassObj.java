@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 /**
@@ -48,24 +47,14 @@ public class ClassObj extends Obj {
    * A list of fields in this class. Does not include fields from superclasses.
    */
   public ElementList<FieldRef> getFields() {
-    return new ElementList<FieldRef>(json.get("fields").getAsJsonArray()) {
-      @Override
-      protected FieldRef basicGet(JsonArray array, int index) {
-        return new FieldRef(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("fields", FieldRef::new);
   }
 
   /**
    * A list of functions in this class. Does not include functions from superclasses.
    */
   public ElementList<FuncRef> getFunctions() {
-    return new ElementList<FuncRef>(json.get("functions").getAsJsonArray()) {
-      @Override
-      protected FuncRef basicGet(JsonArray array, int index) {
-        return new FuncRef(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("functions", FuncRef::new);
   }
 
   /**
@@ -74,12 +63,7 @@ public class ClassObj extends Obj {
    * The values will be of the kind: Type.
    */
   public ElementList<InstanceRef> getInterfaces() {
-    return new ElementList<InstanceRef>(json.get("interfaces").getAsJsonArray()) {
-      @Override
-      protected InstanceRef basicGet(JsonArray array, int index) {
-        return new InstanceRef(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("interfaces", InstanceRef::new);
   }
 
   /**
@@ -129,12 +113,7 @@ public class ClassObj extends Obj {
    * A list of subclasses of this class.
    */
   public ElementList<ClassRef> getSubclasses() {
-    return new ElementList<ClassRef>(json.get("subclasses").getAsJsonArray()) {
-      @Override
-      protected ClassRef basicGet(JsonArray array, int index) {
-        return new ClassRef(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("subclasses", ClassRef::new);
   }
 
   /**
@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 /**
@@ -55,11 +54,6 @@ public class Context extends Obj {
    * The variables in this context object.
    */
   public ElementList<ContextElement> getVariables() {
-    return new ElementList<ContextElement>(json.get("variables").getAsJsonArray()) {
-      @Override
-      protected ContextElement basicGet(JsonArray array, int index) {
-        return new ContextElement(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("variables", ContextElement::new);
   }
 }
@@ -7,13 +7,25 @@ import com.google.gson.JsonObject;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Superclass for all observatory elements.
+ * <p>
+ * Lists and arrays read from the JSON are computed the first time they are asked for and then
+ * returned again on later calls, so the JSON must not be modified after they have been read.
  */
 public class Element {
   protected final JsonObject json;
 
+  /**
+   * Views of JSON members that have already been computed, keyed by member name; created lazily.
+   */
+  private volatile Map<String, Object> views;
+
   public Element(JsonObject json) {
     this.json = json;
   }
@@ -49,6 +61,85 @@ public class Element {
     return json;
   }
 
+  /**
+   * Return the view of a JSON member computed earlier, or compute it now. Null values are not kept.
+   */
+  @SuppressWarnings("unchecked")
+  <T> T memoize(String name, Supplier<T> compute) {
+    Map<String, Object> map = views;
+    if (map == null) {
+      synchronized (this) {
+        map = views;
+        if (map == null) {
+          views = map = new ConcurrentHashMap<>(4);
+        }
+      }
+    }
+    final Object existing = map.get(name);
+    if (existing != null) {
+      return (T) existing;
+    }
+    final T value = compute.get();
+    if (value == null) {
+      return null;
+    }
+    final Object previous = map.putIfAbsent(name, value);
+    return previous != null ? (T) previous : value;
+  }
+
+  /**
+   * Return a specific JSON member as a list of elements, each wrapped when it is first read.
+   */
+  <T> ElementList<T> getElementList(String memberName, Function<JsonObject, T> wrap) {
+    return memoize(memberName, () -> {
+      final JsonElement array = json.get(memberName);
+      if (array == null || array == JsonNull.INSTANCE) {
+        return null;
+      }
+      return new ElementList<T>(array.getAsJsonArray()) {
+        @Override
+        protected T basicGet(JsonArray array, int index) {
+          return wrap.apply(array.get(index).getAsJsonObject());
+        }
+      };
+    });
+  }
+
+  /**
+   * Return a specific JSON member as an array of integers. The array is shared, so callers must
+   * not modify it.
+   */
+  int[] getIntArray(String memberName) {
+    return memoize(memberName + "[]", () -> {
+      final JsonArray array = json.getAsJsonArray(memberName);
+      return array == null ? null : jsonArrayToIntArray(array);
+    });
+  }
+
+  /**
+   * Return a specific JSON member as an array of arrays of integers. The arrays are decoded on
+   * each call rather than kept, as callers typically convert them into a structure of their own.
+   */
+  int[][] getIntArrays(String memberName) {
+    final JsonArray array = json.getAsJsonArray(memberName);
+    if (array == null) {
+      return null;
+    }
+    final int[][] result = new int[array.size()][];
+    for (int index = 0; index < result.length; ++index) {
+      result[index] = jsonArrayToIntArray(array.get(index).getAsJsonArray());
+    }
+    return result;
+  }
+
+  private static int[] jsonArrayToIntArray(JsonArray array) {
+    final int[] result = new int[array.size()];
+    for (int index = 0; index < result.length; ++index) {
+      result[index] = array.get(index).getAsInt();
+    }
+    return result;
+  }
+
   /**
    * Return a specific JSON member as a list of integers.
    */
@@ -72,7 +163,7 @@ public class Element {
       return null;
     }
     int size = array.size();
-    List<List<Integer>> result = new ArrayList<>();
+    List<List<Integer>> result = new ArrayList<>(size);
     for (int index = 0; index < size; ++index) {
       result.add(jsonArrayToListInt(array.get(index).getAsJsonArray()));
     }
@@ -81,7 +172,7 @@ public class Element {
 
   private List<Integer> jsonArrayToListInt(JsonArray array) {
     int size = array.size();
-    List<Integer> result = new ArrayList<>();
+    List<Integer> result = new ArrayList<>(size);
     for (int index = 0; index < size; ++index) {
       result.add(array.get(index).getAsInt());
     }
@@ -90,7 +181,7 @@ public class Element {
 
   private List<String> jsonArrayToListString(JsonArray array) {
     int size = array.size();
-    List<String> result = new ArrayList<>();
+    List<String> result = new ArrayList<>(size);
     for (int index = 0; index < size; ++index) {
       result.add(array.get(index).getAsString());
     }
@@ -9,17 +9,33 @@ import java.util.Iterator;
  * Simple wrapper around a {@link JsonArray} which lazily converts {@link JsonObject} elements to
  * subclasses of {@link Element}. Subclasses need only implement {@link #basicGet(JsonArray, int)}
  * to return an {@link Element} subclass for the {@link JsonObject} at a given index.
+ * <p>
+ * Each element is converted once, the first time it is read, and the same object is returned by
+ * later reads.
  */
 public abstract class ElementList<T> implements Iterable<T> {
 
   private final JsonArray array;
 
+  /**
+   * The elements converted so far. Threads may race to convert an element, in which case either
+   * result may be kept; elements are immutable wrappers, so they are equivalent.
+   */
+  private final Object[] elements;
+
   public ElementList(JsonArray array) {
     this.array = array;
+    this.elements = new Object[array.size()];
   }
 
+  @SuppressWarnings("unchecked")
   public T get(int index) {
-    return basicGet(array, index);
+    Object element = elements[index];
+    if (element == null) {
+      element = basicGet(array, index);
+      elements[index] = element;
+    }
+    return (T) element;
   }
 
   public boolean isEmpty() {
@@ -49,7 +65,7 @@ public abstract class ElementList<T> implements Iterable<T> {
   }
 
   public int size() {
-    return array.size();
+    return elements.length;
   }
 
   protected abstract T basicGet(JsonArray array, int index);
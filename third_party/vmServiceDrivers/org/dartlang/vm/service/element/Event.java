@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
@@ -253,14 +252,7 @@ public class Event extends Response {
    * Can return <code>null</code>.
    */
   public ElementList<Breakpoint> getPauseBreakpoints() {
-    if (json.get("pauseBreakpoints") == null) return null;
-    
-    return new ElementList<Breakpoint>(json.get("pauseBreakpoints").getAsJsonArray()) {
-      @Override
-      protected Breakpoint basicGet(JsonArray array, int index) {
-        return new Breakpoint(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("pauseBreakpoints", Breakpoint::new);
   }
 
   /**
@@ -295,14 +287,7 @@ public class Event extends Response {
    * Can return <code>null</code>.
    */
   public ElementList<TimelineEvent> getTimelineEvents() {
-    if (json.get("timelineEvents") == null) return null;
-    
-    return new ElementList<TimelineEvent>(json.get("timelineEvents").getAsJsonArray()) {
-      @Override
-      protected TimelineEvent basicGet(JsonArray array, int index) {
-        return new TimelineEvent(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("timelineEvents", TimelineEvent::new);
   }
 
   /**
@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 /**
@@ -32,11 +31,6 @@ public class FlagList extends Response {
    * A list of all flags in the VM.
    */
   public ElementList<Flag> getFlags() {
-    return new ElementList<Flag>(json.get("flags").getAsJsonArray()) {
-      @Override
-      protected Flag basicGet(JsonArray array, int index) {
-        return new Flag(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("flags", Flag::new);
   }
 }
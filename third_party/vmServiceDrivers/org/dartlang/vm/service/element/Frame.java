@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
@@ -90,13 +89,6 @@ public class Frame extends Response {
    * Can return <code>null</code>.
    */
   public ElementList<BoundVariable> getVars() {
-    if (json.get("vars") == null) return null;
-    
-    return new ElementList<BoundVariable>(json.get("vars").getAsJsonArray()) {
-      @Override
-      protected BoundVariable basicGet(JsonArray array, int index) {
-        return new BoundVariable(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("vars", BoundVariable::new);
   }
 }
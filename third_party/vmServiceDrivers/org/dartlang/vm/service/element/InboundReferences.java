@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 /**
@@ -32,11 +31,6 @@ public class InboundReferences extends Response {
    * An array of inbound references to an object.
    */
   public ElementList<InboundReference> getReferences() {
-    return new ElementList<InboundReference>(json.get("references").getAsJsonArray()) {
-      @Override
-      protected InboundReference basicGet(JsonArray array, int index) {
-        return new InboundReference(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("references", InboundReference::new);
   }
 }
@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
@@ -38,14 +37,7 @@ public class Instance extends Obj {
    * Can return <code>null</code>.
    */
   public ElementList<MapAssociation> getAssociations() {
-    if (json.get("associations") == null) return null;
-    
-    return new ElementList<MapAssociation>(json.get("associations").getAsJsonArray()) {
-      @Override
-      protected MapAssociation basicGet(JsonArray array, int index) {
-        return new MapAssociation(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("associations", MapAssociation::new);
   }
 
   /**
@@ -178,14 +170,7 @@ public class Instance extends Obj {
    * Can return <code>null</code>.
    */
   public ElementList<InstanceRef> getElements() {
-    if (json.get("elements") == null) return null;
-    
-    return new ElementList<InstanceRef>(json.get("elements").getAsJsonArray()) {
-      @Override
-      protected InstanceRef basicGet(JsonArray array, int index) {
-        return new InstanceRef(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("elements", InstanceRef::new);
   }
 
   /**
@@ -194,14 +179,7 @@ public class Instance extends Obj {
    * Can return <code>null</code>.
    */
   public ElementList<BoundField> getFields() {
-    if (json.get("fields") == null) return null;
-    
-    return new ElementList<BoundField>(json.get("fields").getAsJsonArray()) {
-      @Override
-      protected BoundField basicGet(JsonArray array, int index) {
-        return new BoundField(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("fields", BoundField::new);
   }
 
   /**
@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 /**
@@ -32,12 +31,7 @@ public class InstanceSet extends Response {
    * An array of instances of the requested type.
    */
   public ElementList<ObjRef> getInstances() {
-    return new ElementList<ObjRef>(json.get("instances").getAsJsonArray()) {
-      @Override
-      protected ObjRef basicGet(JsonArray array, int index) {
-        return new ObjRef(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("instances", ObjRef::new);
   }
 
   /**
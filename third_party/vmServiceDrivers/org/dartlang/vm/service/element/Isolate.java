@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import java.util.List;
@@ -34,12 +33,7 @@ public class Isolate extends Response {
    * A list of all breakpoints for this isolate.
    */
   public ElementList<Breakpoint> getBreakpoints() {
-    return new ElementList<Breakpoint>(json.get("breakpoints").getAsJsonArray()) {
-      @Override
-      protected Breakpoint basicGet(JsonArray array, int index) {
-        return new Breakpoint(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("breakpoints", Breakpoint::new);
   }
 
   /**
@@ -92,12 +86,7 @@ public class Isolate extends Response {
    * Guaranteed to be initialized when the IsolateRunnable event fires.
    */
   public ElementList<LibraryRef> getLibraries() {
-    return new ElementList<LibraryRef>(json.get("libraries").getAsJsonArray()) {
-      @Override
-      protected LibraryRef basicGet(JsonArray array, int index) {
-        return new LibraryRef(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("libraries", LibraryRef::new);
   }
 
   /**
@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 /**
@@ -32,12 +31,7 @@ public class Library extends Obj {
    * A list of all classes in this library.
    */
   public ElementList<ClassRef> getClasses() {
-    return new ElementList<ClassRef>(json.get("classes").getAsJsonArray()) {
-      @Override
-      protected ClassRef basicGet(JsonArray array, int index) {
-        return new ClassRef(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("classes", ClassRef::new);
   }
 
   /**
@@ -51,24 +45,14 @@ public class Library extends Obj {
    * A list of the imports for this library.
    */
   public ElementList<LibraryDependency> getDependencies() {
-    return new ElementList<LibraryDependency>(json.get("dependencies").getAsJsonArray()) {
-      @Override
-      protected LibraryDependency basicGet(JsonArray array, int index) {
-        return new LibraryDependency(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("dependencies", LibraryDependency::new);
   }
 
   /**
    * A list of the top-level functions in this library.
    */
   public ElementList<FuncRef> getFunctions() {
-    return new ElementList<FuncRef>(json.get("functions").getAsJsonArray()) {
-      @Override
-      protected FuncRef basicGet(JsonArray array, int index) {
-        return new FuncRef(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("functions", FuncRef::new);
   }
 
   /**
@@ -82,12 +66,7 @@ public class Library extends Obj {
    * A list of the scripts which constitute this library.
    */
   public ElementList<ScriptRef> getScripts() {
-    return new ElementList<ScriptRef>(json.get("scripts").getAsJsonArray()) {
-      @Override
-      protected ScriptRef basicGet(JsonArray array, int index) {
-        return new ScriptRef(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("scripts", ScriptRef::new);
   }
 
   /**
@@ -101,11 +80,6 @@ public class Library extends Obj {
    * A list of the top-level variables in this library.
    */
   public ElementList<FieldRef> getVariables() {
-    return new ElementList<FieldRef>(json.get("variables").getAsJsonArray()) {
-      @Override
-      protected FieldRef basicGet(JsonArray array, int index) {
-        return new FieldRef(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("variables", FieldRef::new);
   }
 }
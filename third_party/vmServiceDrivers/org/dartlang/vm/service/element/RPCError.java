@@ -59,6 +59,31 @@ public class RPCError extends Element implements VmServiceConst {
    */
   public static final int UNEXPECTED_RESPONSE = 5;
 
+  /**
+   * The response code used by the client when a request gets no response before its deadline.
+   */
+  public static final int REQUEST_TIMED_OUT = 6;
+
+  /**
+   * The response code used by the client when a request is cancelled before its response arrives.
+   */
+  public static final int REQUEST_CANCELLED = 7;
+
+  public static RPCError timedOut(String method, long timeoutMillis) {
+    return local(REQUEST_TIMED_OUT, "No response to " + method + " after " + timeoutMillis + "ms");
+  }
+
+  public static RPCError cancelled(String method) {
+    return local(REQUEST_CANCELLED, "Request " + method + " was cancelled");
+  }
+
+  private static RPCError local(int code, String errMsg) {
+    JsonObject json = new JsonObject();
+    json.addProperty("code", code);
+    json.addProperty("message", errMsg);
+    return new RPCError(json);
+  }
+
   public static RPCError unexpected(String expectedType, Response response) {
     String errMsg = "Expected type " + expectedType + " but received " + response.getType();
     if (response instanceof Sentinel) {
@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 /**
@@ -32,12 +31,7 @@ public class RetainingPath extends Response {
    * The chain of objects which make up the retaining path.
    */
   public ElementList<RetainingObject> getElements() {
-    return new ElementList<RetainingObject>(json.get("elements").getAsJsonArray()) {
-      @Override
-      protected RetainingObject basicGet(JsonArray array, int index) {
-        return new RetainingObject(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("elements", RetainingObject::new);
   }
 
   /**
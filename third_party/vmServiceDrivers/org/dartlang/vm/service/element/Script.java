@@ -68,6 +68,16 @@ public class Script extends Obj {
     return getListListInt("tokenPosTable");
   }
 
+  /**
+   * The token position table as arrays of ints, without boxing. The arrays are decoded on each
+   * call and not kept by the script, so callers should keep what they build from them instead.
+   *
+   * Can return <code>null</code>.
+   */
+  public int[][] getTokenPosTableArray() {
+    return getIntArrays("tokenPosTable");
+  }
+
   /**
    * The uri from which this script was loaded.
    */
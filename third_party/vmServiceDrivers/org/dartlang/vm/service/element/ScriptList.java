@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 @SuppressWarnings({"WeakerAccess", "unused"})
@@ -26,11 +25,6 @@ public class ScriptList extends Response {
   }
 
   public ElementList<ScriptRef> getScripts() {
-    return new ElementList<ScriptRef>(json.get("scripts").getAsJsonArray()) {
-      @Override
-      protected ScriptRef basicGet(JsonArray array, int index) {
-        return new ScriptRef(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("scripts", ScriptRef::new);
   }
 }
@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 /**
@@ -38,23 +37,13 @@ public class SourceReport extends Response {
    * Note that ranges may be duplicated, in the case of mixins.
    */
   public ElementList<SourceReportRange> getRanges() {
-    return new ElementList<SourceReportRange>(json.get("ranges").getAsJsonArray()) {
-      @Override
-      protected SourceReportRange basicGet(JsonArray array, int index) {
-        return new SourceReportRange(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("ranges", SourceReportRange::new);
   }
 
   /**
    * A list of scripts, referenced by index in the report's ranges.
    */
   public ElementList<ScriptRef> getScripts() {
-    return new ElementList<ScriptRef>(json.get("scripts").getAsJsonArray()) {
-      @Override
-      protected ScriptRef basicGet(JsonArray array, int index) {
-        return new ScriptRef(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("scripts", ScriptRef::new);
   }
 }
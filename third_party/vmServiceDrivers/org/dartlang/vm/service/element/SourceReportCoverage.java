@@ -37,6 +37,13 @@ public class SourceReportCoverage extends Element {
     return getListInt("hits");
   }
 
+  /**
+   * The hits as an array of ints, without boxing. The array is shared, so callers must not modify it.
+   */
+  public int[] getHitsArray() {
+    return getIntArray("hits");
+  }
+
   /**
    * A list of token positions in a SourceReportRange which have not been executed.  The list is
    * sorted.
@@ -44,4 +51,11 @@ public class SourceReportCoverage extends Element {
   public List<Integer> getMisses() {
     return getListInt("misses");
   }
+
+  /**
+   * The misses as an array of ints, without boxing. The array is shared, so callers must not modify it.
+   */
+  public int[] getMissesArray() {
+    return getIntArray("misses");
+  }
 }
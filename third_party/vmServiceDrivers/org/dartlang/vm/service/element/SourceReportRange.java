@@ -88,6 +88,16 @@ public class SourceReportRange extends Element {
     return getListInt("possibleBreakpoints");
   }
 
+  /**
+   * The possible breakpoints as an array of ints, without boxing. The array is shared, so callers
+   * must not modify it.
+   *
+   * Can return <code>null</code>.
+   */
+  public int[] getPossibleBreakpointsArray() {
+    return getIntArray("possibleBreakpoints");
+  }
+
   /**
    * An index into the script table of the SourceReport, indicating which script contains this
    * range of code.
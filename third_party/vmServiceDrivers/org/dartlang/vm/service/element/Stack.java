@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 @SuppressWarnings({"WeakerAccess", "unused"})
@@ -29,45 +28,21 @@ public class Stack extends Response {
    * Can return <code>null</code>.
    */
   public ElementList<Frame> getAsyncCausalFrames() {
-    if (json.get("asyncCausalFrames") == null) return null;
-    
-    return new ElementList<Frame>(json.get("asyncCausalFrames").getAsJsonArray()) {
-      @Override
-      protected Frame basicGet(JsonArray array, int index) {
-        return new Frame(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("asyncCausalFrames", Frame::new);
   }
 
   /**
    * Can return <code>null</code>.
    */
   public ElementList<Frame> getAwaiterFrames() {
-    if (json.get("awaiterFrames") == null) return null;
-    
-    return new ElementList<Frame>(json.get("awaiterFrames").getAsJsonArray()) {
-      @Override
-      protected Frame basicGet(JsonArray array, int index) {
-        return new Frame(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("awaiterFrames", Frame::new);
   }
 
   public ElementList<Frame> getFrames() {
-    return new ElementList<Frame>(json.get("frames").getAsJsonArray()) {
-      @Override
-      protected Frame basicGet(JsonArray array, int index) {
-        return new Frame(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("frames", Frame::new);
   }
 
   public ElementList<Message> getMessages() {
-    return new ElementList<Message>(json.get("messages").getAsJsonArray()) {
-      @Override
-      protected Message basicGet(JsonArray array, int index) {
-        return new Message(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("messages", Message::new);
   }
 }
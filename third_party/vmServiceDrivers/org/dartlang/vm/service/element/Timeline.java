@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 @SuppressWarnings({"WeakerAccess", "unused"})
@@ -43,11 +42,6 @@ public class Timeline extends Response {
    * A list of timeline events.
    */
   public ElementList<TimelineEvent> getTraceEvents() {
-    return new ElementList<TimelineEvent>(json.get("traceEvents").getAsJsonArray()) {
-      @Override
-      protected TimelineEvent basicGet(JsonArray array, int index) {
-        return new TimelineEvent(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("traceEvents", TimelineEvent::new);
   }
 }
@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 /**
@@ -42,11 +41,6 @@ public class TypeArguments extends Obj {
    * The value will always be one of the kinds: Type, TypeRef, TypeParameter, BoundedType.
    */
   public ElementList<InstanceRef> getTypes() {
-    return new ElementList<InstanceRef>(json.get("types").getAsJsonArray()) {
-      @Override
-      protected InstanceRef basicGet(JsonArray array, int index) {
-        return new InstanceRef(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("types", InstanceRef::new);
   }
 }
@@ -15,7 +15,6 @@ package org.dartlang.vm.service.element;
 
 // This is a generated file.
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 @SuppressWarnings({"WeakerAccess", "unused"})
@@ -43,12 +42,7 @@ public class VM extends Response {
    * A list of isolates running in the VM.
    */
   public ElementList<IsolateRef> getIsolates() {
-    return new ElementList<IsolateRef>(json.get("isolates").getAsJsonArray()) {
-      @Override
-      protected IsolateRef basicGet(JsonArray array, int index) {
-        return new IsolateRef(array.get(index).getAsJsonObject());
-      }
-    };
+    return getElementList("isolates", IsolateRef::new);
   }
 
   /**
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.dartlang.vm.service.internal;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * A JSON-RPC message received from the VM service which has been scanned but not decoded.
+ * <p>
+ * Scanning records where the values of the well known top level members ({@code id},
+ * {@code method}, {@code params}, {@code result} and {@code error}) start and end in the message
+ * text. Small values can then be peeked without building a DOM, and the larger structured values
+ * are only decoded when a consumer asks for them.
+ */
+public class JsonRpcMessage implements VmServiceConst {
+  private static final String[] MEMBERS = {ID, METHOD, PARAMS, RESULT, ERROR};
+
+  private final String text;
+
+  /**
+   * Start and end offsets into {@link #text} for each entry in {@link #MEMBERS}. A start offset of
+   * -1 means the member is not present.
+   */
+  private final int[] spans;
+
+  private JsonRpcMessage(String text, int[] spans) {
+    this.text = text;
+    this.spans = spans;
+  }
+
+  /**
+   * Scan the given message text.
+   *
+   * @return the scanned message, or {@code null} if the text is not a well formed JSON object
+   */
+  public static JsonRpcMessage scan(String text) {
+    final int[] spans = newSpans(MEMBERS.length);
+    final int start = skipWhitespace(text, 0, text.length());
+    final int end = scanMembers(text, start, text.length(), MEMBERS, spans);
+    if (end < 0 || skipWhitespace(text, end, text.length()) != text.length()) {
+      return null;
+    }
+    return new JsonRpcMessage(text, spans);
+  }
+
+  /**
+   * Return the original message text.
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Return {@code true} if the message has a top level member with the given name. Only the
+   * members named in {@link VmServiceConst#ID}, {@link VmServiceConst#METHOD},
+   * {@link VmServiceConst#PARAMS}, {@link VmServiceConst#RESULT} and {@link VmServiceConst#ERROR}
+   * are tracked.
+   */
+  public boolean has(String member) {
+    final int index = indexOf(member);
+    return index >= 0 && spans[index * 2] >= 0;
+  }
+
+  /**
+   * Return the top level member with the given name as a string, or {@code null} if the member is
+   * not present. Numbers are returned in their textual form.
+   */
+  public String getString(String member) {
+    final int index = indexOf(member);
+    if (index < 0 || spans[index * 2] < 0) {
+      return null;
+    }
+    return decodeString(spans[index * 2], spans[index * 2 + 1]);
+  }
+
+  /**
+   * Return the string value of a member of the given top level object without decoding the
+   * object, or {@code null} if either is not present.
+   */
+  public String peekString(String member, String nestedMember) {
+    final int[] nested = findNested(member, nestedMember);
+    return nested == null ? null : decodeString(nested[0], nested[1]);
+  }
+
+  /**
+   * Decode and return the top level member with the given name.
+   *
+   * @throws IllegalStateException if the member is not a JSON object
+   */
+  public JsonObject getObject(String member) {
+    final int index = indexOf(member);
+    if (index < 0 || spans[index * 2] < 0) {
+      return null;
+    }
+    return decodeObject(spans[index * 2], spans[index * 2 + 1]);
+  }
+
+  /**
+   * Decode and return a member of the given top level object without decoding its siblings.
+   *
+   * @throws IllegalStateException if the member is not a JSON object
+   */
+  public JsonObject getObject(String member, String nestedMember) {
+    final int[] nested = findNested(member, nestedMember);
+    return nested == null ? null : decodeObject(nested[0], nested[1]);
+  }
+
+  /**
+   * Decode the entire message.
+   */
+  public JsonObject toJsonObject() {
+    return decodeObject(0, text.length());
+  }
+
+  private int[] findNested(String member, String nestedMember) {
+    final int index = indexOf(member);
+    if (index < 0 || spans[index * 2] < 0) {
+      return null;
+    }
+    final int[] nested = newSpans(1);
+    if (scanMembers(text, spans[index * 2], spans[index * 2 + 1], new String[]{nestedMember}, nested) < 0 || nested[0] < 0) {
+      return null;
+    }
+    return nested;
+  }
+
+  private String decodeString(int start, int end) {
+    if (text.charAt(start) != '"') {
+      return text.substring(start, end);
+    }
+    final int escape = text.indexOf('\\', start);
+    if (escape < 0 || escape >= end) {
+      return text.substring(start + 1, end - 1);
+    }
+    return new JsonParser().parse(text.substring(start, end)).getAsString();
+  }
+
+  private JsonObject decodeObject(int start, int end) {
+    final JsonElement element = new JsonParser().parse(text.substring(start, end));
+    return element.getAsJsonObject();
+  }
+
+  private static int indexOf(String member) {
+    for (int i = 0; i < MEMBERS.length; i++) {
+      if (MEMBERS[i].equals(member)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int[] newSpans(int count) {
+    final int[] spans = new int[count * 2];
+    for (int i = 0; i < spans.length; i += 2) {
+      spans[i] = -1;
+    }
+    return spans;
+  }
+
+  /**
+   * Scan the JSON object starting at {@code pos}, recording the value spans of the given names.
+   *
+   * @return the offset just past the closing brace, or -1 if the object is malformed
+   */
+  private static int scanMembers(String text, int pos, int limit, String[] names, int[] spans) {
+    if (pos >= limit || text.charAt(pos) != '{') {
+      return -1;
+    }
+    pos = skipWhitespace(text, pos + 1, limit);
+    if (pos < limit && text.charAt(pos) == '}') {
+      return pos + 1;
+    }
+    while (pos < limit) {
+      if (text.charAt(pos) != '"') {
+        return -1;
+      }
+      final int nameStart = pos + 1;
+      final int nameEnd = skipString(text, pos, limit);
+      if (nameEnd < 0) {
+        return -1;
+      }
+      pos = skipWhitespace(text, nameEnd, limit);
+      if (pos >= limit || text.charAt(pos) != ':') {
+        return -1;
+      }
+      final int valueStart = skipWhitespace(text, pos + 1, limit);
+      final int valueEnd = skipValue(text, valueStart, limit);
+      if (valueEnd < 0) {
+        return -1;
+      }
+      for (int i = 0; i < names.length; i++) {
+        final String name = names[i];
+        if (name.length() == nameEnd - nameStart - 1 && text.regionMatches(nameStart, name, 0, name.length())) {
+          spans[i * 2] = valueStart;
+          spans[i * 2 + 1] = valueEnd;
+          break;
+        }
+      }
+      pos = skipWhitespace(text, valueEnd, limit);
+      if (pos >= limit) {
+        return -1;
+      }
+      final char c = text.charAt(pos);
+      if (c == '}') {
+        return pos + 1;
+      }
+      if (c != ',') {
+        return -1;
+      }
+      pos = skipWhitespace(text, pos + 1, limit);
+    }
+    return -1;
+  }
+
+  /**
+   * @return the offset just past the value starting at {@code pos}, or -1 if it is malformed
+   */
+  private static int skipValue(String text, int pos, int limit) {
+    if (pos >= limit) {
+      return -1;
+    }
+    final char c = text.charAt(pos);
+    if (c == '"') {
+      return skipString(text, pos, limit);
+    }
+    if (c == '{' || c == '[') {
+      int depth = 0;
+      while (pos < limit) {
+        final char d = text.charAt(pos);
+        if (d == '"') {
+          pos = skipString(text, pos, limit);
+          if (pos < 0) {
+            return -1;
+          }
+          continue;
+        }
+        if (d == '{' || d == '[') {
+          depth++;
+        }
+        else if (d == '}' || d == ']') {
+          depth--;
+          if (depth == 0) {
+            return pos + 1;
+          }
+        }
+        pos++;
+      }
+      return -1;
+    }
+    final int start = pos;
+    while (pos < limit) {
+      final char d = text.charAt(pos);
+      if (d == ',' || d == '}' || d == ']' || Character.isWhitespace(d)) {
+        break;
+      }
+      pos++;
+    }
+    return pos == start ? -1 : pos;
+  }
+
+  /**
+   * @return the offset just past the closing quote of the string starting at {@code pos}, or -1
+   */
+  private static int skipString(String text, int pos, int limit) {
+    pos++;
+    while (pos < limit) {
+      final char c = text.charAt(pos);
+      if (c == '\\') {
+        pos += 2;
+        continue;
+      }
+      if (c == '"') {
+        return pos + 1;
+      }
+      pos++;
+    }
+    return -1;
+  }
+
+  private static int skipWhitespace(String text, int pos, int limit) {
+    while (pos < limit && Character.isWhitespace(text.charAt(pos))) {
+      pos++;
+    }
+    return pos;
+  }
+}
@@ -39,6 +39,11 @@ public interface Logger {
     @Override
     public void logInformation(String message, Throwable exception) {
     }
+
+    @Override
+    public boolean isInformationEnabled() {
+      return false;
+    }
   }
 
   static final Logger NULL = new NullLogger();
@@ -72,4 +77,12 @@ public interface Logger {
    * @param exception the exception being logged
    */
   void logInformation(String message, Throwable exception);
+
+  /**
+   * Return {@code true} if informational messages are recorded. Callers should check this before
+   * building expensive informational messages.
+   */
+  default boolean isInformationEnabled() {
+    return true;
+  }
 }